@@ -36,7 +36,7 @@ if exist README.md (
 )
 
 echo Compiling Java files using --release %JAVA_MAJOR%...
-javac --enable-preview --release %JAVA_MAJOR% -d out -cp "libs/*" src/Main.java src/classifiers/*.java src/utils/*.java src/managers/*.java src/table/*.java src/plots/*.java src/*.java
+javac --enable-preview --release %JAVA_MAJOR% --add-modules jdk.incubator.vector -d out -cp "libs/*" src/Main.java src/classifiers/*.java src/utils/*.java src/managers/*.java src/table/*.java src/plots/*.java src/*.java
 
 if %errorlevel% neq 0 (
     echo Compilation failed.
@@ -56,4 +56,4 @@ if %errorlevel% neq 0 (
 )
 
 echo Build successful! Running application...
-start /min java --enable-preview -jar out\JTabViz.jar
+start /min java --enable-preview --add-modules jdk.incubator.vector -jar out\JTabViz.jar
@@ -9,9 +9,9 @@ echo "Building JTabViz..."
 # Create the output directory if it doesn't exist
 mkdir -p out
 
-# Compile all Java files
+# Compile all Java files, with the incubating Vector API used by the SIMD kernels
 echo "Compiling Java files..."
-javac -d out $(find src -name "*.java")
+javac --add-modules jdk.incubator.vector -d out $(find src -name "*.java")
 
 # Check if compilation was successful
 if [ $? -ne 0 ]; then
@@ -44,4 +44,4 @@ fi
 
 echo "Build successful! JAR file created at out/JTabViz.jar"
 echo "Running application..."
-java -jar out/JTabViz.jar 
\ No newline at end of file
+java --add-modules jdk.incubator.vector -jar out/JTabViz.jar 
\ No newline at end of file
@@ -2,20 +2,31 @@ package src;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
 import utils.DataTypeDetector;
 import utils.ColumnDataTypeInfo;
+import src.table.ColumnFile;
+import src.table.ColumnStatistics;
+import src.table.ColumnarDataset;
+import src.table.ReorderableTableModel;
+import src.utils.ParallelCsvReader;
+import src.utils.ParallelCsvWriter;
+import src.utils.DatasetSnapshot;
 import javax.swing.BoxLayout;
 import javax.swing.JCheckBox;
 import javax.swing.JDialog;
@@ -30,18 +41,27 @@ import javax.swing.SwingConstants;
 import javax.swing.BorderFactory;
 
 public class CsvDataHandler {
-    private List<String[]> originalData = new ArrayList<>();
-    private List<String[]> normalizedData = new ArrayList<>();
+    private ColumnarDataset originalDataset = new ColumnarDataset();
     private boolean isNormalized = false;
     private String normalizationType = "minmax";
-    private Map<Integer, double[]> originalValues = new HashMap<>();
-    private Map<Integer, Double> originalMin = new HashMap<>();
-    private Map<Integer, Double> originalMax = new HashMap<>();
-    private Map<Integer, Double> originalMean = new HashMap<>();
-    private Map<Integer, Double> originalStd = new HashMap<>();
     private Set<String> selectedClasses = new HashSet<>();
     private Map<String, Set<String>> classGroups;
     private Map<Integer, ColumnDataTypeInfo> columnDataTypes = new HashMap<>();
+    private boolean outOfCore = false;
+
+    // Fixed so that sampling the same file again gives the same rows
+    private static final long SAMPLE_SEED = 42L;
+
+    // Enough for the first few thousand rows of a typical file
+    private static final int PREVIEW_BYTES = 256 * 1024;
+
+    /**
+     * What the class selection dialog asked to load: the kept classes by the group they are
+     * renamed to, the columns to parse and the share of each class to sample.
+     */
+    private record ClassSelection(Map<String, Set<String>> groups, Set<String> classes, boolean[] columns,
+                                  int samplePercent) {
+    }
 
     private static class ClassGrouping {
         JCheckBox checkBox;
@@ -60,7 +80,15 @@ public class CsvDataHandler {
         }
     }
 
-    private boolean showClassSelectionDialog(List<String> classes) {
+    /**
+     * Asks which classes to load and how to group them, which columns to load and which share
+     * of each class to sample.
+     * @param columnNames names of all columns in the file
+     * @param classColIndex index of the class column, which is always loaded
+     * @return the selection, or null when the dialog was cancelled
+     */
+    private ClassSelection showClassSelectionDialog(List<String> classes, String[] columnNames, int classColIndex) {
+        ClassSelection[] result = new ClassSelection[1];
         JDialog dialog = new JDialog();
         dialog.setTitle("Class Grouping Selection");
         dialog.setModal(true);
@@ -110,7 +138,6 @@ public class CsvDataHandler {
 
         JScrollPane scrollPane = new JScrollPane(selectionPanel);
         scrollPane.setPreferredSize(new Dimension(500, Math.min(400, 50 * classes.size())));
-        dialog.add(scrollPane, BorderLayout.CENTER);
 
         // Top panel with controls
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -128,7 +155,50 @@ public class CsvDataHandler {
 
         topPanel.add(selectAllButton);
         topPanel.add(selectNoneButton);
-        dialog.add(topPanel, BorderLayout.NORTH);
+
+        JPanel classesPanel = new JPanel(new BorderLayout(5, 5));
+        classesPanel.add(topPanel, BorderLayout.NORTH);
+        classesPanel.add(scrollPane, BorderLayout.CENTER);
+
+        // Column projection: unchecked columns are not parsed at all
+        JPanel columnSelectionPanel = new JPanel(new GridLayout(0, 4, 5, 2));
+        columnSelectionPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        List<JCheckBox> columnCheckBoxes = new ArrayList<>();
+        for (int col = 0; col < columnNames.length; col++) {
+            JCheckBox checkBox = new JCheckBox(columnNames[col], true);
+            checkBox.setFont(checkBox.getFont().deriveFont(11f));
+            checkBox.setEnabled(col != classColIndex);
+            columnCheckBoxes.add(checkBox);
+            columnSelectionPanel.add(checkBox);
+        }
+        JScrollPane columnScrollPane = new JScrollPane(columnSelectionPanel);
+        columnScrollPane.setPreferredSize(new Dimension(500, Math.min(400, 30 * (columnNames.length / 4 + 1))));
+
+        JPanel columnTopPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton selectAllColumnsButton = new JButton("Select All");
+        selectAllColumnsButton.addActionListener(e -> columnCheckBoxes.forEach(c -> c.setSelected(true)));
+        JButton selectNoColumnsButton = new JButton("Select None");
+        selectNoColumnsButton.addActionListener(e -> columnCheckBoxes.stream()
+            .filter(JCheckBox::isEnabled)
+            .forEach(c -> c.setSelected(false)));
+        columnTopPanel.add(selectAllColumnsButton);
+        columnTopPanel.add(selectNoColumnsButton);
+
+        JPanel columnsPanel = new JPanel(new BorderLayout(5, 5));
+        columnsPanel.add(columnTopPanel, BorderLayout.NORTH);
+        columnsPanel.add(columnScrollPane, BorderLayout.CENTER);
+
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Classes", classesPanel);
+        tabbedPane.addTab("Columns", columnsPanel);
+        dialog.add(tabbedPane, BorderLayout.CENTER);
+
+        // Class-stratified row sampling
+        JPanel samplePanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        JSpinner sampleSpinner = new JSpinner(new SpinnerNumberModel(100, 1, 100, 1));
+        samplePanel.add(new JLabel("Load"));
+        samplePanel.add(sampleSpinner);
+        samplePanel.add(new JLabel("% of the rows of each class"));
 
         // Bottom panel with separator and buttons
         JPanel bottomPanel = new JPanel();
@@ -140,7 +210,6 @@ public class CsvDataHandler {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         JButton okButton = new JButton("OK");
         okButton.addActionListener(e -> {
-            selectedClasses.clear();
             Map<String, Set<String>> groupedClasses = new HashMap<>();
             
             // Collect selected classes and their groups
@@ -175,24 +244,25 @@ public class CsvDataHandler {
                 return;
             }
 
-            // Store the selected classes and their groupings
-            selectedClasses.clear();
-            classGroups = finalGroups;
-            finalGroups.values().forEach(selectedClasses::addAll);
+            // Keep the selection for this load only; the current data keeps its own classes
+            Set<String> keptClasses = new HashSet<>();
+            finalGroups.values().forEach(keptClasses::addAll);
+            boolean[] keptColumns = new boolean[columnNames.length];
+            for (int col = 0; col < columnNames.length; col++) {
+                keptColumns[col] = columnCheckBoxes.get(col).isSelected();
+            }
+            result[0] = new ClassSelection(finalGroups, keptClasses, keptColumns, (Integer) sampleSpinner.getValue());
             
             dialog.dispose();
         });
 
         JButton cancelButton = new JButton("Cancel");
-        cancelButton.addActionListener(e -> {
-            selectedClasses.clear();
-            classGroups = null;
-            dialog.dispose();
-        });
+        cancelButton.addActionListener(e -> dialog.dispose());
 
         buttonPanel.add(okButton);
         buttonPanel.add(cancelButton);
 
+        bottomPanel.add(samplePanel);
         bottomPanel.add(separator);
         bottomPanel.add(buttonPanel);
         dialog.add(bottomPanel, BorderLayout.SOUTH);
@@ -201,7 +271,7 @@ public class CsvDataHandler {
         dialog.setLocationRelativeTo(null);
         dialog.setVisible(true);
 
-        return !selectedClasses.isEmpty();
+        return result[0];
     }
 
     private void updateGroupings(List<ClassGrouping> groupings, Map<String, Set<String>> currentGroups) {
@@ -251,137 +321,247 @@ public class CsvDataHandler {
     }
 
     /**
-     * Parse a CSV line properly handling empty entries between commas
-     * @param line The CSV line to parse
-     * @return Array of values, including empty strings for missing values
+     * Data read from a file, ready to be installed into the table by {@link #installData}.
      */
-    private String[] parseCsvLine(String line) {
-        List<String> values = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder currentValue = new StringBuilder();
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                values.add(currentValue.toString().trim());
-                currentValue = new StringBuilder();
-            } else {
-                currentValue.append(c);
-            }
+    public static class LoadedData {
+        private final String[] headers;
+        private final ColumnarDataset dataset;
+        private final ColumnarDataset originalDataset;
+        private final Map<Integer, ColumnDataTypeInfo> columnDataTypes;
+        private final Map<String, Set<String>> classGroups;
+        private final Set<String> selectedClasses;
+
+        LoadedData(String[] headers, ColumnarDataset dataset, ColumnarDataset originalDataset,
+                   Map<Integer, ColumnDataTypeInfo> columnDataTypes, Map<String, Set<String>> classGroups,
+                   Set<String> selectedClasses) {
+            this.headers = headers;
+            this.dataset = dataset;
+            this.originalDataset = originalDataset;
+            this.columnDataTypes = columnDataTypes;
+            this.classGroups = classGroups;
+            this.selectedClasses = selectedClasses;
+        }
+
+        public int getRowCount() {
+            return dataset.getRowCount();
         }
-        
-        // Add the last value
-        values.add(currentValue.toString().trim());
-        
-        return values.toArray(new String[0]);
     }
-    
+
     /**
-     * Process empty entries by converting empty strings to "NaN" for proper visualization
-     * @param values Array of string values from CSV
-     * @return Array with empty entries converted to "NaN"
+     * Parses the first rows of a CSV file as they appear in the file, without class selection
+     * or type detection, so they can be shown while the whole file is loading.
+     * @return the preview, or null for standard input, which can only be read once
      */
-    private String[] processEmptyEntries(String[] values) {
-        String[] processed = new String[values.length];
-        for (int i = 0; i < values.length; i++) {
-            if (values[i] == null || values[i].trim().isEmpty()) {
-                processed[i] = "NaN";
-            } else {
-                processed[i] = values[i];
-            }
+    public LoadedData previewCsvData(String filePath) throws IOException {
+        if (filePath.equals(ParallelCsvReader.STANDARD_INPUT)) {
+            return null;
         }
-        return processed;
-    }
-
-    public void loadCsvData(String filePath, DefaultTableModel tableModel, JTextArea statsTextArea) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isFirstLine = true;
-            List<String> headers = null;
-            List<String[]> tempData = new ArrayList<>();
-            Set<String> uniqueClasses = new HashSet<>();
-            int classColIndex = -1;
-
-            // First pass to collect classes and headers
-            while ((line = br.readLine()) != null) {
-                String[] values = parseCsvLine(line);
-                if (isFirstLine) {
-                    headers = Arrays.asList(values);
-                    for (int i = 0; i < values.length; i++) {
-                        if (values[i].equalsIgnoreCase("class") || values[i].equalsIgnoreCase("label")) {
-                            classColIndex = i;
-                            break;
-                        }
-                    }
-                    isFirstLine = false;
-                } else if (classColIndex != -1) {
-                    uniqueClasses.add(values[classColIndex]);
-                    tempData.add(values);
-                }
+        ParallelCsvReader reader = ParallelCsvReader.preview(filePath, PREVIEW_BYTES);
+        ColumnarDataset dataset = reader.toDataset(className -> className);
+        return new LoadedData(reader.getHeaders(), dataset, dataset, new HashMap<>(), null, new HashSet<>());
+    }
+
+    /**
+     * Reads a CSV file, asking for the classes to keep, and detects and transforms the column
+     * data types. Safe to call off the event dispatch thread; the table is not touched.
+     * @param listener receives parsing progress and can cancel the read, or null
+     * @return the loaded data, or null when the user cancelled the class selection
+     */
+    public LoadedData readCsvData(String filePath, ParallelCsvReader.ProgressListener listener)
+            throws IOException, InterruptedException {
+        ParallelCsvReader scan = null;
+        if (ParallelCsvReader.isStream(filePath)) {
+            // A stream is read once, in full, before the classes are chosen
+            scan = ParallelCsvReader.scanClasses(filePath, scaledListener(listener, 0, 90));
+        }
+        String[] fileHeaders = scan != null ? scan.getHeaders() : ParallelCsvReader.readHeaders(filePath);
+        int fileClassColIndex = ParallelCsvReader.findClassColumn(fileHeaders);
+        ClassSelection selection = new ClassSelection(null, new HashSet<>(), null, 100);
+        boolean[] columns = null;
+        BitSet[] rows = null;
+        if (fileClassColIndex != -1) {
+            // Scan the class column first so that unwanted columns and rows are never parsed
+            if (scan == null) {
+                scan = ParallelCsvReader.scanClasses(filePath, scaledListener(listener, 0, 30));
             }
+            checkCancelled(listener);
 
-            // Show class selection dialog if we found classes
-            if (!uniqueClasses.isEmpty()) {
-                List<String> sortedClasses = new ArrayList<>(uniqueClasses);
+            // The dialog's answer stays local until installData, so cancelling leaves the
+            // classes of the data on screen untouched
+            if (scan.getRowCount() > 0) {
+                List<String> sortedClasses = new ArrayList<>(scan.getClassNames());
                 Collections.sort(sortedClasses);
-                if (!showClassSelectionDialog(sortedClasses)) {
-                    return; // User cancelled or no classes selected
+                ClassSelection[] answer = new ClassSelection[1];
+                runOnEventThread(() -> answer[0] = showClassSelectionDialog(sortedClasses, fileHeaders, fileClassColIndex));
+                if (answer[0] == null) {
+                    return null; // User cancelled
                 }
+                selection = answer[0];
+            }
+            checkCancelled(listener);
+
+            columns = selection.columns();
+            if (columns == null) {
+                columns = new boolean[fileHeaders.length];
+                Arrays.fill(columns, true);
+            }
+            rows = scan.selectRows(selection.classes()::contains, selection.samplePercent() / 100.0, SAMPLE_SEED);
+        }
+
+        Map<String, Set<String>> groups = selection.groups();
+        Set<String> selected = new HashSet<>(selection.classes());
+
+        // Keep only selected classes, renamed to the group they belong to
+        Function<String, String> classMapping = originalClass -> {
+            if (!selected.contains(originalClass)) {
+                return null;
+            }
+            return groups == null ? originalClass : groups.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(originalClass))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(originalClass);
+        };
+
+        String[] headers;
+        int classColIndex;
+        ColumnarDataset dataset;
+        if (outOfCore) {
+            // Parse straight into mapped column files, a few chunks at a time, so that the
+            // rows never have to fit on the heap
+            ParallelCsvReader.MappedDataset mapped;
+            if (fileClassColIndex == -1 && scan == null) {
+                mapped = ParallelCsvReader.readMapped(filePath, classMapping, listener);
+            } else if (fileClassColIndex == -1) {
+                boolean[] all = new boolean[fileHeaders.length];
+                Arrays.fill(all, true);
+                mapped = scan.readMapped(all, null, classMapping, listener);
+            } else {
+                mapped = scan.readMapped(columns, rows, classMapping, scaledListener(listener, 30, 100));
+            }
+            headers = mapped.headers();
+            classColIndex = mapped.classColumnIndex();
+            dataset = mapped.dataset();
+        } else {
+            ParallelCsvReader reader;
+            if (fileClassColIndex == -1) {
+                // Nothing to choose: parse the whole file in one pass
+                reader = scan != null ? scan : ParallelCsvReader.read(filePath, listener);
+            } else {
+                reader = scan.read(columns, rows, scaledListener(listener, 30, 100));
             }
+            headers = reader.getHeaders();
+            classColIndex = reader.getClassColumnIndex();
+            dataset = reader.toDataset(classMapping);
+        }
+        checkCancelled(listener);
+
+        // Keep the rows as loaded for the original data view, then detect data types and
+        // transform the data on a model that is not shown yet. A copy of mapped data shares
+        // its pages, and detection reads the mapped columns in place.
+        ColumnarDataset original = dataset.copy();
+        ReorderableTableModel staging = new ReorderableTableModel();
+        staging.setDataset(headers, dataset);
+        Map<Integer, ColumnDataTypeInfo> dataTypes;
+        try {
+            dataTypes = detectAndTransformDataTypes(staging, classColIndex);
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // Writing a transformed column of mapped data failed
+        }
+        return new LoadedData(headers, dataset, original, dataTypes, groups, selected);
+    }
+
+    /**
+     * Reads a snapshot, in memory or memory-mapped depending on the out-of-core setting.
+     * Types, classes and groups were resolved when the snapshot was saved.
+     */
+    public LoadedData readSnapshot(String filePath) throws IOException {
+        DatasetSnapshot snapshot = outOfCore ? DatasetSnapshot.map(filePath) : DatasetSnapshot.read(filePath);
+        ColumnarDataset dataset = snapshot.getDataset();
+        return new LoadedData(snapshot.getHeaders(), dataset, dataset.copy(), snapshot.getColumnDataTypes(),
+            snapshot.getClassGroups().isEmpty() ? null : snapshot.getClassGroups(), snapshot.getSelectedClasses());
+    }
 
-            // Clear existing data
-            originalData.clear();
-            tableModel.setRowCount(0);
-            tableModel.setColumnCount(0);
+    /**
+     * Shows loaded data in the table, replacing the existing data.
+     */
+    public void installData(LoadedData data, DefaultTableModel tableModel) {
+        originalDataset = data.originalDataset;
+        columnDataTypes = new HashMap<>(data.columnDataTypes);
+        classGroups = data.classGroups;
+        selectedClasses = new HashSet<>(data.selectedClasses);
+        showData(data, tableModel);
+    }
 
-            // Set headers
-            if (headers != null) {
-                tableModel.setColumnIdentifiers(headers.toArray());
+    /**
+     * Shows loaded data in the table without making it the current dataset, for previews.
+     */
+    public void showData(LoadedData data, DefaultTableModel tableModel) {
+        if (tableModel instanceof ReorderableTableModel reorderableModel) {
+            reorderableModel.setDataset(data.headers, data.dataset);
+            return;
+        }
+        tableModel.setRowCount(0);
+        tableModel.setColumnCount(0);
+        tableModel.setColumnIdentifiers(data.headers);
+        for (int row = 0; row < data.dataset.getRowCount(); row++) {
+            Object[] values = new Object[data.headers.length];
+            for (int col = 0; col < data.headers.length; col++) {
+                values[col] = data.dataset.getText(row, col);
             }
+            tableModel.addRow(values);
+        }
+    }
 
-            // Add filtered data with transformed class labels
-            for (String[] values : tempData) {
-                if (classColIndex != -1) {
-                    String originalClass = values[classColIndex];
-                    if (selectedClasses.contains(originalClass)) {
-                        // Find the group this class belongs to
-                        String newClassName = classGroups.entrySet().stream()
-                            .filter(entry -> entry.getValue().contains(originalClass))
-                            .map(Map.Entry::getKey)
-                            .findFirst()
-                            .orElse(originalClass);
-                        
-                        // Create new row with transformed class label and handle empty entries
-                        String[] newValues = processEmptyEntries(values);
-                        newValues[classColIndex] = newClassName;
-                        
-                        originalData.add(newValues);
-                        tableModel.addRow(newValues);
-                    }
-                } else {
-                    String[] processedValues = processEmptyEntries(values);
-                    originalData.add(processedValues);
-                    tableModel.addRow(processedValues);
-                }
+    private static void checkCancelled(ParallelCsvReader.ProgressListener listener) {
+        if (listener != null && listener.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Maps the progress of one pass over the file onto the given percentage range.
+     */
+    private static ParallelCsvReader.ProgressListener scaledListener(ParallelCsvReader.ProgressListener listener,
+                                                                     int from, int to) {
+        if (listener == null) {
+            return null;
+        }
+        return new ParallelCsvReader.ProgressListener() {
+            @Override
+            public void chunkParsed(int parsedChunks, int totalChunks) {
+                listener.chunkParsed(from * totalChunks + (to - from) * parsedChunks, 100 * totalChunks);
             }
 
-            // Detect data types and transform data
-            detectAndTransformDataTypes(tableModel, classColIndex);
+            @Override
+            public boolean isCancelled() {
+                return listener.isCancelled();
+            }
+        };
+    }
 
-            updateStats(tableModel, statsTextArea);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(null, "Error loading CSV file: " + e.getMessage(), 
-                "Error", JOptionPane.ERROR_MESSAGE);
+    private static void runOnEventThread(Runnable task) throws InterruptedException {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
         }
     }
 
+    /**
+     * Normalizes the numerical columns by showing them through an affine transform of the
+     * stored values, so no cell is rewritten and denormalizing restores the exact values.
+     */
     public void normalizeOrDenormalizeData(JTable table, JTextArea statsTextArea) {
-        DefaultTableModel model = (DefaultTableModel) table.getModel();
-        int rowCount = model.getRowCount();
+        if (!(table.getModel() instanceof ReorderableTableModel model)) {
+            return;
+        }
         int colCount = model.getColumnCount();
+        ColumnStatistics statistics = ColumnStatistics.of(model);
         
         // Find the class column index
         int classColumnIndex = -1;
@@ -397,75 +577,33 @@ public class CsvDataHandler {
             if (col == classColumnIndex) {
                 continue;
             }
-            
-            if (isColumnNumeric(col, model)) {
-                double[] values = new double[rowCount];
-                boolean[] isEmpty = new boolean[rowCount];
-                boolean hasEmptyValues = false;
-
-                // First pass - collect values and identify empty entries
-                for (int row = 0; row < rowCount; row++) {
-                    Object value = model.getValueAt(row, col);
-                    if (value == null || value.toString().trim().isEmpty() || "NaN".equals(value.toString())) {
-                        isEmpty[row] = true;
-                        hasEmptyValues = true;
-                        values[row] = Double.NaN; // Mark as empty
-                    } else {
-                        try {
-                            values[row] = Double.parseDouble(value.toString());
-                            isEmpty[row] = false;
-                        } catch (NumberFormatException e) {
-                            isEmpty[row] = true;
-                            hasEmptyValues = true;
-                            values[row] = Double.NaN;
-                        }
-                    }
-                }
+            normalizeColumn(model, statistics, col);
+        }
+        updateStats(model, statsTextArea);
+    }
 
-                // Calculate min, max, mean, std only from non-empty values
-                List<Double> nonEmptyValues = new ArrayList<>();
-                for (int row = 0; row < rowCount; row++) {
-                    if (!isEmpty[row] && !Double.isNaN(values[row])) {
-                        nonEmptyValues.add(values[row]);
-                    }
-                }
+    /**
+     * Normalizes one numerical column the way {@link #normalizeOrDenormalizeData} does, for
+     * columns added while the data is normalized.
+     */
+    public void normalizeColumn(ReorderableTableModel model, int col) {
+        normalizeColumn(model, ColumnStatistics.of(model), col);
+    }
 
-                if (!nonEmptyValues.isEmpty()) {
-                    double min = nonEmptyValues.stream().mapToDouble(Double::doubleValue).min().orElse(0.0);
-                    double max = nonEmptyValues.stream().mapToDouble(Double::doubleValue).max().orElse(1.0);
-                    double mean = nonEmptyValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-                    double std = calculateStd(nonEmptyValues.stream().mapToDouble(Double::doubleValue).toArray(), mean);
-
-                    // Store original values for denormalization
-                    originalValues.put(col, values.clone());
-                    originalMin.put(col, min);
-                    originalMax.put(col, max);
-                    originalMean.put(col, mean);
-                    originalStd.put(col, std);
-
-                    // Normalize only non-empty values
-                    for (int row = 0; row < rowCount; row++) {
-                        if (!isEmpty[row] && !Double.isNaN(values[row])) {
-                            double normalizedValue;
-                            if (normalizationType.equals("minmax")) {
-                                normalizedValue = (values[row] - min) / (max - min);
-                            } else { // zscore
-                                normalizedValue = (values[row] - mean) / std;
-                            }
-                            // Ensure NaN is not returned
-                            if (Double.isNaN(normalizedValue)) {
-                                normalizedValue = 0.0;
-                            }
-                            model.setValueAt(String.format("%.4f", normalizedValue), row, col);
-                        } else {
-                            // Keep empty values as NaN
-                            model.setValueAt("NaN", row, col);
-                        }
-                    }
-                }
+    private void normalizeColumn(ReorderableTableModel model, ColumnStatistics statistics, int col) {
+        // min, max, mean and std of the non-empty values
+        double min = statistics.getMin(col);
+        if (isColumnNumeric(col, model) && !Double.isNaN(min)) {
+            double max = statistics.getMax(col);
+            double spread = normalizationType.equals("minmax") ? max - min : statistics.getStandardDeviation(col);
+            double center = normalizationType.equals("minmax") ? min : statistics.getMean(col);
+            if (spread > 0 && Double.isFinite(1 / spread) && Double.isFinite(center)) {
+                model.setColumnTransform(col, 1 / spread, -center / spread);
+            } else if (Double.isFinite(min)) {
+                // A constant column normalizes to 0
+                model.setColumnTransform(col, 1, -min);
             }
         }
-        updateStats(model, statsTextArea);
     }
 
     private boolean isColumnNumeric(int col, DefaultTableModel model) {
@@ -488,66 +626,86 @@ public class CsvDataHandler {
     }
 
     public void denormalizeData(JTable table, JTextArea statsTextArea) {
-        DefaultTableModel model = (DefaultTableModel) table.getModel();
-        int rowCount = model.getRowCount();
-        int colCount = model.getColumnCount();
-
-        for (int col = 0; col < colCount; col++) {
-            if (originalValues.containsKey(col)) {
-                double[] values = originalValues.get(col);
-                for (int row = 0; row < rowCount; row++) {
-                    // Remove padding zeros when setting value back
-                    String originalValue = String.valueOf(values[row]);
-                    if (originalValue.endsWith(".0")) {
-                        originalValue = originalValue.substring(0, originalValue.length() - 2);
-                    }
-                    model.setValueAt(originalValue, row, col);
-                }
-            }
+        if (table.getModel() instanceof ReorderableTableModel model) {
+            model.clearColumnTransforms();
+            updateStats(model, statsTextArea);
         }
-        updateStats(model, statsTextArea);
     }
 
     public void saveCsvData(String filePath, DefaultTableModel tableModel) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filePath))) {
-            // Write column headers
-            for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                bw.write(tableModel.getColumnName(col));
-                if (col < tableModel.getColumnCount() - 1) {
-                    bw.write(",");
-                }
-            }
-            bw.newLine();
-
-            // Write row data
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    bw.write(tableModel.getValueAt(row, col).toString());
-                    if (col < tableModel.getColumnCount() - 1) {
-                        bw.write(",");
-                    }
-                }
-                bw.newLine();
-            }
+        String[] headers = new String[tableModel.getColumnCount()];
+        for (int col = 0; col < headers.length; col++) {
+            headers[col] = tableModel.getColumnName(col);
+        }
+        try {
+            ParallelCsvWriter.write(Path.of(filePath), headers, ColumnarDataset.of(tableModel));
             JOptionPane.showMessageDialog(null, "CSV file saved successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(null, "Error saving CSV file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    public void saveSnapshot(String filePath, DefaultTableModel tableModel) {
+        String[] headers = new String[tableModel.getColumnCount()];
+        for (int col = 0; col < headers.length; col++) {
+            headers[col] = tableModel.getColumnName(col);
+        }
+        DatasetSnapshot snapshot = new DatasetSnapshot(headers, ColumnarDataset.of(tableModel),
+            columnDataTypes, classGroups, selectedClasses);
+        try {
+            snapshot.write(filePath);
+            JOptionPane.showMessageDialog(null, "Snapshot saved successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Error saving snapshot: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    public void setOutOfCore(boolean outOfCore) {
+        this.outOfCore = outOfCore;
+    }
+
+    /**
+     * Returns true when loaded data is kept in memory-mapped files rather than on the heap.
+     */
+    public boolean isOutOfCore() {
+        return outOfCore;
+    }
+
     public boolean isDataEmpty() {
-        return originalData.isEmpty();
+        return originalDataset.getRowCount() == 0;
     }
 
+    /**
+     * Returns the rows as loaded from the file, before data type transformation.
+     */
     public List<String[]> getOriginalData() {
-        return originalData;
+        List<String[]> rows = new ArrayList<>(originalDataset.getRowCount());
+        for (int row = 0; row < originalDataset.getRowCount(); row++) {
+            String[] values = new String[originalDataset.getColumnCount()];
+            for (int col = 0; col < values.length; col++) {
+                values[col] = originalDataset.getText(row, col);
+            }
+            rows.add(values);
+        }
+        return rows;
     }
 
-    public List<String[]> getNormalizedData() {
-        return normalizedData;
+    public void updateStats(DefaultTableModel tableModel, JTextArea statsTextArea) {
+        statsTextArea.setText(buildStats(tableModel));
     }
 
-    public void updateStats(DefaultTableModel tableModel, JTextArea statsTextArea) {
+    /**
+     * Builds the summary shown in the stats area: case, attribute and class counts and the
+     * range of each numerical column.
+     */
+    public String buildStats(DefaultTableModel tableModel) {
+        return buildStats(tableModel, ColumnStatistics.of(tableModel));
+    }
+
+    /**
+     * Builds the stats summary from the given statistics of the model's columns.
+     */
+    public String buildStats(DefaultTableModel tableModel, ColumnStatistics statistics) {
         int caseCount = tableModel.getRowCount();
 
         StringBuilder stats = new StringBuilder();
@@ -567,15 +725,10 @@ public class CsvDataHandler {
             }
         }
 
-        Set<String> classSet = new HashSet<>();
         if (classColumnIndex != -1) {
-            for (int row = 0; row < caseCount; row++) {
-                Object classValue = tableModel.getValueAt(row, classColumnIndex);
-                if (classValue != null) {
-                    classSet.add(classValue.toString());
-                }
-            }
-            int classCount = classSet.size();
+            // Blank cells count as one more class, named ""
+            int classCount = statistics.getDistinctCount(classColumnIndex)
+                    + (statistics.getBlankCount(classColumnIndex) > 0 ? 1 : 0);
             stats.append("Class Count: ").append(classCount).append("\n");
         } else {
             stats.append("Class column not found.\n");
@@ -587,32 +740,17 @@ public class CsvDataHandler {
                 continue;
             }
 
-            double minValue = Double.MAX_VALUE;
-            double maxValue = Double.MIN_VALUE;
-            boolean isNumerical = true;
-
-            for (int row = 0; row < caseCount; row++) {
-                try {
-                    double value = Double.parseDouble(tableModel.getValueAt(row, col).toString());
-                    if (value < minValue) minValue = value;
-                    if (value > maxValue) maxValue = value;
-                } catch (NumberFormatException e) {
-                    isNumerical = false;
-                    break;
-                }
-            }
-
-            if (isNumerical) {
-                stats.append(tableModel.getColumnName(col)).append(": Min=").append(minValue).append(", Max=").append(maxValue).append("\n");
+            if (statistics.isNumeric(col)) {
+                stats.append(tableModel.getColumnName(col)).append(": Min=").append(statistics.getMin(col))
+                    .append(", Max=").append(statistics.getMax(col)).append("\n");
             }
         }
 
-        statsTextArea.setText(stats.toString());
+        return stats.toString();
     }
 
     public void clearData() {
-        originalData.clear();
-        normalizedData.clear();
+        originalDataset = new ColumnarDataset();
         isNormalized = false;
         columnDataTypes.clear();
     }
@@ -621,15 +759,6 @@ public class CsvDataHandler {
         this.normalizationType = type;
     }
 
-    private double calculateStd(double[] values, double mean) {
-        double sumSquaredDiff = 0.0;
-        for (double value : values) {
-            double diff = value - mean;
-            sumSquaredDiff += diff * diff;
-        }
-        return Math.sqrt(sumSquaredDiff / values.length);
-    }
-
     public void toggleNormalization(JTable table, JTextArea statsTextArea) {
         if (isNormalized) {
             denormalizeData(table, statsTextArea);
@@ -645,101 +774,115 @@ public class CsvDataHandler {
     
     /**
      * Detects data types for each column and transforms the data accordingly.
+     * Columns are detected and transformed in parallel, then written back to the model.
      * @param tableModel The table model containing the data
      * @param classColIndex Index of the class column (to skip it)
+     * @return the detected data type of each column
      */
-    private void detectAndTransformDataTypes(DefaultTableModel tableModel, int classColIndex) {
-        int rowCount = tableModel.getRowCount();
+    private Map<Integer, ColumnDataTypeInfo> detectAndTransformDataTypes(DefaultTableModel tableModel, int classColIndex) {
+        ColumnarDataset dataset = ColumnarDataset.of(tableModel);
         int colCount = tableModel.getColumnCount();
-        
-        // Clear previous column data types
-        columnDataTypes.clear();
-        
-        for (int col = 0; col < colCount; col++) {
+        ColumnDataTypeInfo[] types = new ColumnDataTypeInfo[colCount];
+        double[][] transformed = new double[colCount][];
+        // Mapped data is transformed one column at a time, and each result is mapped as soon as
+        // it is computed, so that only one transformed column is on the heap at once
+        boolean mapped = dataset.isMapped();
+        IntStream columns = IntStream.range(0, colCount);
+
+        (mapped ? columns : columns.parallel()).forEach(col -> {
             String columnName = tableModel.getColumnName(col);
             
             // Handle the class/label column specially
             if (col == classColIndex) {
-                columnDataTypes.put(col, new ColumnDataTypeInfo(DataTypeDetector.DataType.LABEL, columnName));
-                continue;
-            }
-            
-            // Collect all values for this column
-            String[] columnValues = new String[rowCount];
-            for (int row = 0; row < rowCount; row++) {
-                Object value = tableModel.getValueAt(row, col);
-                columnValues[row] = value != null ? value.toString() : "NaN";
+                types[col] = new ColumnDataTypeInfo(DataTypeDetector.DataType.LABEL, columnName);
+                return;
             }
             
-            // Detect data type
-            DataTypeDetector.DataType detectedType = DataTypeDetector.detectDataType(columnValues);
+            types[col] = DataTypeDetector.detectColumnType(dataset, col, columnName);
             
-            // Transform data based on type
-            switch (detectedType) {
+            // Transform data based on type into a primitive column
+            transformed[col] = switch (types[col].getDataType()) {
                 case CATEGORICAL -> {
-                    // Create mapping and transform to integers
-                    Map<String, Integer> mapping = DataTypeDetector.createCategoricalMapping(columnValues);
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName, mapping));
-                    
                     // Transform values to integers
-                    for (int row = 0; row < rowCount; row++) {
-                        String value = columnValues[row];
-                        if (mapping.containsKey(value)) {
-                            tableModel.setValueAt(mapping.get(value), row, col);
-                        }
-                    }
-                }
-                case BINARY -> {
-                    // Transform to 0/1
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName));
-                    for (int row = 0; row < rowCount; row++) {
-                        String value = columnValues[row];
-                        int binaryValue = DataTypeDetector.convertBinaryToInt(value);
-                        tableModel.setValueAt(binaryValue, row, col);
-                    }
-                }
-                case TIMESTAMP -> {
-                    // Transform to milliseconds since epoch
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName));
-                    for (int row = 0; row < rowCount; row++) {
-                        String value = columnValues[row];
-                        long timestamp = DataTypeDetector.convertTimestampToLong(value);
-                        tableModel.setValueAt(timestamp, row, col);
-                    }
-                }
-                case NOMINAL -> {
-                    // Store as hash values for visualization
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName));
-                    for (int row = 0; row < rowCount; row++) {
-                        String value = columnValues[row];
-                        if (!value.isEmpty()) {
-                            int hashValue = Math.abs(value.hashCode()) % 1000;
-                            tableModel.setValueAt(hashValue, row, col);
-                        }
-                    }
-                }
-                case NUMERICAL -> {
-                    // Transform NaN strings to actual NaN values for numerical columns
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName));
-                    for (int row = 0; row < rowCount; row++) {
-                        String value = columnValues[row];
-                        if ("NaN".equals(value)) {
-                            tableModel.setValueAt(Double.NaN, row, col);
-                        } else {
-                            try {
-                                double numValue = Double.parseDouble(value);
-                                tableModel.setValueAt(numValue, row, col);
-                            } catch (NumberFormatException e) {
-                                tableModel.setValueAt(Double.NaN, row, col);
-                            }
-                        }
-                    }
-                }
-                default -> {
-                    // Unknown type - keep as is
-                    columnDataTypes.put(col, new ColumnDataTypeInfo(detectedType, columnName));
+                    Map<String, Integer> mapping = types[col].getCategoricalMapping();
+                    yield mapColumn(dataset, col, value -> {
+                        Integer code = mapping.get(value);
+                        return code != null ? code : Double.NaN;
+                    });
                 }
+                // Transform to 0/1
+                case BINARY -> mapColumn(dataset, col, DataTypeDetector::convertBinaryToInt);
+                // Transform to milliseconds since epoch
+                case TIMESTAMP -> mapColumn(dataset, col, DataTypeDetector::convertTimestampToLong);
+                // Store as hash values for visualization
+                case NOMINAL -> mapColumn(dataset, col, value -> value.isEmpty() ? Double.NaN : Math.abs(value.hashCode()) % 1000);
+                // Blank and non-numeric cells become NaN, a column of numbers is kept as is
+                case NUMERICAL -> dataset.isTextColumn(col) || !dataset.isNumericColumn(col) ? dataset.getColumn(col) : null;
+                // Unknown type - keep as is
+                default -> null;
+            };
+            if (mapped && transformed[col] != null) {
+                setMappedNumericColumn(dataset, col, transformed[col]);
+                transformed[col] = null;
+            }
+        });
+
+        Map<Integer, ColumnDataTypeInfo> dataTypes = new HashMap<>();
+        for (int col = 0; col < colCount; col++) {
+            dataTypes.put(col, types[col]);
+            if (transformed[col] != null) {
+                setNumericColumn(tableModel, col, transformed[col]);
+            }
+        }
+        return dataTypes;
+    }
+
+    /**
+     * Maps the text of every cell of a column to a number. Text columns are mapped once per
+     * distinct value.
+     */
+    private static double[] mapColumn(ColumnarDataset dataset, int col, ToDoubleFunction<String> mapping) {
+        double[] values = new double[dataset.getRowCount()];
+        if (!dataset.isTextColumn(col)) {
+            for (int row = 0; row < values.length; row++) {
+                values[row] = mapping.applyAsDouble(dataset.getText(row, col));
+            }
+            return values;
+        }
+        List<String> dictionary = dataset.getDictionary(col);
+        double[] mapped = new double[dictionary.size()];
+        for (int code = 0; code < mapped.length; code++) {
+            mapped[code] = mapping.applyAsDouble(dictionary.get(code));
+        }
+        double blank = mapping.applyAsDouble("");
+        int[] codes = dataset.getCodes(col);
+        for (int row = 0; row < values.length; row++) {
+            values[row] = codes[row] < 0 ? blank : mapped[codes[row]];
+        }
+        return values;
+    }
+
+    /**
+     * Replaces a column of mapped data with values written to a mapped column file.
+     */
+    private static void setMappedNumericColumn(ColumnarDataset dataset, int col, double[] values) {
+        try (ColumnFile file = ColumnFile.doubles()) {
+            for (double value : values) {
+                file.putDouble(value);
             }
+            dataset.setMappedNumericColumn(col, file.mapDoubles());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void setNumericColumn(DefaultTableModel tableModel, int col, double[] values) {
+        if (tableModel instanceof ReorderableTableModel reorderableModel) {
+            reorderableModel.setNumericColumn(col, values);
+            return;
+        }
+        for (int row = 0; row < values.length; row++) {
+            tableModel.setValueAt(values[row], row, col);
         }
     }
     
@@ -7,16 +7,17 @@ import java.awt.event.WindowEvent;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
-import java.text.DecimalFormat;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 
@@ -28,13 +29,22 @@ import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 
 import src.managers.*;
+import src.table.ColumnStatistics;
+import src.table.ColumnarDataset;
 import src.table.ReorderableTableModel;
+import src.table.RowNeighborIndex;
 import src.table.TableSetup;
 import src.utils.ShapeUtils;
 import src.utils.CovariancePairUtils;
 import src.classifiers.SupportSumMachineClassifier;
 import src.classifiers.KNearestNeighborsClassifier;
 import src.utils.PureRegionUtils;
+import src.utils.DatasetSnapshot;
+import src.utils.KDTree;
+import src.utils.NeighborIndex;
+import src.utils.RandomProjectionForest;
+import src.utils.VectorKernels;
+import src.utils.ParallelCsvReader;
 import utils.ColumnDataTypeInfo;
 
 public class CsvViewer extends JFrame {
@@ -66,7 +76,11 @@ public class CsvViewer extends JFrame {
     private StateManager stateManager;
     private ButtonPanelManager buttonPanelManager;
     private TableManager tableManager;
+    private HistoryManager historyManager;
     private MainMenu mainMenu;
+    private DataLoadWorker loadWorker;
+    private JPanel loadingPanel;
+    private JProgressBar loadingProgressBar;
 
     public CsvViewer(MainMenu mainMenu) {
         this.mainMenu = mainMenu;
@@ -92,7 +106,11 @@ public class CsvViewer extends JFrame {
         table = TableSetup.createTable(tableModel);
     
         rendererManager = new RendererManager(this);
+        rendererManager.applyPrecisionRenderer();
         tableManager = new TableManager(this, tableModel);
+        historyManager = new HistoryManager(this, tableModel);
+        // Hidden rows stay on the same cases when rows are inserted, removed or dragged
+        tableModel.addRowSet(stateManager.getHiddenRows());
     
         CsvViewerUIHelper.setupTable(table, tableModel, this);
     
@@ -116,7 +134,7 @@ public class CsvViewer extends JFrame {
         trigColumnManager = new TrigonometricColumnManager(table, this);
         pureRegionManager = new PureRegionManager(this, tableModel, statsTextArea, thresholdSlider);
         visualizationManager = new VisualizationManager(this);
-        dataExporter = new DataExporter(tableModel);
+        dataExporter = new DataExporter(table, tableModel);
         selectedRowsLabel = new JLabel("Selected cases: 0");
     
         thresholdLabel = new JLabel("5%");
@@ -135,6 +153,21 @@ public class CsvViewer extends JFrame {
             }
         });
 
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control Z"), "undo");
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control Y"), "redo");
+        getRootPane().getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                undo();
+            }
+        });
+        getRootPane().getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                redo();
+            }
+        });
+
         table.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
@@ -146,6 +179,18 @@ public class CsvViewer extends JFrame {
         });
     
         bottomPanel = CsvViewerUIHelper.createBottomPanel(selectedRowsLabel, thresholdSlider, thresholdLabel);
+
+        // Shown while a file loads in the background
+        loadingProgressBar = new JProgressBar(0, 100);
+        loadingProgressBar.setStringPainted(true);
+        JButton cancelLoadingButton = new JButton("Cancel");
+        cancelLoadingButton.addActionListener(e -> cancelLoading());
+        loadingPanel = new JPanel(new BorderLayout(5, 0));
+        loadingPanel.setOpaque(false);
+        loadingPanel.add(loadingProgressBar, BorderLayout.CENTER);
+        loadingPanel.add(cancelLoadingButton, BorderLayout.EAST);
+        loadingPanel.setVisible(false);
+        bottomPanel.add(loadingPanel, BorderLayout.CENTER);
         statsPanel = new JPanel(new BorderLayout());
         statsPanel.add(statsScrollPane, BorderLayout.CENTER);
     
@@ -170,7 +215,7 @@ public class CsvViewer extends JFrame {
         return !stateManager.getHiddenRows().isEmpty();
     }
 
-    public java.util.List<Integer> getHiddenRows() {
+    public BitSet getHiddenRows() {
         return stateManager.getHiddenRows();
     }
 
@@ -250,89 +295,138 @@ public class CsvViewer extends JFrame {
     }
 
     public void loadCsvFile() {
+        loadCsvFile(false);
+    }
+
+    /**
+     * Opens a CSV file or snapshot.
+     * @param outOfCore true to keep the column data in memory-mapped files instead of the heap
+     */
+    public void loadCsvFile(boolean outOfCore) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setCurrentDirectory(new File("datasets"));
         int result = fileChooser.showOpenDialog(this);
 
         if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = fileChooser.getSelectedFile();
-            String filePath = selectedFile.getAbsolutePath();
-            stateManager.setDatasetName(selectedFile.getName());
-            String datasetName = stateManager.getDatasetName();
-            datasetName = datasetName.substring(0, datasetName.lastIndexOf('.'));
-            stateManager.setDatasetName(datasetName);
-
-            clearTableAndState();
-
-            dataHandler.loadCsvData(filePath, tableModel, statsTextArea);
+            loadFile(fileChooser.getSelectedFile().getAbsolutePath(), outOfCore);
+        }
+    }
 
-            // Store original data
-            List<List<String>> originalData = new ArrayList<>();
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                List<String> rowData = new ArrayList<>();
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    Object value = tableModel.getValueAt(row, col);
-                    rowData.add(value != null ? value.toString() : "");
-                }
-                originalData.add(rowData);
-            }
-            stateManager.setOriginalData(originalData);
+    /**
+     * Loads a CSV file, a gzip or deflate compressed CSV file, a snapshot, or CSV data piped to
+     * standard input when the path is "-".
+     * @param outOfCore true to keep the column data in memory-mapped files instead of the heap
+     */
+    public void loadFile(String filePath, boolean outOfCore) {
+        String fileName = filePath.equals(ParallelCsvReader.STANDARD_INPUT) ? "stdin" : new File(filePath).getName();
+        String datasetName = fileName.replaceFirst("(?i)\\.(gz|gzip|deflate|zz)$", "");
+        if (datasetName.lastIndexOf('.') > 0) {
+            datasetName = datasetName.substring(0, datasetName.lastIndexOf('.'));
+        }
+        stateManager.setDatasetName(datasetName);
 
-            // Format decimal values
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    Object value = tableModel.getValueAt(row, col);
-                    if (value != null && isNumeric(value.toString())) {
-                        tableModel.setValueAt(formatAsDecimal(value.toString()), row, col);
-                    }
-                }
-            }
+        if (loadWorker != null) {
+            loadWorker.cancel(false);
+        }
+        clearTableAndState();
+        dataHandler.setOutOfCore(outOfCore);
 
-            java.util.List<String> originalColumnNames = new ArrayList<>();
-            for (int i = 0; i < tableModel.getColumnCount(); i++) {
-                originalColumnNames.add(tableModel.getColumnName(i));
+        // Parse in the background; loadFinished installs the data
+        loadWorker = new DataLoadWorker(this, filePath);
+        loadWorker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                loadingProgressBar.setIndeterminate(false);
+                loadingProgressBar.setValue((Integer) e.getNewValue());
             }
-            stateManager.setOriginalColumnNames(originalColumnNames);
-            stateManager.addClassColumn(getClassColumnIndex());
-            stateManager.setNormalized(false);
-            stateManager.setHeatmapEnabled(false);
-            stateManager.setClassColorEnabled(false);
-            generateClassColors();
-            generateClassShapes();
-            updateSelectedRowsLabel();
+        });
+        loadingProgressBar.setIndeterminate(true);
+        loadingProgressBar.setValue(0);
+        loadingPanel.setVisible(true);
+        statsTextArea.setText("Loading " + fileName + "...");
+        loadWorker.execute();
+    }
 
-            // Update the toggle button through ButtonPanelManager
-            buttonPanelManager.getToggleButton().setIcon(UIHelper.loadIcon("/icons/normalize.png", 40, 40));
-            buttonPanelManager.getToggleButton().setToolTipText("Normalize");
-            
-            tableManager.autoResizeColumns();
-            statsTextArea.setCaretPosition(0);
+    /**
+     * Shows the first rows of the file being loaded.
+     */
+    void showLoadingPreview(DataLoadWorker worker, CsvDataHandler.LoadedData preview) {
+        if (worker != loadWorker || worker.isCancelled()) {
+            return;
         }
+        dataHandler.showData(preview, tableModel);
+        tableManager.autoResizeColumns();
     }
 
-    private boolean isNumeric(String str) {
+    /**
+     * Installs the data of a finished load, or clears the table when it failed or was cancelled.
+     */
+    void loadFinished(DataLoadWorker worker) {
+        if (worker != loadWorker) {
+            return; // Superseded by a newer load
+        }
+        loadWorker = null;
+        loadingPanel.setVisible(false);
+
+        CsvDataHandler.LoadedData data;
         try {
-            Double.parseDouble(str.trim());
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+            data = worker.get();
+        } catch (CancellationException e) {
+            data = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            data = null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            JOptionPane.showMessageDialog(this, "Error loading file: " + cause.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
+            data = null;
+        }
+        if (data == null) {
+            clearTableAndState();
+            statsTextArea.setText("");
+            return;
         }
-    }
 
-    private String formatDecimalWithoutScientificNotation(double value) {
-        int precision = stateManager.getDecimalPrecision();
-        StringBuilder formatPattern = new StringBuilder("#.");
-        for (int i = 0; i < precision; i++) {
-            formatPattern.append("#");
+        dataHandler.installData(data, tableModel);
+
+        // Store original data; numbers are rounded to the decimal precision only when shown
+        stateManager.setOriginalData(ColumnarDataset.of(tableModel));
+
+        java.util.List<String> originalColumnNames = new ArrayList<>();
+        for (int i = 0; i < tableModel.getColumnCount(); i++) {
+            originalColumnNames.add(tableModel.getColumnName(i));
+        }
+        stateManager.setOriginalColumnNames(originalColumnNames);
+        stateManager.addClassColumn(getClassColumnIndex());
+        stateManager.setNormalized(false);
+        stateManager.setHeatmapEnabled(false);
+        stateManager.setClassColorEnabled(false);
+        generateClassColors();
+        generateClassShapes();
+        updateSelectedRowsLabel();
+
+        // Update the toggle button through ButtonPanelManager
+        buttonPanelManager.getToggleButton().setIcon(UIHelper.loadIcon("/icons/normalize.png", 40, 40));
+        buttonPanelManager.getToggleButton().setToolTipText("Normalize");
+
+        tableManager.autoResizeColumns();
+        historyManager.clear();
+
+        // Stats and pure regions scan every row, so compute them without blocking the table
+        statsTextArea.setText("Computing statistics...");
+        pureRegionManager.calculateAndDisplayPureRegionsInBackground(thresholdSlider.getValue());
+
+        // Nearest neighbor selection is answered from an index built ahead of time
+        int[] neighborColumns = getNearestNeighborColumns();
+        if (neighborColumns.length > 0) {
+            tableModel.getNeighborIndex().prepare(neighborColumns);
         }
-        DecimalFormat decimalFormat = new DecimalFormat(formatPattern.toString());
-        decimalFormat.setDecimalSeparatorAlwaysShown(false);
-        return decimalFormat.format(value);
     }
 
-    private String formatAsDecimal(String str) {
-        double value = Double.parseDouble(str.trim());
-        return formatDecimalWithoutScientificNotation(value);
+    public void cancelLoading() {
+        if (loadWorker != null) {
+            loadWorker.cancel(false);
+        }
     }
 
     private void clearTableAndState() {
@@ -340,9 +434,11 @@ public class CsvViewer extends JFrame {
         tableModel.setColumnCount(0);
         stateManager.clearState();
         dataHandler.clearData();
+        historyManager.clear();
     }
 
     public void closeData() {
+        cancelLoading();
         clearTableAndState();
     }
     
@@ -433,29 +529,14 @@ public class CsvViewer extends JFrame {
         // Calculate frequency of empty entries for each column
         java.util.List<ColumnFrequencyPair> frequencyPairs = new ArrayList<>();
         int classColumnIndex = getClassColumnIndex();
+        ColumnStatistics statistics = ColumnStatistics.of(tableModel);
         
         for (int i = 0; i < tableModel.getColumnCount(); i++) {
             if (i != classColumnIndex) {
-                int emptyCount = 0;
                 int totalCount = tableModel.getRowCount();
                 
-                // Count empty entries in this column (including NaN values)
-                for (int row = 0; row < totalCount; row++) {
-                    Object value = tableModel.getValueAt(row, i);
-                    if (value == null || value.toString().trim().isEmpty()) {
-                        emptyCount++;
-                    } else {
-                        // Check if the value is NaN
-                        try {
-                            double numValue = Double.parseDouble(value.toString());
-                            if (Double.isNaN(numValue)) {
-                                emptyCount++;
-                            }
-                        } catch (NumberFormatException e) {
-                            // If it's not a number, it's not considered empty
-                        }
-                    }
-                }
+                // Empty entries include NaN values
+                int emptyCount = statistics.getMissingCount(i);
                 
                 // Calculate frequency as percentage of empty entries
                 double emptyFrequency = totalCount > 0 ? (double) emptyCount / totalCount : 0.0;
@@ -539,16 +620,16 @@ public class CsvViewer extends JFrame {
             }
         }
         
-        // Create adjacency matrix based on covariance
+        // Create adjacency matrix based on covariance, which is symmetric
+        double[][] columnValues = new double[columnIndices.size()][];
+        for (int i = 0; i < columnIndices.size(); i++) {
+            columnValues[i] = getColumnValues(columnIndices.get(i));
+        }
         double[][] adjacencyMatrix = new double[columnIndices.size()][columnIndices.size()];
         for (int i = 0; i < columnIndices.size(); i++) {
-            for (int j = 0; j < columnIndices.size(); j++) {
-                if (i != j) {
-                    adjacencyMatrix[i][j] = Math.abs(calculateCovariance(
-                        getColumnValues(columnIndices.get(i)),
-                        getColumnValues(columnIndices.get(j))
-                    ));
-                }
+            for (int j = i + 1; j < columnIndices.size(); j++) {
+                adjacencyMatrix[i][j] = Math.abs(calculateCovariance(columnValues[i], columnValues[j]));
+                adjacencyMatrix[j][i] = adjacencyMatrix[i][j];
             }
         }
         
@@ -963,6 +1044,33 @@ public class CsvViewer extends JFrame {
         tableManager.deleteColumn(viewColumnIndex);
     }
 
+    public HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    public void undo() {
+        if (dataHandler.isDataEmpty()) {
+            noDataLoadedError();
+            return;
+        }
+        historyManager.undo();
+    }
+
+    public void redo() {
+        if (dataHandler.isDataEmpty()) {
+            noDataLoadedError();
+            return;
+        }
+        historyManager.redo();
+    }
+
+    /**
+     * Shows a dataset from the undo history in place of the current one.
+     */
+    public void restoreDataset(Object[] columnNames, ColumnarDataset dataset) {
+        tableManager.restoreDataset(columnNames, dataset);
+    }
+
     public void toggleDataView() {
         int currentCaretPosition = statsTextArea.getCaretPosition();
 
@@ -1130,9 +1238,20 @@ public class CsvViewer extends JFrame {
         double minCovariance = Double.MAX_VALUE;
         double maxCovariance = Double.MIN_VALUE;
 
+        // Column means are shared by all pairs, and the matrix is symmetric
+        double[] means = new double[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            means[i] = VectorKernels.mean(numericalData.get(i), 0, rowCount);
+        }
+        for (int i = 0; i < numAttributes; i++) {
+            for (int j = i; j < numAttributes; j++) {
+                covarianceMatrix[i][j] = VectorKernels.centeredDot(numericalData.get(i), means[i],
+                    numericalData.get(j), means[j]) / (rowCount - 1);
+                covarianceMatrix[j][i] = covarianceMatrix[i][j];
+            }
+        }
         for (int i = 0; i < numAttributes; i++) {
             for (int j = 0; j < numAttributes; j++) {
-                covarianceMatrix[i][j] = calculateCovariance(numericalData.get(i), numericalData.get(j));
                 minCovariance = Math.min(minCovariance, covarianceMatrix[i][j]);
                 maxCovariance = Math.max(maxCovariance, covarianceMatrix[i][j]);
             }
@@ -1207,16 +1326,7 @@ public class CsvViewer extends JFrame {
     }
 
     private double calculateCovariance(double[] x, double[] y) {
-        int n = x.length;
-        double meanX = Arrays.stream(x).average().orElse(0.0);
-        double meanY = Arrays.stream(y).average().orElse(0.0);
-
-        double covariance = 0.0;
-        for (int i = 0; i < n; i++) {
-            covariance += (x[i] - meanX) * (y[i] - meanY);
-        }
-
-        return covariance / (n - 1);
+        return VectorKernels.covariance(x, y);
     }
 
     public void generateClassShapes() {
@@ -1412,6 +1522,7 @@ public class CsvViewer extends JFrame {
     }
 
     public void insertRow() {
+        historyManager.checkpoint();
         int currentCaretPosition = statsTextArea.getCaretPosition();
 
         int numColumns = tableModel.getColumnCount();
@@ -1430,17 +1541,14 @@ public class CsvViewer extends JFrame {
     public void deleteRow() {
         int[] selectedRows = table.getSelectedRows();
         if (selectedRows.length > 0) {
+            historyManager.checkpoint();
             int currentCaretPosition = statsTextArea.getCaretPosition();
 
-            java.util.List<Integer> rowsToDelete = new ArrayList<>();
-            for (int row : selectedRows) {
-                rowsToDelete.add(table.convertRowIndexToModel(row));
-            }
-            rowsToDelete.sort(Collections.reverseOrder());
-
-            for (int rowIndex : rowsToDelete) {
-                tableModel.removeRow(rowIndex);
+            int[] rowsToDelete = new int[selectedRows.length];
+            for (int i = 0; i < selectedRows.length; i++) {
+                rowsToDelete[i] = table.convertRowIndexToModel(selectedRows[i]);
             }
+            tableModel.removeRows(rowsToDelete);
 
             dataHandler.updateStats(tableModel, statsTextArea);
             updateSelectedRowsLabel();
@@ -1456,14 +1564,10 @@ public class CsvViewer extends JFrame {
     public void cloneSelectedRow() {
         int selectedRow = table.getSelectedRow();
         if (selectedRow != -1) {
+            historyManager.checkpoint();
             int currentCaretPosition = statsTextArea.getCaretPosition();
 
-            DefaultTableModel model = (DefaultTableModel) table.getModel();
-            Object[] rowData = new Object[model.getColumnCount()];
-            for (int col = 0; col < model.getColumnCount(); col++) {
-                rowData[col] = model.getValueAt(selectedRow, col);
-            }
-            model.insertRow(selectedRow + 1, rowData);
+            tableModel.duplicateRow(table.convertRowIndexToModel(selectedRow));
             dataHandler.updateStats(tableModel, statsTextArea);
 
             statsTextArea.setCaretPosition(currentCaretPosition);
@@ -1476,6 +1580,26 @@ public class CsvViewer extends JFrame {
         dataExporter.exportCsvFile();
     }
 
+    public void saveSnapshotFile() {
+        if (dataHandler.isDataEmpty()) {
+            noDataLoadedError();
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File("datasets"));
+        fileChooser.setDialogTitle("Save Snapshot");
+        fileChooser.setSelectedFile(new File(getDatasetName() + DatasetSnapshot.FILE_EXTENSION));
+        int result = fileChooser.showSaveDialog(this);
+
+        if (result == JFileChooser.APPROVE_OPTION) {
+            String filePath = fileChooser.getSelectedFile().getAbsolutePath();
+            if (!DatasetSnapshot.isSnapshotFile(filePath)) {
+                filePath += DatasetSnapshot.FILE_EXTENSION;
+            }
+            dataHandler.saveSnapshot(filePath, tableModel);
+        }
+    }
+
     public void showParallelCoordinatesPlot() {
         visualizationManager.showParallelCoordinatesPlot();
     }
@@ -1596,9 +1720,69 @@ public class CsvViewer extends JFrame {
         visualizationManager.showLineCoordinatesPlot();
     }
 
-    public void insertKNNClassification(int k, String metric) {
+    /**
+     * @param approximateTrees the number of random projection trees for an approximate search,
+     *                         or 0 for an exact one
+     */
+    public void insertKNNClassification(int k, String metric, int approximateTrees) {
         KNearestNeighborsClassifier knn = new KNearestNeighborsClassifier(this, tableModel);
-        knn.insertKNNClassification(k, metric);
+        knn.insertKNNClassification(k, metric, approximateTrees);
+    }
+
+    /**
+     * Measures the leave-one-out accuracy of k-NN for every k up to maxK and both metrics, and
+     * shows it as a table.
+     * @param insertBest whether to add the predictions of the most accurate k as a column
+     */
+    public void sweepKNN(int maxK, boolean insertBest) {
+        if (tableModel.getRowCount() < 2) {
+            JOptionPane.showMessageDialog(this, "A leave-one-out sweep needs at least two rows.",
+                "k-NN Sweep", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (insertBest) {
+            historyManager.checkpoint();
+        }
+        KNearestNeighborsClassifier knn = new KNearestNeighborsClassifier(this, tableModel);
+        showKNNSweep(knn.sweepKNN(maxK, insertBest));
+    }
+
+    private void showKNNSweep(KNearestNeighborsClassifier.KSweep sweep) {
+        String[] metrics = KNearestNeighborsClassifier.SWEEP_METRICS;
+        DefaultTableModel accuracyModel = new DefaultTableModel();
+        accuracyModel.addColumn("k");
+        for (String metric : metrics) {
+            accuracyModel.addColumn(metric + " accuracy");
+        }
+        for (int k = 1; k <= sweep.maxK(); k++) {
+            Object[] row = new Object[metrics.length + 1];
+            row[0] = k;
+            for (int m = 0; m < metrics.length; m++) {
+                row[m + 1] = String.format("%.2f%%", sweep.accuracy()[m][k - 1] * 100);
+            }
+            accuracyModel.addRow(row);
+        }
+        JTable accuracyTable = new JTable(accuracyModel);
+        accuracyTable.setFont(table.getFont());
+        JScrollPane scrollPane = new JScrollPane(accuracyTable);
+        scrollPane.setPreferredSize(new Dimension(400, 300));
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(new JLabel(String.format("Best: k = %d, %s, %.2f%% of %d rows (%d ms)", sweep.bestK(),
+            sweep.bestMetric(), sweep.bestAccuracy() * 100, sweep.rowCount(), sweep.millis())), BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(this, panel, "k-NN Leave-One-Out Sweep", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * Tells how an approximate neighbor search compared with an exact one on a sample of rows.
+     */
+    public void showApproximateRecall(NeighborIndex.Recall recall, int trees) {
+        JOptionPane.showMessageDialog(this, String.format(
+            "Approximate search with %d trees found %.1f%% of the exact nearest neighbors%n" +
+            "of %d sampled rows, in %d ms against %d ms for exact search.",
+            trees, recall.recall() * 100, recall.samples(), recall.approximateMillis(), recall.exactMillis()),
+            "Approximate Nearest Neighbors", JOptionPane.INFORMATION_MESSAGE);
     }
 
     public void handleNewClass(String newClass) {
@@ -1670,69 +1854,8 @@ public class CsvViewer extends JFrame {
             return;
         }
 
-        // Find min/max bounds for selected numerical columns from the current table state
-        Map<Integer, Double> minBounds = new HashMap<>();
-        Map<Integer, Double> maxBounds = new HashMap<>();
-
-        // Calculate bounds from the actual table values
-        for (int col : selectedColumns) {
-            double min = Double.MAX_VALUE;
-            double max = Double.MIN_VALUE;
-            for (int rowIndex : selectedRows) {
-                try {
-                    int modelRow = table.convertRowIndexToModel(rowIndex);
-                    double value = Double.parseDouble(table.getModel().getValueAt(modelRow, col).toString());
-                    min = Math.min(min, value);
-                    max = Math.max(max, value);
-                } catch (NumberFormatException e) {
-                    // Skip invalid values
-                }
-            }
-            minBounds.put(col, min);
-            maxBounds.put(col, max);
-        }
-
-        // Select rows based on the selection mode
-        table.clearSelection();
-        int matchingRows = 0;
-        for (int viewRow = 0; viewRow < table.getRowCount(); viewRow++) {
-            if (requireAllAttributes) {
-                // ALL mode: every selected attribute must be within its range
-                boolean allInRange = true;
-                for (int col : selectedColumns) {
-                    try {
-                        int modelRow = table.convertRowIndexToModel(viewRow);
-                        double value = Double.parseDouble(tableModel.getValueAt(modelRow, col).toString());
-                        if (value < minBounds.get(col) || value > maxBounds.get(col)) {
-                            allInRange = false;
-                            break;
-                        }
-                    } catch (NumberFormatException e) {
-                        allInRange = false;
-                        break;
-                    }
-                }
-                if (allInRange) {
-                    table.addRowSelectionInterval(viewRow, viewRow);
-                    matchingRows++;
-                }
-            } else {
-                // ANY mode: at least one attribute must be within its range
-                for (int col : selectedColumns) {
-                    try {
-                        int modelRow = table.convertRowIndexToModel(viewRow);
-                        double value = Double.parseDouble(tableModel.getValueAt(modelRow, col).toString());
-                        if (value >= minBounds.get(col) && value <= maxBounds.get(col)) {
-                            table.addRowSelectionInterval(viewRow, viewRow);
-                            matchingRows++;
-                            break;
-                        }
-                    } catch (NumberFormatException e) {
-                        continue;
-                    }
-                }
-            }
-        }
+        BitSet matchingRows = findCasesWithinBounds(requireAllAttributes, selectedColumns, toModelRows(selectedRows));
+        selectModelRows(matchingRows);
         updateSelectedRowsLabel();
     }
 
@@ -1749,76 +1872,83 @@ public class CsvViewer extends JFrame {
             return;
         }
 
-        // Find min/max bounds for selected numerical columns
-        Map<Integer, Double> minBounds = new HashMap<>();
-        Map<Integer, Double> maxBounds = new HashMap<>();
+        BitSet keptRows = findCasesWithinBounds(requireAllAttributes, selectedColumns, toModelRows(selectedRows));
+        BitSet rowsToRemove = new BitSet(tableModel.getRowCount());
+        rowsToRemove.set(0, tableModel.getRowCount());
+        rowsToRemove.andNot(keptRows);
+        if (!rowsToRemove.isEmpty()) {
+            historyManager.checkpoint();
+            tableModel.removeRows(rowsToRemove.stream().toArray());
+        }
+
+        // Update UI
+        table.clearSelection();
+        updateSelectedRowsLabel();
+        dataHandler.updateStats(tableModel, statsTextArea);
+        pureRegionManager.calculateAndDisplayPureRegions(thresholdSlider.getValue());
+    }
 
+    /**
+     * Finds the model rows whose values lie within the bounds spanned by the given rows, in every
+     * selected column (ALL mode) or in at least one of them (ANY mode).
+     */
+    private BitSet findCasesWithinBounds(boolean requireAllAttributes, List<Integer> selectedColumns, int[] boundRows) {
+        ColumnarDataset dataset = tableModel.getDataset();
+        BitSet result = new BitSet(tableModel.getRowCount());
+        if (requireAllAttributes) {
+            result.set(0, tableModel.getRowCount());
+        }
         for (int col : selectedColumns) {
-            double min = Double.MAX_VALUE;
-            double max = Double.MIN_VALUE;
-            for (int rowIndex : selectedRows) {
-                try {
-                    double value = Double.parseDouble(tableModel.getValueAt(rowIndex, col).toString());
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row : boundRows) {
+                double value = dataset.getDouble(row, col);
+                // Skip invalid values
+                if (!Double.isNaN(value) && dataset.isNumber(row, col)) {
                     min = Math.min(min, value);
                     max = Math.max(max, value);
-                } catch (NumberFormatException e) {
-                    // Skip invalid values
                 }
             }
-            minBounds.put(col, min);
-            maxBounds.put(col, max);
-        }
-
-        // Create list of rows to remove
-        List<Integer> rowsToRemove = new ArrayList<>();
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            boolean keepRow = false;
-            
+            BitSet inRange = tableModel.getRangeIndex().getRowsWithin(col, min, max);
             if (requireAllAttributes) {
-                // ALL mode: keep if every selected attribute is within its range
-                keepRow = true;
-                for (int col : selectedColumns) {
-                    try {
-                        double value = Double.parseDouble(tableModel.getValueAt(row, col).toString());
-                        if (value < minBounds.get(col) || value > maxBounds.get(col)) {
-                            keepRow = false;
-                            break;
-                        }
-                    } catch (NumberFormatException e) {
-                        keepRow = false;
-                        break;
-                    }
-                }
+                result.and(inRange);
             } else {
-                // ANY mode: keep if at least one attribute is within its range
-                for (int col : selectedColumns) {
-                    try {
-                        double value = Double.parseDouble(tableModel.getValueAt(row, col).toString());
-                        if (value >= minBounds.get(col) && value <= maxBounds.get(col)) {
-                            keepRow = true;
-                            break;  // Found one attribute in range, no need to check others
-                        }
-                    } catch (NumberFormatException e) {
-                        continue;
-                    }
-                }
-            }
-            
-            if (!keepRow) {
-                rowsToRemove.add(row);
+                result.or(inRange);
             }
         }
+        return result;
+    }
 
-        // Remove rows from bottom to top
-        for (int i = rowsToRemove.size() - 1; i >= 0; i--) {
-            tableModel.removeRow(rowsToRemove.get(i));
+    private int[] toModelRows(int[] viewRows) {
+        int[] modelRows = new int[viewRows.length];
+        for (int i = 0; i < viewRows.length; i++) {
+            modelRows[i] = table.convertRowIndexToModel(viewRows[i]);
         }
+        return modelRows;
+    }
 
-        // Update UI
-        table.clearSelection();
-        updateSelectedRowsLabel();
-        dataHandler.updateStats(tableModel, statsTextArea);
-        pureRegionManager.calculateAndDisplayPureRegions(thresholdSlider.getValue());
+    /**
+     * Replaces the selection with the visible rows among the given model rows, adding each run
+     * of adjacent view rows as one interval and notifying listeners once.
+     */
+    private void selectModelRows(BitSet modelRows) {
+        BitSet viewRows = new BitSet(table.getRowCount());
+        for (int modelRow = modelRows.nextSetBit(0); modelRow >= 0; modelRow = modelRows.nextSetBit(modelRow + 1)) {
+            int viewRow = table.convertRowIndexToView(modelRow);
+            if (viewRow >= 0) {
+                viewRows.set(viewRow);
+            }
+        }
+
+        ListSelectionModel selection = table.getSelectionModel();
+        selection.setValueIsAdjusting(true);
+        selection.clearSelection();
+        for (int start = viewRows.nextSetBit(0); start >= 0; ) {
+            int end = viewRows.nextClearBit(start);
+            selection.addSelectionInterval(start, end - 1);
+            start = viewRows.nextSetBit(end);
+        }
+        selection.setValueIsAdjusting(false);
     }
 
     public void selectCasesWithinBounds(boolean requireAllAttributes) {
@@ -1859,24 +1989,18 @@ public class CsvViewer extends JFrame {
             return;
         }
 
-        // Convert view indices to model indices and sort in descending order
-        List<Integer> selectedModelRows = new ArrayList<>();
+        BitSet selectedModelRows = new BitSet(tableModel.getRowCount());
         for (int viewRow : selectedRows) {
-            selectedModelRows.add(table.convertRowIndexToModel(viewRow));
+            selectedModelRows.set(table.convertRowIndexToModel(viewRow));
         }
-        selectedModelRows.sort(Collections.reverseOrder());
 
-        // Create list of rows to remove (all unselected rows)
-        List<Integer> rowsToRemove = new ArrayList<>();
-        for (int row = tableModel.getRowCount() - 1; row >= 0; row--) {
-            if (!selectedModelRows.contains(row)) {
-                rowsToRemove.add(row);
-            }
-        }
-
-        // Remove unselected rows
-        for (int row : rowsToRemove) {
-            tableModel.removeRow(row);
+        // Remove all unselected rows at once
+        BitSet rowsToRemove = new BitSet(tableModel.getRowCount());
+        rowsToRemove.set(0, tableModel.getRowCount());
+        rowsToRemove.andNot(selectedModelRows);
+        if (!rowsToRemove.isEmpty()) {
+            historyManager.checkpoint();
+            tableModel.removeRows(rowsToRemove.stream().toArray());
         }
 
         // Update UI
@@ -2074,8 +2198,7 @@ public class CsvViewer extends JFrame {
             // Calculate mean if we have valid values
             if (isNumeric && validValueCount > 0) {
                 double mean = sum / validValueCount;
-                // Format the mean value to match existing decimal format
-                meanRow[col] = formatDecimalWithoutScientificNotation(mean);
+                meanRow[col] = mean;
             } else {
                 // Use empty string for non-numeric columns
                 meanRow[col] = "";
@@ -2083,6 +2206,7 @@ public class CsvViewer extends JFrame {
         }
 
         // Add the mean row to the table
+        historyManager.checkpoint();
         tableModel.addRow(meanRow);
         
         // Update the stats and select the new row
@@ -2100,7 +2224,12 @@ public class CsvViewer extends JFrame {
      * 
      * @param neighborsCount The number of neighbors to select for each selected case
      */
-    public void selectNearestNeighbors(int neighborsCount) {
+    /**
+     * Selects the nearest neighbors of every selected row and marks them as class "NN".
+     * @param approximateTrees the number of random projection trees for an approximate search,
+     *                         or 0 for an exact one
+     */
+    public void selectNearestNeighbors(int neighborsCount, int approximateTrees) {
         int[] selectedRows = table.getSelectedRows();
         
         if (selectedRows.length == 0) {
@@ -2111,23 +2240,10 @@ public class CsvViewer extends JFrame {
             return;
         }
         
-        // Get all numeric columns (exclude class column)
         int classColumnIndex = getClassColumnIndex();
-        List<Integer> numericColumnIndices = new ArrayList<>();
+        int[] numericColumnIndices = getNearestNeighborColumns();
         
-        for (int col = 0; col < tableModel.getColumnCount(); col++) {
-            if (col != classColumnIndex) {
-                try {
-                    // Check if the column is numeric by trying to parse the first value
-                    Double.parseDouble(tableModel.getValueAt(0, col).toString());
-                    numericColumnIndices.add(col);
-                } catch (NumberFormatException e) {
-                    // Skip non-numeric columns
-                }
-            }
-        }
-        
-        if (numericColumnIndices.isEmpty()) {
+        if (numericColumnIndices.length == 0) {
             JOptionPane.showMessageDialog(this, 
                 "No numeric columns found to calculate distances.", 
                 "Error", 
@@ -2155,26 +2271,50 @@ public class CsvViewer extends JFrame {
         Set<Integer> rowsToSelect = new HashSet<>(selectedModelRows);
         Set<Integer> neighborRowsToClassify = new HashSet<>(); // Track rows that will be marked as "NN"
         
+        // Wide data can be searched approximately, on an index of the numeric columns
+        double[][] features = null;
+        NeighborIndex approximateIndex = null;
+        if (approximateTrees > 0) {
+            ColumnarDataset dataset = tableModel.getDataset();
+            features = new double[tableModel.getRowCount()][numericColumnIndices.length];
+            for (int row = 0; row < features.length; row++) {
+                for (int i = 0; i < numericColumnIndices.length; i++) {
+                    features[row][i] = dataset.getDouble(row, numericColumnIndices[i]);
+                }
+            }
+            approximateIndex = new RandomProjectionForest(features, approximateTrees, 42);
+        }
+
+        // Exact neighbors of every selected row come from the table's shared index
+        int[][] exactNeighbors = null;
+        if (approximateIndex == null) {
+            RowNeighborIndex neighborIndex = tableModel.getNeighborIndex();
+            neighborIndex.prepare(numericColumnIndices);
+            exactNeighbors = neighborIndex.nearest(
+                selectedModelRows.stream().mapToInt(Integer::intValue).toArray(), neighborsCount);
+        }
+
         // For each selected row, find its nearest neighbors
-        for (int selectedRow : selectedModelRows) {
-            // Calculate distances to all other rows
-            List<RowDistance> distances = new ArrayList<>();
-            
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                // Skip comparing to self
-                if (row == selectedRow) continue;
-                
-                double distance = calculateEuclideanDistance(selectedRow, row, numericColumnIndices);
-                distances.add(new RowDistance(row, distance));
+        for (int i = 0; i < selectedModelRows.size(); i++) {
+            int selectedRow = selectedModelRows.get(i);
+            List<Integer> neighbors = new ArrayList<>();
+            if (approximateIndex != null) {
+                // The row itself is usually its own nearest neighbor. Blank cells are NaN, which
+                // the pairwise metric skips, as the exact search does
+                for (int row : approximateIndex.nearest(features[selectedRow], neighborsCount + 1,
+                        NeighborIndex.Metric.PAIRWISE_EUCLIDEAN)) {
+                    if (row != selectedRow && neighbors.size() < neighborsCount) {
+                        neighbors.add(row);
+                    }
+                }
+            } else {
+                for (int row : exactNeighbors[i]) {
+                    neighbors.add(row);
+                }
             }
             
-            // Sort by distance (ascending)
-            Collections.sort(distances);
-            
             // Add the nearest X neighbors
-            int neighborsToAdd = Math.min(neighborsCount, distances.size());
-            for (int i = 0; i < neighborsToAdd; i++) {
-                int neighborRow = distances.get(i).row;
+            for (int neighborRow : neighbors) {
                 rowsToSelect.add(neighborRow);
                 
                 // Only mark as "NN" if this row isn't from the original selection
@@ -2185,18 +2325,17 @@ public class CsvViewer extends JFrame {
         }
         
         // Set the class of nearest neighbors to "NN"
-        if (classColumnIndex != -1) {
+        if (classColumnIndex != -1 && !neighborRowsToClassify.isEmpty()) {
+            historyManager.checkpoint();
             for (int row : neighborRowsToClassify) {
                 tableModel.setValueAt("NN", row, classColumnIndex);
             }
         }
         
-        // Clear current selection and select all identified rows
-        table.clearSelection();
-        for (int modelRow : rowsToSelect) {
-            int viewRow = table.convertRowIndexToView(modelRow);
-            table.addRowSelectionInterval(viewRow, viewRow);
-        }
+        // Replace the selection with all identified rows
+        BitSet modelRowsToSelect = new BitSet(tableModel.getRowCount());
+        rowsToSelect.forEach(modelRowsToSelect::set);
+        selectModelRows(modelRowsToSelect);
         
         updateSelectedRowsLabel();
         
@@ -2205,71 +2344,43 @@ public class CsvViewer extends JFrame {
             " rows including " + selectedModelRows.size() + 
             " original rows and " + neighborRowsToClassify.size() + 
             " nearest neighbors marked as 'NN'.\n");
-    }
-    
-    // Helper class to store row index and its distance
-    private static class RowDistance implements Comparable<RowDistance> {
-        int row;
-        double distance;
-        
-        RowDistance(int row, double distance) {
-            this.row = row;
-            this.distance = distance;
-        }
-        
-        @Override
-        public int compareTo(RowDistance other) {
-            return Double.compare(this.distance, other.distance);
+
+        if (approximateIndex != null) {
+            showApproximateRecall(NeighborIndex.measureRecall(approximateIndex, new KDTree(features), features,
+                neighborsCount + 1, NeighborIndex.Metric.PAIRWISE_EUCLIDEAN), approximateTrees);
         }
     }
     
     /**
-     * Calculates Euclidean distance between two rows using only specified columns
+     * Returns the numeric columns that nearest neighbor selection measures distances over: every
+     * column but the class column whose first cell is a number.
      */
-    private double calculateEuclideanDistance(int row1, int row2, List<Integer> columns) {
-        double sumSquaredDiff = 0.0;
-        int validDimensions = 0;
+    private int[] getNearestNeighborColumns() {
+        int classColumnIndex = getClassColumnIndex();
+        List<Integer> numericColumnIndices = new ArrayList<>();
         
-        for (int col : columns) {
-            try {
-                double val1 = Double.parseDouble(tableModel.getValueAt(row1, col).toString());
-                double val2 = Double.parseDouble(tableModel.getValueAt(row2, col).toString());
-                
-                double diff = val1 - val2;
-                sumSquaredDiff += diff * diff;
-                validDimensions++;
-            } catch (NumberFormatException e) {
-                // Skip invalid values
+        for (int col = 0; col < tableModel.getColumnCount(); col++) {
+            if (col != classColumnIndex && tableModel.getRowCount() > 0) {
+                try {
+                    // Check if the column is numeric by trying to parse the first value
+                    Double.parseDouble(tableModel.getValueAt(0, col).toString());
+                    numericColumnIndices.add(col);
+                } catch (NumberFormatException e) {
+                    // Skip non-numeric columns
+                }
             }
         }
-        
-        // If no valid dimensions were found, return maximum distance
-        if (validDimensions == 0) return Double.MAX_VALUE;
-        
-        return Math.sqrt(sumSquaredDiff);
+        return numericColumnIndices.stream().mapToInt(Integer::intValue).toArray();
     }
 
     /**
-     * Sets the decimal precision for formatting numbers and refreshes the table display
+     * Sets the decimal precision for displaying numbers and refreshes the table display. The
+     * stored values are not changed.
      * @param precision Number of decimal places to show
      */
     public void setDecimalPrecision(int precision) {
         stateManager.setDecimalPrecision(precision);
-        
-        // Format all numeric cells in the table with the new precision
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                Object value = tableModel.getValueAt(row, col);
-                if (value != null && isNumeric(value.toString())) {
-                    try {
-                        double numericValue = Double.parseDouble(value.toString());
-                        tableModel.setValueAt(formatDecimalWithoutScientificNotation(numericValue), row, col);
-                    } catch (NumberFormatException e) {
-                        // Skip non-numeric values
-                    }
-                }
-            }
-        }
+        table.repaint();
         
         // Update stats to reflect new precision
         dataHandler.updateStats(tableModel, statsTextArea);
@@ -2340,28 +2451,18 @@ public class CsvViewer extends JFrame {
         // Calculate variance for each row individually
         List<Double> rowVariances = new ArrayList<>();
         List<Double> rowMeans = new ArrayList<>();
+        double[] rowValues = new double[numericColumnIndices.size()];
         
         for (int i = 0; i < selectedModelRows.size(); i++) {
             int modelRow = selectedModelRows.get(i);
             int viewRow = selectedRows[i];
             
-            // Collect all numeric values for this row
-            List<Double> rowValues = new ArrayList<>();
-            for (int col : numericColumnIndices) {
-                try {
-                    double value = Double.parseDouble(tableModel.getValueAt(modelRow, col).toString());
-                    // Only add valid numeric values (not NaN or infinite)
-                    if (!Double.isNaN(value) && !Double.isInfinite(value)) {
-                        rowValues.add(value);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid values
-                }
-            }
+            // Collect the valid numeric values for this row (not blank, NaN or infinite)
+            int validCount = collectFiniteRowValues(modelRow, numericColumnIndices, rowValues);
             
-            if (rowValues.size() >= 2) {
-                double rowMean = calculateMean(rowValues);
-                double rowVariance = calculateVariance(rowValues);
+            if (validCount >= 2) {
+                double rowMean = VectorKernels.mean(rowValues, 0, validCount);
+                double rowVariance = VectorKernels.variance(rowValues, 0, validCount);
                 double rowStdDev = Math.sqrt(rowVariance);
                 
                 rowMeans.add(rowMean);
@@ -2371,8 +2472,8 @@ public class CsvViewer extends JFrame {
                 varianceReport.append(String.format("  Mean: %.6f\n", rowMean));
                 varianceReport.append(String.format("  Variance: %.6f\n", rowVariance));
                 varianceReport.append(String.format("  Standard Deviation: %.6f\n", rowStdDev));
-                varianceReport.append(String.format("  Valid attributes: %d/%d\n\n", rowValues.size(), numericColumnIndices.size()));
-            } else if (rowValues.size() == 1) {
+                varianceReport.append(String.format("  Valid attributes: %d/%d\n\n", validCount, numericColumnIndices.size()));
+            } else if (validCount == 1) {
                 varianceReport.append(String.format("Row %d (View %d): Only 1 valid attribute (need at least 2 for variance)\n\n", modelRow + 1, viewRow + 1));
             } else {
                 varianceReport.append(String.format("Row %d (View %d): No valid numeric attributes found\n\n", modelRow + 1, viewRow + 1));
@@ -2432,20 +2533,8 @@ public class CsvViewer extends JFrame {
      * @return Sample variance
      */
     private double calculateVariance(List<Double> values) {
-        if (values.size() < 2) {
-            return 0.0;
-        }
-        
-        double mean = calculateMean(values);
-        double sumSquaredDiffs = 0.0;
-        
-        for (double value : values) {
-            double diff = value - mean;
-            sumSquaredDiffs += diff * diff;
-        }
-        
-        // Sample variance (divide by n-1)
-        return sumSquaredDiffs / (values.size() - 1);
+        double[] array = values.stream().mapToDouble(Double::doubleValue).toArray();
+        return VectorKernels.variance(array, 0, array.length);
     }
     
     /**
@@ -2454,16 +2543,25 @@ public class CsvViewer extends JFrame {
      * @return Mean value
      */
     private double calculateMean(List<Double> values) {
-        if (values.isEmpty()) {
-            return 0.0;
-        }
-        
-        double sum = 0.0;
-        for (double value : values) {
-            sum += value;
+        double[] array = values.stream().mapToDouble(Double::doubleValue).toArray();
+        return VectorKernels.mean(array, 0, array.length);
+    }
+
+    /**
+     * Copies the finite values of a row in the given columns to the front of rowValues, skipping
+     * blank, non-numeric, NaN and infinite cells.
+     * @return Number of values copied
+     */
+    private int collectFiniteRowValues(int modelRow, List<Integer> columns, double[] rowValues) {
+        ColumnarDataset data = tableModel.getDataset();
+        int count = 0;
+        for (int col : columns) {
+            double value = data.getDouble(modelRow, col);
+            if (Double.isFinite(value)) {
+                rowValues[count++] = value;
+            }
         }
-        
-        return sum / values.size();
+        return count;
     }
 
     /**
@@ -2518,32 +2616,21 @@ public class CsvViewer extends JFrame {
         aucReport.append("Dimensions: ").append(numericColumnIndices.size()).append("\n\n");
         
         List<Double> rowAUCs = new ArrayList<>();
+        double[] rowValues = new double[numericColumnIndices.size()];
         
         for (int i = 0; i < selectedModelRows.size(); i++) {
             int modelRow = selectedModelRows.get(i);
-            int viewRow = selectedRows[i];
             
-            // Collect all numeric values for this row
-            List<Double> rowValues = new ArrayList<>();
-            for (int col : numericColumnIndices) {
-                try {
-                    double value = Double.parseDouble(tableModel.getValueAt(modelRow, col).toString());
-                    // Only add valid numeric values (not NaN or infinite)
-                    if (!Double.isNaN(value) && !Double.isInfinite(value)) {
-                        rowValues.add(value);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid values
-                }
-            }
+            // Collect the valid numeric values for this row (not blank, NaN or infinite)
+            int validCount = collectFiniteRowValues(modelRow, numericColumnIndices, rowValues);
             
-            if (rowValues.size() >= 2) {
+            if (validCount >= 2) {
                 // Calculate n-D AUC using trapezoidal rule
-                double auc = calculateNDAUC(rowValues);
+                double auc = calculateNDAUC(rowValues, validCount);
                 rowAUCs.add(auc);
                 
                 aucReport.append(String.format("Row %d: AUC = %.6f (valid dims: %d/%d)\n", 
-                    modelRow + 1, auc, rowValues.size(), numericColumnIndices.size()));
+                    modelRow + 1, auc, validCount, numericColumnIndices.size()));
             } else {
                 aucReport.append(String.format("Row %d: Insufficient valid dimensions\n", modelRow + 1));
             }
@@ -2583,24 +2670,17 @@ public class CsvViewer extends JFrame {
     
     /**
      * Calculates the n-dimensional Area Under Curve (AUC) using trapezoidal rule.
-     * @param values List of numeric values representing the curve points
+     * @param values Numeric values representing the curve points
+     * @param count Number of curve points, at the front of values
      * @return n-D AUC value
      */
-    private double calculateNDAUC(List<Double> values) {
-        if (values.size() < 2) {
+    private double calculateNDAUC(double[] values, int count) {
+        if (count < 2) {
             return 0.0;
         }
         
-        double auc = 0.0;
-        
-        // Use trapezoidal rule for n-D AUC
-        for (int i = 0; i < values.size() - 1; i++) {
-            double y1 = values.get(i);
-            double y2 = values.get(i + 1);
-            auc += (y1 + y2) / 2.0;
-        }
-        
-        return auc;
+        // The trapezoids with unit width count every inner point once and both ends half
+        return VectorKernels.sum(values, 0, count) - (values[0] + values[count - 1]) / 2.0;
     }
 }
 
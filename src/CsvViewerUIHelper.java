@@ -111,7 +111,12 @@ public class CsvViewerUIHelper {
         table.setSelectionForeground(TEXT_COLOR);
 
         // Add existing listeners and functionality
-        table.getSelectionModel().addListSelectionListener(e -> viewer.updateSelectedRowsLabel());
+        table.getSelectionModel().addListSelectionListener(e -> {
+            // Batched selections end with one event that is not adjusting
+            if (!e.getValueIsAdjusting()) {
+                viewer.updateSelectedRowsLabel();
+            }
+        });
         table.addMouseListener(new TableMouseListener(viewer));
         table.getTableHeader().addMouseListener(new TableMouseListener(viewer));
         
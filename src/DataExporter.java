@@ -1,15 +1,19 @@
 package src;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.awt.BorderLayout;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import src.table.ReorderableTableModel;
+import src.utils.ParallelCsvWriter;
 
 public class DataExporter {
-    private DefaultTableModel tableModel;
+    private final JTable table;
+    private final ReorderableTableModel tableModel;
 
-    public DataExporter(DefaultTableModel tableModel) {
+    public DataExporter(JTable table, ReorderableTableModel tableModel) {
+        this.table = table;
         this.tableModel = tableModel;
     }
 
@@ -22,25 +26,39 @@ public class DataExporter {
         if (result == JFileChooser.APPROVE_OPTION) {
             String filePath = fileChooser.getSelectedFile().getAbsolutePath();
 
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    writer.write(tableModel.getColumnName(col));
-                    if (col < tableModel.getColumnCount() - 1) {
-                        writer.write(",");
-                    }
-                }
-                writer.newLine();
-
-                for (int row = 0; row < tableModel.getRowCount(); row++) {
-                    for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                        Object value = tableModel.getValueAt(row, col);
-                        writer.write(value != null ? value.toString() : "");
-                        if (col < tableModel.getColumnCount() - 1) {
-                            writer.write(",");
-                        }
-                    }
-                    writer.newLine();
-                }
+            String[] headers = new String[tableModel.getColumnCount()];
+            for (int col = 0; col < headers.length; col++) {
+                headers[col] = tableModel.getColumnName(col);
+            }
+
+            // Let the user narrow the export to the rows shown and to some of the columns
+            JCheckBox visibleRowsOnly = new JCheckBox(String.format("Only visible rows, in table order (%d of %d)",
+                table.getRowCount(), tableModel.getRowCount()));
+            visibleRowsOnly.setEnabled(table.getRowSorter() != null);
+            JList<String> columnList = new JList<>(headers);
+            columnList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            columnList.setSelectionInterval(0, headers.length - 1);
+            columnList.setVisibleRowCount(Math.min(12, Math.max(1, headers.length)));
+            JPanel options = new JPanel(new BorderLayout(0, 5));
+            options.add(visibleRowsOnly, BorderLayout.NORTH);
+            options.add(new JLabel("Columns to export:"), BorderLayout.CENTER);
+            options.add(new JScrollPane(columnList), BorderLayout.SOUTH);
+            if (JOptionPane.showConfirmDialog(null, options, "Export Options", JOptionPane.OK_CANCEL_OPTION,
+                    JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            int[] columns = columnList.getSelectedIndices();
+            if (columns.length == 0) {
+                JOptionPane.showMessageDialog(null, "Please select at least one column.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            int[] rows = visibleRowsOnly.isSelected()
+                ? IntStream.range(0, table.getRowCount()).map(table::convertRowIndexToModel).toArray()
+                : null;
+
+            try {
+                ParallelCsvWriter.write(Path.of(filePath), headers, tableModel.getDataset(), rows,
+                    columns.length == headers.length ? null : columns);
             } catch (IOException e) {
                 JOptionPane.showMessageDialog(null, "Error saving CSV file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -0,0 +1,55 @@
+package src;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import src.utils.DatasetSnapshot;
+import src.utils.ParallelCsvReader;
+
+/**
+ * Loads a CSV file or snapshot off the event dispatch thread. The first rows of a CSV file are
+ * published as a preview while the rest is parsed, parsing progress is reported through the
+ * progress property, and the load can be cancelled until the data is installed.
+ */
+public class DataLoadWorker extends SwingWorker<CsvDataHandler.LoadedData, CsvDataHandler.LoadedData> {
+    private final CsvViewer csvViewer;
+    private final String filePath;
+
+    public DataLoadWorker(CsvViewer csvViewer, String filePath) {
+        this.csvViewer = csvViewer;
+        this.filePath = filePath;
+    }
+
+    @Override
+    protected CsvDataHandler.LoadedData doInBackground() throws Exception {
+        CsvDataHandler dataHandler = csvViewer.getDataHandler();
+        if (DatasetSnapshot.isSnapshotFile(filePath)) {
+            return dataHandler.readSnapshot(filePath);
+        }
+
+        CsvDataHandler.LoadedData preview = dataHandler.previewCsvData(filePath);
+        if (preview != null) {
+            publish(preview);
+        }
+        return dataHandler.readCsvData(filePath, new ParallelCsvReader.ProgressListener() {
+            @Override
+            public void chunkParsed(int parsedChunks, int totalChunks) {
+                setProgress(parsedChunks * 100 / totalChunks);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return DataLoadWorker.this.isCancelled();
+            }
+        });
+    }
+
+    @Override
+    protected void process(List<CsvDataHandler.LoadedData> previews) {
+        csvViewer.showLoadingPreview(this, previews.get(previews.size() - 1));
+    }
+
+    @Override
+    protected void done() {
+        csvViewer.loadFinished(this);
+    }
+}
@@ -3,10 +3,20 @@ package src;
 import javax.swing.SwingUtilities;
 
 public class Main {
+    /**
+     * Shows the main menu, or with a file argument opens the viewer on that file. A "-" argument
+     * reads CSV data from standard input, e.g. {@code zcat data.csv.gz | java src.Main -}.
+     */
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             MainMenu mainMenu = new MainMenu();
-            mainMenu.setVisible(true);
+            if (args.length > 0) {
+                CsvViewer csvViewer = new CsvViewer(mainMenu);
+                csvViewer.setVisible(true);
+                csvViewer.loadFile(args[0], false);
+            } else {
+                mainMenu.setVisible(true);
+            }
         });
     }
 }
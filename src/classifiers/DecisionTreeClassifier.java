@@ -100,6 +100,7 @@ public class DecisionTreeClassifier {
             kFold = (Integer) kFoldSpinner.getValue();
             useKFold = kFoldButton.isSelected();
             dialog.dispose();
+            csvViewer.getHistoryManager().checkpoint();
             if (useKFold) {
                 performKFoldValidation();
             } else {
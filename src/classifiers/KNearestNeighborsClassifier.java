@@ -4,33 +4,181 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Comparator;
-import javax.swing.table.DefaultTableModel;
+import java.util.stream.IntStream;
 import src.CsvViewer;
+import src.table.ColumnarDataset;
+import src.table.ReorderableTableModel;
+import src.utils.KDTree;
+import src.utils.NeighborIndex;
+import src.utils.RandomProjectionForest;
 import java.text.DecimalFormat;
 
 public class KNearestNeighborsClassifier {
+    /**
+     * The metrics a k sweep compares, by the names the kNN dialog uses.
+     */
+    public static final String[] SWEEP_METRICS = {"Euclidean", "Manhattan"};
+
+    /**
+     * Leave-one-out accuracy of every k from 1 to maxK, as accuracy[metric][k - 1] for the
+     * metrics of SWEEP_METRICS, and the most accurate k and metric; ties go to the smaller k and
+     * then to the earlier metric.
+     */
+    public record KSweep(double[][] accuracy, int maxK, int bestK, String bestMetric, double bestAccuracy,
+                         int rowCount, long millis) {
+    }
+
+    /**
+     * Numeric features of every row without the class column, the class of every row, and the
+     * value each class is given in a prediction column.
+     */
+    private record TrainingData(double[][] features, String[] labels, Map<String, Double> labelMap) {
+    }
+
     private final CsvViewer csvViewer;
-    private final DefaultTableModel tableModel;
+    private final ReorderableTableModel tableModel;
 
-    public KNearestNeighborsClassifier(CsvViewer csvViewer, DefaultTableModel tableModel) {
+    public KNearestNeighborsClassifier(CsvViewer csvViewer, ReorderableTableModel tableModel) {
         this.csvViewer = csvViewer;
         this.tableModel = tableModel;
     }
 
-    public void insertKNNClassification(int k, String metric) {
+    /**
+     * Classifies every row by its k nearest rows, found exactly or, when approximateTrees is
+     * positive, by a random projection forest of that many trees.
+     */
+    public void insertKNNClassification(int k, String metric, int approximateTrees) {
         if (tableModel.getColumnCount() == 0) {
             csvViewer.noDataLoadedError();
             return;
         }
 
-        // Extract features and labels
-        List<double[]> features = new ArrayList<>();
-        List<String> labels = new ArrayList<>();
+        TrainingData data = extractTrainingData();
+        double[][] features = data.features();
+        String[] labels = data.labels();
+        Map<String, Double> labelMap = data.labelMap();
+        int rowCount = features.length;
+
+        // Add new column for k-NN numerical classification
+        String newColumnName = csvViewer.getUniqueColumnName("kNN_" + k + "_" + metric);
+
+        // Classify each instance against an index built once, on all cores
+        NeighborIndex.Metric distance = NeighborIndex.Metric.of(metric);
+        NeighborIndex index = approximateTrees > 0
+            ? new RandomProjectionForest(features, approximateTrees, 42)
+            : new KDTree(features);
+        double[] predictions = new double[rowCount];
+        IntStream.range(0, rowCount).parallel().forEach(i -> {
+            String prediction = classifyKNN(features[i], index, labels, k, distance);
+            predictions[i] = labelMap.get(prediction);
+        });
+        csvViewer.getHistoryManager().checkpoint();
+        tableModel.addColumn(newColumnName, predictions);
+
+        if (approximateTrees > 0) {
+            csvViewer.showApproximateRecall(
+                NeighborIndex.measureRecall(index, new KDTree(features), features, k, distance), approximateTrees);
+        }
+    }
+
+    /**
+     * Measures the leave-one-out accuracy of every k up to maxK with both sweep metrics: the
+     * nearest maxK other rows of each row are found once per metric, and every k votes with the
+     * first k of them. With insertBest, the predictions of the most accurate k and metric are
+     * added as a column.
+     * @throws IllegalArgumentException if maxK is below 1 or the table has fewer than two rows
+     */
+    public KSweep sweepKNN(int maxK, boolean insertBest) {
+        if (maxK < 1) {
+            throw new IllegalArgumentException("maxK must be at least 1, got " + maxK);
+        }
+        if (tableModel.getRowCount() < 2) {
+            throw new IllegalArgumentException("A leave-one-out sweep needs at least two rows, got "
+                + tableModel.getRowCount());
+        }
+        long start = System.nanoTime();
+        TrainingData data = extractTrainingData();
+        double[][] features = data.features();
+        String[] labels = data.labels();
+        int rowCount = features.length;
+        int sweepK = Math.min(maxK, rowCount - 1);
+
+        double[][] accuracy = new double[SWEEP_METRICS.length][];
+        int[][] bestNeighbors = null;
+        int bestK = 0;
+        String bestMetric = null;
+        double bestAccuracy = -1;
+        // The tree does not depend on the metric, which is only given with each query
+        KDTree index = new KDTree(features);
+        for (int m = 0; m < SWEEP_METRICS.length; m++) {
+            NeighborIndex.Metric metric = NeighborIndex.Metric.of(SWEEP_METRICS[m]);
+            int[][] neighbors = IntStream.range(0, rowCount).parallel()
+                .mapToObj(i -> nearestOthers(index, features, i, sweepK, metric))
+                .toArray(int[][]::new);
+
+            // Correct votes per k, counted with the votes of each row growing one neighbor at a time
+            long[] correct = IntStream.range(0, rowCount).parallel().collect(() -> new long[sweepK], (counts, i) -> {
+                Map<String, Integer> voteCount = new HashMap<>();
+                for (int k = 1; k <= neighbors[i].length; k++) {
+                    voteCount.merge(labels[neighbors[i][k - 1]], 1, Integer::sum);
+                    if (majority(voteCount).equals(labels[i])) {
+                        counts[k - 1]++;
+                    }
+                }
+            }, (counts, other) -> {
+                for (int k = 0; k < sweepK; k++) {
+                    counts[k] += other[k];
+                }
+            });
+
+            accuracy[m] = new double[sweepK];
+            for (int k = 1; k <= sweepK; k++) {
+                accuracy[m][k - 1] = correct[k - 1] / (double) rowCount;
+                if (accuracy[m][k - 1] > bestAccuracy || (accuracy[m][k - 1] == bestAccuracy && k < bestK)) {
+                    bestAccuracy = accuracy[m][k - 1];
+                    bestK = k;
+                    bestMetric = SWEEP_METRICS[m];
+                    bestNeighbors = neighbors;
+                }
+            }
+        }
+
+        if (insertBest) {
+            int k = bestK;
+            int[][] neighbors = bestNeighbors;
+            double[] predictions = new double[rowCount];
+            IntStream.range(0, rowCount).parallel().forEach(i -> {
+                Map<String, Integer> voteCount = new HashMap<>();
+                for (int j = 0; j < Math.min(k, neighbors[i].length); j++) {
+                    voteCount.merge(labels[neighbors[i][j]], 1, Integer::sum);
+                }
+                predictions[i] = data.labelMap().get(majority(voteCount));
+            });
+            tableModel.addColumn(csvViewer.getUniqueColumnName("kNN_LOO_" + k + "_" + bestMetric), predictions);
+        }
+        return new KSweep(accuracy, sweepK, bestK, bestMetric, bestAccuracy, rowCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Returns the k points nearest to a point, nearest first, leaving out the point itself.
+     */
+    private static int[] nearestOthers(NeighborIndex index, double[][] features, int row, int k,
+                                       NeighborIndex.Metric metric) {
+        return IntStream.of(index.nearest(features[row], k + 1, metric))
+            .filter(neighbor -> neighbor != row)
+            .limit(k)
+            .toArray();
+    }
+
+    private TrainingData extractTrainingData() {
+        int rowCount = tableModel.getRowCount();
+        double[][] features = new double[rowCount][];
+        String[] labels = new String[rowCount];
         Map<String, Double> labelMap = new HashMap<>();
         List<String> uniqueLabels = new ArrayList<>();
         
         int classColumnIndex = csvViewer.getClassColumnIndex();
+        ColumnarDataset dataset = ColumnarDataset.of(tableModel);
 
         // First pass - collect unique labels in order
         for (int row = 0; row < tableModel.getRowCount(); row++) {
@@ -41,84 +189,41 @@ public class KNearestNeighborsClassifier {
         }
 
         // Create evenly distributed values from 0 to 1 inclusive
+        DecimalFormat df = new DecimalFormat("#.####");
         int numLabels = uniqueLabels.size();
         for (int i = 0; i < numLabels; i++) {
-            labelMap.put(uniqueLabels.get(i), i / (double)(numLabels - 1));
+            labelMap.put(uniqueLabels.get(i), Double.parseDouble(df.format(i / (double)(numLabels - 1))));
         }
 
         // Second pass - collect features and mapped labels
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
+        for (int row = 0; row < rowCount; row++) {
             double[] featureRow = new double[tableModel.getColumnCount() - 1];
             int featureIndex = 0;
             for (int col = 0; col < tableModel.getColumnCount(); col++) {
                 if (col != classColumnIndex) {
-                    featureRow[featureIndex++] = Double.parseDouble(tableModel.getValueAt(row, col).toString());
+                    featureRow[featureIndex++] = dataset.getDouble(row, col);
                 }
             }
-            features.add(featureRow);
-            labels.add(tableModel.getValueAt(row, classColumnIndex).toString());
-        }
-
-        // Add new column for k-NN numerical classification
-        String newColumnName = csvViewer.getUniqueColumnName("kNN_" + k + "_" + metric);
-        tableModel.addColumn(newColumnName);
-        int newColumnIndex = tableModel.getColumnCount() - 1;
-
-        DecimalFormat df = new DecimalFormat("#.####");
-        
-        // Classify each instance
-        for (int i = 0; i < features.size(); i++) {
-            double[] query = features.get(i);
-            String prediction = classifyKNN(query, features, labels, k, metric);
-            tableModel.setValueAt(df.format(labelMap.get(prediction)), i, newColumnIndex);
+            features[row] = featureRow;
+            labels[row] = tableModel.getValueAt(row, classColumnIndex).toString();
         }
+        return new TrainingData(features, labels, labelMap);
     }
 
-    private String classifyKNN(double[] query, List<double[]> features, List<String> labels, int k, String metric) {
-        List<double[]> distances = new ArrayList<>();
-        for (int i = 0; i < features.size(); i++) {
-            double distance = calculateDistance(query, features.get(i), metric);
-            distances.add(new double[]{distance, i});
-        }
-
-        distances.sort(Comparator.comparingDouble(a -> a[0]));
-
+    private String classifyKNN(double[] query, NeighborIndex index, String[] labels, int k, NeighborIndex.Metric metric) {
+        // Votes are counted nearest first, so ties between labels resolve as with a full sort
         Map<String, Integer> voteCount = new HashMap<>();
-        for (int i = 0; i < k; i++) {
-            int index = (int) distances.get(i)[1];
-            String label = labels.get(index);
+        for (int neighbor : index.nearest(query, k, metric)) {
+            String label = labels[neighbor];
             voteCount.put(label, voteCount.getOrDefault(label, 0) + 1);
         }
+        return majority(voteCount);
+    }
 
+    private static String majority(Map<String, Integer> voteCount) {
         return voteCount.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
                 .get()
                 .getKey();
     }
-
-    private double calculateDistance(double[] a, double[] b, String metric) {
-        switch (metric.toLowerCase()) {
-            case "manhattan":
-                return manhattanDistance(a, b);
-            case "euclidean":
-            default:
-                return euclideanDistance(a, b);
-        }
-    }
-
-    private double euclideanDistance(double[] a, double[] b) {
-        double sum = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.pow(a[i] - b[i], 2);
-        }
-        return Math.sqrt(sum);
-    }
-
-    private double manhattanDistance(double[] a, double[] b) {
-        double sum = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            sum += Math.abs(a[i] - b[i]);
-        }
-        return sum;
-    }
 }
\ No newline at end of file
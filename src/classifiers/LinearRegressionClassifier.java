@@ -2,14 +2,12 @@ package src.classifiers;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 
 import java.awt.*;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
 import src.CsvViewer;
-import src.table.NumericStringComparator;
 
 public class LinearRegressionClassifier {
     private final CsvViewer csvViewer;
@@ -106,6 +104,7 @@ public class LinearRegressionClassifier {
                 return;
             }
 
+            csvViewer.getHistoryManager().checkpoint();
             performRegression(classColumnIndex, selectedVars);
             dialog.dispose();
         });
@@ -209,14 +208,6 @@ public class LinearRegressionClassifier {
             }
         }
 
-        // Ensure proper sorting for the new column
-        RowSorter<?> rowSorter = csvViewer.getTable().getRowSorter();
-        if (rowSorter instanceof TableRowSorter) {
-            @SuppressWarnings("unchecked")
-            TableRowSorter<DefaultTableModel> sorter = (TableRowSorter<DefaultTableModel>) rowSorter;
-            sorter.setComparator(newColIndex, new NumericStringComparator());
-        }
-
         // Show class value mapping in a dialog
         StringBuilder mappingInfo = new StringBuilder("Class Value Mapping:\n\n");
         for (String className : uniqueClasses) {
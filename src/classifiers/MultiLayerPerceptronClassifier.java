@@ -123,6 +123,7 @@ public class MultiLayerPerceptronClassifier {
                 }
 
                 dialog.dispose();
+                csvViewer.getHistoryManager().checkpoint();
                 trainAndPredict();
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, 
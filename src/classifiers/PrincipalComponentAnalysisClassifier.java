@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import src.CsvViewer;
+import src.utils.VectorKernels;
 
 public class PrincipalComponentAnalysisClassifier {
     private final CsvViewer csvViewer;
@@ -185,18 +186,11 @@ public class PrincipalComponentAnalysisClassifier {
     }
 
     private double dotProduct(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-        return sum;
+        return VectorKernels.dot(a, b);
     }
 
     private boolean convergence(double[] old, double[] current) {
-        double diff = 0;
-        for (int i = 0; i < old.length; i++) {
-            diff += Math.abs(old[i] - current[i]);
-        }
+        double diff = VectorKernels.manhattan(old, current);
         return diff < 1e-10;
     }
 } 
\ No newline at end of file
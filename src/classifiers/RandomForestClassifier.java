@@ -1,7 +1,6 @@
 package src.classifiers;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -10,12 +9,13 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import src.CsvViewer;
+import src.table.ReorderableTableModel;
 import src.utils.DecisionTreeModel;
 import src.utils.DecisionTreeModel.TreeNode;
 
 public class RandomForestClassifier {
     private final CsvViewer csvViewer;
-    private final DefaultTableModel tableModel;
+    private final ReorderableTableModel tableModel;
     private double trainSplit = 0.7;
     private int kFold = 5;
     private boolean useKFold = false;
@@ -23,7 +23,7 @@ public class RandomForestClassifier {
     private double sampleRatio = 0.7;
     private ArrayList<DecisionTreeModel> forest;
 
-    public RandomForestClassifier(CsvViewer csvViewer, DefaultTableModel tableModel) {
+    public RandomForestClassifier(CsvViewer csvViewer, ReorderableTableModel tableModel) {
         this.csvViewer = csvViewer;
         this.tableModel = tableModel;
         this.forest = new ArrayList<>();
@@ -225,15 +225,17 @@ public class RandomForestClassifier {
 
     private void addPredictionColumn(ArrayList<String[]> allData, Map<String, Double> normalizedMap) {
         String columnName = csvViewer.getUniqueColumnName("RF_prediction");
-        tableModel.addColumn(columnName);
-        int predictionColumnIndex = tableModel.getColumnCount() - 1;
 
+        // Round each class value once, as it would be shown
         DecimalFormat df = new DecimalFormat("#.###");
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            String predictedClass = predict(allData.get(row));
-            double normalizedValue = normalizedMap.get(predictedClass);
-            tableModel.setValueAt(df.format(normalizedValue), row, predictionColumnIndex);
+        Map<String, Double> roundedMap = new HashMap<>();
+        normalizedMap.forEach((className, value) -> roundedMap.put(className, Double.parseDouble(df.format(value))));
+
+        double[] predictions = new double[tableModel.getRowCount()];
+        for (int row = 0; row < predictions.length; row++) {
+            predictions[row] = roundedMap.get(predict(allData.get(row)));
         }
+        tableModel.addColumn(columnName, predictions);
     }
 
     private void showResults(double accuracy) {
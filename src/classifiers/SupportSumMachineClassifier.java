@@ -5,15 +5,16 @@ import java.awt.*;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.ArrayList;
-import javax.swing.table.DefaultTableModel;
 import src.utils.GradientDescentOptimizer;
 import src.CsvViewer;
+import src.table.ColumnExpression;
+import src.table.ReorderableTableModel;
 
 public class SupportSumMachineClassifier {
     private final CsvViewer csvViewer;
-    private final DefaultTableModel tableModel;
+    private final ReorderableTableModel tableModel;
 
-    public SupportSumMachineClassifier(CsvViewer csvViewer, DefaultTableModel tableModel) {
+    public SupportSumMachineClassifier(CsvViewer csvViewer, ReorderableTableModel tableModel) {
         this.csvViewer = csvViewer;
         this.tableModel = tableModel;
     }
@@ -172,62 +173,18 @@ public class SupportSumMachineClassifier {
             String columnName = columnNameBuilder.toString();
 
             String newColumnName = csvViewer.getUniqueColumnName(columnName);
-            tableModel.addColumn(newColumnName);
-
             String trigFunction = (String) trigFunctionSelector.getSelectedItem();
 
-            double min = Double.MAX_VALUE;
-            double max = Double.MIN_VALUE;
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                double sum = 0.0;
-                try {
-                    for (int j = 0; j < columnIndices.size(); j++) {
-                        Object value = tableModel.getValueAt(row, columnIndices.get(j));
-                        sum += coefficients.get(j) * Double.parseDouble(value.toString());
-                    }
-                    sum = applyTrigFunction(sum, trigFunction);
-                    if (sum < min) {
-                        min = sum;
-                    }
-                    if (sum > max) {
-                        max = sum;
-                    }
-                } catch (NumberFormatException | NullPointerException e) {
-                    sum = Double.NaN;
-                }
-            }
-
-            if (min != max) {
-                for (int row = 0; row < tableModel.getRowCount(); row++) {
-                    double sum = 0.0;
-                    try {
-                        for (int j = 0; j < columnIndices.size(); j++) {
-                            Object value = tableModel.getValueAt(row, columnIndices.get(j));
-                            sum += coefficients.get(j) * Double.parseDouble(value.toString());
-                        }
-                        sum = applyTrigFunction(sum, trigFunction);
-                        if (csvViewer.getStateManager().isNormalized()) {
-                            sum = (sum - min) / (max - min);
-                        }
-                        tableModel.setValueAt(decimalFormat.format(sum), row, tableModel.getColumnCount() - 1);
-                    } catch (NumberFormatException | NullPointerException e) {
-                        tableModel.setValueAt("NaN", row, tableModel.getColumnCount() - 1);
-                    }
-                }
-            } else {
-                for (int row = 0; row < tableModel.getRowCount(); row++) {
-                    double sum = 0.0;
-                    try {
-                        for (int j = 0; j < columnIndices.size(); j++) {
-                            Object value = tableModel.getValueAt(row, columnIndices.get(j));
-                            sum += coefficients.get(j) * Double.parseDouble(value.toString());
-                        }
-                        sum = applyTrigFunction(sum, trigFunction);
-                        tableModel.setValueAt(decimalFormat.format(sum), row, tableModel.getColumnCount() - 1);
-                    } catch (NumberFormatException | NullPointerException e) {
-                        tableModel.setValueAt("NaN", row, tableModel.getColumnCount() - 1);
-                    }
-                }
+            // The weighted sum is computed from the attributes as they are shown, when its cells are read
+            int[] sources = columnIndices.stream().mapToInt(Integer::intValue).toArray();
+            double[] weights = coefficients.stream().mapToDouble(Double::doubleValue).toArray();
+            ColumnExpression expression = ColumnExpression.linear(0, weights,
+                trigFunction.equals("None") ? null : value -> applyTrigFunction(value, trigFunction));
+            csvViewer.getHistoryManager().checkpoint();
+            tableModel.addDerivedColumns(new Object[] {newColumnName}, new int[][] {sources},
+                new ColumnExpression[] {expression});
+            if (csvViewer.getStateManager().isNormalized()) {
+                csvViewer.getDataHandler().normalizeColumn(tableModel, tableModel.getColumnCount() - 1);
             }
 
             csvViewer.applyRowFilter();
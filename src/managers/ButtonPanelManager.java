@@ -6,6 +6,9 @@ import src.classifiers.DecisionTreeClassifier;
 import src.classifiers.LinearDiscriminantAnalysisClassifier;
 import src.classifiers.LinearRegressionClassifier;
 import src.classifiers.PrincipalComponentAnalysisClassifier;
+import src.table.ColumnExpression;
+import src.table.ColumnarDataset;
+import src.table.ReorderableTableModel;
 import src.utils.LinearDiscriminantAnalysis;
 import src.utils.PrincipalComponentAnalysis;
 import src.classifiers.RandomForestClassifier;
@@ -27,7 +30,6 @@ import java.util.Random;
 import java.awt.geom.Ellipse2D;
 import java.awt.Shape;
 import java.util.stream.IntStream;
-import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
@@ -56,7 +58,9 @@ public class ButtonPanelManager {
         JMenu fileMenu = new JMenu("File");
         fileMenu.setIcon(resizeIcon("/icons/file.png"));
         addMenuItem(fileMenu, "Open Data", "/icons/file.png", _ -> csvViewer.loadCsvFile());
+        addMenuItem(fileMenu, "Open Data (Out-of-Core)", "/icons/file.png", _ -> csvViewer.loadCsvFile(true));
         addMenuItem(fileMenu, "Save Data", "/icons/export.png", _ -> csvViewer.exportCsvFile());
+        addMenuItem(fileMenu, "Save Snapshot", "/icons/export.png", _ -> csvViewer.saveSnapshotFile());
         addMenuItem(fileMenu, "Close Data", "/icons/delete.png", _ -> csvViewer.closeData());
         fileMenu.addSeparator();
         addMenuItem(fileMenu, "Data Types", "/icons/function.png", _ -> showDataTypesDialog());
@@ -78,6 +82,9 @@ public class ButtonPanelManager {
         // Data Menu
         JMenu dataMenu = new JMenu("Data Operations");
         dataMenu.setIcon(resizeIcon("/icons/normalize.png"));
+        addMenuItem(dataMenu, "Undo", "/icons/undo.png", _ -> csvViewer.undo());
+        addMenuItem(dataMenu, "Redo", "/icons/undo.png", _ -> csvViewer.redo());
+        dataMenu.addSeparator();
         
         // Normalization submenu
         JMenu normalizeMenu = new JMenu("Normalize");
@@ -118,10 +125,10 @@ public class ButtonPanelManager {
                     
                 if (choice == JOptionPane.YES_OPTION) {
                     DefaultTableModel model = csvViewer.tableModel;
-                    List<List<String>> originalData = csvViewer.getStateManager().getOriginalData();
+                    ColumnarDataset originalData = csvViewer.getStateManager().getOriginalData();
                     
                     // Reset row count to original
-                    model.setRowCount(originalData.size());
+                    model.setRowCount(originalData.getRowCount());
                     
                     // Restore original data for existing columns
                     List<String> originalColumns = csvViewer.getStateManager().getOriginalColumnNames();
@@ -129,8 +136,8 @@ public class ButtonPanelManager {
                         String colName = model.getColumnName(col);
                         if (originalColumns.contains(colName)) {
                             int origColIndex = originalColumns.indexOf(colName);
-                            for (int row = 0; row < originalData.size(); row++) {
-                                model.setValueAt(originalData.get(row).get(origColIndex), row, col);
+                            for (int row = 0; row < originalData.getRowCount(); row++) {
+                                model.setValueAt(originalData.getText(row, origColIndex), row, col);
                             }
                         }
                     }
@@ -288,6 +295,14 @@ public class ButtonPanelManager {
         });
         mlMenu.add(knnItem);
 
+        addMenuItem(mlMenu, "k-NN Sweep (Leave-One-Out)", "/icons/knn.png", _ -> {
+            if (csvViewer.dataHandler.isDataEmpty()) {
+                csvViewer.noDataLoadedError();
+            } else {
+                showKNNSweepDialog();
+            }
+        });
+
         addMenuItem(mlMenu, "Linear Discriminant Analysis", "/icons/lda.png", _ -> {
             if (csvViewer.dataHandler.isDataEmpty()) {
                 csvViewer.noDataLoadedError();
@@ -411,7 +426,11 @@ public class ButtonPanelManager {
             if (csvViewer.dataHandler.isDataEmpty() && !text.equals("Open Data")) {
                 csvViewer.noDataLoadedError();
             } else {
+                // Any change the action makes to the table can be undone, but a cancelled or
+                // failed action must not leave its checkpoint behind for a later change
+                csvViewer.getHistoryManager().checkpoint();
                 listener.actionPerformed(e);
+                csvViewer.getHistoryManager().discardCheckpoint();
             }
         });
         menu.add(item);
@@ -438,6 +457,7 @@ public class ButtonPanelManager {
         JComboBox<String> metricBox = new JComboBox<>(metrics);
         panel.add(new JLabel("Distance metric:"));
         panel.add(metricBox);
+        JSpinner treesSpinner = addApproximateSearchControls(panel);
         
         dialog.add(panel, BorderLayout.CENTER);
         
@@ -447,8 +467,44 @@ public class ButtonPanelManager {
         okButton.addActionListener(e -> {
             int k = (Integer)kSpinner.getValue();
             String metric = (String)metricBox.getSelectedItem();
-            csvViewer.insertKNNClassification(k, metric);
+            csvViewer.insertKNNClassification(k, metric, approximateTrees(treesSpinner));
+            dialog.dispose();
+        });
+        buttonPanel.add(okButton);
+        
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dialog.dispose());
+        buttonPanel.add(cancelButton);
+        
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        
+        dialog.pack();
+        dialog.setLocationRelativeTo(null);
+        dialog.setVisible(true);
+    }
+
+    private void showKNNSweepDialog() {
+        JDialog dialog = new JDialog((Frame)null, "k-NN Sweep Parameters", true);
+        dialog.setLayout(new BorderLayout(5,5));
+        
+        JPanel panel = new JPanel(new GridLayout(0,2,5,5));
+        
+        // Every k from 1 to this value is measured, with both metrics
+        JSpinner maxKSpinner = new JSpinner(new SpinnerNumberModel(25, 1, 100, 1));
+        panel.add(new JLabel("Largest k to try:"));
+        panel.add(maxKSpinner);
+        JCheckBox insertBox = new JCheckBox("Insert predictions of the best k");
+        panel.add(insertBox);
+        panel.add(new JLabel());
+        
+        dialog.add(panel, BorderLayout.CENTER);
+        
+        // Buttons
+        JPanel buttonPanel = new JPanel();
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(e -> {
             dialog.dispose();
+            csvViewer.sweepKNN((Integer)maxKSpinner.getValue(), insertBox.isSelected());
         });
         buttonPanel.add(okButton);
         
@@ -607,6 +663,7 @@ public class ButtonPanelManager {
             String distribution = gaussianButton.isSelected() ? "gaussian" :
                                 oneClassButton.isSelected() ? "oneclass" : "allclasses";
             String selectedClass = (String)classBox.getSelectedItem();
+            csvViewer.getHistoryManager().checkpoint();
             insertNoiseCases(numCases, distribution, selectedClass);
             dialog.dispose();
         });
@@ -697,6 +754,7 @@ public class ButtonPanelManager {
         
         // Generate cases using the calculated distributions
         Random random = new Random();
+        List<Object[]> noiseRows = new ArrayList<>(numCases);
         for (int i = 0; i < numCases; i++) {
             Object[] rowData = new Object[csvViewer.tableModel.getColumnCount()];
             
@@ -759,8 +817,9 @@ public class ButtonPanelManager {
                 }
             }
             
-            csvViewer.tableModel.addRow(rowData);
+            noiseRows.add(rowData);
         }
+        csvViewer.tableModel.addRows(noiseRows);
         
         // Update UI
         csvViewer.getDataHandler().updateStats(csvViewer.tableModel, csvViewer.getStatsTextArea());
@@ -838,15 +897,10 @@ public class ButtonPanelManager {
                 StringBuilder formula = new StringBuilder();
                 formula.append("f(x) = ").append(String.format("%.3f", intercept));
                 
-                // Create new column with computed values
-                DefaultTableModel model = csvViewer.tableModel;
-                int rowCount = model.getRowCount();
-                double[] results = new double[rowCount];
-                
-                // Initialize with intercept
-                Arrays.fill(results, intercept);
-                
-                // Add each selected attribute's contribution
+                // Collect the selected attributes that contribute to the function
+                ReorderableTableModel model = csvViewer.tableModel;
+                List<Integer> sources = new ArrayList<>();
+                List<Double> weights = new ArrayList<>();
                 for (int i = 0; i < checkboxes.size(); i++) {
                     if (checkboxes.get(i).isSelected()) {
                         String attrName = checkboxes.get(i).getText();
@@ -856,40 +910,23 @@ public class ButtonPanelManager {
                             formula.append(" + ")
                                    .append(String.format("%.3f", coeff))
                                    .append(attrName);
-                            
-                            int colIndex = model.findColumn(attrName);
-                            for (int row = 0; row < rowCount; row++) {
-                                double value = Double.parseDouble(model.getValueAt(row, colIndex).toString());
-                                results[row] += coeff * value;
-                            }
+                            sources.add(model.findColumn(attrName));
+                            weights.add(coeff);
                         }
                     }
                 }
                 
-                // Add the new column
-                model.addColumn(formula.toString());
-                int newColIndex = model.getColumnCount() - 1;
+                // Add the new column, computed from the attributes when its cells are read
+                ColumnExpression expression = ColumnExpression.linear(intercept,
+                    weights.stream().mapToDouble(Double::doubleValue).toArray(), null);
+                csvViewer.getHistoryManager().checkpoint();
+                model.addDerivedColumns(new Object[] {formula.toString()},
+                    new int[][] {sources.stream().mapToInt(Integer::intValue).toArray()},
+                    new ColumnExpression[] {expression});
                 
                 // If data is normalized, normalize the results
                 if (csvViewer.dataHandler.isDataNormalized()) {
-                    double min = Arrays.stream(results).min().getAsDouble();
-                    double max = Arrays.stream(results).max().getAsDouble();
-                    double range = max - min;
-                    
-                    // If all values are the same (range = 0), set all values to 0.5
-                    if (range == 0) {
-                        Arrays.fill(results, 0.0);  // When all inputs are 0, output should be 0
-                    } else {
-                        for (int row = 0; row < rowCount; row++) {
-                            results[row] = (results[row] - min) / range;
-                        }
-                    }
-                }
-                
-                // Fill in the values
-                DecimalFormat df = new DecimalFormat("#.###");
-                for (int row = 0; row < rowCount; row++) {
-                    model.setValueAt(df.format(results[row]), row, newColIndex);
+                    csvViewer.dataHandler.normalizeColumn(model, model.getColumnCount() - 1);
                 }
                 
                 dialog.dispose();
@@ -933,6 +970,7 @@ public class ButtonPanelManager {
         JSpinner neighborSpinner = new JSpinner(spinnerModel);
         panel.add(new JLabel("Number of neighbors per selected case:"));
         panel.add(neighborSpinner);
+        JSpinner treesSpinner = addApproximateSearchControls(panel);
         
         dialog.add(panel, BorderLayout.CENTER);
         
@@ -941,7 +979,7 @@ public class ButtonPanelManager {
         JButton okButton = new JButton("OK");
         okButton.addActionListener(e -> {
             int neighborsCount = (Integer)neighborSpinner.getValue();
-            csvViewer.selectNearestNeighbors(neighborsCount);
+            csvViewer.selectNearestNeighbors(neighborsCount, approximateTrees(treesSpinner));
             dialog.dispose();
         });
         buttonPanel.add(okButton);
@@ -957,6 +995,26 @@ public class ButtonPanelManager {
         dialog.setVisible(true);
     }
     
+    /**
+     * Adds a switch to approximate nearest neighbor search and the number of random projection
+     * trees to use, where more trees trade speed for recall, and returns the spinner of trees.
+     */
+    private JSpinner addApproximateSearchControls(JPanel panel) {
+        JCheckBox approximateBox = new JCheckBox("Approximate search (wide data)");
+        JSpinner treesSpinner = new JSpinner(new SpinnerNumberModel(16, 1, 128, 1));
+        treesSpinner.setEnabled(false);
+        approximateBox.addActionListener(e -> treesSpinner.setEnabled(approximateBox.isSelected()));
+        panel.add(approximateBox);
+        panel.add(new JLabel());
+        panel.add(new JLabel("Projection trees (more = higher recall):"));
+        panel.add(treesSpinner);
+        return treesSpinner;
+    }
+
+    private int approximateTrees(JSpinner treesSpinner) {
+        return treesSpinner.isEnabled() ? (Integer) treesSpinner.getValue() : 0;
+    }
+    
     private void showDataTypesDialog() {
         if (csvViewer.tableModel.getColumnCount() == 0) {
             JOptionPane.showMessageDialog(null, "No data loaded.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -0,0 +1,134 @@
+package src.managers;
+
+import src.CsvViewer;
+import src.table.ColumnarDataset;
+import src.table.ReorderableTableModel;
+import src.table.TransformEvent;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Undo and redo of table edits. A checkpoint is taken before each data operation and becomes an
+ * undo step only if the table changes afterwards.
+ *
+ * Steps keep copies of the dataset, which share their stored chunks with the table until it is
+ * modified (see {@link ColumnarDataset#copy}), so each step only holds the chunks of the columns
+ * and rows its operation changed, and undo swaps datasets without copying cells.
+ */
+public class HistoryManager {
+    private static final int MAX_STEPS = 50;
+
+    private final CsvViewer csvViewer;
+    private final ReorderableTableModel tableModel;
+    private final Deque<Step> undoSteps = new ArrayDeque<>();
+    private final Deque<Step> redoSteps = new ArrayDeque<>();
+    private Step checkpoint;
+    private boolean restoring;
+
+    private record Step(Object[] columnNames, ColumnarDataset dataset) {
+    }
+
+    public HistoryManager(CsvViewer csvViewer, ReorderableTableModel tableModel) {
+        this.csvViewer = csvViewer;
+        this.tableModel = tableModel;
+        tableModel.addTableModelListener(this::tableChanged);
+    }
+
+    /**
+     * Remembers the table as it is now, so that the next change to it can be undone.
+     */
+    public void checkpoint() {
+        if (!restoring) {
+            checkpoint = capture();
+        }
+    }
+
+    /**
+     * Forgets a checkpoint that no change followed, so that a later unrelated change is not
+     * recorded against it.
+     */
+    public void discardCheckpoint() {
+        checkpoint = null;
+    }
+
+    private void tableChanged(TableModelEvent e) {
+        // Normalization only changes how cells are shown and is not part of the history
+        if (checkpoint != null && !restoring && !(e instanceof TransformEvent)) {
+            push(undoSteps, checkpoint);
+            redoSteps.clear();
+            checkpoint = null;
+        }
+    }
+
+    public void undo() {
+        move(undoSteps, redoSteps, "Nothing to undo.");
+    }
+
+    public void redo() {
+        move(redoSteps, undoSteps, "Nothing to redo.");
+    }
+
+    /**
+     * Forgets every step, for example when other data is loaded.
+     */
+    public void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+        checkpoint = null;
+    }
+
+    private void move(Deque<Step> from, Deque<Step> to, String emptyMessage) {
+        checkpoint = null;
+        if (from.isEmpty()) {
+            JOptionPane.showMessageDialog(csvViewer, emptyMessage, "History", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        push(to, capture());
+        restore(from.pop());
+    }
+
+    private Step capture() {
+        Object[] columnNames = new Object[tableModel.getColumnCount()];
+        for (int col = 0; col < columnNames.length; col++) {
+            columnNames[col] = tableModel.getColumnName(col);
+        }
+        return new Step(columnNames, tableModel.getDataset().copy());
+    }
+
+    private void restore(Step step) {
+        // The step stays in the history, so the table gets its own copy
+        ColumnarDataset dataset = step.dataset().copy();
+
+        // Normalization is not part of the history: keep the current transform of each column
+        ColumnarDataset current = tableModel.getDataset();
+        Map<String, Integer> currentColumns = new HashMap<>();
+        for (int col = 0; col < tableModel.getColumnCount(); col++) {
+            currentColumns.put(tableModel.getColumnName(col), col);
+        }
+        for (int col = 0; col < step.columnNames().length; col++) {
+            Integer currentCol = currentColumns.get(String.valueOf(step.columnNames()[col]));
+            if (currentCol != null && !dataset.isTextColumn(col) && !current.isTextColumn(currentCol)) {
+                dataset.setTransform(col, current.getScale(currentCol), current.getOffset(currentCol));
+            }
+        }
+
+        restoring = true;
+        try {
+            csvViewer.restoreDataset(step.columnNames(), dataset);
+        } finally {
+            restoring = false;
+        }
+    }
+
+    private static void push(Deque<Step> steps, Step step) {
+        steps.push(step);
+        if (steps.size() > MAX_STEPS) {
+            steps.removeLast();
+        }
+    }
+}
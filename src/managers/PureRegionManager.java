@@ -2,29 +2,29 @@ package src.managers;
 
 import src.utils.PureRegionUtils;
 import src.CsvViewer;
-import src.table.NumericStringComparator;
+import src.table.ColumnStatistics;
+import src.table.ColumnarDataset;
+import src.table.IndexedRowSorter;
+import src.table.ReorderableTableModel;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import java.util.HashSet;
+import javax.swing.event.TableModelListener;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
-import javax.swing.table.TableRowSorter;
-import javax.swing.RowFilter;
+import java.util.concurrent.ExecutionException;
 
 public class PureRegionManager {
     private final CsvViewer csvViewer;
-    private final DefaultTableModel tableModel;
+    private final ReorderableTableModel tableModel;
     private final JTextArea statsTextArea;
     private final JSlider thresholdSlider;
-    private Set<Integer> hiddenRows;
 
-    public PureRegionManager(CsvViewer csvViewer, DefaultTableModel tableModel, JTextArea statsTextArea, JSlider thresholdSlider) {
+    public PureRegionManager(CsvViewer csvViewer, ReorderableTableModel tableModel, JTextArea statsTextArea, JSlider thresholdSlider) {
         this.csvViewer = csvViewer;
         this.tableModel = tableModel;
         this.statsTextArea = statsTextArea;
         this.thresholdSlider = thresholdSlider;
-        this.hiddenRows = new HashSet<>();
     }
 
     public double calculateAndDisplayPureRegions(int thresholdPercentage) {
@@ -37,28 +37,9 @@ public class PureRegionManager {
         List<PureRegionUtils> pureRegions = PureRegionUtils.calculatePureRegions(tableModel, thresholdPercentage, classColumnIndex);
 
         int totalRows = tableModel.getRowCount();
-        hiddenRows = new HashSet<>();
-        for (PureRegionUtils region : pureRegions) {
-            for (int row = 0; row < totalRows; row++) {
-                String attributeName = region.getAttributeName();
-                int attributeColumnIndex = tableModel.findColumn(attributeName);
-
-                if (attributeColumnIndex != -1) {
-                    try {
-                        double value = Double.parseDouble(tableModel.getValueAt(row, attributeColumnIndex).toString());
-                        String className = tableModel.getValueAt(row, classColumnIndex).toString();
-
-                        if (value >= region.getStart() && value < region.getEnd() && className.equals(region.getCurrentClass())) {
-                            hiddenRows.add(row);
-                        }
-                    } catch (NumberFormatException e) {
-                        // Skip non-numerical values
-                    }
-                }
-            }
-        }
+        int easyCases = findRowsInPureRegions(pureRegions, classColumnIndex).cardinality();
 
-        double remainingCoverage = ((totalRows - hiddenRows.size()) / (double) totalRows) * 100.0;
+        double remainingCoverage = ((totalRows - easyCases) / (double) totalRows) * 100.0;
 
         displayPureRegions(pureRegions);
 
@@ -66,7 +47,7 @@ public class PureRegionManager {
     }
 
     public void toggleEasyCases() {
-        if (hiddenRows.isEmpty()) {
+        if (csvViewer.getHiddenRows().isEmpty()) {
             hideEasyCases();
             csvViewer.updateToggleEasyCasesButton(false);
         } else {
@@ -84,53 +65,30 @@ public class PureRegionManager {
 
         int currentThreshold = thresholdSlider.getValue();
         List<PureRegionUtils> pureRegions = PureRegionUtils.calculatePureRegions(tableModel, currentThreshold, classColumnIndex);
-        Set<Integer> rowsToHide = new HashSet<>();
-
-        for (PureRegionUtils region : pureRegions) {
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                String attributeName = region.getAttributeName();
-                int attributeColumnIndex = tableModel.findColumn(attributeName);
-
-                if (attributeColumnIndex != -1) {
-                    try {
-                        double value = Double.parseDouble(tableModel.getValueAt(row, attributeColumnIndex).toString());
-                        String className = tableModel.getValueAt(row, classColumnIndex).toString();
-
-                        if (value >= region.getStart() && value < region.getEnd() && className.equals(region.getCurrentClass())) {
-                            rowsToHide.add(row);
-                        }
-                    } catch (NumberFormatException e) {
-                        // Skip non-numerical values
-                    }
-                }
-            }
-        }
-
-        hiddenRows.clear();
-        hiddenRows.addAll(rowsToHide);
+        csvViewer.getStateManager().setHiddenRows(findRowsInPureRegions(pureRegions, classColumnIndex));
         applyRowFilter();
         csvViewer.updateSelectedRowsLabel();
     }
 
     public void showEasyCases() {
-        hiddenRows.clear();
+        csvViewer.getHiddenRows().clear();
         applyRowFilter();
         csvViewer.updateSelectedRowsLabel();
     }
 
+    /**
+     * Shows only the rows that are not hidden, keeping the current sorter and its sort order.
+     */
     public void applyRowFilter() {
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        sorter.setRowFilter(new RowFilter<DefaultTableModel, Integer>() {
-            @Override
-            public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
-                return !hiddenRows.contains(entry.getIdentifier());
-            }
-        });
-        // Apply the custom comparator for each column
-        for (int i = 0; i < tableModel.getColumnCount(); i++) {
-            sorter.setComparator(i, new NumericStringComparator());
+        IndexedRowSorter sorter;
+        if (csvViewer.getTable().getRowSorter() instanceof IndexedRowSorter current) {
+            sorter = current;
+        } else {
+            sorter = new IndexedRowSorter(tableModel);
+            csvViewer.getTable().setRowSorter(sorter);
         }
-        csvViewer.getTable().setRowSorter(sorter);
+        BitSet hiddenRows = csvViewer.getHiddenRows();
+        sorter.setRowFilter(hiddenRows.isEmpty() ? null : row -> !hiddenRows.get(row));
         csvViewer.updateSelectedRowsLabel();
     }
 
@@ -142,32 +100,97 @@ public class PureRegionManager {
         }
 
         List<PureRegionUtils> pureRegions = PureRegionUtils.calculatePureRegions(tableModel, threshold, classColumnIndex);
-        Set<Integer> hiddenRows = new HashSet<>();
+        return tableModel.getRowCount() - findRowsInPureRegions(pureRegions, classColumnIndex).cardinality();
+    }
+
+    /**
+     * Returns the rows whose attribute value lies inside a pure region of their own class.
+     */
+    private BitSet findRowsInPureRegions(List<PureRegionUtils> pureRegions, int classColumnIndex) {
+        ColumnarDataset dataset = ColumnarDataset.of(tableModel);
+        List<String> classNames = new ArrayList<>();
+        int[] classCodes = dataset.encodeColumn(classColumnIndex, classNames);
+        int totalRows = tableModel.getRowCount();
 
+        BitSet rows = new BitSet(totalRows);
         for (PureRegionUtils region : pureRegions) {
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                String attributeName = region.getAttributeName();
-                int attributeColumnIndex = tableModel.findColumn(attributeName);
-
-                if (attributeColumnIndex != -1) {
-                    try {
-                        double value = Double.parseDouble(tableModel.getValueAt(row, attributeColumnIndex).toString());
-                        String className = tableModel.getValueAt(row, classColumnIndex).toString();
-
-                        if (value >= region.getStart() && value < region.getEnd() && className.equals(region.getCurrentClass())) {
-                            hiddenRows.add(row);
-                        }
-                    } catch (NumberFormatException e) {
-                        // Skip non-numerical values
-                    }
+            int attributeColumnIndex = tableModel.findColumn(region.getAttributeName());
+            int regionClass = classNames.indexOf(region.getCurrentClass());
+            if (attributeColumnIndex == -1 || regionClass == -1) {
+                continue;
+            }
+
+            for (int row = 0; row < totalRows; row++) {
+                // NaN and non-numerical values never fall inside a region
+                double value = dataset.getDouble(row, attributeColumnIndex);
+                if (value >= region.getStart() && value < region.getEnd() && classCodes[row] == regionClass) {
+                    rows.set(row);
                 }
             }
         }
+        return rows;
+    }
+
+    /**
+     * Computes the stats and pure regions on a background thread and shows them when done,
+     * so the table stays responsive while they are computed for a large dataset. They are
+     * computed over a copy of the dataset taken now, and dropped if the table changes meanwhile.
+     */
+    public void calculateAndDisplayPureRegionsInBackground(int thresholdPercentage) {
+        int classColumnIndex = csvViewer.getClassColumnIndex();
+        Object[] columnNames = new Object[tableModel.getColumnCount()];
+        for (int col = 0; col < columnNames.length; col++) {
+            columnNames[col] = tableModel.getColumnName(col);
+        }
+        // The copy shares its chunks copy-on-write, so edits on the event dispatch thread never reach it
+        ReorderableTableModel snapshot = new ReorderableTableModel();
+        snapshot.setDataset(columnNames, tableModel.getDataset().copy());
+        boolean[] changed = new boolean[1];
+        TableModelListener changeListener = e -> changed[0] = true;
+        tableModel.addTableModelListener(changeListener);
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                String stats = csvViewer.getDataHandler().buildStats(snapshot,
+                        new ColumnStatistics(snapshot.getDataset()));
+                if (classColumnIndex == -1) {
+                    return stats;
+                }
+                List<PureRegionUtils> pureRegions = PureRegionUtils.calculatePureRegions(snapshot, thresholdPercentage, classColumnIndex);
+                return stats + formatPureRegions(pureRegions);
+            }
 
-        return tableModel.getRowCount() - hiddenRows.size();
+            @Override
+            protected void done() {
+                tableModel.removeTableModelListener(changeListener);
+                String text;
+                try {
+                    text = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(csvViewer, "Error computing statistics: " + e.getCause().getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                    text = null;
+                }
+                if (text == null || changed[0]) {
+                    // Stale or failed: show the plain stats of the table as it is now
+                    csvViewer.getDataHandler().updateStats(tableModel, statsTextArea);
+                    return;
+                }
+                statsTextArea.setText(text);
+                statsTextArea.setCaretPosition(0);
+            }
+        }.execute();
     }
 
     private void displayPureRegions(List<PureRegionUtils> pureRegions) {
+        csvViewer.getDataHandler().updateStats(tableModel, statsTextArea);
+        statsTextArea.append(formatPureRegions(pureRegions));
+    }
+
+    private static String formatPureRegions(List<PureRegionUtils> pureRegions) {
         StringBuilder sb = new StringBuilder();
         sb.append("Single-Attribute Pure Regions:\n");
         for (int i = pureRegions.size() - 1; i >= 0; i--) {
@@ -176,7 +199,6 @@ public class PureRegionManager {
                     region.getAttributeName(), region.getStart(), region.getAttributeName(), region.getEnd(),
                     region.getCurrentClass(), region.getRegionCount(), region.getPercentageOfClass(), region.getPercentageOfDataset()));
         }
-        csvViewer.getDataHandler().updateStats(tableModel, statsTextArea);
-        statsTextArea.append(sb.toString());
+        return sb.toString();
     }
 }
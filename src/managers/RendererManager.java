@@ -1,21 +1,34 @@
 package src.managers;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
 
 import src.CsvViewer;
+import src.table.ColumnStatistics;
+import src.table.ColumnarDataset;
+import src.table.ReorderableTableModel;
 
 import java.awt.*;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map;
 /**
  * The RendererManager class manages the rendering of table cells in the CsvViewer application.
  * It applies specific rendering logic to handle color coding for numerical data and class-based categories.
  */
 public class RendererManager {
 
+    private static final Color DEFAULT_BACKGROUND = Color.decode("#C0C0C0");
+    private static final Color SELECTED_BACKGROUND = Color.WHITE;
+
+    // DecimalFormat is not thread-safe, so each thread keeps its own formats by precision
+    private static final ThreadLocal<Map<Integer, DecimalFormat>> DECIMAL_FORMATS = ThreadLocal.withInitial(HashMap::new);
+
     private final CsvViewer csvViewer;
-    private double[] minValues;
-    private double[] maxValues;
-    private boolean[] isNumerical;
+    private HeatmapCache heatmapCache;
 
     /**
      * Constructs a RendererManager for the given CsvViewer instance.
@@ -26,25 +39,30 @@ public class RendererManager {
         this.csvViewer = csvViewer;
     }
 
+    /**
+     * Applies a renderer that only shows numbers with the chosen decimal precision.
+     */
+    public void applyPrecisionRenderer() {
+        removeHeatmapCache();
+        csvViewer.table.setDefaultRenderer(Object.class, new PrecisionRenderer());
+        csvViewer.table.repaint();
+    }
+
     /**
      * Applies the default renderer to the JTable. This renderer assigns a uniform background color to all cells
      * and adds a red border to cells that have focus. This is used when no special rendering is required.
      */
     public void applyDefaultRenderer() {
-        csvViewer.table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+        removeHeatmapCache();
+        csvViewer.table.setDefaultRenderer(Object.class, new PrecisionRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                c.setBackground(Color.decode("#C0C0C0"));
-                
+                c.setBackground(DEFAULT_BACKGROUND);
+
                 if (table.isRowSelected(row)) {
-                    if (c instanceof JComponent) {
-                        for (int col = 0; col < csvViewer.tableModel.getColumnCount(); col++) {
-                            Component cell = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
-                            cell.setBackground(Color.decode("#FFFFFF"));
-                            cell.setForeground(csvViewer.getCellTextColor());
-                        }
-                    }
+                    c.setBackground(SELECTED_BACKGROUND);
+                    c.setForeground(csvViewer.getCellTextColor());
                 }
                 return c;
             }
@@ -54,91 +72,148 @@ public class RendererManager {
 
     /**
      * Applies a renderer that combines heatmap coloring for numerical data and class-based coloring for categorical data.
-     * This method calculates the min and max values for each numerical column and adjusts cell backgrounds based on these values.
+     * The heatmap color of each cell of a numerical column is computed once from the column range and kept in a
+     * cache until the column changes, so painting a cell is a lookup.
      */
     public void applyCombinedRenderer() {
-        int numColumns = csvViewer.tableModel.getColumnCount();
-        
-        minValues = new double[numColumns];
-        maxValues = new double[numColumns];
-        isNumerical = new boolean[numColumns];
-        int classColumnIndex = csvViewer.getClassColumnIndex();
-    
-        for (int i = 0; i < numColumns; i++) {
-            minValues[i] = Double.MAX_VALUE;
-            maxValues[i] = Double.MIN_VALUE;
-            isNumerical[i] = true;
-        }
-    
-        for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            for (int col = 0; col < numColumns; col++) {
-                try {
-                    double value = Double.parseDouble(csvViewer.tableModel.getValueAt(row, col).toString());
-                    if (value < minValues[col]) minValues[col] = value;
-                    if (value > maxValues[col]) maxValues[col] = value;
-                } catch (NumberFormatException e) {
-                    isNumerical[col] = false;
-                }
-            }
-        }
-    
-        csvViewer.table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+        removeHeatmapCache();
+        HeatmapCache heatmap = new HeatmapCache(csvViewer.tableModel);
+        csvViewer.tableModel.addTableModelListener(heatmap);
+        heatmapCache = heatmap;
+
+        csvViewer.table.setDefaultRenderer(Object.class, new PrecisionRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
                 Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
                 int modelColumn = table.convertColumnIndexToModel(column);
-    
-                if (modelColumn >= 0 && modelColumn < numColumns) {
-                    if (csvViewer.isClassColorEnabled() && csvViewer.getStateManager().isClassColumn(modelColumn)) {
-                        String className = (String) value;
-                        if (csvViewer.getClassColors().containsKey(className)) {
-                            c.setBackground(csvViewer.getClassColors().get(className));
-                        } else {
-                            c.setBackground(Color.decode("#C0C0C0"));
-                        }
-                    } else if (csvViewer.isHeatmapEnabled() && value != null && !value.toString().trim().isEmpty() && isNumerical[modelColumn]) {
-                        try {
-                            double val = Double.parseDouble(value.toString());
-                            double normalizedValue = (val - minValues[modelColumn]) / (maxValues[modelColumn] - minValues[modelColumn]);
-                            Color color = getColorForValue(normalizedValue);
-                            c.setBackground(color);
-                        } catch (NumberFormatException e) {
-                            c.setBackground(Color.decode("#C0C0C0"));
-                        }
-                    } else {
-                        c.setBackground(Color.decode("#C0C0C0"));
-                    }
-                } else {
-                    c.setBackground(Color.decode("#C0C0C0"));
-                }
-    
+
+                Color background = DEFAULT_BACKGROUND;
                 if (table.isRowSelected(row)) {
-                    if (c instanceof JComponent) {
-                        for (int col = 0; col < csvViewer.tableModel.getColumnCount(); col++) {
-                            Component cell = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
-                            cell.setBackground(Color.decode("#FFFFFF"));
-                        }
+                    background = SELECTED_BACKGROUND;
+                } else if (modelColumn >= 0 && modelColumn < table.getModel().getColumnCount()) {
+                    if (csvViewer.isClassColorEnabled() && csvViewer.getStateManager().isClassColumn(modelColumn)) {
+                        background = csvViewer.getClassColors().getOrDefault((String) value, DEFAULT_BACKGROUND);
+                    } else if (csvViewer.isHeatmapEnabled()) {
+                        background = heatmap.getColor(table.convertRowIndexToModel(row), modelColumn);
                     }
                 }
-    
+                c.setBackground(background);
                 c.setForeground(csvViewer.getCellTextColor());
                 return c;
             }
-    
-            /**
-             * Generates a color based on the normalized value between 0 and 1.
-             * 
-             * @param value A normalized value between 0 and 1 representing the relative position of a data point within its range.
-             * @return A color gradient from blue (low values) to red (high values).
-             */
-            private Color getColorForValue(double value) {
-                int red = (int) (255 * value);
-                int blue = 255 - red;
-                red = Math.max(0, Math.min(255, red));
-                blue = Math.max(0, Math.min(255, blue));
-                return new Color(red, 0, blue);
-            }
         });
         csvViewer.table.repaint();
     }
+
+    /**
+     * Shows the numbers of the table rounded to the decimal precision of the viewer. The stored
+     * values keep their full precision, so changing the precision only needs a repaint.
+     */
+    private class PrecisionRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            return super.getTableCellRendererComponent(table, formatCell(table, value, row, column), isSelected, hasFocus, row, column);
+        }
+
+        private Object formatCell(JTable table, Object value, int row, int column) {
+            if (!(table.getModel() instanceof ReorderableTableModel model)) {
+                return value;
+            }
+            ColumnarDataset dataset = model.getDataset();
+            int modelRow = table.convertRowIndexToModel(row);
+            int modelColumn = table.convertColumnIndexToModel(column);
+            if (modelRow >= dataset.getRowCount() || modelColumn >= dataset.getColumnCount()
+                    || !dataset.isNumber(modelRow, modelColumn)) {
+                return value;
+            }
+            double number = dataset.getDouble(modelRow, modelColumn);
+            if (!Double.isFinite(number)) {
+                return value;
+            }
+            int precision = csvViewer.getStateManager().getDecimalPrecision();
+            return DECIMAL_FORMATS.get().computeIfAbsent(precision, RendererManager::createDecimalFormat).format(number);
+        }
+    }
+
+    /**
+     * Creates a format with up to the given number of decimal places and no scientific notation.
+     */
+    private static DecimalFormat createDecimalFormat(int precision) {
+        DecimalFormat decimalFormat = new DecimalFormat("#." + "#".repeat(precision));
+        decimalFormat.setDecimalSeparatorAlwaysShown(false);
+        return decimalFormat;
+    }
+
+    private void removeHeatmapCache() {
+        if (heatmapCache != null) {
+            csvViewer.tableModel.removeTableModelListener(heatmapCache);
+            heatmapCache = null;
+        }
+    }
+
+    /**
+     * Heatmap color levels of the cells of the numerical columns, built per column on first use
+     * and dropped when the model reports a change to that column.
+     */
+    private static final class HeatmapCache implements TableModelListener {
+        // Colors from blue (low values) to red (high values), indexed by the red level
+        private static final Color[] COLORS = new Color[256];
+        static {
+            for (int red = 0; red < COLORS.length; red++) {
+                COLORS[red] = new Color(red, 0, 255 - red);
+            }
+        }
+
+        private final DefaultTableModel model;
+        private byte[][] levels = new byte[0][];
+        // True for each cached column that is not entirely numerical
+        private boolean[] uncolored = new boolean[0];
+
+        HeatmapCache(DefaultTableModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public void tableChanged(TableModelEvent e) {
+            if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getType() != TableModelEvent.UPDATE
+                    || e.getColumn() == TableModelEvent.ALL_COLUMNS || e.getColumn() >= levels.length) {
+                levels = new byte[0][];
+            } else {
+                // Any cell can move the column range, so the whole column is recolored
+                levels[e.getColumn()] = null;
+            }
+        }
+
+        Color getColor(int row, int col) {
+            if (levels.length != model.getColumnCount()) {
+                levels = new byte[model.getColumnCount()][];
+                uncolored = new boolean[model.getColumnCount()];
+            }
+            if (levels[col] == null) {
+                build(col);
+            }
+            if (uncolored[col] || row >= levels[col].length) {
+                return DEFAULT_BACKGROUND;
+            }
+            return COLORS[levels[col][row] & 0xff];
+        }
+
+        private void build(int col) {
+            ColumnStatistics statistics = ColumnStatistics.of(model);
+            uncolored[col] = !statistics.isNumeric(col);
+            if (uncolored[col]) {
+                levels[col] = new byte[0];
+                return;
+            }
+            double min = statistics.getMin(col);
+            double range = statistics.getMax(col) - min;
+            double[] values = ColumnarDataset.of(model).getColumn(col);
+            byte[] columnLevels = new byte[values.length];
+            for (int row = 0; row < values.length; row++) {
+                int red = (int) (255 * ((values[row] - min) / range));
+                columnLevels[row] = (byte) Math.max(0, Math.min(255, red));
+            }
+            levels[col] = columnLevels;
+        }
+    }
 }
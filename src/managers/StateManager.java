@@ -3,11 +3,13 @@ package src.managers;
 import java.awt.Color;
 import java.awt.Shape;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import src.table.ColumnarDataset;
 
 public class StateManager {
     private String datasetName;
@@ -16,7 +18,7 @@ public class StateManager {
     private String normalizationType;
     private boolean heatmapEnabled;
     private boolean classColorEnabled;
-    private List<Integer> hiddenRows;
+    private final BitSet hiddenRows = new BitSet(); // Model rows hidden from the table and plots
     private Map<String, Color> classColors;
     private Map<String, Shape> classShapes;
     private Color cellTextColor;
@@ -24,7 +26,7 @@ public class StateManager {
     private float polylineThickness;
     private boolean differenceColumnsVisible;
     private Set<Integer> classColumns;
-    private List<List<String>> originalData = new ArrayList<>();
+    private ColumnarDataset originalData = new ColumnarDataset();
     private int decimalPrecision = 4; // Default precision is 4 decimal places
 
     public StateManager() {
@@ -34,7 +36,6 @@ public class StateManager {
         this.normalizationType = "minmax";
         this.heatmapEnabled = false;
         this.classColorEnabled = false;
-        this.hiddenRows = new ArrayList<>();
         this.classColors = new HashMap<>();
         this.classShapes = new HashMap<>();
         this.cellTextColor = Color.BLACK;
@@ -45,7 +46,7 @@ public class StateManager {
     }
 
     public void clearState() {
-        originalData.clear();
+        originalData = new ColumnarDataset();
         originalColumnNames.clear();
         normalized = false;
         normalizationType = "minmax";
@@ -110,12 +111,17 @@ public class StateManager {
         this.classColorEnabled = classColorEnabled;
     }
 
-    public List<Integer> getHiddenRows() {
+    /**
+     * Returns the hidden model rows. The set is shared, so changes made to it are seen by the
+     * table filter and the plots.
+     */
+    public BitSet getHiddenRows() {
         return hiddenRows;
     }
 
-    public void setHiddenRows(List<Integer> hiddenRows) {
-        this.hiddenRows = hiddenRows;
+    public void setHiddenRows(BitSet rows) {
+        hiddenRows.clear();
+        hiddenRows.or(rows);
     }
 
     public Map<String, Color> getClassColors() {
@@ -166,15 +172,15 @@ public class StateManager {
         classColumns.add(columnIndex);
     }
 
-    public List<List<String>> getOriginalData() {
+    public ColumnarDataset getOriginalData() {
         return originalData;
     }
 
-    public void setOriginalData(List<List<String>> data) {
-        this.originalData = new ArrayList<>();
-        for (List<String> row : data) {
-            this.originalData.add(new ArrayList<>(row));
-        }
+    /**
+     * Keeps a copy of the data as loaded. Memory-mapped columns are shared, not loaded.
+     */
+    public void setOriginalData(ColumnarDataset data) {
+        this.originalData = data.copy();
     }
 
     public int getDecimalPrecision() {
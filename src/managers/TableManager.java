@@ -1,8 +1,9 @@
 package src.managers;
 
 import src.CsvViewer;
+import src.table.ColumnarDataset;
 import src.table.ReorderableTableModel;
-import src.table.NumericStringComparator;
+import src.table.IndexedRowSorter;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -10,7 +11,6 @@ import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,16 +51,9 @@ public class TableManager {
         csvViewer.getPureRegionManager().calculateAndDisplayPureRegions(csvViewer.getThresholdSlider().getValue());
         csvViewer.getStatsTextArea().setCaretPosition(currentCaretPosition);
 
-        // Apply NumericStringComparator to all columns
-        TableRowSorter<ReorderableTableModel> sorter = new TableRowSorter<>(tableModel);
-        for (int i = 0; i < tableModel.getColumnCount(); i++) {
-            final int column = i;
-            // Only apply numeric comparator to numeric columns
-            if (isNumericColumn(column)) {
-                sorter.setComparator(i, new NumericStringComparator());
-            }
-        }
-        csvViewer.getTable().setRowSorter(sorter);
+        // Numbers sort by value, other text alphabetically; the new rows are all shown
+        csvViewer.getHiddenRows().clear();
+        csvViewer.getTable().setRowSorter(new IndexedRowSorter(tableModel));
     }
 
     public void deleteColumn(int viewColumnIndex) {
@@ -83,45 +76,9 @@ public class TableManager {
             viewToModelMap[i] = csvViewer.getTable().convertColumnIndexToModel(i);
         }
 
-        // Remove column from view
-        columnModel.removeColumn(columnModel.getColumn(viewColumnIndex));
-        
-        // Remove data from model by creating a new dataset without the deleted column
-        int newColumnCount = tableModel.getColumnCount() - 1;
-        Object[][] newData = new Object[tableModel.getRowCount()][newColumnCount];
-        String[] newColumnNames = new String[newColumnCount];
-        
-        // Copy column names (skipping the deleted one)
-        int newColIndex = 0;
-        for (int col = 0; col < tableModel.getColumnCount(); col++) {
-            if (col != modelColumnIndex) {
-                newColumnNames[newColIndex++] = tableModel.getColumnName(col);
-            }
-        }
-        
-        // Copy data (skipping the deleted column)
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            newColIndex = 0;
-            for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                if (col != modelColumnIndex) {
-                    newData[row][newColIndex++] = tableModel.getValueAt(row, col);
-                }
-            }
-        }
-        
-        // Update the model with new data
-        tableModel.setColumnCount(0); // Clear existing columns
-        tableModel.setRowCount(0);    // Clear existing rows
-        
-        // Add new columns
-        for (String columnName : newColumnNames) {
-            tableModel.addColumn(columnName);
-        }
-        
-        // Add new rows
-        for (Object[] rowData : newData) {
-            tableModel.addRow(rowData);
-        }
+        // Remove the column from the model; the other columns keep their cells
+        csvViewer.getHistoryManager().checkpoint();
+        tableModel.removeColumn(modelColumnIndex);
         
         // Restore column order (accounting for the removed column)
         // Create a mapping that preserves original order but skips the deleted column
@@ -158,6 +115,30 @@ public class TableManager {
         csvViewer.getPureRegionManager().calculateAndDisplayPureRegions(csvViewer.getThresholdSlider().getValue());
     }
 
+    /**
+     * Shows a dataset kept by the undo history in place of the current one.
+     */
+    public void restoreDataset(Object[] columnNames, ColumnarDataset dataset) {
+        int currentCaretPosition = csvViewer.getStatsTextArea().getCaretPosition();
+
+        tableModel.setDataset(columnNames, dataset);
+
+        if (csvViewer.getStateManager().isHeatmapEnabled() || csvViewer.getStateManager().isClassColorEnabled()) {
+            csvViewer.getRendererManager().applyCombinedRenderer();
+        } else {
+            csvViewer.getRendererManager().applyDefaultRenderer();
+        }
+        // Hidden rows refer to the replaced rows
+        csvViewer.getHiddenRows().clear();
+        csvViewer.getTable().setRowSorter(new IndexedRowSorter(tableModel));
+
+        csvViewer.getDataHandler().updateStats(tableModel, csvViewer.getStatsTextArea());
+        csvViewer.updateSelectedRowsLabel();
+        csvViewer.getPureRegionManager().calculateAndDisplayPureRegions(csvViewer.getThresholdSlider().getValue());
+        currentCaretPosition = Math.min(currentCaretPosition, csvViewer.getStatsTextArea().getText().length());
+        csvViewer.getStatsTextArea().setCaretPosition(currentCaretPosition);
+    }
+
     public void highlightBlanks() {
         csvViewer.getTable().setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
             @Override
@@ -207,19 +188,4 @@ public class TableManager {
             tableColumn.setPreferredWidth(preferredWidth);
         }
     }
-
-    private boolean isNumericColumn(int column) {
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            Object value = tableModel.getValueAt(row, column);
-            if (value != null && !value.toString().trim().isEmpty()) {
-                try {
-                    Double.parseDouble(value.toString().trim());
-                    return true;  // If we can parse any value as a number, consider it a numeric column
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-            }
-        }
-        return false;
-    }
 }
@@ -1,23 +1,24 @@
 package src.managers;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 import src.CsvViewer;
+import src.table.ColumnExpression;
+import src.table.ReorderableTableModel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 
 public class TrigonometricColumnManager {
     private JTable table;
-    private DefaultTableModel tableModel;
-    private List<String[]> originalData;
-    private List<String> originalColumnNames;
+    private ReorderableTableModel tableModel;
+    private List<Object> addedColumnNames;
     private boolean areDifferenceColumnsVisible = false;
     private CsvViewer csvViewer;
 
     public TrigonometricColumnManager(JTable table, CsvViewer csvViewer) {
         this.table = table;
-        this.tableModel = (DefaultTableModel) table.getModel();
+        this.tableModel = (ReorderableTableModel) table.getModel();
         this.csvViewer = csvViewer;
     }
 
@@ -32,124 +33,73 @@ public class TrigonometricColumnManager {
     }
 
     private void addTrigonometricColumns(String mode, boolean isInverse) {
-        if (!areDifferenceColumnsVisible) {
-            // Save the original data and column names before adding new columns
-            originalData = new ArrayList<>();
-            originalColumnNames = new ArrayList<>();
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                String[] rowData = new String[tableModel.getColumnCount()];
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    rowData[col] = tableModel.getValueAt(row, col).toString();
-                }
-                originalData.add(rowData);
-            }
-            for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                originalColumnNames.add(tableModel.getColumnName(col));
-            }
-        }
-
-        int numRows = tableModel.getRowCount();
         TableColumnModel columnModel = table.getColumnModel();
         int numCols = columnModel.getColumnCount();
         int classColumnIndex = getClassColumnIndex(); // Ensure we are skipping the class column
 
         String prefix = isInverse ? "Inverse " : "";
-
+        DoubleUnaryOperator[] functions = isInverse
+            ? new DoubleUnaryOperator[] {Math::acos, Math::asin, Math::atan}
+            : new DoubleUnaryOperator[] {Math::cos, Math::sin, Math::tan};
+        String[] functionNames = {"Cos ", "Sin ", "Tan "};
+
+        // The columns are computed from their sources as they are shown, instead of being stored
+        List<Object> newColumnNames = new ArrayList<>();
+        List<int[]> newColumnSources = new ArrayList<>();
+        List<ColumnExpression> newColumnExpressions = new ArrayList<>();
         for (int i = 0; i < numCols; i++) {
             int col1 = columnModel.getColumn(i).getModelIndex();
             int col2 = -1;
             String description = "";
+            int[] sources;
+            double[] weights;
 
             if (col1 == classColumnIndex) continue;
 
             switch (mode) {
-                case "Direct":
-                    description = tableModel.getColumnName(col1);
-                    break;
                 case "Forward Differences":
                     col2 = (i + 1) % numCols;
                     if (col2 == classColumnIndex) col2 = (col2 + 1) % numCols;
                     description = tableModel.getColumnName(col2) + " - " + tableModel.getColumnName(col1);
+                    sources = new int[] {col1, col2};
+                    weights = new double[] {-1, 1};
                     break;
                 case "Backward Differences":
                     col2 = (i - 1 + numCols) % numCols;
                     if (col2 == classColumnIndex) col2 = (col2 - 1 + numCols) % numCols;
                     description = tableModel.getColumnName(col1) + " - " + tableModel.getColumnName(col2);
+                    sources = new int[] {col1, col2};
+                    weights = new double[] {1, -1};
+                    break;
+                case "Direct":
+                default:
+                    description = tableModel.getColumnName(col1);
+                    sources = new int[] {col1};
+                    weights = new double[] {1};
                     break;
             }
 
-            // Add columns for trigonometric functions
-            tableModel.addColumn(prefix + "Cos " + description);
-            tableModel.addColumn(prefix + "Sin " + description);
-            tableModel.addColumn(prefix + "Tan " + description);
-        }
-
-        // Populate the new columns with trigonometric values
-        for (int row = 0; row < numRows; row++) {
-            int newColIndex = numCols;
-
-            for (int i = 0; i < numCols; i++) {
-                int col1 = columnModel.getColumn(i).getModelIndex();
-                int col2;
-
-                if (col1 == classColumnIndex) continue;
-
-                try {
-                    double value1 = Double.parseDouble(tableModel.getValueAt(row, col1).toString());
-                    double value2 = 0;
-
-                    switch (mode) {
-                        case "Direct":
-                            value2 = value1;
-                            break;
-
-                        case "Forward Differences":
-                            col2 = (i + 1) % numCols;
-                            if (col2 == classColumnIndex) col2 = (col2 + 1) % numCols;
-                            value2 = Double.parseDouble(tableModel.getValueAt(row, col2).toString());
-                            value1 = value2 - value1;
-                            break;
-
-                        case "Backward Differences":
-                            col2 = (i - 1 + numCols) % numCols;
-                            if (col2 == classColumnIndex) col2 = (col2 - 1 + numCols) % numCols;
-                            value2 = Double.parseDouble(tableModel.getValueAt(row, col2).toString());
-                            value1 = value1 - value2;
-                            break;
-                    }
-
-                    double cosValue = Math.cos(value1);
-                    double sinValue = Math.sin(value1);
-                    double tanValue = Math.tan(value1);
-
-                    if (isInverse) {
-                        cosValue = Math.acos(value1);
-                        sinValue = Math.asin(value1);
-                        tanValue = Math.atan(value1);
-                    }
-
-                    tableModel.setValueAt(cosValue, row, newColIndex++);
-                    tableModel.setValueAt(sinValue, row, newColIndex++);
-                    tableModel.setValueAt(tanValue, row, newColIndex++);
-                } catch (NumberFormatException | NullPointerException e) {
-                    tableModel.setValueAt("", row, newColIndex++);
-                    tableModel.setValueAt("", row, newColIndex++);
-                    tableModel.setValueAt("", row, newColIndex++);
-                }
+            for (int f = 0; f < functions.length; f++) {
+                newColumnNames.add(prefix + functionNames[f] + description);
+                newColumnSources.add(sources);
+                newColumnExpressions.add(ColumnExpression.linear(0, weights, functions[f]));
             }
         }
+
+        // Add all columns with a single model event
+        tableModel.addDerivedColumns(newColumnNames.toArray(), newColumnSources.toArray(new int[0][]),
+            newColumnExpressions.toArray(new ColumnExpression[0]));
+        addedColumnNames = newColumnNames;
     }
 
     private void removeTrigonometricColumns() {
-        if (originalData != null && originalColumnNames != null) {
-            tableModel.setColumnCount(0);
-            for (String colName : originalColumnNames) {
-                tableModel.addColumn(colName);
-            }
-            tableModel.setRowCount(0);
-            for (String[] rowData : originalData) {
-                tableModel.addRow(rowData);
-            }
+        if (addedColumnNames != null) {
+            int[] columns = addedColumnNames.stream()
+                .mapToInt(name -> tableModel.findColumn(name.toString()))
+                .filter(col -> col >= 0)
+                .toArray();
+            tableModel.removeColumns(columns);
+            addedColumnNames = null;
         }
     }
 
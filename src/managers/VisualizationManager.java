@@ -51,7 +51,7 @@ public class VisualizationManager {
                 boolean isNumeric = true;
                 List<Double> columnData = new ArrayList<>();
                 for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                    if (!csvViewer.getHiddenRows().contains(row)) {
+                    if (!csvViewer.getHiddenRows().get(row)) {
                         try {
                             columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, modelIndex).toString()));
                         } catch (NumberFormatException e) {
@@ -68,13 +68,13 @@ public class VisualizationManager {
         }
     
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, classColumnIndex));
             }
         }
     
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
     
         StarCoordinatesPlot starCoordinatesPlot = new StarCoordinatesPlot(numericalData, attributeNames, csvViewer.getClassColors(), csvViewer.getClassShapes(), classLabels, selectedRows, csvViewer.getDatasetName(), csvViewer.getStateManager().getPlotBackgroundColor(), csvViewer.getStateManager().getPolylineThickness());
         starCoordinatesPlot.setVisible(true);
@@ -92,7 +92,7 @@ public class VisualizationManager {
 
         List<String[]> data = new ArrayList<>();
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 String[] rowData = new String[columnCount];
                 for (int col = 0; col < columnCount; col++) {
                     Object value = csvViewer.tableModel.getValueAt(row, col);
@@ -103,7 +103,7 @@ public class VisualizationManager {
         }
 
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         // TODO: will we keep this feature as we are not using it currently and moving towards decision tree space visualization?
         List<PureRegionUtils> pureRegions = PureRegionUtils.calculatePureRegions(csvViewer.tableModel, csvViewer.thresholdSlider.getValue(), csvViewer.getClassColumnIndex());
@@ -129,7 +129,7 @@ public class VisualizationManager {
             boolean isNumeric = true;
             List<Double> columnData = new ArrayList<>();
             for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                if (!csvViewer.getHiddenRows().contains(row)) {
+                if (!csvViewer.getHiddenRows().get(row)) {
                     try {
                         columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, columnOrder[col]).toString()));
                     } catch (NumberFormatException e) {
@@ -145,14 +145,14 @@ public class VisualizationManager {
         }
 
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, csvViewer.getClassColumnIndex()));
             }
         }
 
         int numPlots = (attributeNames.size() + 1) / 2;
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         ShiftedPairedCoordinatesPlot shiftedPairedCoordinates = new ShiftedPairedCoordinatesPlot(data, attributeNames, csvViewer.getClassColors(), csvViewer.getClassShapes(), classLabels, numPlots, selectedRows, csvViewer.getDatasetName(), csvViewer.getTable(), csvViewer.getStateManager().getPlotBackgroundColor(), csvViewer.getStateManager().getPolylineThickness());
         shiftedPairedCoordinates.setVisible(true);
@@ -182,7 +182,7 @@ public class VisualizationManager {
             boolean isNumeric = true;
             List<Double> columnData = new ArrayList<>();
             for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                if (!csvViewer.getHiddenRows().contains(row)) {
+                if (!csvViewer.getHiddenRows().get(row)) {
                     try {
                         columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, columnOrder[col]).toString()));
                     } catch (NumberFormatException e) {
@@ -199,13 +199,13 @@ public class VisualizationManager {
 
         // Collect class labels separately
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, classColumnIndex));
             }
         }
 
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         CollocatedPairedCoordinatesPlot collocatedPairedCoordinates = new CollocatedPairedCoordinatesPlot(data, attributeNames, csvViewer.getClassColors(), csvViewer.getClassShapes(), classLabels, selectedRows, csvViewer.getDatasetName(), csvViewer.getTable(), csvViewer.getStateManager().getPlotBackgroundColor(), csvViewer.getStateManager().getPolylineThickness());
         collocatedPairedCoordinates.setVisible(true);
@@ -227,7 +227,7 @@ public class VisualizationManager {
             boolean isNumeric = true;
             List<Double> columnData = new ArrayList<>();
             for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                if (!csvViewer.getHiddenRows().contains(row)) {
+                if (!csvViewer.getHiddenRows().get(row)) {
                     try {
                         columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, columnOrder[col]).toString()));
                     } catch (NumberFormatException e) {
@@ -243,13 +243,13 @@ public class VisualizationManager {
         }
 
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, csvViewer.getClassColumnIndex()));
             }
         }
 
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         CircularCoordinatesPlot plot = new CircularCoordinatesPlot(data, attributeNames, csvViewer.getClassColors(), csvViewer.getClassShapes(), classLabels, selectedRows, csvViewer.getDatasetName(), csvViewer.getStateManager().getPlotBackgroundColor(), csvViewer.getStateManager().getPolylineThickness());
         plot.setVisible(true);
@@ -386,7 +386,7 @@ public class VisualizationManager {
         
         // Process each visible row in the table
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 String[] rowData = new String[attributeNames.size()];
                 for (int col = 0; col < attributeNames.size(); col++) {
                     Object value = csvViewer.tableModel.getValueAt(row, col);
@@ -461,7 +461,7 @@ public class VisualizationManager {
             boolean isNumeric = true;
             List<Double> columnData = new ArrayList<>();
             for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                if (!csvViewer.getHiddenRows().contains(row)) {
+                if (!csvViewer.getHiddenRows().get(row)) {
                     try {
                         columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, modelIndex).toString()));
                     } catch (NumberFormatException e) {
@@ -477,13 +477,13 @@ public class VisualizationManager {
         }
 
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, classColumnIndex));
             }
         }
 
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         ConcentricCoordinatesPlot plot = new ConcentricCoordinatesPlot(data, attributeNames, csvViewer.getClassColors(), csvViewer.getClassShapes(), classLabels, selectedRows, selectedRows, csvViewer.getDatasetName(), csvViewer.getStateManager().getPlotBackgroundColor(), csvViewer.getStateManager().getPolylineThickness());
         plot.setVisible(true);
@@ -509,7 +509,7 @@ public class VisualizationManager {
                 boolean isNumeric = true;
                 List<Double> columnData = new ArrayList<>();
                 for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-                    if (!csvViewer.getHiddenRows().contains(row)) {
+                    if (!csvViewer.getHiddenRows().get(row)) {
                         try {
                             columnData.add(Double.parseDouble(csvViewer.tableModel.getValueAt(row, modelIndex).toString()));
                         } catch (NumberFormatException e) {
@@ -527,13 +527,13 @@ public class VisualizationManager {
 
         // Collect class labels
         for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            if (!csvViewer.getHiddenRows().contains(row)) {
+            if (!csvViewer.getHiddenRows().get(row)) {
                 classLabels.add((String) csvViewer.tableModel.getValueAt(row, classColumnIndex));
             }
         }
 
         List<Integer> selectedRows = csvViewer.getSelectedRowsIndices();
-        selectedRows.removeIf(csvViewer.getHiddenRows()::contains);
+        selectedRows.removeIf(csvViewer.getHiddenRows()::get);
 
         LineCoordinatesPlot plot = new LineCoordinatesPlot(
             numericalData,
@@ -0,0 +1,112 @@
+package src.table;
+
+import java.util.Arrays;
+
+/**
+ * The chunk bookkeeping of {@link ChunkedDoubles} and {@link ChunkedInts}: a growable array kept
+ * in chunks of {@code 1 << CHUNK_SHIFT} elements, which copies of the array share until either
+ * side writes to them (see {@link #shareWith}). Copying the array costs one reference per chunk,
+ * and a write afterwards only duplicates the chunk it lands in. An array with allocateOnWrite set
+ * allocates each chunk when it is first written, and its unwritten chunks must not be read.
+ * @param <A> the primitive array type of a chunk
+ */
+abstract class ChunkedArray<A> {
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    A[] chunks;
+    private boolean[] shared = new boolean[0]; // Chunks also used by another array
+    boolean allocateOnWrite;
+    private int capacity;
+
+    ChunkedArray(A[] noChunks) {
+        chunks = noChunks;
+    }
+
+    /**
+     * Returns a new chunk of the given length with every element set to the fill value.
+     */
+    abstract A newChunk(int length);
+
+    /**
+     * Returns a copy of the chunk widened to the given length, with the new elements set to the
+     * fill value.
+     */
+    abstract A widen(A chunk, int length);
+
+    abstract A copy(A chunk);
+
+    abstract int length(A chunk);
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns true when the chunk holding the element has been allocated.
+     */
+    boolean isAllocated(int index) {
+        return chunks[index >>> CHUNK_SHIFT] != null;
+    }
+
+    void ensureCapacity(int newCapacity) {
+        if (newCapacity <= capacity) {
+            return;
+        }
+        int oldCount = chunks.length;
+        int count = (newCapacity + CHUNK_MASK) >>> CHUNK_SHIFT;
+        chunks = Arrays.copyOf(chunks, count);
+        shared = Arrays.copyOf(shared, count);
+        // The last chunk may be shorter than CHUNK_SIZE, so it is widened as well
+        for (int c = Math.max(0, oldCount - 1); c < count; c++) {
+            int length = Math.min(CHUNK_SIZE, newCapacity - (c << CHUNK_SHIFT));
+            A chunk = chunks[c];
+            if (chunk == null && allocateOnWrite) {
+                continue;
+            }
+            if (chunk == null || length(chunk) < length) {
+                chunks[c] = chunk == null ? newChunk(length) : widen(chunk, length);
+                shared[c] = false;
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * Allocates every chunk not yet written, after which the array allocates like any other.
+     */
+    void allocate() {
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] == null) {
+                writable(c);
+            }
+        }
+        allocateOnWrite = false;
+    }
+
+    /**
+     * Makes an empty copy share every chunk with this array until either of them writes to it.
+     */
+    void shareWith(ChunkedArray<A> copy) {
+        copy.chunks = chunks.clone();
+        copy.capacity = capacity;
+        copy.allocateOnWrite = allocateOnWrite;
+        Arrays.fill(shared, true);
+        copy.shared = shared.clone();
+    }
+
+    /**
+     * Returns the chunk, allocated and no longer shared, ready to be written.
+     */
+    A writable(int chunk) {
+        if (chunks[chunk] == null) {
+            chunks[chunk] = newChunk(Math.min(CHUNK_SIZE, capacity - (chunk << CHUNK_SHIFT)));
+            shared[chunk] = false;
+        } else if (shared[chunk]) {
+            chunks[chunk] = copy(chunks[chunk]);
+            shared[chunk] = false;
+        }
+        return chunks[chunk];
+    }
+}
@@ -0,0 +1,123 @@
+package src.table;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable array of doubles kept in chunks, which copies of the array share until either
+ * side writes to them (see {@link #share} and {@link ChunkedArray}).
+ * An array created by {@link #unallocated} allocates each chunk when it is first written, and its
+ * unwritten chunks must not be read.
+ */
+final class ChunkedDoubles extends ChunkedArray<double[]> {
+    private final double fill;
+
+    /**
+     * Creates an array of the given capacity with every element set to fill.
+     */
+    ChunkedDoubles(int capacity, double fill) {
+        super(new double[0][]);
+        this.fill = fill;
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Creates an array holding the first length values, followed by fill up to capacity.
+     */
+    ChunkedDoubles(double[] values, int length, int capacity, double fill) {
+        this(capacity, fill);
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            double[] chunk = chunks[start >>> CHUNK_SHIFT];
+            System.arraycopy(values, start, chunk, 0, Math.min(chunk.length, length - start));
+        }
+    }
+
+    /**
+     * Creates an array of the given capacity whose chunks are allocated, filled with fill, when
+     * they are first written.
+     */
+    static ChunkedDoubles unallocated(int capacity, double fill) {
+        ChunkedDoubles array = new ChunkedDoubles(0, fill);
+        array.allocateOnWrite = true;
+        array.ensureCapacity(capacity);
+        return array;
+    }
+
+    double get(int index) {
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    void set(int index, double value) {
+        writable(index >>> CHUNK_SHIFT)[index & CHUNK_MASK] = value;
+    }
+
+    void fill(int from, int to, double value) {
+        while (from < to) {
+            int end = Math.min(to, (from | CHUNK_MASK) + 1);
+            Arrays.fill(writable(from >>> CHUNK_SHIFT), from & CHUNK_MASK, ((end - 1) & CHUNK_MASK) + 1, value);
+            from = end;
+        }
+    }
+
+    /**
+     * Copies the values of a buffer into this array, starting at the given index.
+     */
+    void load(DoubleBuffer source, int offset) {
+        int length = Math.min(source.limit(), capacity() - offset);
+        for (int done = 0; done < length; ) {
+            int index = offset + done;
+            int count = Math.min(length - done, CHUNK_SIZE - (index & CHUNK_MASK));
+            source.get(done, writable(index >>> CHUNK_SHIFT), index & CHUNK_MASK, count);
+            done += count;
+        }
+    }
+
+    /**
+     * Copies the first length values into a new array.
+     */
+    double[] toArray(int length) {
+        double[] result = new double[length];
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            double[] chunk = chunks[start >>> CHUNK_SHIFT];
+            if (chunk == null) {
+                Arrays.fill(result, start, Math.min(length, start + CHUNK_SIZE), fill);
+            } else {
+                System.arraycopy(chunk, 0, result, start, Math.min(chunk.length, length - start));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy that shares every chunk with this array until either of them writes to it.
+     */
+    ChunkedDoubles share() {
+        ChunkedDoubles copy = new ChunkedDoubles(0, fill);
+        shareWith(copy);
+        return copy;
+    }
+
+    @Override
+    double[] newChunk(int length) {
+        double[] chunk = new double[length];
+        Arrays.fill(chunk, fill);
+        return chunk;
+    }
+
+    @Override
+    double[] widen(double[] chunk, int length) {
+        double[] widened = Arrays.copyOf(chunk, length);
+        Arrays.fill(widened, chunk.length, length, fill);
+        return widened;
+    }
+
+    @Override
+    double[] copy(double[] chunk) {
+        return chunk.clone();
+    }
+
+    @Override
+    int length(double[] chunk) {
+        return chunk.length;
+    }
+}
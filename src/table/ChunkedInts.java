@@ -0,0 +1,123 @@
+package src.table;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable array of ints kept in chunks, which copies of the array share until either
+ * side writes to them (see {@link #share} and {@link ChunkedArray}).
+ * An array created by {@link #unallocated} allocates each chunk when it is first written, and its
+ * unwritten chunks must not be read.
+ */
+final class ChunkedInts extends ChunkedArray<int[]> {
+    private final int fill;
+
+    /**
+     * Creates an array of the given capacity with every element set to fill.
+     */
+    ChunkedInts(int capacity, int fill) {
+        super(new int[0][]);
+        this.fill = fill;
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Creates an array holding the first length values, followed by fill up to capacity.
+     */
+    ChunkedInts(int[] values, int length, int capacity, int fill) {
+        this(capacity, fill);
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            int[] chunk = chunks[start >>> CHUNK_SHIFT];
+            System.arraycopy(values, start, chunk, 0, Math.min(chunk.length, length - start));
+        }
+    }
+
+    /**
+     * Creates an array of the given capacity whose chunks are allocated, filled with fill, when
+     * they are first written.
+     */
+    static ChunkedInts unallocated(int capacity, int fill) {
+        ChunkedInts array = new ChunkedInts(0, fill);
+        array.allocateOnWrite = true;
+        array.ensureCapacity(capacity);
+        return array;
+    }
+
+    int get(int index) {
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    void set(int index, int value) {
+        writable(index >>> CHUNK_SHIFT)[index & CHUNK_MASK] = value;
+    }
+
+    void fill(int from, int to, int value) {
+        while (from < to) {
+            int end = Math.min(to, (from | CHUNK_MASK) + 1);
+            Arrays.fill(writable(from >>> CHUNK_SHIFT), from & CHUNK_MASK, ((end - 1) & CHUNK_MASK) + 1, value);
+            from = end;
+        }
+    }
+
+    /**
+     * Copies the values of a buffer into this array, starting at the given index.
+     */
+    void load(IntBuffer source, int offset) {
+        int length = Math.min(source.limit(), capacity() - offset);
+        for (int done = 0; done < length; ) {
+            int index = offset + done;
+            int count = Math.min(length - done, CHUNK_SIZE - (index & CHUNK_MASK));
+            source.get(done, writable(index >>> CHUNK_SHIFT), index & CHUNK_MASK, count);
+            done += count;
+        }
+    }
+
+    /**
+     * Copies the first length values into a new array.
+     */
+    int[] toArray(int length) {
+        int[] result = new int[length];
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            int[] chunk = chunks[start >>> CHUNK_SHIFT];
+            if (chunk == null) {
+                Arrays.fill(result, start, Math.min(length, start + CHUNK_SIZE), fill);
+            } else {
+                System.arraycopy(chunk, 0, result, start, Math.min(chunk.length, length - start));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy that shares every chunk with this array until either of them writes to it.
+     */
+    ChunkedInts share() {
+        ChunkedInts copy = new ChunkedInts(0, fill);
+        shareWith(copy);
+        return copy;
+    }
+
+    @Override
+    int[] newChunk(int length) {
+        int[] chunk = new int[length];
+        Arrays.fill(chunk, fill);
+        return chunk;
+    }
+
+    @Override
+    int[] widen(int[] chunk, int length) {
+        int[] widened = Arrays.copyOf(chunk, length);
+        Arrays.fill(widened, chunk.length, length, fill);
+        return widened;
+    }
+
+    @Override
+    int[] copy(int[] chunk) {
+        return chunk.clone();
+    }
+
+    @Override
+    int length(int[] chunk) {
+        return chunk.length;
+    }
+}
@@ -0,0 +1,42 @@
+package src.table;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Computes the values of a derived column from its source columns, a batch of rows at a time
+ * (see {@link ColumnarDataset#addDerivedColumn}).
+ */
+@FunctionalInterface
+public interface ColumnExpression {
+
+    /**
+     * Computes result[i] from inputs[0][i], inputs[1][i], ... for every i below length, where
+     * inputs[j] holds the values of the j-th source column. Rows in which a source is not a number
+     * are blank in the derived column, whatever is computed for them.
+     */
+    void evaluate(double[][] inputs, int length, double[] result);
+
+    /**
+     * Returns the expression intercept + weights[0] * x0 + weights[1] * x1 + ..., with the
+     * function applied to the sum unless it is null.
+     */
+    static ColumnExpression linear(double intercept, double[] weights, DoubleUnaryOperator function) {
+        double[] coefficients = weights.clone();
+        return (inputs, length, result) -> {
+            Arrays.fill(result, 0, length, intercept);
+            for (int j = 0; j < coefficients.length; j++) {
+                double weight = coefficients[j];
+                double[] input = inputs[j];
+                for (int i = 0; i < length; i++) {
+                    result[i] += weight * input[i];
+                }
+            }
+            if (function != null) {
+                for (int i = 0; i < length; i++) {
+                    result[i] = function.applyAsDouble(result[i]);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package src.table;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A column of doubles or ints appended to a temporary file, then memory mapped in pages of
+ * {@code 1 << ColumnarDataset.PAGE_SHIFT} values for {@link ColumnarDataset#addMappedNumericColumn}
+ * and {@link ColumnarDataset#addMappedTextColumn}. Only a small write buffer is kept on the heap,
+ * so a column can be built a chunk of rows at a time without ever holding all of it.
+ */
+public final class ColumnFile implements Closeable {
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final int PAGE_ELEMENTS = 1 << ColumnarDataset.PAGE_SHIFT;
+
+    private final int width; // Bytes per value
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long count;
+
+    private ColumnFile(int width) throws IOException {
+        this.width = width;
+        File file = File.createTempFile("column", ".bin");
+        file.deleteOnExit();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static ColumnFile doubles() throws IOException {
+        return new ColumnFile(Double.BYTES);
+    }
+
+    public static ColumnFile ints() throws IOException {
+        return new ColumnFile(Integer.BYTES);
+    }
+
+    public void putDouble(double value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.putDouble(value);
+        count++;
+    }
+
+    public void putInt(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.putInt(value);
+        count++;
+    }
+
+    /**
+     * Returns the number of values written.
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Maps the values written so far, one buffer per page. A column with no values has one
+     * empty page.
+     */
+    public DoubleBuffer[] mapDoubles() throws IOException {
+        ByteBuffer[] blocks = map();
+        DoubleBuffer[] pages = new DoubleBuffer[blocks.length];
+        for (int page = 0; page < pages.length; page++) {
+            pages[page] = blocks[page].asDoubleBuffer();
+        }
+        return pages;
+    }
+
+    /**
+     * Maps the values written so far, one buffer per page, like {@link #mapDoubles}.
+     */
+    public IntBuffer[] mapInts() throws IOException {
+        ByteBuffer[] blocks = map();
+        IntBuffer[] pages = new IntBuffer[blocks.length];
+        for (int page = 0; page < pages.length; page++) {
+            pages[page] = blocks[page].asIntBuffer();
+        }
+        return pages;
+    }
+
+    private ByteBuffer[] map() throws IOException {
+        flush();
+        ByteBuffer[] pages = new ByteBuffer[(int) Math.max(1, (count + PAGE_ELEMENTS - 1) / PAGE_ELEMENTS)];
+        for (int page = 0; page < pages.length; page++) {
+            long from = (long) page * PAGE_ELEMENTS;
+            long length = Math.max(0, Math.min(PAGE_ELEMENTS, count - from));
+            pages[page] = channel.map(FileChannel.MapMode.READ_ONLY, from * width, length * width)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return pages;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Closes the file. Pages mapped from it stay readable, and the file is deleted on exit.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
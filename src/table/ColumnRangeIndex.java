@@ -0,0 +1,157 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Supplier;
+
+/**
+ * Finds the rows whose value in a column lies in a range, for bounds-based case selection.
+ *
+ * The numeric cells of a column are kept sorted by their displayed value along with their rows,
+ * so a range query is a binary search followed by setting the bits of the rows in the range.
+ * The cells are sorted with a radix sort of their bits, in linear time.
+ * Cells that are blank, text or NaN never match. Like {@link ColumnSortIndex}, a column is
+ * indexed the first time it is queried and dropped when it changes.
+ */
+public class ColumnRangeIndex implements TableModelListener {
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    private final Supplier<ColumnarDataset> source;
+    // Per column: numeric values in ascending order, and the row of each value
+    private double[][] sortedValues = new double[0][];
+    private int[][] sortedRows = new int[0][];
+
+    /**
+     * Creates a range index that follows the dataset behind a table model.
+     */
+    public ColumnRangeIndex(ReorderableTableModel model) {
+        this.source = model::getDataset;
+    }
+
+    @Override
+    public synchronized void tableChanged(TableModelEvent e) {
+        int columnCount = source.get().getColumnCount();
+        if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getType() != TableModelEvent.UPDATE
+                || sortedRows.length != columnCount) {
+            // Rows moved or columns changed: every column is stale
+            sortedValues = new double[columnCount][];
+            sortedRows = new int[columnCount][];
+        } else if (e.getColumn() == TableModelEvent.ALL_COLUMNS) {
+            Arrays.fill(sortedValues, null);
+            Arrays.fill(sortedRows, null);
+        } else {
+            sortedValues[e.getColumn()] = null;
+            sortedRows[e.getColumn()] = null;
+        }
+    }
+
+    /**
+     * Returns the rows whose number in the column is at least min and at most max.
+     */
+    public synchronized BitSet getRowsWithin(int col, double min, double max) {
+        index(col);
+        double[] values = sortedValues[col];
+        int[] rows = sortedRows[col];
+        BitSet result = new BitSet(source.get().getRowCount());
+        for (int i = firstNotBelow(values, min); i < values.length && values[i] <= max; i++) {
+            result.set(rows[i]);
+        }
+        return result;
+    }
+
+    private void index(int col) {
+        ColumnarDataset data = source.get();
+        if (sortedRows.length != data.getColumnCount()) {
+            sortedValues = new double[data.getColumnCount()][];
+            sortedRows = new int[data.getColumnCount()][];
+        }
+        if (sortedRows[col] != null) {
+            return;
+        }
+
+        double[] column = data.getColumn(col);
+        int[] rows = new int[column.length];
+        long[] keys = new long[column.length];
+        int count = 0;
+        for (int row = 0; row < column.length; row++) {
+            if (!Double.isNaN(column[row]) && data.isNumber(row, col)) {
+                rows[count] = row;
+                keys[count++] = sortKey(column[row]);
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        keys = Arrays.copyOf(keys, count);
+
+        // Stable LSD radix sort of the rows by key, one byte per pass
+        int[] rowBuffer = new int[count];
+        long[] keyBuffer = new long[count];
+        int[] starts = new int[RADIX + 1];
+        for (int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS) {
+            Arrays.fill(starts, 0);
+            for (int i = 0; i < count; i++) {
+                starts[digit(keys[i], shift) + 1]++;
+            }
+            if (starts[digit(count == 0 ? 0 : keys[0], shift) + 1] == count) {
+                // Every key has the same digit here
+                continue;
+            }
+            for (int d = 1; d <= RADIX; d++) {
+                starts[d] += starts[d - 1];
+            }
+            for (int i = 0; i < count; i++) {
+                int position = starts[digit(keys[i], shift)]++;
+                keyBuffer[position] = keys[i];
+                rowBuffer[position] = rows[i];
+            }
+            long[] swapKeys = keys;
+            keys = keyBuffer;
+            keyBuffer = swapKeys;
+            int[] swapRows = rows;
+            rows = rowBuffer;
+            rowBuffer = swapRows;
+        }
+
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = fromSortKey(keys[i]);
+        }
+        sortedValues[col] = values;
+        sortedRows[col] = rows;
+    }
+
+    private static int digit(long key, int shift) {
+        return (int) (key >>> shift) & (RADIX - 1);
+    }
+
+    /**
+     * Maps a number to a long whose unsigned order is the order of the numbers.
+     */
+    private static long sortKey(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return bits < 0 ? ~bits : bits | Long.MIN_VALUE;
+    }
+
+    private static double fromSortKey(long key) {
+        return Double.longBitsToDouble(key < 0 ? key & Long.MAX_VALUE : ~key);
+    }
+
+    /**
+     * Returns the position of the first value that is not below the bound.
+     */
+    private static int firstNotBelow(double[] values, double bound) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,159 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Sort keys of the columns of a dataset, used by {@link IndexedRowSorter}.
+ *
+ * The key of a cell is its rank in the column: blank cells come first, then numbers in
+ * ascending order, then any other text in lexical order. Numbers closer to zero than 1e-10
+ * count as zero. Equal cells share a rank, so a sort by rank only compares ints.
+ *
+ * The ranks of a column are computed the first time they are asked for, with a parallel
+ * primitive sort of its distinct values, and kept until the column changes.
+ */
+public class ColumnSortIndex implements TableModelListener {
+    private static final double EPSILON = 1e-10;
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private final Supplier<ColumnarDataset> source;
+    private int[][] ranks = new int[0][];
+    private int[] rankCounts = new int[0];
+
+    /**
+     * Creates sort keys that follow the dataset behind a table model.
+     */
+    public ColumnSortIndex(ReorderableTableModel model) {
+        this.source = model::getDataset;
+    }
+
+    @Override
+    public synchronized void tableChanged(TableModelEvent e) {
+        int columnCount = source.get().getColumnCount();
+        if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getType() != TableModelEvent.UPDATE
+                || ranks.length != columnCount) {
+            // Rows moved or columns changed: every rank is stale
+            ranks = new int[columnCount][];
+            rankCounts = new int[columnCount];
+        } else if (e.getColumn() == TableModelEvent.ALL_COLUMNS) {
+            Arrays.fill(ranks, null);
+        } else {
+            ranks[e.getColumn()] = null;
+        }
+    }
+
+    /**
+     * Returns the rank of every row in the column. The array is shared and must not be modified.
+     */
+    public synchronized int[] getRanks(int col) {
+        ColumnarDataset data = source.get();
+        if (ranks.length != data.getColumnCount()) {
+            ranks = new int[data.getColumnCount()][];
+            rankCounts = new int[data.getColumnCount()];
+        }
+        if (ranks[col] == null) {
+            int[] columnRanks = new int[data.getRowCount()];
+            rankCounts[col] = data.isTextColumn(col) ? rankTextColumn(data, col, columnRanks)
+                    : rankNumericColumn(data, col, columnRanks);
+            ranks[col] = columnRanks;
+        }
+        return ranks[col];
+    }
+
+    /**
+     * Returns one more than the largest rank of the column.
+     */
+    public synchronized int getRankCount(int col) {
+        getRanks(col);
+        return rankCounts[col];
+    }
+
+    private static int rankNumericColumn(ColumnarDataset data, int col, int[] result) {
+        double[] values = data.getColumn(col);
+        return rank(values.length, row -> data.isMissing(row, col), row -> data.isNumber(row, col),
+                row -> values[row], row -> data.getText(row, col), result);
+    }
+
+    private static int rankTextColumn(ColumnarDataset data, int col, int[] result) {
+        // Rank the dictionary once, then look up the rank of each row's code
+        List<String> dictionary = data.getDictionary(col);
+        double[] values = new double[dictionary.size()];
+        boolean[] numbers = new boolean[dictionary.size()];
+        for (int code = 0; code < values.length; code++) {
+            try {
+                values[code] = Double.parseDouble(dictionary.get(code).trim());
+                numbers[code] = true;
+            } catch (NumberFormatException e) {
+                values[code] = Double.NaN;
+            }
+        }
+        int[] codeRanks = new int[dictionary.size()];
+        int rankCount = rank(values.length, code -> dictionary.get(code).trim().isEmpty(), code -> numbers[code],
+                code -> values[code], code -> dictionary.get(code).trim(), codeRanks);
+
+        int[] codes = data.getCodes(col);
+        for (int row = 0; row < codes.length; row++) {
+            result[row] = codes[row] < 0 ? 0 : codeRanks[codes[row]];
+        }
+        return rankCount;
+    }
+
+    /**
+     * Ranks items: blank ones 0, numbers 1 to the number of distinct numbers, text after that.
+     * @return the number of ranks
+     */
+    private static int rank(int count, IntPredicate blank, IntPredicate number, IntToDoubleFunction value,
+                            IntFunction<String> text, int[] result) {
+        double[] numbers = new double[count];
+        int numberCount = 0;
+        TreeSet<String> texts = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            if (blank.test(i)) {
+                continue;
+            }
+            if (number.test(i)) {
+                numbers[numberCount++] = key(value.applyAsDouble(i));
+            } else {
+                texts.add(text.apply(i));
+            }
+        }
+
+        // Distinct numbers in ascending order
+        double[] distinct = Arrays.copyOf(numbers, numberCount);
+        Arrays.parallelSort(distinct);
+        int distinctCount = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (distinctCount == 0 || Double.compare(distinct[i], distinct[distinctCount - 1]) != 0) {
+                distinct[distinctCount++] = distinct[i];
+            }
+        }
+        String[] sortedTexts = texts.toArray(new String[0]);
+        int firstTextRank = 1 + distinctCount;
+        int numbersEnd = distinctCount;
+
+        IntStream indices = IntStream.range(0, count);
+        (count >= PARALLEL_THRESHOLD ? indices.parallel() : indices).forEach(i -> {
+            if (blank.test(i)) {
+                result[i] = 0;
+            } else if (number.test(i)) {
+                result[i] = 1 + Arrays.binarySearch(distinct, 0, numbersEnd, key(value.applyAsDouble(i)));
+            } else {
+                result[i] = firstTextRank + Arrays.binarySearch(sortedTexts, text.apply(i));
+            }
+        });
+        return firstTextRank + sortedTexts.length;
+    }
+
+    private static double key(double value) {
+        return Math.abs(value) < EPSILON ? 0.0 : value;
+    }
+}
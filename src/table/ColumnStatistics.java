@@ -0,0 +1,289 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Summary statistics of every column of a dataset: range, mean, standard deviation, number of
+ * blank, NaN and non-numeric cells and number of distinct values.
+ *
+ * A column is scanned the first time one of its statistics is asked for. From then on it is
+ * kept up to date from the table model events, so a cell edit costs O(1) amortized instead of
+ * a rescan. Removed values are read from {@link PreviousValuesEvent}s; any other UPDATE or
+ * DELETE event simply marks the affected columns for a rescan on their next query.
+ *
+ * Statistics are kept in terms of the stored values and mapped through the column transform
+ * of the dataset when queried, so changing a transform does not invalidate them.
+ *
+ * The statistics of a {@link ReorderableTableModel} are obtained through {@link #of(TableModel)}
+ * and are updated by the model before its other listeners are notified.
+ */
+public class ColumnStatistics implements TableModelListener {
+    private final Supplier<ColumnarDataset> source;
+    private Summary[] summaries = new Summary[0];
+
+    /**
+     * Running statistics of a single column.
+     */
+    private static final class Summary {
+        int numbers; // Finite numbers
+        int positiveInfinities;
+        int negativeInfinities;
+        int nans;
+        int blanks;
+        int texts; // Non-numeric text
+        double mean;
+        double m2; // Sum of squared deviations from the mean (Welford)
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        boolean extremesStale;
+        // Occurrences of each non-blank value, keyed by Double for numbers and by String for text
+        final Map<Object, int[]> counts = new HashMap<>();
+
+        /**
+         * Adds (delta = 1) or removes (delta = -1) the contribution of one cell.
+         */
+        void update(ColumnarDataset data, int row, int col, int delta) {
+            if (data.isMissing(row, col)) {
+                blanks += delta;
+                return;
+            }
+            if (!data.isNumber(row, col)) {
+                texts += delta;
+                count(data.getText(row, col), delta);
+                return;
+            }
+
+            double value = data.getStoredDouble(row, col);
+            if (Double.isNaN(value)) {
+                nans += delta;
+            } else if (value == Double.POSITIVE_INFINITY) {
+                positiveInfinities += delta;
+            } else if (value == Double.NEGATIVE_INFINITY) {
+                negativeInfinities += delta;
+            } else if (delta > 0) {
+                numbers++;
+                double deviation = value - mean;
+                mean += deviation / numbers;
+                m2 += deviation * (value - mean);
+            } else if (numbers == 1) {
+                numbers = 0;
+                mean = 0;
+                m2 = 0;
+            } else {
+                double previousMean = (mean * numbers - value) / (numbers - 1);
+                m2 = Math.max(0, m2 - (value - previousMean) * (value - mean));
+                mean = previousMean;
+                numbers--;
+            }
+
+            // -0.0 and 0.0 display the same
+            boolean removed = count(value == 0 ? 0.0 : value, delta);
+            if (delta > 0) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            } else if (removed && (value == min || value == max)) {
+                extremesStale = true;
+            }
+        }
+
+        /**
+         * Updates the occurrence count of a value and returns true when its last occurrence was removed.
+         */
+        private boolean count(Object key, int delta) {
+            int[] count = counts.get(key);
+            if (delta > 0) {
+                if (count == null) {
+                    counts.put(key, new int[] {1});
+                } else {
+                    count[0]++;
+                }
+                return false;
+            }
+            if (count != null && --count[0] == 0) {
+                counts.remove(key);
+                return true;
+            }
+            return false;
+        }
+
+        void refreshExtremes() {
+            if (!extremesStale) {
+                return;
+            }
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            for (Object key : counts.keySet()) {
+                if (key instanceof Double value && !value.isNaN()) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            extremesStale = false;
+        }
+    }
+
+    /**
+     * Creates statistics that follow the dataset behind a table model.
+     */
+    public ColumnStatistics(ReorderableTableModel model) {
+        this.source = model::getDataset;
+    }
+
+    /**
+     * Creates statistics of a dataset that is not changed afterwards.
+     */
+    public ColumnStatistics(ColumnarDataset dataset) {
+        this.source = () -> dataset;
+    }
+
+    /**
+     * Returns the live statistics of a model backed by a dataset, or statistics of a copy of
+     * any other model.
+     */
+    public static ColumnStatistics of(TableModel model) {
+        if (model instanceof ReorderableTableModel reorderableModel) {
+            return reorderableModel.getStatistics();
+        }
+        return new ColumnStatistics(ColumnarDataset.fromTableModel(model));
+    }
+
+    @Override
+    public synchronized void tableChanged(TableModelEvent e) {
+        ColumnarDataset data = source.get();
+        if (e.getFirstRow() == TableModelEvent.HEADER_ROW || summaries.length != data.getColumnCount()) {
+            summaries = new Summary[data.getColumnCount()];
+            return;
+        }
+
+        int firstColumn = e.getColumn() == TableModelEvent.ALL_COLUMNS ? 0 : e.getColumn();
+        int lastColumn = e.getColumn() == TableModelEvent.ALL_COLUMNS ? summaries.length - 1 : e.getColumn();
+        int lastRow = Math.min(e.getLastRow(), data.getRowCount() - 1);
+        for (int col = firstColumn; col <= lastColumn; col++) {
+            Summary summary = summaries[col];
+            if (summary == null) {
+                continue;
+            }
+            if (e.getType() != TableModelEvent.INSERT) {
+                if (!(e instanceof PreviousValuesEvent previous)) {
+                    summaries[col] = null;
+                    continue;
+                }
+                ColumnarDataset previousValues = previous.getPreviousValues();
+                int previousColumn = previous.getPreviousColumn(col);
+                for (int row = 0; row < previousValues.getRowCount(); row++) {
+                    summary.update(previousValues, row, previousColumn, -1);
+                }
+            }
+            if (e.getType() != TableModelEvent.DELETE) {
+                for (int row = e.getFirstRow(); row <= lastRow; row++) {
+                    summary.update(data, row, col, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest number in the column, or NaN when it holds no numbers.
+     */
+    public synchronized double getMin(int col) {
+        Summary summary = summary(col);
+        summary.refreshExtremes();
+        if (summary.min > summary.max) {
+            return Double.NaN;
+        }
+        ColumnarDataset data = source.get();
+        return data.getScale(col) < 0 ? view(data, col, summary.max) : view(data, col, summary.min);
+    }
+
+    /**
+     * Returns the largest number in the column, or NaN when it holds no numbers.
+     */
+    public synchronized double getMax(int col) {
+        Summary summary = summary(col);
+        summary.refreshExtremes();
+        if (summary.min > summary.max) {
+            return Double.NaN;
+        }
+        ColumnarDataset data = source.get();
+        return data.getScale(col) < 0 ? view(data, col, summary.min) : view(data, col, summary.max);
+    }
+
+    /**
+     * Returns the mean of the numbers in the column, ignoring NaN, or NaN when it holds no numbers.
+     */
+    public synchronized double getMean(int col) {
+        Summary summary = summary(col);
+        if (summary.positiveInfinities > 0 || summary.negativeInfinities > 0) {
+            double infinity = summary.negativeInfinities == 0 ? Double.POSITIVE_INFINITY
+                    : summary.positiveInfinities == 0 ? Double.NEGATIVE_INFINITY : Double.NaN;
+            return view(source.get(), col, infinity);
+        }
+        return summary.numbers == 0 ? Double.NaN : view(source.get(), col, summary.mean);
+    }
+
+    /**
+     * Returns the population standard deviation of the numbers in the column, ignoring NaN.
+     */
+    public synchronized double getStandardDeviation(int col) {
+        Summary summary = summary(col);
+        if (summary.numbers == 0 || summary.positiveInfinities > 0 || summary.negativeInfinities > 0) {
+            return Double.NaN;
+        }
+        return Math.abs(source.get().getScale(col)) * Math.sqrt(summary.m2 / summary.numbers);
+    }
+
+    /**
+     * Returns the number of blank cells.
+     */
+    public synchronized int getBlankCount(int col) {
+        return summary(col).blanks;
+    }
+
+    /**
+     * Returns the number of blank cells and cells holding NaN.
+     */
+    public synchronized int getMissingCount(int col) {
+        Summary summary = summary(col);
+        return summary.blanks + summary.nans;
+    }
+
+    /**
+     * Returns the number of distinct values among the non-blank cells, NaN included.
+     */
+    public synchronized int getDistinctCount(int col) {
+        return summary(col).counts.size();
+    }
+
+    /**
+     * Returns true when every cell of the column holds a number (NaN included).
+     */
+    public synchronized boolean isNumeric(int col) {
+        Summary summary = summary(col);
+        return summary.blanks == 0 && summary.texts == 0;
+    }
+
+    private static double view(ColumnarDataset data, int col, double stored) {
+        return stored * data.getScale(col) + data.getOffset(col);
+    }
+
+    private Summary summary(int col) {
+        ColumnarDataset data = source.get();
+        if (summaries.length != data.getColumnCount()) {
+            summaries = new Summary[data.getColumnCount()];
+        }
+        Summary summary = summaries[col];
+        if (summary == null) {
+            summary = new Summary();
+            for (int row = 0; row < data.getRowCount(); row++) {
+                summary.update(data, row, col, 1);
+            }
+            summaries[col] = summary;
+        }
+        return summary;
+    }
+}
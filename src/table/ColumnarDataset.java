@@ -0,0 +1,1592 @@
+package src.table;
+
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import javax.swing.table.TableModel;
+
+/**
+ * Column-oriented storage for the tabular data behind the JTable.
+ * Numeric columns are kept as primitive double arrays with a missing-value mask,
+ * text columns (such as the class column) are dictionary encoded as int codes.
+ * Strings are only produced on demand for display through {@link #getText(int, int)}.
+ *
+ * Columns may also be backed by read-only pages of a memory-mapped file (see
+ * {@link #addMappedNumericColumn} and {@link #addMappedTextColumn}). Such columns are only
+ * paged in as they are read, and are copied onto the heap the first time one of their mapped
+ * rows is modified. Rows added later are kept in a heap tail, so appending rows leaves the
+ * pages where they are.
+ *
+ * A numeric column can also be shown through an affine transform (see {@link #setTransform}),
+ * which is how normalization is applied without rewriting the stored values.
+ *
+ * Rows are addressed in table order through a permutation index over the stored rows, so moving,
+ * inserting and removing rows (see {@link #permuteRows}, {@link #insertRow}, {@link #removeRows})
+ * only edits one int array instead of shifting every column. Stored rows that are no longer in
+ * the table are dropped once they outnumber the rows of the table.
+ *
+ * Derived columns (see {@link #addDerivedColumn}) are defined by an expression over other columns
+ * and only hold a cache of their results, evaluated a chunk of rows at a time as they are read.
+ *
+ * Cells are stored in chunks (see {@link ChunkedDoubles}) that copies of the dataset share (see
+ * {@link #copy}): each side duplicates a chunk only when it first writes to it, so an edit after
+ * a copy only costs the chunks of the columns and rows it changes.
+ */
+public class ColumnarDataset {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Rows per page of a memory-mapped column: row r lives at index (r & PAGE_MASK) of page (r >>> PAGE_SHIFT).
+     */
+    public static final int PAGE_SHIFT = 27;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    private final List<Column> columns = new ArrayList<>();
+    private int rowCount;
+    private int capacity = INITIAL_CAPACITY;
+    // Stored row of each table row, null while they are stored in table order
+    private int[] rowOrder;
+    private boolean rowOrderShared;
+    // Rows in use in the column arrays, equal to rowCount while rowOrder is null
+    private int storedRows;
+    private int compactions; // Times the stored rows were rewritten in table order
+
+    /**
+     * Storage for a single column. Exactly one of the numeric or text representations is active.
+     */
+    private static final class Column {
+        boolean text;
+        boolean shared; // The missing mask, tokens and dictionary are also used by a copy of the dataset
+
+        // Numeric representation
+        ChunkedDoubles values;     // All values, or while there are valuePages the chunks written since mapping
+        DoubleBuffer[] valuePages; // Mapped values, used for the rows before mappedRows whose chunk is not on the heap
+        int mappedRows;            // Rows held by valuePages or codePages
+        BitSet missing = new BitSet();
+        TreeMap<Integer, String> overrides; // Sparse non-numeric tokens in a numeric column
+        double scale = 1; // Values are shown as value * scale + offset, see setTransform
+        double offset = 0;
+
+        // Text representation
+        ChunkedInts codes;
+        IntBuffer[] codePages; // Mapped codes, used like valuePages
+        List<String> dictionary;
+        Map<String, Integer> codeOf;
+        double[] dictionaryValues;
+
+        // Derived representation: values and missing cache the result of the derivation
+        Derivation derivation;
+        BitSet evaluated; // Chunks of values and missing that hold the current result
+        volatile boolean fullyEvaluated;
+        List<Column> dependents; // Derived columns computed from this one, null when there are none
+
+        Column(int capacity, boolean text) {
+            if (text) {
+                initText(capacity);
+            } else {
+                this.values = new ChunkedDoubles(capacity, Double.NaN);
+            }
+        }
+
+        void initText(int capacity) {
+            this.text = true;
+            this.codes = new ChunkedInts(capacity, -1);
+            this.dictionary = new ArrayList<>();
+            this.codeOf = new HashMap<>();
+            this.dictionaryValues = new double[INITIAL_CAPACITY];
+            this.codePages = null;
+            this.shared = false;
+            this.values = null;
+            this.valuePages = null;
+            this.overrides = null;
+            this.scale = 1;
+            this.offset = 0;
+        }
+
+        double value(int row) {
+            if (derivation != null) {
+                evaluate(row);
+            }
+            return valuePages != null && row < mappedRows && !values.isAllocated(row)
+                ? valuePages[row >>> PAGE_SHIFT].get(row & PAGE_MASK) : values.get(row);
+        }
+
+        boolean isMissing(int row) {
+            if (derivation != null && !fullyEvaluated) {
+                // Other threads may be evaluating other chunks, which changes the same BitSet
+                synchronized (this) {
+                    evaluate(row);
+                    return missing.get(row);
+                }
+            }
+            return missing.get(row);
+        }
+
+        /**
+         * Returns the stored number of a cell, or NaN when it is blank or not a number.
+         */
+        double number(int row) {
+            if (text) {
+                int code = code(row);
+                return code < 0 ? Double.NaN : dictionaryValues[code];
+            }
+            if (isMissing(row) || overrides != null && overrides.containsKey(row)) {
+                return Double.NaN;
+            }
+            return value(row);
+        }
+
+        double view(double value) {
+            return value * scale + offset;
+        }
+
+        int code(int row) {
+            return codePages != null && row < mappedRows && !codes.isAllocated(row)
+                ? codePages[row >>> PAGE_SHIFT].get(row & PAGE_MASK) : codes.get(row);
+        }
+
+        /**
+         * Creates the heap tail of a mapped column, for the rows after its pages.
+         */
+        void initTail(int capacity) {
+            mappedRows = 0;
+            for (Buffer page : valuePages != null ? valuePages : codePages) {
+                mappedRows += page.limit();
+            }
+            mappedRows = Math.min(mappedRows, capacity);
+            if (text) {
+                codes = ChunkedInts.unallocated(capacity, -1);
+                loadPages(mappedRows, capacity);
+                codes.fill(mappedRows, capacity, -1);
+            } else {
+                values = ChunkedDoubles.unallocated(capacity, Double.NaN);
+                loadPages(mappedRows, capacity);
+                values.fill(mappedRows, capacity, Double.NaN);
+            }
+        }
+
+        /**
+         * Copies the mapped chunks that share a chunk with stored rows [from, to) onto the heap,
+         * so that those rows can be written. The other chunks stay mapped.
+         */
+        void loadPages(int from, int to) {
+            if (valuePages == null && codePages == null || from >= to) {
+                return;
+            }
+            int end = Math.min(to, mappedRows);
+            for (int start = from & ~ChunkedArray.CHUNK_MASK; start < end; start += ChunkedArray.CHUNK_SIZE) {
+                int page = start >>> PAGE_SHIFT;
+                int offset = start & PAGE_MASK;
+                int length = Math.min(ChunkedArray.CHUNK_SIZE, mappedRows - start);
+                if (text && !codes.isAllocated(start)) {
+                    codes.load(codePages[page].slice(offset, length), start);
+                } else if (!text && !values.isAllocated(start)) {
+                    values.load(valuePages[page].slice(offset, length), start);
+                }
+            }
+        }
+
+        /**
+         * Prepares the column for writes to stored rows [fromRow, toRow). Only the mapped chunks
+         * holding those rows are copied onto the heap, and the missing mask, tokens and
+         * dictionary of a column shared with a copy of the dataset are copied.
+         */
+        void materialize(int fromRow, int toRow) {
+            if (derivation != null) {
+                detach();
+            }
+            loadPages(fromRow, toRow);
+            if (shared) {
+                missing = (BitSet) missing.clone();
+                overrides = overrides == null ? null : new TreeMap<>(overrides);
+                if (dictionary != null) {
+                    dictionary = new ArrayList<>(dictionary);
+                    codeOf = new HashMap<>(codeOf);
+                    dictionaryValues = dictionaryValues.clone();
+                }
+                shared = false;
+            }
+            changed();
+        }
+
+        /**
+         * Drops the cached results of the columns derived from this one, which is about to change.
+         */
+        void changed() {
+            if (dependents != null) {
+                for (Column dependent : dependents) {
+                    dependent.invalidate();
+                }
+            }
+        }
+
+        synchronized void invalidate() {
+            if (derivation != null) {
+                evaluated.clear();
+                fullyEvaluated = false;
+            }
+            changed();
+        }
+
+        private void evaluate(int row) {
+            if (!fullyEvaluated) {
+                evaluateChunk(row >>> ChunkedDoubles.CHUNK_SHIFT);
+            }
+        }
+
+        void evaluateAll() {
+            if (derivation != null && !fullyEvaluated) {
+                for (int chunk = 0; chunk << ChunkedDoubles.CHUNK_SHIFT < values.capacity(); chunk++) {
+                    evaluateChunk(chunk);
+                }
+            }
+        }
+
+        /**
+         * Computes the derived values of one chunk of stored rows: the sources are gathered into
+         * one array each and the expression runs over the whole batch.
+         */
+        private synchronized void evaluateChunk(int chunk) {
+            if (derivation == null || evaluated.get(chunk)) {
+                return;
+            }
+            int from = chunk << ChunkedDoubles.CHUNK_SHIFT;
+            int length = Math.min(values.capacity() - from, 1 << ChunkedDoubles.CHUNK_SHIFT);
+            Column[] sources = derivation.sources();
+            double[][] inputs = new double[sources.length][length];
+            BitSet blank = new BitSet(length);
+            for (int j = 0; j < sources.length; j++) {
+                Column source = sources[j];
+                double sourceScale = derivation.scales()[j];
+                double sourceOffset = derivation.offsets()[j];
+                for (int i = 0; i < length; i++) {
+                    double number = source.number(from + i);
+                    if (Double.isNaN(number)) {
+                        blank.set(i);
+                    } else {
+                        inputs[j][i] = number * sourceScale + sourceOffset;
+                    }
+                }
+            }
+            double[] result = new double[length];
+            derivation.expression().evaluate(inputs, length, result);
+
+            if (shared) {
+                missing = (BitSet) missing.clone();
+                shared = false;
+            }
+            missing.clear(from, from + length);
+            for (int i = blank.nextSetBit(0); i >= 0; i = blank.nextSetBit(i + 1)) {
+                result[i] = Double.NaN;
+                missing.set(from + i);
+            }
+            values.load(DoubleBuffer.wrap(result), from);
+            evaluated.set(chunk);
+            if (evaluated.cardinality() << ChunkedDoubles.CHUNK_SHIFT >= values.capacity()) {
+                fullyEvaluated = true;
+            }
+        }
+
+        /**
+         * Keeps the current result of a derived column as its stored values, so that it no longer
+         * follows its sources.
+         */
+        void detach() {
+            evaluateAll();
+            unregister();
+        }
+
+        /**
+         * Detaches the columns derived from this one and stops following the sources of this
+         * one, before the column is removed.
+         */
+        void release() {
+            unregister();
+            while (dependents != null) {
+                dependents.get(0).detach();
+            }
+        }
+
+        private void unregister() {
+            if (derivation == null) {
+                return;
+            }
+            for (Column source : derivation.sources()) {
+                source.dependents.remove(this);
+                if (source.dependents.isEmpty()) {
+                    source.dependents = null;
+                }
+            }
+            derivation = null;
+            evaluated = null;
+            values.allocate();
+        }
+
+        /**
+         * Drops the cached result after the stored rows were rearranged.
+         */
+        synchronized void resetDerived(int capacity) {
+            values = ChunkedDoubles.unallocated(capacity, Double.NaN);
+            missing = new BitSet();
+            shared = false;
+            evaluated.clear();
+            fullyEvaluated = false;
+        }
+
+        /**
+         * Returns a column that shares this column's storage until either of them modifies it.
+         */
+        Column share() {
+            Column copy = new Column(0, text);
+            copy.values = values == null ? null : values.share();
+            copy.valuePages = valuePages;
+            copy.mappedRows = mappedRows;
+            copy.missing = missing;
+            copy.overrides = overrides;
+            copy.scale = scale;
+            copy.offset = offset;
+            copy.codes = codes == null ? null : codes.share();
+            copy.codePages = codePages;
+            copy.dictionary = dictionary;
+            copy.codeOf = codeOf;
+            copy.dictionaryValues = dictionaryValues;
+            copy.derivation = derivation;
+            copy.evaluated = evaluated == null ? null : (BitSet) evaluated.clone();
+            copy.fullyEvaluated = fullyEvaluated;
+            copy.dependents = dependents;
+            copy.shared = true;
+            shared = true;
+            return copy;
+        }
+
+        /**
+         * Points the derivation and dependents of a shared column at the columns of its own dataset.
+         */
+        void remap(Map<Column, Column> copies) {
+            if (derivation != null) {
+                Column[] sources = new Column[derivation.sources().length];
+                for (int j = 0; j < sources.length; j++) {
+                    sources[j] = copies.get(derivation.sources()[j]);
+                }
+                derivation = new Derivation(sources, derivation.scales(), derivation.offsets(), derivation.expression());
+            }
+            if (dependents != null) {
+                List<Column> copiedDependents = new ArrayList<>(dependents.size());
+                for (Column dependent : dependents) {
+                    copiedDependents.add(copies.get(dependent));
+                }
+                dependents = copiedDependents;
+            }
+        }
+
+        int encode(String value) {
+            Integer code = codeOf.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codeOf.put(value, code);
+                if (code >= dictionaryValues.length) {
+                    dictionaryValues = Arrays.copyOf(dictionaryValues, dictionaryValues.length * 2);
+                }
+                dictionaryValues[code] = parseOrNaN(value);
+            }
+            return code;
+        }
+
+        void grow(int newCapacity) {
+            if (derivation != null) {
+                values.ensureCapacity(newCapacity);
+                invalidate();
+                return;
+            }
+            // The tail of a mapped column only allocates the chunks of rows after the pages
+            if (text) {
+                int oldCapacity = codes.capacity();
+                codes.ensureCapacity(newCapacity);
+                if (codePages != null) {
+                    loadPages(oldCapacity, newCapacity);
+                    codes.fill(Math.max(oldCapacity, mappedRows), newCapacity, -1);
+                }
+            } else {
+                int oldCapacity = values.capacity();
+                values.ensureCapacity(newCapacity);
+                if (valuePages != null) {
+                    loadPages(oldCapacity, newCapacity);
+                    values.fill(Math.max(oldCapacity, mappedRows), newCapacity, Double.NaN);
+                }
+            }
+        }
+    }
+
+    /**
+     * How a derived column is computed: the expression over the stored numbers of the sources,
+     * shown through the transforms the sources had when the column was defined.
+     */
+    private record Derivation(Column[] sources, double[] scales, double[] offsets, ColumnExpression expression) {
+    }
+
+    public ColumnarDataset() {
+    }
+
+    /**
+     * Creates a dataset with the given number of rows and no columns, to be filled with
+     * {@link #addNumericColumn} and {@link #addTextColumn}.
+     */
+    public ColumnarDataset(int rowCount) {
+        this.rowCount = rowCount;
+        this.storedRows = rowCount;
+        this.capacity = Math.max(rowCount, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Appends a numeric column built elsewhere, for example by a file loader.
+     * @param values one value per row, at least getRowCount() long
+     * @param missing rows that are blank, or null when none are
+     * @param tokens non-numeric text keyed by row, or null when there is none
+     */
+    public void addNumericColumn(double[] values, BitSet missing, Map<Integer, String> tokens) {
+        Column column = new Column(0, false);
+        column.values = storedValues(values, rowCount);
+        column.missing = storedMissing(missing);
+        if (tokens != null && !tokens.isEmpty()) {
+            column.overrides = new TreeMap<>();
+            for (Map.Entry<Integer, String> token : tokens.entrySet()) {
+                column.overrides.put(stored(token.getKey()), token.getValue());
+            }
+        }
+        columns.add(column);
+        if (column.overrides != null && column.overrides.size() * 2 > rowCount) {
+            convertToText(column);
+        }
+    }
+
+    /**
+     * Appends a dictionary encoded text column.
+     * @param codes one code per row, -1 for blank cells
+     * @param dictionary the text of each code
+     */
+    public void addTextColumn(int[] codes, List<String> dictionary) {
+        Column column = new Column(0, true);
+        if (rowOrder == null) {
+            column.codes = new ChunkedInts(codes, rowCount, capacity, -1);
+        } else {
+            column.codes = new ChunkedInts(capacity, -1);
+            for (int row = 0; row < rowCount; row++) {
+                column.codes.set(rowOrder[row], codes[row]);
+            }
+        }
+        for (String value : dictionary) {
+            column.encode(value);
+        }
+        columns.add(column);
+    }
+
+    /**
+     * Appends a numeric column backed by mapped pages of {@code 1 << PAGE_SHIFT} values each
+     * (the last page may be shorter). The pages are read in place and must not change.
+     * @param missing rows that are blank, or null when none are
+     * @param tokens non-numeric text keyed by row, or null when there is none
+     */
+    public void addMappedNumericColumn(DoubleBuffer[] pages, BitSet missing, Map<Integer, String> tokens) {
+        compact();
+        Column column = new Column(0, false);
+        column.valuePages = pages;
+        column.initTail(capacity);
+        if (missing != null) {
+            column.missing = missing.get(0, rowCount);
+        }
+        column.missing.set(rowCount, capacity);
+        if (tokens != null && !tokens.isEmpty()) {
+            column.overrides = new TreeMap<>(tokens);
+        }
+        columns.add(column);
+        if (column.overrides != null && column.overrides.size() * 2 > rowCount) {
+            convertToText(column);
+        }
+    }
+
+    /**
+     * Appends a dictionary encoded text column whose codes are backed by mapped pages of
+     * {@code 1 << PAGE_SHIFT} codes each, -1 for blank cells.
+     */
+    public void addMappedTextColumn(IntBuffer[] pages, List<String> dictionary) {
+        compact();
+        Column column = new Column(0, true);
+        column.codePages = pages;
+        column.initTail(capacity);
+        for (String value : dictionary) {
+            column.encode(value);
+        }
+        columns.add(column);
+    }
+
+    /**
+     * Appends a column computed from other columns, which holds no cells of its own: a chunk of
+     * rows is evaluated the first time one of its cells is read, and kept until a source changes.
+     * The sources are read as they are shown now, so a later change of their transform does not
+     * change the result. Writing to the column keeps its current values as ordinary cells.
+     * @param sourceColumns the columns whose values are the inputs of the expression, in order
+     */
+    public void addDerivedColumn(int[] sourceColumns, ColumnExpression expression) {
+        Column column = new Column(0, false);
+        column.values = ChunkedDoubles.unallocated(capacity, Double.NaN);
+        Column[] sources = new Column[sourceColumns.length];
+        double[] scales = new double[sources.length];
+        double[] offsets = new double[sources.length];
+        for (int j = 0; j < sources.length; j++) {
+            sources[j] = columns.get(sourceColumns[j]);
+            scales[j] = sources[j].text ? 1 : sources[j].scale;
+            offsets[j] = sources[j].text ? 0 : sources[j].offset;
+            if (sources[j].dependents == null) {
+                sources[j].dependents = new ArrayList<>();
+            }
+            sources[j].dependents.add(column);
+        }
+        column.derivation = new Derivation(sources, scales, offsets, expression);
+        column.evaluated = new BitSet();
+        columns.add(column);
+    }
+
+    public boolean isDerivedColumn(int col) {
+        return columns.get(col).derivation != null;
+    }
+
+    /**
+     * Returns the derived columns whose values depend on the given column, directly or through
+     * other derived columns.
+     */
+    public int[] getDerivedColumns(int col) {
+        if (columns.get(col).dependents == null) {
+            return new int[0];
+        }
+        Set<Column> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Column> pending = new ArrayList<>(List.of(columns.get(col)));
+        while (!pending.isEmpty()) {
+            Column column = pending.remove(pending.size() - 1);
+            if (column.dependents != null) {
+                for (Column dependent : column.dependents) {
+                    if (found.add(dependent)) {
+                        pending.add(dependent);
+                    }
+                }
+            }
+        }
+        return IntStream.range(0, columns.size()).filter(i -> found.contains(columns.get(i))).toArray();
+    }
+
+    /**
+     * Returns true when any column is still backed by a memory-mapped file.
+     */
+    public boolean isMapped() {
+        for (Column column : columns) {
+            if (column.valuePages != null || column.codePages != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an independent copy of this dataset. The copy shares the stored chunks of this
+     * dataset until either side modifies them, and mapped pages are read-only and shared rather
+     * than loaded, so copying does not duplicate any cells.
+     */
+    public ColumnarDataset copy() {
+        ColumnarDataset copy = new ColumnarDataset();
+        copy.rowCount = rowCount;
+        copy.capacity = capacity;
+        copy.storedRows = storedRows;
+        copy.compactions = compactions;
+        copy.rowOrder = rowOrder;
+        copy.rowOrderShared = rowOrder != null;
+        rowOrderShared = rowOrder != null;
+        Map<Column, Column> copies = new IdentityHashMap<>();
+        for (Column column : columns) {
+            Column shared = column.share();
+            copy.columns.add(shared);
+            copies.put(column, shared);
+        }
+        for (Column column : copy.columns) {
+            column.remap(copies);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies rows [fromRow, toRow) of one column, or of every column when col is negative,
+     * into a new dataset whose row 0 is fromRow.
+     */
+    public ColumnarDataset slice(int fromRow, int toRow, int col) {
+        return copyRows(toRow - fromRow, i -> fromRow + i, col);
+    }
+
+    /**
+     * Copies the given rows of one column, or of every column when col is negative, into a new
+     * dataset whose row i is rows[i].
+     */
+    public ColumnarDataset select(int[] rows, int col) {
+        return copyRows(rows.length, i -> rows[i], col);
+    }
+
+    private ColumnarDataset copyRows(int count, IntUnaryOperator rowAt, int col) {
+        ColumnarDataset part = new ColumnarDataset(count);
+        for (Column column : col < 0 ? columns : List.of(columns.get(col))) {
+            Column copy = new Column(part.capacity, column.text);
+            if (!column.text) {
+                copy.scale = column.scale;
+                copy.offset = column.offset;
+            }
+            for (int i = 0; i < count; i++) {
+                copyCell(column, stored(rowAt.applyAsInt(i)), copy, i);
+            }
+            part.columns.add(copy);
+        }
+        return part;
+    }
+
+    /**
+     * Copies a stored cell, which may belong to another dataset with its own dictionary.
+     */
+    private static void copyCell(Column from, int fromRow, Column to, int toRow) {
+        if (from.text) {
+            int code = from.code(fromRow);
+            to.codes.set(toRow, code < 0 ? -1 : to.dictionary == from.dictionary ? code : to.encode(from.dictionary.get(code)));
+            return;
+        }
+        to.values.set(toRow, from.value(fromRow));
+        to.missing.set(toRow, from.isMissing(fromRow));
+        String token = from.overrides == null ? null : from.overrides.get(fromRow);
+        if (token != null) {
+            if (to.overrides == null) {
+                to.overrides = new TreeMap<>();
+            }
+            to.overrides.put(toRow, token);
+        }
+    }
+
+    /**
+     * Builds a columnar copy of an arbitrary table model.
+     */
+    public static ColumnarDataset fromTableModel(TableModel model) {
+        ColumnarDataset dataset = new ColumnarDataset();
+        for (int col = 0; col < model.getColumnCount(); col++) {
+            dataset.addColumn(false);
+        }
+        dataset.setRowCount(model.getRowCount());
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int col = 0; col < model.getColumnCount(); col++) {
+                dataset.setValue(row, col, model.getValueAt(row, col));
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Returns the dataset backing the given model, building a columnar copy when the model
+     * is not backed by one.
+     */
+    public static ColumnarDataset of(TableModel model) {
+        if (model instanceof ReorderableTableModel reorderableModel) {
+            return reorderableModel.getDataset();
+        }
+        return fromTableModel(model);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns where the cells of a row are stored. A row keeps its stored row while rows are
+     * inserted, moved or removed around it, until the stored rows are compacted.
+     */
+    public int getStoredRow(int row) {
+        return stored(row);
+    }
+
+    /**
+     * Returns the number of stored rows, including those of removed rows not yet compacted.
+     */
+    public int getStoredRowCount() {
+        return storedRows;
+    }
+
+    /**
+     * Returns a count that changes whenever the stored rows are compacted, after which
+     * getStoredRow gives new answers.
+     */
+    public int getCompactionCount() {
+        return compactions;
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    public boolean isTextColumn(int col) {
+        return columns.get(col).text;
+    }
+
+    /**
+     * Appends an empty column (all cells missing).
+     * @param text true to create a dictionary encoded text column
+     */
+    public void addColumn(boolean text) {
+        columns.add(new Column(capacity, text));
+    }
+
+    /**
+     * Removes a column. Columns derived from it keep their current values as stored values.
+     */
+    public void removeColumn(int col) {
+        columns.remove(col).release();
+    }
+
+    public void setColumnCount(int count) {
+        while (columns.size() > count) {
+            removeColumn(columns.size() - 1);
+        }
+        while (columns.size() < count) {
+            addColumn(false);
+        }
+    }
+
+    public void clear() {
+        columns.clear();
+        rowCount = 0;
+        rowOrder = null;
+        rowOrderShared = false;
+        storedRows = 0;
+        capacity = INITIAL_CAPACITY;
+    }
+
+    /**
+     * Grows or truncates the number of rows. New rows are missing in every column.
+     */
+    public void setRowCount(int count) {
+        if (rowOrder == null) {
+            ensureCapacity(count);
+            if (count < rowCount) {
+                for (Column column : columns) {
+                    if (column.derivation == null) {
+                        clearRange(column, count, rowCount);
+                    }
+                }
+            }
+            rowCount = count;
+            storedRows = count;
+            return;
+        }
+        if (count < rowCount) {
+            rowCount = count;
+            compactIfSparse();
+            return;
+        }
+        // New rows are appended to the stored rows
+        ensureCapacity(storedRows + count - rowCount);
+        ensureRowOrder();
+        for (int row = rowCount; row < count; row++) {
+            rowOrder[row] = storedRows++;
+        }
+        rowCount = count;
+    }
+
+    public void insertRow(int row, Object[] rowData) {
+        appendStoredRow(row);
+        for (int col = 0; col < columns.size(); col++) {
+            // Derived cells follow from the others
+            if (columns.get(col).derivation == null) {
+                setValue(row, col, rowData != null && col < rowData.length ? rowData[col] : null);
+            }
+        }
+    }
+
+    /**
+     * Inserts a copy of sourceRow at the given row. The source is the row at that index before
+     * the insertion.
+     */
+    public void insertCopy(int row, int sourceRow) {
+        int source = stored(sourceRow);
+        appendStoredRow(row);
+        int target = stored(row);
+        for (Column column : columns) {
+            if (column.derivation == null) {
+                copyCell(column, source, column, target);
+            }
+        }
+    }
+
+    public void removeRow(int row) {
+        removeRows(new int[] {row});
+    }
+
+    /**
+     * Removes rows, given in ascending order, by dropping them from the row order. Their stored
+     * cells are left in place until the columns are compacted.
+     */
+    public void removeRows(int[] rows) {
+        if (rows.length == 0) {
+            return;
+        }
+        if (rows[0] == rowCount - rows.length) {
+            // Trailing rows: nothing else moves
+            setRowCount(rows[0]);
+            return;
+        }
+        ensureRowOrder();
+        int kept = rows[0];
+        for (int row = rows[0], next = 0; row < rowCount; row++) {
+            if (next < rows.length && rows[next] == row) {
+                next++;
+            } else {
+                rowOrder[kept++] = rowOrder[row];
+            }
+        }
+        rowCount = kept;
+        compactIfSparse();
+    }
+
+    /**
+     * Reorders all rows so that row i of the result is row order[i] of the current data.
+     * Only the row order changes; the stored cells stay where they are.
+     */
+    public void permuteRows(int[] order) {
+        int[] newOrder = new int[Math.max(capacity, order.length)];
+        for (int i = 0; i < order.length; i++) {
+            newOrder[i] = stored(order[i]);
+        }
+        rowOrder = newOrder;
+        rowOrderShared = false;
+    }
+
+    /**
+     * Rewrites every column in table order and drops the row order index.
+     */
+    private void compact() {
+        if (rowOrder == null) {
+            return;
+        }
+        for (Column column : columns) {
+            if (column.derivation != null) {
+                // Derived values are evaluated again in the new row layout
+                column.resetDerived(capacity);
+                continue;
+            }
+            Column compacted = new Column(capacity, column.text);
+            if (column.text) {
+                compacted.dictionary = column.dictionary;
+                compacted.codeOf = column.codeOf;
+                compacted.dictionaryValues = column.dictionaryValues;
+            }
+            for (int row = 0; row < rowCount; row++) {
+                copyCell(column, rowOrder[row], compacted, row);
+            }
+            if (column.text) {
+                column.codes = compacted.codes;
+                column.codePages = null;
+            } else {
+                compacted.missing.set(rowCount, capacity);
+                column.values = compacted.values;
+                column.valuePages = null;
+                column.missing = compacted.missing;
+                column.overrides = compacted.overrides;
+            }
+        }
+        rowOrder = null;
+        rowOrderShared = false;
+        storedRows = rowCount;
+        compactions++;
+    }
+
+    private void compactIfSparse() {
+        if (rowOrder != null && storedRows - rowCount > Math.max(rowCount, INITIAL_CAPACITY)) {
+            compact();
+        }
+    }
+
+    /**
+     * Creates the row order, or copies one shared with a copy of the dataset, before it is modified.
+     */
+    private void ensureRowOrder() {
+        if (rowOrder == null) {
+            rowOrder = new int[capacity];
+            for (int row = 0; row < rowCount; row++) {
+                rowOrder[row] = row;
+            }
+        } else if (rowOrderShared) {
+            rowOrder = rowOrder.clone();
+        }
+        rowOrderShared = false;
+    }
+
+    /**
+     * Adds a blank stored row and places it at the given table row.
+     */
+    private void appendStoredRow(int row) {
+        if (row < rowCount || rowOrder != null) {
+            ensureRowOrder();
+        }
+        ensureCapacity(storedRows + 1);
+        if (rowOrder != null) {
+            System.arraycopy(rowOrder, row, rowOrder, row + 1, rowCount - row);
+            rowOrder[row] = storedRows;
+        }
+        storedRows++;
+        rowCount++;
+    }
+
+    private int stored(int row) {
+        return rowOrder == null ? row : rowOrder[row];
+    }
+
+    /**
+     * Places the first length values, given in table order, at their stored rows. A new column
+     * then matches the layout of the others, which are left as they are.
+     */
+    private ChunkedDoubles storedValues(double[] values, int length) {
+        if (rowOrder == null) {
+            return new ChunkedDoubles(values, length, capacity, Double.NaN);
+        }
+        ChunkedDoubles result = new ChunkedDoubles(capacity, Double.NaN);
+        for (int row = 0; row < length; row++) {
+            result.set(rowOrder[row], values[row]);
+        }
+        return result;
+    }
+
+    /**
+     * Places blank rows given in table order at their stored rows. Stored rows that are not in
+     * the table are blank, like the rows past the end.
+     */
+    private BitSet storedMissing(BitSet missing) {
+        BitSet result;
+        if (rowOrder == null) {
+            result = missing == null ? new BitSet(capacity) : missing.get(0, rowCount);
+            result.set(rowCount, capacity);
+        } else {
+            result = new BitSet(capacity);
+            result.set(0, capacity);
+            for (int row = 0; row < rowCount; row++) {
+                if (missing == null || !missing.get(row)) {
+                    result.clear(rowOrder[row]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a cell value. Numbers and numeric strings are kept as doubles, null and blank
+     * strings mark the cell as missing, anything else is kept as text.
+     */
+    public void setValue(int row, int col, Object value) {
+        Column column = columns.get(col);
+        row = stored(row);
+        column.materialize(row, row + 1);
+        if (column.text) {
+            column.codes.set(row, isBlank(value) ? -1 : column.encode(toText(value)));
+            return;
+        }
+
+        if (column.overrides != null) {
+            column.overrides.remove(row);
+            if (column.overrides.isEmpty()) {
+                column.overrides = null;
+            }
+        }
+
+        if (value instanceof Number number) {
+            column.values.set(row, toStored(column, number.doubleValue()));
+            column.missing.clear(row);
+        } else if (isBlank(value)) {
+            column.values.set(row, Double.NaN);
+            column.missing.set(row);
+        } else {
+            String token = value.toString().trim();
+            double parsed = parseOrNaN(token);
+            if (!Double.isNaN(parsed) || token.equals("NaN")) {
+                column.values.set(row, toStored(column, parsed));
+                column.missing.clear(row);
+            } else if (isEmptyColumn(column, row)) {
+                // A column that starts out with text is a text column
+                convertToText(column);
+                column.codes.set(row, column.encode(token));
+            } else {
+                column.values.set(row, Double.NaN);
+                column.missing.clear(row);
+                if (column.overrides == null) {
+                    column.overrides = new TreeMap<>();
+                }
+                column.overrides.put(row, token);
+                if (column.overrides.size() * 2 > rowCount) {
+                    convertToText(column);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the numeric value of a cell, or NaN when the cell is missing or not a number.
+     */
+    public double getDouble(int row, int col) {
+        Column column = columns.get(col);
+        if (column.text) {
+            int code = column.code(stored(row));
+            return code < 0 ? Double.NaN : column.dictionaryValues[code];
+        }
+        return column.view(column.value(stored(row)));
+    }
+
+    /**
+     * Returns the stored value of a cell, before the column transform is applied.
+     */
+    double getStoredDouble(int row, int col) {
+        Column column = columns.get(col);
+        return column.text ? getDouble(row, col) : column.value(stored(row));
+    }
+
+    /**
+     * Returns true when the cell holds a number (NaN included), mirroring a successful
+     * Double.parseDouble of its text.
+     */
+    public boolean isNumber(int row, int col) {
+        Column column = columns.get(col);
+        row = stored(row);
+        if (column.text) {
+            int code = column.code(row);
+            return code >= 0 && (!Double.isNaN(column.dictionaryValues[code])
+                    || column.dictionary.get(code).equals("NaN"));
+        }
+        return !column.isMissing(row) && (column.overrides == null || !column.overrides.containsKey(row));
+    }
+
+    public boolean isMissing(int row, int col) {
+        Column column = columns.get(col);
+        return column.text ? column.code(stored(row)) < 0 : column.isMissing(stored(row));
+    }
+
+    /**
+     * Returns the blank rows of a numeric column.
+     */
+    public BitSet getMissing(int col) {
+        Column column = columns.get(col);
+        column.evaluateAll();
+        if (column.text || rowOrder == null) {
+            return column.text ? new BitSet() : column.missing.get(0, rowCount);
+        }
+        BitSet missing = new BitSet(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            missing.set(row, column.missing.get(rowOrder[row]));
+        }
+        return missing;
+    }
+
+    /**
+     * Returns the non-numeric text of a numeric column, keyed by row.
+     */
+    public Map<Integer, String> getTokens(int col) {
+        Column column = columns.get(col);
+        if (column.text || column.overrides == null) {
+            return Map.of();
+        }
+        if (rowOrder == null) {
+            return new TreeMap<>(column.overrides);
+        }
+        TreeMap<Integer, String> tokens = new TreeMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            String token = column.overrides.get(rowOrder[row]);
+            if (token != null) {
+                tokens.put(row, token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the dictionary codes of a text column, -1 for blank cells.
+     */
+    public int[] getCodes(int col) {
+        Column column = columns.get(col);
+        if (column.codePages == null && rowOrder == null) {
+            return column.codes.toArray(rowCount);
+        }
+        int[] codes = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            codes[row] = column.code(stored(row));
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the text of each dictionary code of a text column.
+     */
+    public List<String> getDictionary(int col) {
+        return new ArrayList<>(columns.get(col).dictionary);
+    }
+
+    /**
+     * Returns true when every cell of the column holds a number.
+     */
+    public boolean isNumericColumn(int col) {
+        Column column = columns.get(col);
+        column.evaluateAll();
+        if (!column.text && rowOrder == null) {
+            int firstMissing = column.missing.nextSetBit(0);
+            return column.overrides == null && (firstMissing < 0 || firstMissing >= rowCount);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (!isNumber(row, col)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the numeric values of a column into a new array of length getRowCount().
+     */
+    public double[] getColumn(int col) {
+        Column column = columns.get(col);
+        column.evaluateAll();
+        if (!column.text && column.valuePages == null && rowOrder == null && !hasTransform(col)) {
+            return column.values.toArray(rowCount);
+        }
+        double[] result = new double[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            result[row] = getDouble(row, col);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the display text of a cell, formatted on demand.
+     */
+    public String getText(int row, int col) {
+        Column column = columns.get(col);
+        row = stored(row);
+        if (column.text) {
+            int code = column.code(row);
+            return code < 0 ? "" : column.dictionary.get(code);
+        }
+        if (column.isMissing(row)) {
+            return "";
+        }
+        if (column.overrides != null) {
+            String token = column.overrides.get(row);
+            if (token != null) {
+                return token;
+            }
+        }
+        return formatNumber(column.view(column.value(row)));
+    }
+
+    /**
+     * Appends the display text of a cell, as returned by {@link #getText}, without creating
+     * a string for numeric cells.
+     */
+    public void appendText(int row, int col, StringBuilder out) {
+        Column column = columns.get(col);
+        int storedRow = stored(row);
+        if (column.text || column.isMissing(storedRow) || column.overrides != null) {
+            out.append(getText(row, col));
+        } else {
+            appendNumber(column.view(column.value(storedRow)), out);
+        }
+    }
+
+    /**
+     * Dictionary encodes a column, typically the class column. Missing cells are encoded as "",
+     * matching their display text.
+     * @param col column to encode
+     * @param dictionary receives the distinct values in order of first appearance, indexed by code
+     * @return one code per row
+     */
+    public int[] encodeColumn(int col, List<String> dictionary) {
+        Column column = columns.get(col);
+        int[] codes = new int[rowCount];
+        if (column.text) {
+            int[] remap = new int[column.dictionary.size()];
+            Arrays.fill(remap, -1);
+            int blankCode = -1;
+            for (int row = 0; row < rowCount; row++) {
+                int code = column.code(stored(row));
+                if (code < 0) {
+                    if (blankCode < 0) {
+                        blankCode = dictionary.size();
+                        dictionary.add("");
+                    }
+                    codes[row] = blankCode;
+                    continue;
+                }
+                if (remap[code] < 0) {
+                    remap[code] = dictionary.size();
+                    dictionary.add(column.dictionary.get(code));
+                }
+                codes[row] = remap[code];
+            }
+            return codes;
+        }
+        Map<String, Integer> codeOf = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            String value = getText(row, col);
+            Integer code = codeOf.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codeOf.put(value, code);
+            }
+            codes[row] = code;
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the rows holding a number in the given column, ordered by ascending value.
+     * Rows with equal values keep their table order.
+     */
+    public int[] sortedNumericRows(int col) {
+        int count = 0;
+        int[] rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (isNumber(row, col)) {
+                rows[count++] = row;
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        sortByValue(rows, getColumn(col));
+        return rows;
+    }
+
+    /**
+     * Stable sort of row indices by their value, using the ordering of Double.compare.
+     */
+    public static void sortByValue(int[] rows, double[] values) {
+        if (rows.length < 2) {
+            return;
+        }
+        int[] buffer = new int[rows.length];
+        int[] source = rows;
+        int[] target = buffer;
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int lo = 0; lo < rows.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, rows.length);
+                int hi = Math.min(lo + 2 * width, rows.length);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    target[k++] = Double.compare(values[source[j]], values[source[i]]) < 0 ? source[j++] : source[i++];
+                }
+                while (i < mid) {
+                    target[k++] = source[i++];
+                }
+                while (j < hi) {
+                    target[k++] = source[j++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != rows) {
+            System.arraycopy(source, 0, rows, 0, rows.length);
+        }
+    }
+
+    /**
+     * Converts a column to dictionary encoded text, keeping the displayed values.
+     */
+    public void setTextColumn(int col) {
+        Column column = columns.get(col);
+        if (!column.text) {
+            convertToText(column);
+        }
+    }
+
+    /**
+     * Replaces the contents of a column with numeric values and removes its transform.
+     * NaN entries are kept as NaN, not missing.
+     */
+    public void setNumericColumn(int col, double[] newValues) {
+        Column column = new Column(0, false);
+        column.values = storedValues(newValues, Math.min(newValues.length, rowCount));
+        columns.set(col, column).release();
+    }
+
+    /**
+     * Replaces the contents of a column with numeric values backed by mapped pages, as
+     * {@link #addMappedNumericColumn} does for a new column, and removes its transform.
+     * NaN entries are kept as NaN, not missing.
+     */
+    public void setMappedNumericColumn(int col, DoubleBuffer[] pages) {
+        compact();
+        Column column = new Column(0, false);
+        column.valuePages = pages;
+        column.initTail(capacity);
+        columns.set(col, column).release();
+    }
+
+    /**
+     * Shows the values of a numeric column as value * scale + offset without changing the
+     * stored values, replacing any previous transform. Values written to the column are mapped
+     * back through the inverse, so the scale must be finite and non-zero. Text columns are
+     * left unchanged.
+     */
+    public void setTransform(int col, double scale, double offset) {
+        if (scale == 0 || !Double.isFinite(scale) || !Double.isFinite(offset)) {
+            throw new IllegalArgumentException("Invalid column transform: " + scale + ", " + offset);
+        }
+        Column column = columns.get(col);
+        if (!column.text) {
+            column.scale = scale;
+            column.offset = offset;
+        }
+    }
+
+    /**
+     * Removes the transform of every column, showing the stored values again.
+     */
+    public void clearTransforms() {
+        for (Column column : columns) {
+            column.scale = 1;
+            column.offset = 0;
+        }
+    }
+
+    public boolean hasTransform(int col) {
+        Column column = columns.get(col);
+        return column.scale != 1 || column.offset != 0;
+    }
+
+    public double getScale(int col) {
+        return columns.get(col).scale;
+    }
+
+    public double getOffset(int col) {
+        return columns.get(col).offset;
+    }
+
+    private static double toStored(Column column, double value) {
+        return (value - column.offset) / column.scale;
+    }
+
+    /**
+     * Formats a number without scientific notation and without trailing zeros.
+     */
+    public static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        double magnitude = Math.abs(value);
+        if (magnitude >= 1e-3 && magnitude < 1e7) {
+            return Double.toString(value);
+        }
+        StringBuilder plain = new StringBuilder(32);
+        appendPlain(Double.toString(value), plain);
+        return plain.toString();
+    }
+
+    /**
+     * Appends a number formatted as by {@link #formatNumber}.
+     */
+    public static void appendNumber(double value, StringBuilder out) {
+        double magnitude = Math.abs(value);
+        if (value == Math.rint(value) && magnitude < 1e15) {
+            out.append((long) value);
+        } else if (magnitude >= 1e-3 && magnitude < 1e7 || Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append(value);
+        } else {
+            appendPlain(Double.toString(value), out);
+        }
+    }
+
+    /**
+     * Rewrites the scientific notation of Double.toString ("d.dddE-n") without exponent and
+     * trailing zeros, as BigDecimal.valueOf(value).stripTrailingZeros().toPlainString() would.
+     */
+    private static void appendPlain(String scientific, StringBuilder out) {
+        int exponentStart = scientific.indexOf('E');
+        if (exponentStart < 0) {
+            out.append(scientific);
+            return;
+        }
+        int start = 0;
+        if (scientific.charAt(0) == '-') {
+            out.append('-');
+            start = 1;
+        }
+        // Significant digits without the decimal point and trailing zeros
+        int end = exponentStart;
+        while (end > start + 2 && scientific.charAt(end - 1) == '0') {
+            end--;
+        }
+        int digitCount = end - start - 1;
+        // Digits before the decimal point of the plain number
+        int point = Integer.parseInt(scientific, exponentStart + 1, scientific.length(), 10) + 1;
+
+        if (point <= 0) {
+            out.append("0.");
+            out.repeat('0', -point);
+        }
+        for (int i = start, digit = 0; i < end; i++) {
+            if (i == start + 1) {
+                continue;
+            }
+            if (digit == point && point > 0) {
+                out.append('.');
+            }
+            out.append(scientific.charAt(i));
+            digit++;
+        }
+        if (point > digitCount) {
+            out.repeat('0', point - digitCount);
+        }
+    }
+
+    private static double parseOrNaN(String token) {
+        if (token.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = token.charAt(0);
+        if (!(first >= '0' && first <= '9') && first != '-' && first != '+' && first != '.'
+                && first != 'N' && first != 'I') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isBlank(Object value) {
+        return value == null || value.toString().trim().isEmpty();
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return formatNumber(((Number) value).doubleValue());
+        }
+        return value.toString().trim();
+    }
+
+    private boolean isEmptyColumn(Column column, int exceptRow) {
+        int firstPresent = column.missing.nextClearBit(0);
+        if (firstPresent == exceptRow) {
+            firstPresent = column.missing.nextClearBit(exceptRow + 1);
+        }
+        if (firstPresent >= storedRows) {
+            return true;
+        }
+        if (rowOrder == null) {
+            return false;
+        }
+        // Removed rows keep their cells, so only the rows of the table count
+        for (int row = 0; row < rowCount; row++) {
+            if (rowOrder[row] != exceptRow && !column.missing.get(rowOrder[row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void convertToText(Column column) {
+        if (column.derivation != null) {
+            column.detach();
+        }
+        column.changed();
+        String[] texts = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            int stored = stored(row);
+            if (column.missing.get(stored)) {
+                continue;
+            }
+            String token = column.overrides == null ? null : column.overrides.get(stored);
+            texts[row] = token != null ? token : formatNumber(column.view(column.value(stored)));
+        }
+        column.initText(capacity);
+        for (int row = 0; row < rowCount; row++) {
+            if (texts[row] != null) {
+                column.codes.set(stored(row), column.encode(texts[row]));
+            }
+        }
+    }
+
+    private void clearRange(Column column, int from, int to) {
+        if ((column.valuePages != null || column.codePages != null) && from < column.mappedRows) {
+            // The cleared rows move to the heap tail, where they are written blank, rather than
+            // loading the pages
+            to = Math.max(to, column.mappedRows);
+            column.mappedRows = from;
+        }
+        column.materialize(from, to);
+        if (column.text) {
+            column.codes.fill(from, to, -1);
+        } else {
+            column.values.fill(from, to, Double.NaN);
+            column.missing.set(from, to);
+            if (column.overrides != null) {
+                column.overrides.subMap(from, true, to, false).clear();
+                if (column.overrides.isEmpty()) {
+                    column.overrides = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes room for the given number of stored rows, marking the new ones missing.
+     */
+    private void ensureCapacity(int required) {
+        if (required > storedRows) {
+            // New rows go after the mapped pages, so those stay mapped
+            for (Column column : columns) {
+                if (column.derivation != null) {
+                    column.invalidate();
+                } else {
+                    column.materialize(storedRows, required);
+                }
+            }
+        }
+        if (required <= capacity) {
+            if (required > storedRows) {
+                markMissing(storedRows, required);
+            }
+            return;
+        }
+        int newCapacity = Math.max(required, capacity + (capacity >> 1));
+        for (Column column : columns) {
+            column.grow(newCapacity);
+        }
+        if (rowOrder != null) {
+            rowOrder = Arrays.copyOf(rowOrder, newCapacity);
+            rowOrderShared = false;
+        }
+        capacity = newCapacity;
+        markMissing(storedRows, required);
+    }
+
+    private void markMissing(int from, int to) {
+        for (Column column : columns) {
+            if (!column.text && column.derivation == null) {
+                column.missing.set(from, to);
+            }
+        }
+    }
+}
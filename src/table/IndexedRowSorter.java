@@ -0,0 +1,224 @@
+package src.table;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Sorts and filters the rows of a {@link ReorderableTableModel} for a JTable.
+ *
+ * Instead of comparing cell strings, rows are ordered by the cached ranks of the model's
+ * {@link ColumnSortIndex}: each sort key is applied as a stable counting sort, from the last
+ * key to the first, so a sort costs O(rows) per key once the ranks of its column are known.
+ * Equal rows keep their model order, as with TableRowSorter. Like TableRowSorter, the rows are
+ * not sorted again when cells are updated, only when rows are inserted, deleted or moved.
+ */
+public class IndexedRowSorter extends RowSorter<ReorderableTableModel> {
+    private static final int MAX_SORT_KEYS = 3;
+
+    private final ReorderableTableModel model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private IntPredicate rowFilter;
+    private int modelRowCount;
+    // Null while every row is shown in model order
+    private int[] viewToModel;
+    private int[] modelToView;
+    // The model's row move count when the rows were last sorted
+    private int sortedRowMoveCount;
+
+    public IndexedRowSorter(ReorderableTableModel model) {
+        this.model = model;
+        this.modelRowCount = model.getRowCount();
+    }
+
+    @Override
+    public ReorderableTableModel getModel() {
+        return model;
+    }
+
+    /**
+     * Shows only the model rows the filter accepts, or every row when it is null.
+     */
+    public void setRowFilter(IntPredicate filter) {
+        rowFilter = filter;
+        sort();
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        checkColumn(column);
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortKey first = keys.isEmpty() ? null : keys.get(0);
+        if (first != null && first.getColumn() == column) {
+            SortOrder order = first.getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            keys.set(0, new SortKey(column, order));
+        } else {
+            keys.removeIf(key -> key.getColumn() == column);
+            keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+            if (keys.size() > MAX_SORT_KEYS) {
+                keys = keys.subList(0, MAX_SORT_KEYS);
+            }
+        }
+        setSortKeys(keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys == null ? Collections.emptyList() : List.copyOf(keys);
+        for (SortKey key : newKeys) {
+            checkColumn(key.getColumn());
+        }
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            fireSortOrderChanged();
+            sort();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= modelRowCount) {
+                throw new IndexOutOfBoundsException("Invalid index");
+            }
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) {
+            if (index < 0 || index >= modelRowCount) {
+                throw new IndexOutOfBoundsException("Invalid index");
+            }
+            return index;
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? modelRowCount : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return modelRowCount;
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        sortKeys = Collections.emptyList();
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        sort();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        sort();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        sort();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        // Moved rows arrive as an update, but leave the mapping pointing at rows that now hold
+        // other cells. Other updates keep the current order until the next sort.
+        if (viewToModel != null && model.getRowMoveCount() != sortedRowMoveCount) {
+            sort();
+        }
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        checkColumn(column);
+    }
+
+    /**
+     * Orders the rows by the current sort keys and filter.
+     */
+    public void sort() {
+        int[] lastViewToModel = viewToModel == null ? new int[0] : viewToModel;
+        modelRowCount = model.getRowCount();
+        sortedRowMoveCount = model.getRowMoveCount();
+        List<SortKey> keys = sortKeys.stream().filter(key -> key.getSortOrder() != SortOrder.UNSORTED).toList();
+
+        if (keys.isEmpty() && rowFilter == null) {
+            viewToModel = null;
+            modelToView = null;
+        } else {
+            int[] order = new int[modelRowCount];
+            int count = 0;
+            for (int row = 0; row < modelRowCount; row++) {
+                if (rowFilter == null || rowFilter.test(row)) {
+                    order[count++] = row;
+                }
+            }
+            order = Arrays.copyOf(order, count);
+
+            ColumnSortIndex index = model.getSortIndex();
+            int[] buffer = new int[count];
+            for (int k = keys.size() - 1; k >= 0; k--) {
+                SortKey key = keys.get(k);
+                int[] ranks = index.getRanks(key.getColumn());
+                int rankCount = index.getRankCount(key.getColumn());
+                countingSort(order, buffer, ranks, rankCount, key.getSortOrder() == SortOrder.DESCENDING);
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+
+            viewToModel = order;
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int view = 0; view < order.length; view++) {
+                modelToView[order[view]] = view;
+            }
+        }
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    /**
+     * Stable sort of rows into target by their rank.
+     */
+    private static void countingSort(int[] rows, int[] target, int[] ranks, int rankCount, boolean descending) {
+        int[] starts = new int[rankCount + 1];
+        for (int row : rows) {
+            starts[bucket(ranks[row], rankCount, descending) + 1]++;
+        }
+        for (int i = 1; i <= rankCount; i++) {
+            starts[i] += starts[i - 1];
+        }
+        for (int row : rows) {
+            target[starts[bucket(ranks[row], rankCount, descending)]++] = row;
+        }
+    }
+
+    private static int bucket(int rank, int rankCount, boolean descending) {
+        return descending ? rankCount - 1 - rank : rank;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= model.getColumnCount()) {
+            throw new IndexOutOfBoundsException("column beyond range of TableModel");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * An UPDATE or DELETE event that also carries the values the affected cells held before the
+ * change, so that listeners can undo their contribution without keeping their own copy.
+ */
+public class PreviousValuesEvent extends TableModelEvent {
+    private final ColumnarDataset previousValues;
+
+    /**
+     * @param previousValues rows firstRow..lastRow as they were before the change; a single
+     *                       column when column is a model index, every column for ALL_COLUMNS
+     */
+    public PreviousValuesEvent(TableModel source, int firstRow, int lastRow, int column, int type,
+                               ColumnarDataset previousValues) {
+        super(source, firstRow, lastRow, column, type);
+        this.previousValues = previousValues;
+    }
+
+    /**
+     * Returns the previous values, with row 0 holding the old contents of getFirstRow().
+     */
+    public ColumnarDataset getPreviousValues() {
+        return previousValues;
+    }
+
+    /**
+     * Maps a model column to its column in {@link #getPreviousValues()}.
+     */
+    public int getPreviousColumn(int modelColumn) {
+        return getColumn() == ALL_COLUMNS ? modelColumn : 0;
+    }
+}
@@ -1,31 +1,561 @@
 package src.table;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Vector;
+import java.util.stream.IntStream;
 
+/**
+ * Table model backed by a {@link ColumnarDataset}. Cells are stored as primitives or
+ * dictionary codes and only turned into strings when the table asks for them, so the
+ * inherited row vectors of DefaultTableModel are never populated.
+ */
 public class ReorderableTableModel extends DefaultTableModel {
+    private ColumnarDataset dataset;
+    private ColumnStatistics statistics;
+    private ColumnSortIndex sortIndex;
+    private ColumnRangeIndex rangeIndex;
+    private RowNeighborIndex neighborIndex;
+    // Counts the calls to moveRows, so that a row sorter can tell a move from a row update
+    private int rowMoveCount;
+    private final List<BitSet> rowSets = new ArrayList<>();
+
     public ReorderableTableModel() {
         super();
+        ensureDataset();
     }
 
     public ReorderableTableModel(Object[] columnNames, int rowCount) {
-        super(columnNames, rowCount);
+        super();
+        ensureDataset();
+        setDataVector(new Vector<>(), convertToVector(columnNames));
+        setNumRows(rowCount);
+    }
+
+    /**
+     * Returns the columnar storage behind this model. Writes made directly to the dataset
+     * must be followed by the matching fireTable* call.
+     */
+    public ColumnarDataset getDataset() {
+        ensureDataset();
+        return dataset;
+    }
+
+    /**
+     * Replaces the columns and all rows of the model at once.
+     */
+    public void setDataset(Object[] columnNames, ColumnarDataset newDataset) {
+        columnIdentifiers = convertToVector(columnNames);
+        dataset = newDataset;
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Returns the column statistics of this model, kept up to date as the model changes.
+     */
+    public ColumnStatistics getStatistics() {
+        if (statistics == null) {
+            statistics = new ColumnStatistics(this);
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the sort keys of this model's columns, dropped as columns change.
+     */
+    public ColumnSortIndex getSortIndex() {
+        if (sortIndex == null) {
+            sortIndex = new ColumnSortIndex(this);
+        }
+        return sortIndex;
+    }
+
+    /**
+     * Returns the range index of this model's columns, dropped as columns change.
+     */
+    public ColumnRangeIndex getRangeIndex() {
+        if (rangeIndex == null) {
+            rangeIndex = new ColumnRangeIndex(this);
+        }
+        return rangeIndex;
+    }
+
+    /**
+     * Returns the nearest neighbor index of this model's rows, which follows added rows.
+     */
+    public RowNeighborIndex getNeighborIndex() {
+        if (neighborIndex == null) {
+            neighborIndex = new RowNeighborIndex(this);
+        }
+        return neighborIndex;
+    }
+
+    // Statistics, sort keys and row and range indexes are updated before any other listener can query them
+    @Override
+    public void fireTableChanged(TableModelEvent e) {
+        notifyListeners(e);
+
+        // Derived columns change along with their sources
+        if (e.getType() == TableModelEvent.UPDATE && e.getFirstRow() != TableModelEvent.HEADER_ROW
+                && e.getColumn() != TableModelEvent.ALL_COLUMNS && e.getColumn() < dataset.getColumnCount()) {
+            for (int derived : dataset.getDerivedColumns(e.getColumn())) {
+                notifyListeners(new TableModelEvent(this, e.getFirstRow(), e.getLastRow(), derived));
+            }
+        }
+    }
+
+    private void notifyListeners(TableModelEvent e) {
+        if (statistics != null) {
+            statistics.tableChanged(e);
+        }
+        if (sortIndex != null) {
+            sortIndex.tableChanged(e);
+        }
+        if (rangeIndex != null) {
+            rangeIndex.tableChanged(e);
+        }
+        if (neighborIndex != null) {
+            neighborIndex.tableChanged(e);
+        }
+        super.fireTableChanged(e);
+    }
+
+    // DefaultTableModel calls overridable methods from its constructor, before our fields are set
+    private void ensureDataset() {
+        if (dataset == null) {
+            dataset = new ColumnarDataset();
+        }
     }
 
+    /**
+     * Replaces a column with numeric values and notifies listeners.
+     */
+    public void setNumericColumn(int column, double[] values) {
+        ColumnarDataset previous = statistics == null ? null : dataset.slice(0, getRowCount(), column);
+        dataset.setNumericColumn(column, values);
+        fireTableChanged(changeEvent(0, Math.max(0, getRowCount() - 1), column, TableModelEvent.UPDATE, previous));
+    }
+
+    /**
+     * Shows a numeric column as value * scale + offset without rewriting its cells.
+     * @see ColumnarDataset#setTransform
+     */
+    public void setColumnTransform(int column, double scale, double offset) {
+        dataset.setTransform(column, scale, offset);
+        fireTransformChanged(column);
+    }
+
+    /**
+     * Shows the stored values of every column again.
+     */
+    public void clearColumnTransforms() {
+        dataset.clearTransforms();
+        fireTransformChanged(TableModelEvent.ALL_COLUMNS);
+    }
+
+    private void fireTransformChanged(int column) {
+        if (getRowCount() > 0) {
+            // Stored values are unchanged, so the statistics stay valid
+            fireWithoutStatistics(new TransformEvent(this, 0, getRowCount() - 1, column));
+        }
+    }
+
+    /**
+     * Returns a change event carrying the previous values, or a plain one when they were not
+     * captured. Only the statistics read them, so they are only copied while statistics are kept.
+     */
+    private TableModelEvent changeEvent(int firstRow, int lastRow, int column, int type, ColumnarDataset previous) {
+        return previous == null ? new TableModelEvent(this, firstRow, lastRow, column, type)
+                : new PreviousValuesEvent(this, firstRow, lastRow, column, type, previous);
+    }
+
+    private void fireWithoutStatistics(TableModelEvent e) {
+        if (sortIndex != null) {
+            sortIndex.tableChanged(e);
+        }
+        if (rangeIndex != null) {
+            rangeIndex.tableChanged(e);
+        }
+        if (neighborIndex != null) {
+            neighborIndex.tableChanged(e);
+        }
+        super.fireTableChanged(e);
+    }
+
+    @Override
+    public int getRowCount() {
+        return dataset == null ? 0 : dataset.getRowCount();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return dataset.getText(row, column);
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int row, int column) {
+        ColumnarDataset previous = statistics == null ? null : dataset.slice(row, row + 1, column);
+        dataset.setValue(row, column, aValue);
+        fireTableChanged(changeEvent(row, row, column, TableModelEvent.UPDATE, previous));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void insertRow(int row, Vector rowData) {
+        dataset.insertRow(row, rowData == null ? null : rowData.toArray());
+        shiftRowSets(row, 1);
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Inserts a copy of a row right below it, copying the stored cells rather than their text.
+     */
+    public void duplicateRow(int row) {
+        dataset.insertCopy(row + 1, row);
+        shiftRowSets(row + 1, 1);
+        fireTableRowsInserted(row + 1, row + 1);
+    }
+
+    @Override
+    public void removeRow(int row) {
+        removeRows(new int[] {row});
+    }
+
+    /**
+     * Removes rows, in any order, with a single pass over the row order and a single event.
+     */
+    public void removeRows(int[] rows) {
+        int[] sorted = IntStream.of(rows).sorted().distinct().toArray();
+        if (sorted.length == 0) {
+            return;
+        }
+        ColumnarDataset previous = statistics == null ? null : dataset.select(sorted, -1);
+        dataset.removeRows(sorted);
+        for (BitSet rowSet : rowSets) {
+            BitSet kept = new BitSet();
+            for (int row = rowSet.nextSetBit(0); row >= 0; row = rowSet.nextSetBit(row + 1)) {
+                int position = Arrays.binarySearch(sorted, row);
+                if (position < 0) {
+                    kept.set(row - (-position - 1));
+                }
+            }
+            rowSet.clear();
+            rowSet.or(kept);
+        }
+
+        int first = sorted[0];
+        int last = sorted[sorted.length - 1];
+        TableModelEvent e = changeEvent(first, last, TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE, previous);
+        if (last - first + 1 == sorted.length) {
+            fireTableChanged(e);
+        } else {
+            // One delete event cannot describe scattered rows, so other listeners reload every row
+            if (statistics != null) {
+                statistics.tableChanged(e);
+            }
+            fireWithoutStatistics(new TableModelEvent(this));
+        }
+    }
+
+    @Override
+    public void setNumRows(int rowCount) {
+        int old = getRowCount();
+        if (old == rowCount) {
+            return;
+        }
+        // Clearing the table leaves nothing to subtract from, so the statistics simply start over
+        ColumnarDataset previous = statistics == null || rowCount == 0 || rowCount > old ? null
+                : dataset.slice(rowCount, old, -1);
+        dataset.setRowCount(rowCount);
+        for (BitSet rowSet : rowSets) {
+            rowSet.clear(rowCount, Math.max(rowCount, rowSet.length()));
+        }
+        if (rowCount <= old) {
+            fireTableChanged(changeEvent(rowCount, old - 1, TableModelEvent.ALL_COLUMNS, TableModelEvent.DELETE, previous));
+        } else {
+            fireTableRowsInserted(old, rowCount - 1);
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void addColumn(Object columnName, Vector columnData) {
+        ensureDataset();
+        columnIdentifiers.addElement(columnName);
+        dataset.addColumn(isClassColumnName(columnName));
+        if (columnData != null) {
+            if (columnData.size() > getRowCount()) {
+                dataset.setRowCount(columnData.size());
+            }
+            int newColumn = getColumnCount() - 1;
+            for (int i = 0; i < columnData.size(); i++) {
+                dataset.setValue(i, newColumn, columnData.elementAt(i));
+            }
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Appends a column of numbers and fires a single structure change, instead of one event per
+     * cell as with addColumn followed by setValueAt. NaN values are kept as NaN, not blank.
+     * @param values one value per row
+     */
+    @SuppressWarnings("unchecked")
+    public void addColumn(Object columnName, double[] values) {
+        ensureDataset();
+        columnIdentifiers.addElement(columnName);
+        dataset.addColumn(false);
+        dataset.setNumericColumn(getColumnCount() - 1, values);
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Appends several columns and fires a single structure change.
+     * @param columnValues the values of each new column, one per row, stored as by setValueAt
+     */
+    @SuppressWarnings("unchecked")
+    public void addColumns(Object[] columnNames, Object[][] columnValues) {
+        ensureDataset();
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIdentifiers.addElement(columnNames[i]);
+            dataset.addColumn(isClassColumnName(columnNames[i]));
+            int newColumn = getColumnCount() - 1;
+            for (int row = 0; row < Math.min(columnValues[i].length, getRowCount()); row++) {
+                dataset.setValue(row, newColumn, columnValues[i][row]);
+            }
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Appends columns computed from other columns and fires a single structure change. Their
+     * cells are evaluated as they are read, see {@link ColumnarDataset#addDerivedColumn}.
+     * @param sourceColumns the source columns of each new column
+     */
+    @SuppressWarnings("unchecked")
+    public void addDerivedColumns(Object[] columnNames, int[][] sourceColumns, ColumnExpression[] expressions) {
+        ensureDataset();
+        for (int i = 0; i < columnNames.length; i++) {
+            columnIdentifiers.addElement(columnNames[i]);
+            dataset.addDerivedColumn(sourceColumns[i], expressions[i]);
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Removes a column and fires a structure change. The other columns keep their cells.
+     */
+    public void removeColumn(int column) {
+        removeColumns(new int[] {column});
+    }
+
+    /**
+     * Removes columns, in any order, and fires a single structure change.
+     */
+    public void removeColumns(int[] columns) {
+        int[] sorted = IntStream.of(columns).sorted().distinct().toArray();
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            columnIdentifiers.remove(sorted[i]);
+            dataset.removeColumn(sorted[i]);
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Replaces the values of a column, stored as by setValueAt, and fires a single update event.
+     * @param values one value per row; rows beyond its length are left unchanged
+     */
+    public void setColumnValues(int column, Object[] values) {
+        int lastRow = Math.min(values.length, getRowCount()) - 1;
+        if (lastRow < 0) {
+            return;
+        }
+        ColumnarDataset previous = statistics == null ? null : dataset.slice(0, lastRow + 1, column);
+        for (int row = 0; row <= lastRow; row++) {
+            dataset.setValue(row, column, values[row]);
+        }
+        fireTableChanged(changeEvent(0, lastRow, column, TableModelEvent.UPDATE, previous));
+    }
+
+    /**
+     * Appends rows and fires a single insert event.
+     * @param rows the values of each new row, stored as by addRow
+     */
+    public void addRows(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int firstRow = getRowCount();
+        dataset.setRowCount(firstRow + rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] rowData = rows.get(i);
+            for (int col = 0; rowData != null && col < Math.min(rowData.length, getColumnCount()); col++) {
+                if (!dataset.isDerivedColumn(col)) {
+                    dataset.setValue(firstRow + i, col, rowData[col]);
+                }
+            }
+        }
+        fireTableRowsInserted(firstRow, getRowCount() - 1);
+    }
+
+    @Override
+    public void setColumnCount(int columnCount) {
+        ensureDataset();
+        columnIdentifiers.setSize(columnCount);
+        dataset.setColumnCount(columnCount);
+        fireTableStructureChanged();
+    }
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void setDataVector(Vector newData, Vector newIdentifiers) {
+        ensureDataset();
+        columnIdentifiers = newIdentifiers == null ? new Vector<>() : newIdentifiers;
+        if (newData == dataVector) {
+            // setColumnIdentifiers passes the inherited (always empty) row vector: keep our rows
+            dataset.setColumnCount(columnIdentifiers.size());
+            for (int col = 0; col < columnIdentifiers.size(); col++) {
+                if (isClassColumnName(columnIdentifiers.get(col))) {
+                    dataset.setTextColumn(col);
+                }
+            }
+        } else {
+            dataset.clear();
+            for (Object identifier : columnIdentifiers) {
+                dataset.addColumn(isClassColumnName(identifier));
+            }
+            if (newData != null) {
+                dataset.setRowCount(newData.size());
+                for (int row = 0; row < newData.size(); row++) {
+                    Vector rowData = (Vector) newData.elementAt(row);
+                    for (int col = 0; rowData != null && col < Math.min(rowData.size(), getColumnCount()); col++) {
+                        dataset.setValue(row, col, rowData.elementAt(col));
+                    }
+                }
+            }
+        }
+        dataVector = new Vector<>();
+        fireTableStructureChanged();
+    }
+
+    @Override
+    public void newDataAvailable(TableModelEvent event) {
+        fireTableChanged(event);
+    }
+
+    @Override
+    public void newRowsAdded(TableModelEvent e) {
+        fireTableChanged(e);
+    }
+
+    /**
+     * Returns a snapshot of the rows as vectors of display strings. Changes to the snapshot
+     * are not reflected in the model.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Vector<Vector> getDataVector() {
+        Vector<Vector> rows = new Vector<>(getRowCount());
+        for (int row = 0; row < getRowCount(); row++) {
+            Vector<Object> rowData = new Vector<>(getColumnCount());
+            for (int col = 0; col < getColumnCount(); col++) {
+                rowData.add(getValueAt(row, col));
+            }
+            rows.add(rowData);
+        }
+        return rows;
+    }
+
+    @Override
     public void moveRow(int start, int end, int to) {
-        if (start == end) {
+        moveRows(IntStream.rangeClosed(start, end).toArray(), to);
+    }
+
+    /**
+     * Moves rows, keeping their relative order, so that they start at row {@code to} of the
+     * rows that are not moved. Only the dataset's row order changes and a single update event
+     * is fired; the statistics stay valid since no cell changes.
+     * @param rows the rows to move, in any order
+     */
+    public void moveRows(int[] rows, int to) {
+        int[] moved = IntStream.of(rows).sorted().distinct().toArray();
+        int rowCount = getRowCount();
+        if (moved.length == 0 || moved.length == rowCount) {
             return;
         }
 
-        Vector<Object> rows = new Vector<>();
-        for (int i = start; i <= end; i++) {
-            rows.add(getDataVector().remove(start));
+        int[] order = new int[rowCount];
+        int next = 0;
+        int remaining = 0;
+        for (int row = 0, m = 0; row < rowCount; row++) {
+            if (m < moved.length && moved[m] == row) {
+                m++;
+                continue;
+            }
+            if (remaining++ == to) {
+                for (int movedRow : moved) {
+                    order[next++] = movedRow;
+                }
+            }
+            order[next++] = row;
+        }
+        if (next < rowCount) {
+            System.arraycopy(moved, 0, order, next, moved.length);
+        }
+        dataset.permuteRows(order);
+        rowMoveCount++;
+        for (BitSet rowSet : rowSets) {
+            BitSet permuted = new BitSet(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (rowSet.get(order[row])) {
+                    permuted.set(row);
+                }
+            }
+            rowSet.clear();
+            rowSet.or(permuted);
         }
 
-        for (Object row : rows) {
-            getDataVector().add(to++, (Vector<?>) row);
+        int first = Math.min(moved[0], to);
+        int last = Math.max(moved[moved.length - 1], to + moved.length - 1);
+        fireWithoutStatistics(new RowsMovedEvent(this, first, last));
+    }
+
+    /**
+     * Keeps a set of model rows, such as the hidden rows, on the same rows as rows are inserted,
+     * removed or moved. The set is updated before listeners are notified of the change.
+     */
+    public void addRowSet(BitSet rows) {
+        rowSets.add(rows);
+    }
+
+    /**
+     * Moves the rows of every row set from the given row on down by count places.
+     */
+    private void shiftRowSets(int fromRow, int count) {
+        for (BitSet rowSet : rowSets) {
+            int end = rowSet.length();
+            if (end > fromRow) {
+                BitSet tail = rowSet.get(fromRow, end);
+                rowSet.clear(fromRow, end);
+                for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+                    rowSet.set(fromRow + count + i);
+                }
+            }
         }
+    }
+
+    /**
+     * Returns the number of times rows were moved, which changes with every {@link RowsMovedEvent}.
+     */
+    int getRowMoveCount() {
+        return rowMoveCount;
+    }
 
-        fireTableRowsDeleted(start, end);
-        fireTableRowsInserted(to - rows.size(), to - 1);
+    private static boolean isClassColumnName(Object columnName) {
+        return columnName != null && (columnName.toString().equalsIgnoreCase("class")
+                || columnName.toString().equalsIgnoreCase("label"));
     }
 }
@@ -0,0 +1,145 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import src.utils.IncrementalNeighborIndex;
+import src.utils.NeighborIndex;
+
+/**
+ * Finds the nearest rows to other rows, for nearest neighbor selection, by Euclidean distance
+ * over a set of columns as they are shown. Cells that are blank or not numbers leave their
+ * column out of the distance between two rows, and rows at the same distance are taken in
+ * table order.
+ *
+ * The index is built in the background when it is prepared, over the stored rows of the
+ * dataset, so moving rows does not affect it and added rows are indexed as they arrive. Any
+ * other change to the indexed columns, a removal or a compaction of the stored rows drops the
+ * index until it is prepared again.
+ */
+public class RowNeighborIndex implements TableModelListener {
+    private final Supplier<ColumnarDataset> source;
+    private int[] columns;      // Indexed columns, or null when there is no index
+    private CompletableFuture<IncrementalNeighborIndex> index;
+    private int[] storedRows;   // Stored row of each point
+    private int pointCount;
+    private int compactions;    // Compaction count of the dataset the points were read from
+
+    /**
+     * Creates a neighbor index that follows the dataset behind a table model.
+     */
+    public RowNeighborIndex(ReorderableTableModel model) {
+        this.source = model::getDataset;
+    }
+
+    @Override
+    public synchronized void tableChanged(TableModelEvent e) {
+        if (index == null || e instanceof RowsMovedEvent) {
+            return;
+        }
+        ColumnarDataset data = source.get();
+        if (e.getFirstRow() == TableModelEvent.HEADER_ROW || compactions != data.getCompactionCount()) {
+            drop();
+        } else if (e.getType() == TableModelEvent.INSERT) {
+            int lastRow = Math.min(e.getLastRow(), data.getRowCount() - 1);
+            double[][] added = new double[Math.max(0, lastRow - e.getFirstRow() + 1)][];
+            for (int i = 0; i < added.length; i++) {
+                int row = e.getFirstRow() + i;
+                added[i] = point(data, row);
+                if (pointCount == storedRows.length) {
+                    storedRows = Arrays.copyOf(storedRows, Math.max(16, pointCount + (pointCount >> 1)));
+                }
+                storedRows[pointCount++] = data.getStoredRow(row);
+            }
+            index = index.thenApply(points -> {
+                for (double[] point : added) {
+                    points.add(point);
+                }
+                return points;
+            });
+        } else if (e.getType() != TableModelEvent.UPDATE || e.getColumn() == TableModelEvent.ALL_COLUMNS
+                || IntStream.of(columns).anyMatch(col -> col == e.getColumn())) {
+            drop();
+        }
+    }
+
+    /**
+     * Starts building the index over the given columns in the background, unless it already
+     * covers them.
+     */
+    public synchronized void prepare(int[] columns) {
+        ColumnarDataset data = source.get();
+        if (index != null && Arrays.equals(columns, this.columns) && compactions == data.getCompactionCount()) {
+            return;
+        }
+        this.columns = columns.clone();
+        this.compactions = data.getCompactionCount();
+
+        // Cells are read here, so that the table can change while the tree is built
+        int rowCount = data.getRowCount();
+        double[][] points = new double[rowCount][columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            double[] values = data.getColumn(columns[i]);
+            for (int row = 0; row < rowCount; row++) {
+                points[row][i] = values[row];
+            }
+        }
+        storedRows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            storedRows[row] = data.getStoredRow(row);
+        }
+        pointCount = rowCount;
+        index = CompletableFuture.supplyAsync(() -> new IncrementalNeighborIndex(points));
+    }
+
+    /**
+     * Returns, for each of the given rows, its k nearest other rows, nearest first. Waits for
+     * the index to be built when it is not ready yet.
+     * @throws IllegalStateException when the index was not prepared or has been dropped
+     */
+    public synchronized int[][] nearest(int[] rows, int k) {
+        if (index == null) {
+            throw new IllegalStateException("The neighbor index is not prepared");
+        }
+        IncrementalNeighborIndex points = index.join();
+        ColumnarDataset data = source.get();
+
+        // Points are ranked by their current table row, for ties
+        int[] rowOfStored = new int[data.getStoredRowCount()];
+        for (int row = 0; row < data.getRowCount(); row++) {
+            rowOfStored[data.getStoredRow(row)] = row;
+        }
+        int[] rank = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            rank[i] = rowOfStored[storedRows[i]];
+        }
+
+        double[][] queries = new double[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            queries[i] = point(data, rows[i]);
+        }
+        return IntStream.range(0, rows.length).parallel().mapToObj(i -> {
+            // The row itself is usually its own nearest neighbor
+            int[] found = points.nearest(queries[i], k + 1, NeighborIndex.Metric.PAIRWISE_EUCLIDEAN, p -> rank[p]);
+            return IntStream.of(found).map(p -> rank[p]).filter(row -> row != rows[i]).limit(k).toArray();
+        }).toArray(int[][]::new);
+    }
+
+    private double[] point(ColumnarDataset data, int row) {
+        double[] point = new double[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            point[i] = data.getDouble(row, columns[i]);
+        }
+        return point;
+    }
+
+    private void drop() {
+        columns = null;
+        index = null;
+        storedRows = null;
+        pointCount = 0;
+    }
+}
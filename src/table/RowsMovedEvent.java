@@ -0,0 +1,14 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * An UPDATE event for rows that changed places while every stored cell stayed the same
+ * (see {@link ReorderableTableModel#moveRows}).
+ */
+public class RowsMovedEvent extends TableModelEvent {
+    public RowsMovedEvent(TableModel source, int firstRow, int lastRow) {
+        super(source, firstRow, lastRow, ALL_COLUMNS);
+    }
+}
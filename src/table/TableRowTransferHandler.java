@@ -1,7 +1,6 @@
 package src.table;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
@@ -17,15 +16,10 @@ public class TableRowTransferHandler extends TransferHandler {
     @Override
     protected Transferable createTransferable(JComponent c) {
         int[] rows = table.getSelectedRows();
-        Object[][] data = new Object[rows.length][table.getColumnCount()];
-
         for (int i = 0; i < rows.length; i++) {
-            for (int j = 0; j < table.getColumnCount(); j++) {
-                data[i][j] = table.getValueAt(rows[i], j);
-            }
+            rows[i] = table.convertRowIndexToModel(rows[i]);
         }
-
-        return new TableRowsTransferable(data);
+        return new TableRowsTransferable(rows);
     }
 
     @Override
@@ -49,20 +43,30 @@ public class TableRowTransferHandler extends TransferHandler {
         Transferable transferable = support.getTransferable();
 
         try {
-            Object[][] data = (Object[][]) transferable.getTransferData(TableRowsTransferable.DATA_FLAVOR);
-            DefaultTableModel model = (DefaultTableModel) table.getModel();
-
-            // Insert rows at the new location
-            for (Object[] rowData : data) {
-                model.insertRow(row, rowData);
+            int[] rows = (int[]) transferable.getTransferData(TableRowsTransferable.DATA_FLAVOR);
+            ReorderableTableModel model = (ReorderableTableModel) table.getModel();
+            int target = row < table.getRowCount() ? table.convertRowIndexToModel(row) : model.getRowCount();
+
+            // Position of the drop among the rows that stay in place
+            int to = target;
+            for (int movedRow : rows) {
+                if (movedRow < target) {
+                    to--;
+                }
             }
-
-            // Remove original rows after insertion
-            int[] rows = table.getSelectedRows();
-            for (int i = rows.length - 1; i >= 0; i--) {
-                model.removeRow(rows[i]);
+            // Only the row order changes
+            model.moveRows(rows, to);
+
+            ListSelectionModel selection = table.getSelectionModel();
+            selection.setValueIsAdjusting(true);
+            table.clearSelection();
+            for (int modelRow = to; modelRow < to + rows.length; modelRow++) {
+                int viewRow = table.convertRowIndexToView(modelRow);
+                if (viewRow >= 0) {
+                    selection.addSelectionInterval(viewRow, viewRow);
+                }
             }
-
+            selection.setValueIsAdjusting(false);
             return true;
         } catch (UnsupportedFlavorException | IOException e) {
             e.printStackTrace();
@@ -5,12 +5,15 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.IOException;
 
+/**
+ * Carries the model indices of dragged table rows; the rows themselves stay in the model.
+ */
 public class TableRowsTransferable implements Transferable {
-    public static final DataFlavor DATA_FLAVOR = new DataFlavor(Object[][].class, "JTable Rows");
-    private final Object[][] data;
+    public static final DataFlavor DATA_FLAVOR = new DataFlavor(int[].class, "JTable Rows");
+    private final int[] rows;
 
-    public TableRowsTransferable(Object[][] data) {
-        this.data = data;
+    public TableRowsTransferable(int[] rows) {
+        this.rows = rows;
     }
 
     @Override
@@ -28,6 +31,6 @@ public class TableRowsTransferable implements Transferable {
         if (!isDataFlavorSupported(flavor)) {
             throw new UnsupportedFlavorException(flavor);
         }
-        return data;
+        return rows;
     }
 }
@@ -1,22 +1,18 @@
 package src.table;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 
 public class TableSetup {
-    public static JTable createTable(DefaultTableModel tableModel) {
+    public static JTable createTable(ReorderableTableModel tableModel) {
         JTable table = new JTable(tableModel);
         table.setDragEnabled(true);
         table.setDropMode(DropMode.INSERT_ROWS);
         table.setFillsViewportHeight(true);
         table.setTransferHandler(new TableRowTransferHandler(table));
-        table.setAutoCreateRowSorter(true);
         table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         table.getTableHeader().setReorderingAllowed(true);
 
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        table.setRowSorter(sorter);
+        table.setRowSorter(new IndexedRowSorter(tableModel));
 
         return table;
     }
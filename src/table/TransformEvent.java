@@ -0,0 +1,14 @@
+package src.table;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.TableModel;
+
+/**
+ * An UPDATE event for cells that are shown differently because a column transform changed,
+ * while their stored values stayed the same (see {@link ReorderableTableModel#setColumnTransform}).
+ */
+public class TransformEvent extends TableModelEvent {
+    public TransformEvent(TableModel source, int firstRow, int lastRow, int column) {
+        super(source, firstRow, lastRow, column);
+    }
+}
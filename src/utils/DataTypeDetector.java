@@ -1,9 +1,12 @@
 package utils;
 
+import src.table.ColumnarDataset;
+
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 /**
@@ -40,6 +43,12 @@ public class DataTypeDetector {
     
     // Binary value patterns
     private static final Set<String> BINARY_VALUES = Set.of("0", "1", "true", "false", "yes", "no", "y", "n");
+
+    // Most distinct values a categorical column can have
+    private static final int MAX_CATEGORIES = 20;
+
+    // Values sampled from a column to decide whether it holds timestamps
+    private static final int SAMPLE_SIZE = 1000;
     
     /**
      * Detects the data type of a column based on its values.
@@ -51,106 +60,212 @@ public class DataTypeDetector {
             return DataType.UNKNOWN;
         }
         
-        // Count non-empty values
-        List<String> nonEmptyValues = new ArrayList<>();
+        // Count each non-empty value
+        Map<String, Integer> counts = new HashMap<>();
+        int total = 0;
         for (String value : values) {
             if (value != null && !value.trim().isEmpty()) {
-                nonEmptyValues.add(value.trim());
+                counts.merge(value.trim(), 1, Integer::sum);
+                total++;
             }
         }
-        
-        if (nonEmptyValues.isEmpty()) {
+        return classify(counts, total);
+    }
+
+    /**
+     * Detects the data type of a dataset column and returns it with its categorical mapping.
+     * Gives the same result as {@link #detectDataType(String[])} on the column's text without
+     * building it: a single pass counts the numbers, keeps the distinct values while there are
+     * at most MAX_CATEGORIES of them and draws a reservoir sample of the values. Columns with
+     * few distinct values are then classified exactly from their counts, and a column with many
+     * is only checked value by value for timestamps when its sample does not clearly rule them out.
+     */
+    public static ColumnDataTypeInfo detectColumnType(ColumnarDataset dataset, int col, String columnName) {
+        Map<String, Integer> distinct = new HashMap<>();
+        List<String> sample = new ArrayList<>();
+        Random random = new Random(col);
+        int total = 0;
+        int numbers = 0;
+        for (int row = 0; row < dataset.getRowCount(); row++) {
+            if (dataset.isMissing(row, col)) {
+                continue;
+            }
+            total++;
+            if (dataset.isNumber(row, col)) {
+                numbers++;
+            }
+            if (distinct != null) {
+                distinct.merge(dataset.getText(row, col), 1, Integer::sum);
+                if (distinct.size() > MAX_CATEGORIES) {
+                    distinct = null;
+                }
+            }
+            if (sample.size() < SAMPLE_SIZE) {
+                sample.add(dataset.getText(row, col));
+            } else {
+                int slot = random.nextInt(total);
+                if (slot < SAMPLE_SIZE) {
+                    sample.set(slot, dataset.getText(row, col));
+                }
+            }
+        }
+
+        if (distinct != null) {
+            DataType type = classify(distinct, total);
+            if (type == DataType.CATEGORICAL) {
+                return new ColumnDataTypeInfo(type, columnName,
+                    createCategoricalMapping(distinct.keySet().toArray(new String[0])));
+            }
+            return new ColumnDataTypeInfo(type, columnName);
+        }
+
+        // More than MAX_CATEGORIES distinct values: neither binary nor categorical
+        if ((double) numbers / total >= 0.8) {
+            return new ColumnDataTypeInfo(DataType.NUMERICAL, columnName);
+        }
+        DateTimeFormatter formatter = mostCommonFormatter(sample);
+        int sampleTimestamps = 0;
+        for (String value : sample) {
+            if (isValidTimestamp(value, formatter)) {
+                sampleTimestamps++;
+            }
+        }
+        double sampleFraction = (double) sampleTimestamps / sample.size();
+        if (sample.size() == total) {
+            return new ColumnDataTypeInfo(sampleFraction >= 0.8 ? DataType.TIMESTAMP : DataType.NOMINAL, columnName);
+        }
+        // Only a sample well below the 80% threshold is trusted without checking every value
+        if (sampleFraction < 0.7) {
+            return new ColumnDataTypeInfo(DataType.NOMINAL, columnName);
+        }
+
+        // Verify the sample on every value, trying its most common format first
+        int timestamps = 0;
+        for (int row = 0; row < dataset.getRowCount(); row++) {
+            if (!dataset.isMissing(row, col) && !dataset.isNumber(row, col)
+                    && isValidTimestamp(dataset.getText(row, col), formatter)) {
+                timestamps++;
+            }
+        }
+        DataType type = (double) timestamps / total >= 0.8 ? DataType.TIMESTAMP : DataType.NOMINAL;
+        return new ColumnDataTypeInfo(type, columnName);
+    }
+
+    /**
+     * Classifies a column from the number of occurrences of each of its non-empty values.
+     */
+    private static DataType classify(Map<String, Integer> counts, int total) {
+        if (total == 0) {
             return DataType.UNKNOWN;
         }
         
         // Check for binary data first (most restrictive)
-        if (isBinaryData(nonEmptyValues)) {
+        if (isBinaryData(counts.keySet())) {
             return DataType.BINARY;
         }
         
-        // Check for numerical data
-        if (isNumericalData(nonEmptyValues)) {
+        // Check for numerical data (at least 80% of values are numeric)
+        if ((double) countMatching(counts, DataTypeDetector::isNumeric) / total >= 0.8) {
             return DataType.NUMERICAL;
         }
         
-        // Check for timestamp data
-        if (isTimestampData(nonEmptyValues)) {
+        // Check for timestamp data (at least 80% of values are valid timestamps)
+        if ((double) countMatching(counts, value -> isValidTimestamp(value, null)) / total >= 0.8) {
             return DataType.TIMESTAMP;
         }
         
         // Check for categorical data (limited unique values)
-        if (isCategoricalData(nonEmptyValues)) {
+        if (isCategoricalData(counts.keySet(), total)) {
             return DataType.CATEGORICAL;
         }
         
         // Everything else is nominal
         return DataType.NOMINAL;
     }
+
+    private static int countMatching(Map<String, Integer> counts, Predicate<String> predicate) {
+        int count = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (predicate.test(entry.getKey())) {
+                count += entry.getValue();
+            }
+        }
+        return count;
+    }
     
     /**
      * Checks if values represent binary data (0/1, true/false, etc.)
      */
-    private static boolean isBinaryData(List<String> values) {
-        Set<String> uniqueValues = new HashSet<>(values);
-        return uniqueValues.size() <= 2 && 
-               uniqueValues.stream().allMatch(BINARY_VALUES::contains);
+    private static boolean isBinaryData(Set<String> uniqueValues) {
+        return uniqueValues.size() <= 2 && BINARY_VALUES.containsAll(uniqueValues);
     }
     
     /**
-     * Checks if values represent numerical data (integers or floats)
+     * Checks if a value is numeric (integer or float)
      */
-    private static boolean isNumericalData(List<String> values) {
-        int numericCount = 0;
-        for (String value : values) {
-            try {
-                Double.parseDouble(value);
-                numericCount++;
-            } catch (NumberFormatException e) {
-                // Not numeric
-            }
+    private static boolean isNumeric(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
         }
-        // Consider numerical if at least 80% of values are numeric
-        return (double) numericCount / values.size() >= 0.8;
     }
     
     /**
-     * Checks if values represent timestamp data
+     * Checks if a single value is a valid timestamp
+     * @param preferred formatter to try first, or null
      */
-    private static boolean isTimestampData(List<String> values) {
-        int timestampCount = 0;
-        for (String value : values) {
-            if (isValidTimestamp(value)) {
-                timestampCount++;
+    private static boolean isValidTimestamp(String value, DateTimeFormatter preferred) {
+        if (preferred != null && parsesAs(value, preferred)) {
+            return true;
+        }
+        for (DateTimeFormatter formatter : TIMESTAMP_FORMATTERS) {
+            if (formatter != preferred && parsesAs(value, formatter)) {
+                return true;
             }
         }
-        // Consider timestamp if at least 80% of values are valid timestamps
-        return (double) timestampCount / values.size() >= 0.8;
+        return false;
     }
-    
+
+    private static boolean parsesAs(String value, DateTimeFormatter formatter) {
+        try {
+            LocalDateTime.parse(value, formatter);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
     /**
-     * Checks if a single value is a valid timestamp
+     * Returns the formatter that parses the most values, or null when none parses any.
      */
-    private static boolean isValidTimestamp(String value) {
+    private static DateTimeFormatter mostCommonFormatter(List<String> values) {
+        DateTimeFormatter best = null;
+        int bestCount = 0;
         for (DateTimeFormatter formatter : TIMESTAMP_FORMATTERS) {
-            try {
-                LocalDateTime.parse(value, formatter);
-                return true;
-            } catch (DateTimeParseException e) {
-                // Try next formatter
+            int count = 0;
+            for (String value : values) {
+                if (parsesAs(value, formatter)) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = formatter;
+                bestCount = count;
             }
         }
-        return false;
+        return best;
     }
     
     /**
      * Checks if values represent categorical data (limited unique values)
      */
-    private static boolean isCategoricalData(List<String> values) {
-        Set<String> uniqueValues = new HashSet<>(values);
+    private static boolean isCategoricalData(Set<String> uniqueValues, int total) {
         // Consider categorical if there are 2-20 unique values and not too many total values
         return uniqueValues.size() >= 2 && 
-               uniqueValues.size() <= 20 && 
-               values.size() >= uniqueValues.size() * 2; // At least 2 instances per category
+               uniqueValues.size() <= MAX_CATEGORIES && 
+               total >= uniqueValues.size() * 2; // At least 2 instances per category
     }
     
     /**
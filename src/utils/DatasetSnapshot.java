@@ -0,0 +1,444 @@
+package src.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.ArrayList;
+import src.table.ColumnarDataset;
+import utils.ColumnDataTypeInfo;
+import utils.DataTypeDetector;
+
+/**
+ * Binary columnar snapshot of a loaded dataset: typed columns, detected column data types,
+ * class groupings and selected classes. Numeric columns are stored as raw little-endian doubles
+ * and text columns as dictionary codes, so reopening a snapshot only maps the file and copies
+ * column blocks, without any parsing or type detection.
+ *
+ * Layout: magic, version, a metadata block, then one or more blocks per column. Every block is
+ * prefixed with its length in bytes and mapped on its own. Column values are split into blocks of
+ * one {@link ColumnarDataset} page, so {@link #map(String)} can serve the columns straight from
+ * the mapped file for datasets larger than the heap.
+ */
+public class DatasetSnapshot {
+
+    public static final String FILE_EXTENSION = ".tvs";
+
+    private static final int MAGIC = 0x54565331; // "TVS1"
+    private static final int VERSION = 1;
+    private static final byte NUMERIC_COLUMN = 0;
+    private static final byte TEXT_COLUMN = 1;
+    private static final int BLOCK_ELEMENTS = 1 << ColumnarDataset.PAGE_SHIFT;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final String[] headers;
+    private final ColumnarDataset dataset;
+    private final Map<Integer, ColumnDataTypeInfo> columnDataTypes;
+    private final Map<String, Set<String>> classGroups;
+    private final Set<String> selectedClasses;
+
+    public DatasetSnapshot(String[] headers, ColumnarDataset dataset, Map<Integer, ColumnDataTypeInfo> columnDataTypes,
+                           Map<String, Set<String>> classGroups, Set<String> selectedClasses) {
+        this.headers = headers;
+        this.dataset = dataset;
+        this.columnDataTypes = columnDataTypes;
+        this.classGroups = classGroups;
+        this.selectedClasses = selectedClasses;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public ColumnarDataset getDataset() {
+        return dataset;
+    }
+
+    public Map<Integer, ColumnDataTypeInfo> getColumnDataTypes() {
+        return columnDataTypes;
+    }
+
+    public Map<String, Set<String>> getClassGroups() {
+        return classGroups;
+    }
+
+    public Set<String> getSelectedClasses() {
+        return selectedClasses;
+    }
+
+    public static boolean isSnapshotFile(String filePath) {
+        return filePath.toLowerCase().endsWith(FILE_EXTENSION);
+    }
+
+    public void write(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer start = newBuffer(8);
+            start.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, start);
+
+            int rowCount = dataset.getRowCount();
+            int columnCount = headers.length;
+
+            BlockWriter metadata = new BlockWriter();
+            metadata.putInt(rowCount);
+            metadata.putInt(columnCount);
+            for (int col = 0; col < columnCount; col++) {
+                metadata.putString(headers[col]);
+                metadata.putByte(dataset.isTextColumn(col) ? TEXT_COLUMN : NUMERIC_COLUMN);
+            }
+
+            metadata.putInt(columnDataTypes.size());
+            for (Map.Entry<Integer, ColumnDataTypeInfo> entry : columnDataTypes.entrySet()) {
+                ColumnDataTypeInfo info = entry.getValue();
+                metadata.putInt(entry.getKey());
+                metadata.putString(info.getDataType().name());
+                metadata.putString(info.getOriginalColumnName());
+                Map<String, Integer> mapping = info.getCategoricalMapping();
+                metadata.putInt(mapping == null ? -1 : mapping.size());
+                if (mapping != null) {
+                    for (Map.Entry<String, Integer> value : mapping.entrySet()) {
+                        metadata.putString(value.getKey());
+                        metadata.putInt(value.getValue());
+                    }
+                }
+            }
+
+            metadata.putInt(classGroups == null ? 0 : classGroups.size());
+            if (classGroups != null) {
+                for (Map.Entry<String, Set<String>> group : classGroups.entrySet()) {
+                    metadata.putString(group.getKey());
+                    metadata.putStrings(group.getValue());
+                }
+            }
+            metadata.putStrings(selectedClasses);
+            metadata.writeTo(channel);
+
+            for (int col = 0; col < columnCount; col++) {
+                if (dataset.isTextColumn(col)) {
+                    BlockWriter dictionary = new BlockWriter();
+                    dictionary.putStrings(dataset.getDictionary(col));
+                    dictionary.writeTo(channel);
+                    writeInts(channel, dataset.getCodes(col));
+                } else {
+                    writeDoubles(channel, dataset.getColumn(col));
+
+                    BlockWriter sparse = new BlockWriter();
+                    long[] missing = dataset.getMissing(col).toLongArray();
+                    sparse.putInt(missing.length);
+                    for (long word : missing) {
+                        sparse.putLong(word);
+                    }
+                    Map<Integer, String> tokens = dataset.getTokens(col);
+                    sparse.putInt(tokens.size());
+                    for (Map.Entry<Integer, String> token : tokens.entrySet()) {
+                        sparse.putInt(token.getKey());
+                        sparse.putString(token.getValue());
+                    }
+                    sparse.writeTo(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot fully into memory.
+     */
+    public static DatasetSnapshot read(String filePath) throws IOException {
+        return load(filePath, false);
+    }
+
+    /**
+     * Opens a snapshot with its column values left in the mapped file. Pages are loaded by the
+     * operating system as rows are read, and a column is only copied to the heap once modified.
+     */
+    public static DatasetSnapshot map(String filePath) throws IOException {
+        return load(filePath, true);
+    }
+
+    private static DatasetSnapshot load(String filePath, boolean mapped) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            ByteBuffer start = newBuffer(8);
+            channel.read(start, 0);
+            start.flip();
+            if (start.remaining() < 8 || start.getInt() != MAGIC) {
+                throw new IOException("Not a dataset snapshot file");
+            }
+            int version = start.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            BlockReader reader = new BlockReader(channel, 8);
+
+            ByteBuffer metadata = reader.nextBlock();
+            int rowCount = metadata.getInt();
+            int columnCount = metadata.getInt();
+            String[] headers = new String[columnCount];
+            byte[] kinds = new byte[columnCount];
+            for (int col = 0; col < columnCount; col++) {
+                headers[col] = getString(metadata);
+                kinds[col] = metadata.get();
+            }
+
+            Map<Integer, ColumnDataTypeInfo> columnDataTypes = new HashMap<>();
+            int typeCount = metadata.getInt();
+            for (int i = 0; i < typeCount; i++) {
+                int col = metadata.getInt();
+                DataTypeDetector.DataType type = DataTypeDetector.DataType.valueOf(getString(metadata));
+                String originalName = getString(metadata);
+                int mappingSize = metadata.getInt();
+                if (mappingSize < 0) {
+                    columnDataTypes.put(col, new ColumnDataTypeInfo(type, originalName));
+                } else {
+                    Map<String, Integer> mapping = new HashMap<>();
+                    for (int j = 0; j < mappingSize; j++) {
+                        String key = getString(metadata);
+                        mapping.put(key, metadata.getInt());
+                    }
+                    columnDataTypes.put(col, new ColumnDataTypeInfo(type, originalName, mapping));
+                }
+            }
+
+            Map<String, Set<String>> classGroups = new LinkedHashMap<>();
+            int groupCount = metadata.getInt();
+            for (int i = 0; i < groupCount; i++) {
+                String group = getString(metadata);
+                classGroups.put(group, new HashSet<>(getStrings(metadata)));
+            }
+            Set<String> selectedClasses = new HashSet<>(getStrings(metadata));
+
+            ColumnarDataset dataset = new ColumnarDataset(rowCount);
+            for (int col = 0; col < columnCount; col++) {
+                if (kinds[col] == TEXT_COLUMN) {
+                    List<String> dictionary = getStrings(reader.nextBlock());
+                    if (mapped) {
+                        IntBuffer[] pages = new IntBuffer[pageCount(rowCount)];
+                        for (int page = 0; page < pages.length; page++) {
+                            pages[page] = reader.nextBlock().asIntBuffer();
+                        }
+                        dataset.addMappedTextColumn(pages, dictionary);
+                    } else {
+                        dataset.addTextColumn(reader.readInts(rowCount), dictionary);
+                    }
+                } else {
+                    double[] values = null;
+                    DoubleBuffer[] pages = null;
+                    if (mapped) {
+                        pages = new DoubleBuffer[pageCount(rowCount)];
+                        for (int page = 0; page < pages.length; page++) {
+                            pages[page] = reader.nextBlock().asDoubleBuffer();
+                        }
+                    } else {
+                        values = reader.readDoubles(rowCount);
+                    }
+                    ByteBuffer sparse = reader.nextBlock();
+                    long[] words = new long[sparse.getInt()];
+                    for (int i = 0; i < words.length; i++) {
+                        words[i] = sparse.getLong();
+                    }
+                    Map<Integer, String> tokens = new TreeMap<>();
+                    int tokenCount = sparse.getInt();
+                    for (int i = 0; i < tokenCount; i++) {
+                        int row = sparse.getInt();
+                        tokens.put(row, getString(sparse));
+                    }
+                    if (mapped) {
+                        dataset.addMappedNumericColumn(pages, BitSet.valueOf(words), tokens);
+                    } else {
+                        dataset.addNumericColumn(values, BitSet.valueOf(words), tokens);
+                    }
+                }
+            }
+
+            return new DatasetSnapshot(headers, dataset, columnDataTypes, classGroups, selectedClasses);
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, double[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        DoubleBuffer view = buffer.asDoubleBuffer();
+        for (int from = 0; from == 0 || from < values.length; from += BLOCK_ELEMENTS) {
+            int count = Math.min(BLOCK_ELEMENTS, values.length - from);
+            buffer.clear();
+            buffer.putLong((long) count * 8).flip();
+            writeFully(channel, buffer);
+            for (int offset = 0; offset < count; offset += view.capacity()) {
+                int length = Math.min(view.capacity(), count - offset);
+                view.clear();
+                view.put(values, from + offset, length);
+                buffer.clear().limit(length * 8);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    private static void writeInts(FileChannel channel, int[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer view = buffer.asIntBuffer();
+        for (int from = 0; from == 0 || from < values.length; from += BLOCK_ELEMENTS) {
+            int count = Math.min(BLOCK_ELEMENTS, values.length - from);
+            buffer.clear();
+            buffer.putLong((long) count * 4).flip();
+            writeFully(channel, buffer);
+            for (int offset = 0; offset < count; offset += view.capacity()) {
+                int length = Math.min(view.capacity(), count - offset);
+                view.clear();
+                view.put(values, from + offset, length);
+                buffer.clear().limit(length * 4);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    private static int pageCount(int rowCount) {
+        return (int) Math.max(1, ((long) rowCount + BLOCK_ELEMENTS - 1) / BLOCK_ELEMENTS);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer newBuffer(long capacity) {
+        return ByteBuffer.allocate((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> getStrings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getString(buffer));
+        }
+        return values;
+    }
+
+    /**
+     * Collects small values for one length-prefixed block.
+     */
+    private static final class BlockWriter {
+        private ByteBuffer buffer = newBuffer(1024);
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = newBuffer(Math.max(buffer.capacity() * 2L, buffer.position() + (long) bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        void putByte(byte value) {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) {
+            byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void putStrings(java.util.Collection<String> values) {
+            putInt(values == null ? 0 : values.size());
+            if (values != null) {
+                for (String value : values) {
+                    putString(value);
+                }
+            }
+        }
+
+        void writeTo(FileChannel channel) throws IOException {
+            ByteBuffer length = newBuffer(8);
+            length.putLong(buffer.position()).flip();
+            writeFully(channel, length);
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+    }
+
+    /**
+     * Maps the blocks of a snapshot one after another.
+     */
+    private static final class BlockReader {
+        private final FileChannel channel;
+        private long position;
+
+        BlockReader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        ByteBuffer nextBlock() throws IOException {
+            ByteBuffer lengthBuffer = newBuffer(8);
+            while (lengthBuffer.hasRemaining()) {
+                if (channel.read(lengthBuffer, position + lengthBuffer.position()) < 0) {
+                    throw new IOException("Unexpected end of snapshot file");
+                }
+            }
+            long length = lengthBuffer.flip().getLong();
+            if (length < 0 || position + 8 + length > channel.size()) {
+                throw new IOException("Corrupt snapshot file");
+            }
+            MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position + 8, length);
+            position += 8 + length;
+            block.order(ByteOrder.LITTLE_ENDIAN);
+            return block;
+        }
+
+        double[] readDoubles(int count) throws IOException {
+            double[] values = new double[count];
+            int from = 0;
+            do {
+                ByteBuffer block = nextBlock();
+                int blockCount = block.remaining() / 8;
+                block.asDoubleBuffer().get(values, from, blockCount);
+                from += blockCount;
+            } while (from < count);
+            return values;
+        }
+
+        int[] readInts(int count) throws IOException {
+            int[] values = new int[count];
+            int from = 0;
+            do {
+                ByteBuffer block = nextBlock();
+                int blockCount = block.remaining() / 4;
+                block.asIntBuffer().get(values, from, blockCount);
+                from += blockCount;
+            } while (from < count);
+            return values;
+        }
+    }
+}
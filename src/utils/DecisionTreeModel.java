@@ -1,18 +1,16 @@
 package src.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.IntStream;
+import src.table.ColumnarDataset;
 
 public class DecisionTreeModel {
 
-    private static final String RIGHT_CHILD = "RIGHT_CHILD";
-    private static final String LEFT_CHILD = "LEFT_CHILD";
-
     public static class TreeNode {
         public Function<String[], Boolean> question;
         public String questionText;
@@ -21,48 +19,153 @@ public class DecisionTreeModel {
         public TreeNode right;
         public String prediction;
         public int caseCount;
-    }    
+        public int featureIndex = -1;
+        public double threshold;
+    }
 
     private TreeNode root;
     private List<String> attributeNames;
 
+    // Training data parsed once: values[column][row] (NaN when not numeric), the numeric rows of
+    // each column in ascending value order, and label codes per row
+    private double[][] values;
+    private int[][] sortedRows;
+    private boolean[] inNode;
+    private int[] labels;
+    private List<String> labelNames;
+
     public DecisionTreeModel(List<String[]> data, List<String> attributeNames, int labelColumnIndex) {
         this.attributeNames = attributeNames;
-        this.root = buildTree(data, labelColumnIndex);
+        encode(data, labelColumnIndex);
+
+        int[] rows = new int[data.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        this.root = buildTree(rows, labelColumnIndex);
+
+        // Training arrays are only needed while building
+        this.values = null;
+        this.sortedRows = null;
+        this.inNode = null;
+        this.labels = null;
+    }
+
+    private void encode(List<String[]> data, int labelColumnIndex) {
+        int columnCount = data.get(0).length;
+        int rowCount = data.size();
+        values = new double[columnCount][];
+        for (int col = 0; col < columnCount; col++) {
+            if (col == labelColumnIndex) continue;
+            double[] column = new double[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                column[row] = parseOrNaN(data.get(row)[col]);
+            }
+            values[col] = column;
+        }
+
+        sortedRows = new int[columnCount][];
+        for (int col = 0; col < columnCount; col++) {
+            if (col == labelColumnIndex) continue;
+            double[] column = values[col];
+            int[] rows = IntStream.range(0, rowCount).filter(row -> !Double.isNaN(column[row])).toArray();
+            ColumnarDataset.sortByValue(rows, column);
+            sortedRows[col] = rows;
+        }
+        inNode = new boolean[rowCount];
+
+        labels = new int[rowCount];
+        labelNames = new ArrayList<>();
+        Map<String, Integer> codes = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            String label = data.get(row)[labelColumnIndex];
+            Integer code = codes.get(label);
+            if (code == null) {
+                code = labelNames.size();
+                labelNames.add(label);
+                codes.put(label, code);
+            }
+            labels[row] = code;
+        }
+    }
+
+    private static double parseOrNaN(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException | NullPointerException e) {
+            return Double.NaN; // Non-numeric values never satisfy a question
+        }
     }
 
-    private TreeNode buildTree(List<String[]> data, int labelColumnIndex) {
-        if (isPure(data, labelColumnIndex)) {
+    private TreeNode buildTree(int[] rows, int labelColumnIndex) {
+        if (isPure(rows)) {
             TreeNode leaf = new TreeNode();
             leaf.isLeaf = true;
-            leaf.prediction = data.get(0)[labelColumnIndex];
-            leaf.caseCount = data.size(); // Track the number of cases
+            leaf.prediction = labelNames.get(labels[rows[0]]);
+            leaf.caseCount = rows.length; // Track the number of cases
             return leaf;
         }
 
+        int classCount = labelNames.size();
+        int[] totalCounts = new int[classCount];
+        for (int row : rows) {
+            totalCounts[labels[row]]++;
+        }
+        double currentImpurity = gini(totalCounts, rows.length);
+
         double bestGain = 0.0;
         int bestIndex = -1;
         double bestValue = Double.MIN_VALUE;
 
-        for (int i = 0; i < data.get(0).length; i++) {
+        int[] rightCounts = new int[classCount];
+        int[] leftCounts = new int[classCount];
+        for (int row : rows) {
+            inNode[row] = true;
+        }
+
+        for (int i = 0; i < values.length; i++) {
             if (i == labelColumnIndex) continue;
 
-            Set<Double> uniqueValues = getUniqueValues(data, i);
-            for (Double value : uniqueValues) {
-                double gain = informationGain(data, labelColumnIndex, i, value);
+            // Sweep the cases of this node in ascending value order so every threshold is scored once.
+            // Cases answering "value <= threshold" go right, everything else (including NaN) goes left.
+            double[] column = values[i];
+            Arrays.fill(rightCounts, 0);
+            int rightSize = 0;
+            double previous = Double.NaN;
+            for (int row : sortedRows[i]) {
+                if (!inNode[row]) continue;
+                double value = column[row];
+                if (rightSize > 0 && value != previous) {
+                    double gain = splitGain(currentImpurity, totalCounts, rightCounts, leftCounts, rightSize, rows.length);
+                    if (gain > bestGain) {
+                        bestGain = gain;
+                        bestIndex = i;
+                        bestValue = previous;
+                    }
+                }
+                rightCounts[labels[row]]++;
+                rightSize++;
+                previous = value;
+            }
+            if (rightSize > 0) {
+                double gain = splitGain(currentImpurity, totalCounts, rightCounts, leftCounts, rightSize, rows.length);
                 if (gain > bestGain) {
                     bestGain = gain;
                     bestIndex = i;
-                    bestValue = value;
+                    bestValue = previous;
                 }
             }
         }
 
+        for (int row : rows) {
+            inNode[row] = false;
+        }
+
         if (bestGain == 0) {
             TreeNode leaf = new TreeNode();
             leaf.isLeaf = true;
-            leaf.prediction = mostCommonLabel(data, labelColumnIndex);
-            leaf.caseCount = data.size(); // Track the number of cases
+            leaf.prediction = mostCommonLabel(rows);
+            leaf.caseCount = rows.length; // Track the number of cases
             return leaf;
         }
 
@@ -76,98 +179,85 @@ public class DecisionTreeModel {
                 return false; // Handle the case where dataRow[bestIndex] is not a number
             }
         };
-        
-        Map<String, List<String[]>> partitions = partitionByQuestion(question, data);
+
+        // Partition the rows: question true goes to the right child partition
+        double[] column = values[bestIndex];
+        int rightSize = 0;
+        for (int row : rows) {
+            if (column[row] <= bestValue) {
+                rightSize++;
+            }
+        }
+        int[] rightRows = new int[rightSize];
+        int[] leftRows = new int[rows.length - rightSize];
+        int r = 0;
+        int l = 0;
+        for (int row : rows) {
+            if (column[row] <= bestValue) {
+                rightRows[r++] = row;
+            } else {
+                leftRows[l++] = row;
+            }
+        }
 
         TreeNode node = new TreeNode();
         node.question = question;
+        node.featureIndex = bestIndex;
+        node.threshold = bestValue;
         node.questionText = "Is " + attributeNames.get(bestIndex) + " <= " + bestValue + "?";
-        node.left = buildTree(partitions.get(LEFT_CHILD), labelColumnIndex);
-        node.right = buildTree(partitions.get(RIGHT_CHILD), labelColumnIndex);
+        node.left = buildTree(leftRows, labelColumnIndex);
+        node.right = buildTree(rightRows, labelColumnIndex);
 
         return node;
     }
 
-    private boolean isPure(List<String[]> data, int labelColumnIndex) {
-        String firstLabel = data.get(0)[labelColumnIndex];
-        for (String[] row : data) {
-            if (!row[labelColumnIndex].equals(firstLabel)) {
+    private boolean isPure(int[] rows) {
+        int firstLabel = labels[rows[0]];
+        for (int row : rows) {
+            if (labels[row] != firstLabel) {
                 return false;
             }
         }
         return true;
     }
 
-    private Set<Double> getUniqueValues(List<String[]> data, int index) {
-        Set<Double> uniqueValues = new HashSet<>();
-        for (String[] row : data) {
-            try {
-                uniqueValues.add(Double.parseDouble(row[index]));
-            } catch (NumberFormatException e) {
-                // Skip non-numeric values
-            }
-        }
-        return uniqueValues;
-    }
-
-    private String mostCommonLabel(List<String[]> data, int labelColumnIndex) {
+    private String mostCommonLabel(int[] rows) {
         Map<String, Integer> labelCounts = new HashMap<>();
-        for (String[] row : data) {
-            String label = row[labelColumnIndex];
+        for (int row : rows) {
+            String label = labelNames.get(labels[row]);
             labelCounts.put(label, labelCounts.getOrDefault(label, 0) + 1);
         }
         return labelCounts.entrySet().stream().max(Map.Entry.comparingByValue()).get().getKey();
     }
 
-    private double informationGain(List<String[]> data, int labelColumnIndex, int featureIndex, double value) {
-        double currentImpurity = gini(data, labelColumnIndex);
-        Map<String, List<String[]>> partitions = partitionByQuestion(dataRow -> {
-            try {
-                return Double.parseDouble(dataRow[featureIndex]) <= value;
-            } catch (NumberFormatException e) {
-                return false; // Handle non-numeric values gracefully
-            }
-        }, data);
-
-        double leftProbability = (double) partitions.get(LEFT_CHILD).size() / data.size();
+    private static double splitGain(double currentImpurity, int[] totalCounts, int[] rightCounts,
+                                    int[] leftCounts, int rightSize, int size) {
+        int leftSize = size - rightSize;
+        for (int c = 0; c < totalCounts.length; c++) {
+            leftCounts[c] = totalCounts[c] - rightCounts[c];
+        }
+        double leftProbability = (double) leftSize / size;
         double rightProbability = 1 - leftProbability;
 
         double gain = currentImpurity;
-        gain -= leftProbability * gini(partitions.get(LEFT_CHILD), labelColumnIndex);
-        gain -= rightProbability * gini(partitions.get(RIGHT_CHILD), labelColumnIndex);
+        gain -= leftProbability * gini(leftCounts, leftSize);
+        gain -= rightProbability * gini(rightCounts, rightSize);
         return gain;
     }
 
-    private double gini(List<String[]> data, int labelColumnIndex) {
-        Map<String, Integer> labelCounts = new HashMap<>();
-        for (String[] row : data) {
-            String label = row[labelColumnIndex];
-            labelCounts.put(label, labelCounts.getOrDefault(label, 0) + 1);
-        }
-
+    private static double gini(int[] labelCounts, int size) {
         double impurity = 1.0;
-        for (int count : labelCounts.values()) {
-            double prob = (double) count / data.size();
+        if (size == 0) {
+            return impurity;
+        }
+        for (int count : labelCounts) {
+            if (count == 0) continue;
+            double prob = (double) count / size;
             impurity -= prob * prob;
         }
         return impurity;
     }
 
-    private Map<String, List<String[]>> partitionByQuestion(Function<String[], Boolean> question, List<String[]> data) {
-        Map<String, List<String[]>> partitions = new HashMap<>();
-        partitions.put(RIGHT_CHILD, new ArrayList<>());
-        partitions.put(LEFT_CHILD, new ArrayList<>());
-
-        for (String[] row : data) {
-            if (question.apply(row)) {
-                partitions.get(RIGHT_CHILD).add(row);
-            } else {
-                partitions.get(LEFT_CHILD).add(row);
-            }
-        }
-        return partitions;
-    }
-
     public void printDecisionTree() {
         printTreeNode(root, 0);
     }
@@ -184,5 +274,5 @@ public class DecisionTreeModel {
 
     public TreeNode getRoot() {
         return root;
-    }     
+    }
 }
@@ -1,13 +1,12 @@
 package src.utils;
 
 import java.util.List;
-import java.util.Map;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import src.CsvViewer;
+import src.table.ColumnarDataset;
 /**
  * The GradientDescentOptimizer class provides functionality to optimize the coefficients
  * for a weighted sum of features using the gradient descent algorithm with optional adaptive learning rate.
@@ -137,37 +136,49 @@ public class GradientDescentOptimizer {
      * @return the class separability score.
      */
     private double evaluateClassSeparation(List<Integer> originalColumnIndices, double[] coefficients, String trigFunction) {
-        Map<String, List<Double>> classSums = new HashMap<>();
+        ColumnarDataset dataset = ColumnarDataset.of(csvViewer.tableModel);
         int classColumnIndex = csvViewer.getClassColumnIndex();
-
-        for (int row = 0; row < csvViewer.tableModel.getRowCount(); row++) {
-            double sum = 0.0;
-            for (int j = 0; j < originalColumnIndices.size(); j++) {
-                double value = Double.parseDouble(csvViewer.tableModel.getValueAt(row, originalColumnIndices.get(j)).toString());
-                sum += coefficients[j] * value;
+        int totalSampleCount = dataset.getRowCount();
+
+        List<String> classNames = new ArrayList<>();
+        int[] classCodes = dataset.encodeColumn(classColumnIndex, classNames);
+        int classCount = classNames.size();
+
+        // Weighted sums are accumulated column by column over primitive arrays
+        double[] sums = new double[totalSampleCount];
+        for (int j = 0; j < originalColumnIndices.size(); j++) {
+            int col = originalColumnIndices.get(j);
+            double coefficient = coefficients[j];
+            for (int row = 0; row < totalSampleCount; row++) {
+                sums[row] += coefficient * dataset.getDouble(row, col);
             }
-            sum = applyTrigFunction(sum, trigFunction);
-            String className = (String) csvViewer.tableModel.getValueAt(row, classColumnIndex);
-            classSums.computeIfAbsent(className, k -> new ArrayList<>()).add(sum);
         }
 
-        double overallMean = classSums.values().stream()
-                .flatMapToDouble(classList -> classList.stream().mapToDouble(Double::doubleValue))
-                .average().orElse(0.0);
+        int[] classSampleCounts = new int[classCount];
+        double[] classMeans = new double[classCount];
+        double overallMean = 0.0;
+        for (int row = 0; row < totalSampleCount; row++) {
+            double sum = applyTrigFunction(sums[row], trigFunction);
+            sums[row] = sum;
+            classSampleCounts[classCodes[row]]++;
+            classMeans[classCodes[row]] += sum;
+            overallMean += sum;
+        }
+        overallMean = totalSampleCount > 0 ? overallMean / totalSampleCount : 0.0;
+        for (int c = 0; c < classCount; c++) {
+            classMeans[c] /= classSampleCounts[c];
+        }
 
         double betweenClassVariance = 0.0;
         double withinClassVariance = 0.0;
-        int totalSampleCount = csvViewer.tableModel.getRowCount();
 
-        for (Map.Entry<String, List<Double>> entry : classSums.entrySet()) {
-            List<Double> classValues = entry.getValue();
-            int classSampleCount = classValues.size();
-            double classMean = classValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-
-            betweenClassVariance += classSampleCount * Math.pow(classMean - overallMean, 2);
-
-            double classVariance = classValues.stream().mapToDouble(v -> Math.pow(v - classMean, 2)).sum();
-            withinClassVariance += classVariance;
+        for (int c = 0; c < classCount; c++) {
+            double diff = classMeans[c] - overallMean;
+            betweenClassVariance += classSampleCounts[c] * diff * diff;
+        }
+        for (int row = 0; row < totalSampleCount; row++) {
+            double diff = sums[row] - classMeans[classCodes[row]];
+            withinClassVariance += diff * diff;
         }
 
         betweenClassVariance /= totalSampleCount;
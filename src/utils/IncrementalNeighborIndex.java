@@ -0,0 +1,86 @@
+package src.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An exact nearest-neighbor index that points can be added to. The points are held in a
+ * {@link KDTree} followed by a tail of points added since it was built, which queries compare
+ * with directly; once the tail outgrows an eighth of the tree, a new tree over all points is
+ * built in the background and replaces the old one when it is done.
+ *
+ * Queries may run on any number of threads while points are added.
+ */
+public class IncrementalNeighborIndex implements NeighborIndex {
+
+    // Tails shorter than this are never worth a new tree
+    private static final int MIN_REBUILD_TAIL = 1024;
+
+    /**
+     * The points, of which the first tree.size() are in the tree. Points are only appended to
+     * the array, so a state stays valid for its own size after newer states have grown it.
+     */
+    private record State(KDTree tree, double[][] points, int size) {
+    }
+
+    private volatile State state;
+    private boolean rebuilding;
+
+    /**
+     * Builds the index over the given points, which are not copied and must not change.
+     */
+    public IncrementalNeighborIndex(double[][] points) {
+        this.state = new State(new KDTree(points), points, points.length);
+    }
+
+    @Override
+    public int size() {
+        return state.size();
+    }
+
+    /**
+     * Adds a point, whose index is the number of points before it.
+     */
+    public synchronized void add(double[] point) {
+        State current = state;
+        double[][] points = current.points();
+        if (current.size() == points.length) {
+            points = Arrays.copyOf(points, Math.max(16, points.length + (points.length >> 1)));
+        }
+        points[current.size()] = point;
+        state = new State(current.tree(), points, current.size() + 1);
+
+        int tail = state.size() - current.tree().size();
+        if (!rebuilding && tail >= Math.max(MIN_REBUILD_TAIL, current.tree().size() / 8)) {
+            rebuilding = true;
+            double[][] snapshot = Arrays.copyOf(points, state.size());
+            CompletableFuture.supplyAsync(() -> new KDTree(snapshot)).thenAccept(this::install);
+        }
+    }
+
+    private synchronized void install(KDTree tree) {
+        state = new State(tree, state.points(), state.size());
+        rebuilding = false;
+    }
+
+    @Override
+    public int[] nearest(double[] query, int k, Metric metric) {
+        return nearest(query, k, metric, null);
+    }
+
+    /**
+     * Returns the k nearest points like {@link #nearest(double[], int, Metric)}, with ties in
+     * distance broken by the lower rank instead of the lower index.
+     */
+    public int[] nearest(double[] query, int k, Metric metric, IntUnaryOperator rank) {
+        State current = state;
+        NeighborHeap neighbors = new NeighborHeap(Math.min(k, current.size()), rank);
+        current.tree().search(query, metric, neighbors);
+        double[][] points = current.points();
+        for (int i = current.tree().size(); i < current.size(); i++) {
+            neighbors.offer(metric.distance(query, points[i]), i);
+        }
+        return neighbors.sorted();
+    }
+}
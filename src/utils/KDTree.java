@@ -0,0 +1,199 @@
+package src.utils;
+
+import java.util.Arrays;
+
+/**
+ * A k-d tree over a fixed set of points, answering k-nearest-neighbor queries for the Euclidean
+ * and Manhattan distances.
+ *
+ * The answers are exactly those of a brute-force search that sorts every point by distance with
+ * a stable sort: neighbors are ordered by distance and then by index, and distances are computed
+ * with the same arithmetic as {@link Metric#distance}. Subtrees are only skipped when a lower bound
+ * of their distance, summed in the same order, is strictly beyond the current k-th neighbor, so
+ * rounding never changes the result. Points with NaN or infinite coordinates are kept out of the
+ * tree and compared with every query directly.
+ *
+ * A built tree is read-only, so any number of threads can query it at once.
+ */
+public class KDTree implements NeighborIndex {
+
+    private static final int LEAF_SIZE = 16;
+
+    private final double[][] points;
+    private final int dimensions;
+    private final int[] order;       // Indices of the finite points, grouped by node
+    private final int treeSize;      // Number of finite points, the first treeSize entries of order
+    private final int[] irregular;   // Indices of the points with a non-finite coordinate
+    private final int[] splitDimension;
+    private final double[] splitValue;
+
+    /**
+     * Builds the tree. The points are not copied and must not change while the tree is in use.
+     */
+    public KDTree(double[][] points) {
+        this.points = points;
+        this.dimensions = points.length == 0 ? 0 : points[0].length;
+        int[] finite = new int[points.length];
+        int[] other = new int[points.length];
+        int finiteCount = 0;
+        int otherCount = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (isFinite(points[i])) {
+                finite[finiteCount++] = i;
+            } else {
+                other[otherCount++] = i;
+            }
+        }
+        this.order = Arrays.copyOf(finite, finiteCount);
+        this.treeSize = finiteCount;
+        this.irregular = Arrays.copyOf(other, otherCount);
+
+        // Nodes are numbered like a binary heap; median splits keep the tree balanced
+        int leaves = Math.max(1, Integer.highestOneBit(Math.max(1, (treeSize - 1) / LEAF_SIZE)) << 1);
+        this.splitDimension = new int[2 * leaves];
+        this.splitValue = new double[2 * leaves];
+        build(0, 0, treeSize);
+    }
+
+    @Override
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * {@inheritDoc} The result is exact.
+     */
+    @Override
+    public int[] nearest(double[] query, int k, Metric metric) {
+        NeighborHeap neighbors = new NeighborHeap(Math.min(k, points.length));
+        search(query, metric, neighbors);
+        return neighbors.sorted();
+    }
+
+    /**
+     * Offers every point that can be among the nearest to the query to the given candidates.
+     */
+    void search(double[] query, Metric metric, NeighborHeap neighbors) {
+        if (neighbors.capacity == 0) {
+            return;
+        }
+        if (!isFinite(query)) {
+            // Distances may be NaN, which no bound can rule out
+            for (int i = 0; i < points.length; i++) {
+                neighbors.offer(metric.distance(query, points[i]), i);
+            }
+            return;
+        }
+        for (int i : irregular) {
+            neighbors.offer(metric.distance(query, points[i]), i);
+        }
+        search(0, 0, treeSize, query, metric, new double[dimensions], neighbors);
+    }
+
+    private void build(int node, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+        int dim = widestDimension(from, to);
+        int mid = (from + to) >>> 1;
+        select(from, to, mid, dim);
+        splitDimension[node] = dim;
+        splitValue[node] = points[order[mid]][dim];
+        build(2 * node + 1, from, mid);
+        build(2 * node + 2, mid, to);
+    }
+
+    private int widestDimension(int from, int to) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int dim = 0; dim < dimensions; dim++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                double value = points[order[i]][dim];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = dim;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Rearranges order[from, to) so that the point at nth is where it would be if the range were
+     * sorted by the given coordinate, with no greater coordinate before it and no smaller after.
+     */
+    private void select(int from, int to, int nth, int dim) {
+        int lo = from;
+        int hi = to - 1;
+        while (lo < hi) {
+            double pivot = points[order[(lo + hi) >>> 1]][dim];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (points[order[i]][dim] < pivot) {
+                    i++;
+                }
+                while (points[order[j]][dim] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void search(int node, int from, int to, double[] query, Metric metric, double[] offsets,
+                        NeighborHeap neighbors) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                int index = order[i];
+                neighbors.offer(metric.distance(query, points[index]), index);
+            }
+            return;
+        }
+        int dim = splitDimension[node];
+        int mid = (from + to) >>> 1;
+        double diff = query[dim] - splitValue[node];
+        boolean leftFirst = diff < 0;
+        if (leftFirst) {
+            search(2 * node + 1, from, mid, query, metric, offsets, neighbors);
+        } else {
+            search(2 * node + 2, mid, to, query, metric, offsets, neighbors);
+        }
+
+        // Every point on the far side is at least |diff| away along dim
+        double saved = offsets[dim];
+        offsets[dim] = Math.max(saved, Math.abs(diff));
+        if (!neighbors.excludes(metric.bound(offsets))) {
+            if (leftFirst) {
+                search(2 * node + 2, mid, to, query, metric, offsets, neighbors);
+            } else {
+                search(2 * node + 1, from, mid, query, metric, offsets, neighbors);
+            }
+        }
+        offsets[dim] = saved;
+    }
+
+    static boolean isFinite(double[] point) {
+        for (double value : point) {
+            if (!Double.isFinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -384,18 +384,11 @@ public class LinearDiscriminantAnalysis {
     }
 
     private double dotProduct(double[] a, double[] b) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-        return sum;
+        return VectorKernels.dot(a, b);
     }
 
     private boolean convergence(double[] old, double[] current) {
-        double diff = 0;
-        for (int i = 0; i < old.length; i++) {
-            diff += Math.abs(old[i] - current[i]);
-        }
+        double diff = VectorKernels.manhattan(old, current);
         return diff < convergenceThreshold;
     }
 }
\ No newline at end of file
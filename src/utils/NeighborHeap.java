@@ -0,0 +1,100 @@
+package src.utils;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The k best candidates of a nearest-neighbor search so far, in a max-heap ordered by distance
+ * and then by the rank of their index.
+ */
+final class NeighborHeap {
+    final int capacity;
+    final double[] distances;
+    final int[] indices;
+    private final IntUnaryOperator rank;
+    int size;
+
+    NeighborHeap(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param rank orders points at the same distance, lowest first, or null to order them by index
+     */
+    NeighborHeap(int capacity, IntUnaryOperator rank) {
+        this.capacity = capacity;
+        this.distances = new double[capacity];
+        this.indices = new int[capacity];
+        this.rank = rank;
+    }
+
+    /**
+     * Returns true when no point at the given distance or more can be a neighbor.
+     */
+    boolean excludes(double distance) {
+        return size == capacity && Double.compare(distance, distances[0]) > 0;
+    }
+
+    void offer(double distance, int index) {
+        if (size < capacity) {
+            int i = size++;
+            // Sift up
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!after(distance, index, distances[parent], indices[parent])) {
+                    break;
+                }
+                distances[i] = distances[parent];
+                indices[i] = indices[parent];
+                i = parent;
+            }
+            distances[i] = distance;
+            indices[i] = index;
+        } else if (after(distances[0], indices[0], distance, index)) {
+            // Replace the worst candidate and sift down
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && after(distances[child + 1], indices[child + 1], distances[child], indices[child])) {
+                    child++;
+                }
+                if (!after(distances[child], indices[child], distance, index)) {
+                    break;
+                }
+                distances[i] = distances[child];
+                indices[i] = indices[child];
+                i = child;
+            }
+            distances[i] = distance;
+            indices[i] = index;
+        }
+    }
+
+    int[] sorted() {
+        Integer[] positions = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (a, b) -> {
+            int byDistance = Double.compare(distances[a], distances[b]);
+            return byDistance != 0 ? byDistance : Integer.compare(rank(indices[a]), rank(indices[b]));
+        });
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = indices[positions[i]];
+        }
+        return result;
+    }
+
+    private boolean after(double distance, int index, double otherDistance, int otherIndex) {
+        int byDistance = Double.compare(distance, otherDistance);
+        return byDistance > 0 || byDistance == 0 && rank(index) > rank(otherIndex);
+    }
+
+    private int rank(int index) {
+        return rank == null ? index : rank.applyAsInt(index);
+    }
+}
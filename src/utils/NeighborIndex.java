@@ -0,0 +1,137 @@
+package src.utils;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Answers k-nearest-neighbor queries over a fixed set of points, exactly ({@link KDTree}) or
+ * approximately ({@link RandomProjectionForest}).
+ */
+public interface NeighborIndex {
+
+    enum Metric {
+        EUCLIDEAN, MANHATTAN,
+        /**
+         * Euclidean distance over the coordinates that are not NaN in either point, or
+         * Double.MAX_VALUE when there are none; the same as EUCLIDEAN for points without NaN.
+         */
+        PAIRWISE_EUCLIDEAN;
+
+        public static Metric of(String name) {
+            return name.equalsIgnoreCase("manhattan") ? MANHATTAN : EUCLIDEAN;
+        }
+
+        public double distance(double[] a, double[] b) {
+            double sum = 0.0;
+            if (this == PAIRWISE_EUCLIDEAN) {
+                int validDimensions = 0;
+                for (int i = 0; i < a.length; i++) {
+                    if (!Double.isNaN(a[i]) && !Double.isNaN(b[i])) {
+                        double diff = a[i] - b[i];
+                        sum += diff * diff;
+                        validDimensions++;
+                    }
+                }
+                return validDimensions == 0 ? Double.MAX_VALUE : Math.sqrt(sum);
+            }
+            // Plain loops rather than VectorKernels: the k-d tree prunes with bounds summed in this
+            // same order, which keeps its answers exactly those of a brute-force search
+            if (this == MANHATTAN) {
+                for (int i = 0; i < a.length; i++) {
+                    sum += Math.abs(a[i] - b[i]);
+                }
+                return sum;
+            }
+            for (int i = 0; i < a.length; i++) {
+                double diff = a[i] - b[i];
+                sum += diff * diff;
+            }
+            return Math.sqrt(sum);
+        }
+
+        /**
+         * Returns the distance of two points without NaN or infinite coordinates through
+         * {@link VectorKernels}, which equals {@link #distance} up to rounding. For rankings that
+         * are approximate anyway; exact searches must use {@link #distance}.
+         */
+        double kernelDistance(double[] a, double[] b) {
+            if (this == MANHATTAN) {
+                return VectorKernels.manhattan(a, b);
+            }
+            return Math.sqrt(VectorKernels.squaredEuclidean(a, b));
+        }
+
+        /**
+         * Returns the distance of a point whose difference from the query is at least
+         * offsets[i] in each dimension, which is never more than the distance of any such point.
+         */
+        double bound(double[] offsets) {
+            double sum = 0.0;
+            if (this == MANHATTAN) {
+                for (double offset : offsets) {
+                    sum += offset;
+                }
+                return sum;
+            }
+            for (double offset : offsets) {
+                sum += offset * offset;
+            }
+            return Math.sqrt(sum);
+        }
+    }
+
+    /**
+     * The share of exact neighbors an approximate index found for a sample of its own points,
+     * and the time both searches took for that sample.
+     */
+    record Recall(double recall, int samples, long approximateMillis, long exactMillis) {
+    }
+
+    /**
+     * Returns the number of points.
+     */
+    int size();
+
+    /**
+     * Returns the indices of the k points nearest to the query, nearest first, with ties in
+     * distance broken by the lower index. Fewer are returned when there are fewer points.
+     */
+    int[] nearest(double[] query, int k, Metric metric);
+
+    /**
+     * Queries both indexes, which must hold the same points, with a random sample of a hundred
+     * of the points and compares their answers.
+     */
+    static Recall measureRecall(NeighborIndex approximate, NeighborIndex exact, double[][] points, int k,
+                                Metric metric) {
+        int[] sample = new Random(42).ints(0, points.length).distinct()
+            .limit(Math.min(100, points.length)).toArray();
+        long start = System.nanoTime();
+        int[][] found = IntStream.range(0, sample.length).parallel()
+            .mapToObj(i -> approximate.nearest(points[sample[i]], k, metric)).toArray(int[][]::new);
+        long approximateTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        int[][] expected = IntStream.range(0, sample.length).parallel()
+            .mapToObj(i -> exact.nearest(points[sample[i]], k, metric)).toArray(int[][]::new);
+        long exactTime = System.nanoTime() - start;
+
+        long hits = 0;
+        long total = 0;
+        for (int i = 0; i < sample.length; i++) {
+            Set<Integer> approximateSet = new HashSet<>();
+            for (int index : found[i]) {
+                approximateSet.add(index);
+            }
+            for (int index : expected[i]) {
+                if (approximateSet.contains(index)) {
+                    hits++;
+                }
+            }
+            total += expected[i].length;
+        }
+        return new Recall(total == 0 ? 1 : hits / (double) total, sample.length,
+            approximateTime / 1_000_000, exactTime / 1_000_000);
+    }
+}
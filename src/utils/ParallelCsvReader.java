@@ -0,0 +1,1453 @@
+package src.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import src.table.ColumnFile;
+import src.table.ColumnarDataset;
+
+/**
+ * Reads a CSV file on all cores. The file is split into chunks at line boundaries, each chunk is
+ * memory mapped and parsed straight into primitive columns, and the distinct values of the class
+ * column are collected in the same pass.
+ *
+ * Parsing follows the line-based reader it replaces: a double quote toggles quoting and is dropped,
+ * commas inside quotes do not split, every field is trimmed, and empty fields become NaN.
+ * Lines always end at a line break, even inside quotes.
+ *
+ * Compressed files (gzip or deflate) and standard input ({@link #STANDARD_INPUT}) cannot be mapped.
+ * They are decompressed on the calling thread into blocks of whole lines, which are parsed on the
+ * other cores while the next block is decompressed. Such a stream is only read once, so a class
+ * scan of it parses every column and the columns and rows chosen afterwards are taken from the
+ * rows already parsed.
+ */
+public class ParallelCsvReader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 16 << 20;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int STREAM_BLOCK_SIZE = 8 << 20;
+    private static final int PAGE_MASK = (1 << ColumnarDataset.PAGE_SHIFT) - 1;
+
+    /**
+     * File path that stands for standard input.
+     */
+    public static final String STANDARD_INPUT = "-";
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final String filePath;
+    private final String[] headers;
+    private final int classColumnIndex;
+    private final int[] columns;
+    private final int classColumn;
+    private final List<long[]> ranges; // Byte range of each chunk, null for a stream
+    private final List<Chunk> chunks;
+    private final List<String> classNames;
+    private final BitSet[] rowFilter; // Rows to load per chunk, null for all
+
+    /**
+     * @param headers names of the parsed columns
+     * @param columns file column index of each parsed column
+     * @param classColumn file column index of the class column, or -1
+     */
+    private ParallelCsvReader(String filePath, String[] headers, int[] columns, int classColumn,
+                              List<long[]> ranges, List<Chunk> chunks, List<String> classNames, BitSet[] rowFilter) {
+        this.filePath = filePath;
+        this.headers = headers;
+        this.columns = columns;
+        this.classColumn = classColumn;
+        this.ranges = ranges;
+        this.chunks = chunks;
+        this.classNames = classNames;
+        this.rowFilter = rowFilter;
+        int index = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == classColumn) {
+                index = i;
+            }
+        }
+        this.classColumnIndex = index;
+    }
+
+    /**
+     * Receives progress while a file is parsed. Both methods are called from parser threads.
+     * The total of a stream is not known in advance: for a compressed file progress is reported
+     * in thousandths of the file, for standard input the total grows with each parsed chunk.
+     */
+    public interface ProgressListener {
+        void chunkParsed(int parsedChunks, int totalChunks);
+
+        /**
+         * Returning true stops parsing; read then throws a CancellationException.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * Parses the whole file. The header line names the columns; a column named "class" or
+     * "label" is kept as text and its distinct values are available from {@link #getClassNames()}.
+     */
+    public static ParallelCsvReader read(String filePath) throws IOException {
+        return read(filePath, Long.MAX_VALUE, false, null);
+    }
+
+    /**
+     * Parses the whole file, reporting each parsed chunk to the listener.
+     */
+    public static ParallelCsvReader read(String filePath, ProgressListener listener) throws IOException {
+        return read(filePath, Long.MAX_VALUE, false, listener);
+    }
+
+    /**
+     * Parses only the lines within roughly the first maxBytes of data, to show the start of a
+     * large file while the rest is read.
+     */
+    public static ParallelCsvReader preview(String filePath, int maxBytes) throws IOException {
+        return read(filePath, maxBytes, false, null);
+    }
+
+    /**
+     * Reads only the class column of every row. This finds the class values and their rows at a
+     * fraction of the cost of a full parse, so that the columns and rows to load can be chosen
+     * with {@link #selectRows} and loaded with {@link #read(boolean[], BitSet[], ProgressListener)}.
+     */
+    public static ParallelCsvReader scanClasses(String filePath, ProgressListener listener) throws IOException {
+        return read(filePath, Long.MAX_VALUE, true, listener);
+    }
+
+    private static ParallelCsvReader read(String filePath, long maxBytes, boolean classOnly, ProgressListener listener) throws IOException {
+        if (isStream(filePath)) {
+            return readStream(filePath, maxBytes, listener);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            Layout layout = layout(channel, maxBytes);
+            int classColumn = findClassColumn(layout.headers());
+            boolean[] projection = new boolean[layout.headers().length];
+            if (classOnly) {
+                if (classColumn != -1) {
+                    projection[classColumn] = true;
+                }
+            } else {
+                Arrays.fill(projection, true);
+            }
+            return parse(channel, filePath, layout.headers(), classColumn, layout.ranges(), projection, null, listener);
+        }
+    }
+
+    /**
+     * The header of a file and the byte ranges of the chunks its data is split into.
+     */
+    private record Layout(String[] headers, List<long[]> ranges) {
+    }
+
+    /**
+     * Reads the header and splits the lines within roughly the first maxBytes of data into chunks.
+     */
+    private static Layout layout(FileChannel channel, long maxBytes) throws IOException {
+        long size = channel.size();
+        long headerEnd = findLineEnd(channel, 0, size);
+        String headerLine = readString(channel, 0, headerEnd);
+        String[] headers = size == 0 ? new String[0] : parseHeader(headerLine);
+        long dataStart = skipLineBreak(channel, headerEnd, size);
+        if (maxBytes < size - dataStart) {
+            size = findNewline(channel, dataStart + maxBytes, size);
+        }
+        return new Layout(headers, splitIntoChunks(channel, dataStart, size));
+    }
+
+    /**
+     * Columns of a file parsed straight into mapped column files, see {@link #readMapped}.
+     * @param classColumnIndex index of the class column among the headers, or -1
+     */
+    public record MappedDataset(String[] headers, int classColumnIndex, ColumnarDataset dataset) {
+    }
+
+    /**
+     * Parses the whole file into a dataset whose columns are memory mapped, as {@link #read}
+     * followed by {@link #toDataset} would build on the heap. Chunks are parsed a few at a time
+     * and their rows appended to temporary column files in file order, so a file larger than
+     * the heap can be loaded. A compressed file or standard input is parsed in full first,
+     * since it can only be read once.
+     * @param classMapping maps each class value to the label to store, or to null to drop its rows
+     */
+    public static MappedDataset readMapped(String filePath, Function<String, String> classMapping,
+                                           ProgressListener listener) throws IOException {
+        if (isStream(filePath)) {
+            return readStream(filePath, Long.MAX_VALUE, listener).writeMapped(classMapping);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            Layout layout = layout(channel, Long.MAX_VALUE);
+            boolean[] projection = new boolean[layout.headers().length];
+            Arrays.fill(projection, true);
+            return parseMapped(channel, layout.headers(), findClassColumn(layout.headers()), layout.ranges(),
+                projection, null, classMapping, listener);
+        }
+    }
+
+    /**
+     * Parses the chosen columns of the chosen rows, using the chunks of the scan this is called on.
+     * Lines of rows that are not chosen are skipped without being tokenized, and fields of columns
+     * that are not chosen are not parsed. The class column is always read.
+     * @param selectedColumns true for each file column to load
+     * @param rows rows to load per chunk as returned by {@link #selectRows}, or null for all rows
+     */
+    public ParallelCsvReader read(boolean[] selectedColumns, BitSet[] rows, ProgressListener listener) throws IOException {
+        if (ranges == null) {
+            return select(selectedColumns, rows);
+        }
+        String[] allHeaders = readHeaders(filePath);
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            return parse(channel, filePath, allHeaders, classColumn, ranges, projection(selectedColumns, allHeaders),
+                rows, listener);
+        }
+    }
+
+    /**
+     * Parses the chosen columns of the chosen rows into memory mapped columns, as
+     * {@link #read(boolean[], BitSet[], ProgressListener)} followed by {@link #toDataset} would
+     * build on the heap. See {@link #readMapped(String, Function, ProgressListener)}.
+     */
+    public MappedDataset readMapped(boolean[] selectedColumns, BitSet[] rows, Function<String, String> classMapping,
+                                    ProgressListener listener) throws IOException {
+        if (ranges == null) {
+            return select(selectedColumns, rows).writeMapped(classMapping);
+        }
+        String[] allHeaders = readHeaders(filePath);
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            return parseMapped(channel, allHeaders, classColumn, ranges, projection(selectedColumns, allHeaders),
+                rows, classMapping, listener);
+        }
+    }
+
+    /**
+     * Returns the file columns to parse: the selected ones and the class column.
+     */
+    private boolean[] projection(boolean[] selectedColumns, String[] allHeaders) {
+        boolean[] projection = Arrays.copyOf(selectedColumns, allHeaders.length);
+        if (classColumn != -1) {
+            projection[classColumn] = true;
+        }
+        return projection;
+    }
+
+    /**
+     * Chooses rows of a class scan: the rows of the accepted classes, and of those the given
+     * fraction of each class, picked at random but in file order. Every accepted class keeps at
+     * least one row. Without a class column all rows form one class.
+     * @return the chosen rows of each chunk, indexed by row within the chunk
+     */
+    public BitSet[] selectRows(Predicate<String> acceptClass, double fraction, long seed) {
+        int classCount = classColumn == -1 ? 1 : classNames.size();
+        Map<String, Integer> globalCode = new HashMap<>();
+        for (int code = 0; code < classNames.size(); code++) {
+            globalCode.put(classNames.get(code), code);
+        }
+
+        // Map chunk-local class codes to global ones, -1 for rejected classes, and count rows per class
+        int[][] remaps = new int[chunks.size()][];
+        long[] available = new long[classCount];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            if (classColumn == -1) {
+                available[0] += chunk.rows;
+                continue;
+            }
+            List<String> chunkClasses = chunk.dictionaries[classColumn].values;
+            int[] remap = new int[chunkClasses.size()];
+            for (int code = 0; code < remap.length; code++) {
+                String className = chunkClasses.get(code);
+                remap[code] = acceptClass.test(className) ? globalCode.get(className) : -1;
+            }
+            int[] classCodes = chunk.codes[classColumn];
+            for (int row = 0; row < chunk.rows; row++) {
+                if (remap[classCodes[row]] >= 0) {
+                    available[remap[classCodes[row]]]++;
+                }
+            }
+            remaps[c] = remap;
+        }
+
+        long[] wanted = new long[classCount];
+        for (int code = 0; code < classCount; code++) {
+            wanted[code] = available[code] == 0 ? 0 : Math.max(1, Math.round(available[code] * fraction));
+        }
+
+        // Selection sampling: each row is kept with probability wanted / remaining of its class,
+        // which keeps exactly the wanted number of rows per class
+        Random random = new Random(seed);
+        BitSet[] selected = new BitSet[chunks.size()];
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            selected[c] = new BitSet(chunk.rows);
+            for (int row = 0; row < chunk.rows; row++) {
+                int code = classColumn == -1 ? 0 : remaps[c][chunk.codes[classColumn][row]];
+                if (code < 0) {
+                    continue;
+                }
+                if (random.nextDouble() * available[code] < wanted[code]) {
+                    selected[c].set(row);
+                    wanted[code]--;
+                }
+                available[code]--;
+            }
+        }
+        return selected;
+    }
+
+    private static ParallelCsvReader parse(FileChannel channel, String filePath, String[] allHeaders, int classColumn,
+                                           List<long[]> ranges, boolean[] projection, BitSet[] rows,
+                                           ProgressListener listener) throws IOException {
+        Chunk[] parsed = new Chunk[ranges.size()];
+        parseRanges(channel, allHeaders, classColumn, ranges, 0, ranges.size(), projection, rows, listener,
+            new AtomicInteger(), parsed);
+        return assemble(filePath, allHeaders, classColumn, ranges, projection, Arrays.asList(parsed));
+    }
+
+    /**
+     * Parses as many chunks at a time as there are cores, appending the rows of each to mapped
+     * column files in file order before the next chunks are parsed.
+     */
+    private static MappedDataset parseMapped(FileChannel channel, String[] allHeaders, int classColumn,
+                                             List<long[]> ranges, boolean[] projection, BitSet[] rows,
+                                             Function<String, String> classMapping,
+                                             ProgressListener listener) throws IOException {
+        int[] columns = IntStream.range(0, allHeaders.length).filter(col -> projection[col]).toArray();
+        MappedColumns mapped = new MappedColumns(columns, classColumn, classMapping);
+        Chunk[] parsed = new Chunk[ranges.size()];
+        AtomicInteger parsedCount = new AtomicInteger();
+        int batch = Runtime.getRuntime().availableProcessors();
+        for (int first = 0; first < ranges.size(); first += batch) {
+            int end = Math.min(ranges.size(), first + batch);
+            parseRanges(channel, allHeaders, classColumn, ranges, first, end, projection, rows, listener,
+                parsedCount, parsed);
+            for (int i = first; i < end; i++) {
+                mapped.append(parsed[i], null);
+                parsed[i] = null;
+            }
+        }
+        return mapped.finish(selectHeaders(allHeaders, columns));
+    }
+
+    /**
+     * Parses ranges [from, to) on all cores into the same slots of parsed.
+     */
+    private static void parseRanges(FileChannel channel, String[] allHeaders, int classColumn, List<long[]> ranges,
+                                    int from, int to, boolean[] projection, BitSet[] rows, ProgressListener listener,
+                                    AtomicInteger parsedCount, Chunk[] parsed) throws IOException {
+        int headerLength = String.join(",", allHeaders).length();
+        try {
+            IntStream.range(from, to).parallel().forEach(i -> {
+                if (listener != null && listener.isCancelled()) {
+                    throw new CancellationException();
+                }
+                long[] range = ranges.get(i);
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    BitSet keep = rows == null ? null : rows[i];
+                    int capacity = keep == null ? estimateRows(bytes, headerLength) : Math.max(16, keep.cardinality());
+                    Chunk chunk = new Chunk(allHeaders.length, classColumn, projection, keep, capacity);
+                    chunk.parse(bytes);
+                    parsed[i] = chunk;
+                    if (listener != null) {
+                        listener.chunkParsed(parsedCount.incrementAndGet(), ranges.size());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ParallelCsvReader assemble(String filePath, String[] allHeaders, int classColumn, List<long[]> ranges,
+                                              boolean[] projection, List<Chunk> parsed) {
+        // Collect the class values of all chunks in order of first appearance
+        Map<String, Integer> classCodes = new LinkedHashMap<>();
+        for (Chunk chunk : parsed) {
+            if (classColumn == -1) break;
+            for (String className : chunk.dictionaries[classColumn].values) {
+                classCodes.putIfAbsent(className, classCodes.size());
+            }
+        }
+
+        int[] columns = IntStream.range(0, allHeaders.length).filter(col -> projection[col]).toArray();
+        return new ParallelCsvReader(filePath, selectHeaders(allHeaders, columns), columns, classColumn, ranges, parsed,
+            new ArrayList<>(classCodes.keySet()), null);
+    }
+
+    private static String[] selectHeaders(String[] allHeaders, int[] columns) {
+        String[] headers = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            headers[i] = allHeaders[columns[i]];
+        }
+        return headers;
+    }
+
+    /**
+     * Returns true when the path is standard input or a compressed file, which are read as a stream.
+     */
+    public static boolean isStream(String filePath) {
+        String lower = filePath.toLowerCase();
+        return filePath.equals(STANDARD_INPUT) || lower.endsWith(".gz") || lower.endsWith(".gzip")
+            || lower.endsWith(".deflate") || lower.endsWith(".zz");
+    }
+
+    /**
+     * Opens standard input or a file, decompressing it when it starts with a gzip or zlib header
+     * or, for a .deflate file, as raw deflate data.
+     * @param consumed receives the number of bytes read from the underlying input
+     */
+    private static InputStream openStream(String filePath, AtomicLong consumed) throws IOException {
+        InputStream raw = filePath.equals(STANDARD_INPUT)
+            ? new FilterInputStream(System.in) {
+                @Override
+                public void close() {
+                    // Leave standard input open
+                }
+            }
+            : Files.newInputStream(Path.of(filePath));
+        BufferedInputStream in = new BufferedInputStream(new FilterInputStream(raw) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) consumed.incrementAndGet();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) consumed.addAndGet(read);
+                return read;
+            }
+        }, SCAN_BUFFER_SIZE);
+
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(in, SCAN_BUFFER_SIZE);
+        }
+        if (first >= 0 && second >= 0 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0) {
+            return new InflaterInputStream(in, new Inflater(), SCAN_BUFFER_SIZE);
+        }
+        if (filePath.toLowerCase().endsWith(".deflate")) {
+            return new InflaterInputStream(in, new Inflater(true), SCAN_BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    /**
+     * Reads a stream block by block. Each block ends at a line break and is parsed on the common
+     * pool while this thread decompresses the next; at most two blocks per core are in flight.
+     */
+    private static ParallelCsvReader readStream(String filePath, long maxBytes, ProgressListener listener) throws IOException {
+        AtomicLong consumed = new AtomicLong();
+        long totalBytes = filePath.equals(STANDARD_INPUT) ? -1 : Files.size(Path.of(filePath));
+        int threads = Runtime.getRuntime().availableProcessors();
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<CompletableFuture<Chunk>> pending = new ArrayList<>();
+        AtomicInteger parsedCount = new AtomicInteger();
+
+        try (InputStream in = openStream(filePath, consumed)) {
+            byte[] block = new byte[STREAM_BLOCK_SIZE];
+            int length = readFully(in, block, 0);
+
+            // The header line starts the first block
+            int headerEnd = 0;
+            while (headerEnd < length && block[headerEnd] != '\n' && block[headerEnd] != '\r') headerEnd++;
+            String[] headers = length == 0 ? new String[0]
+                : parseHeader(new String(block, 0, headerEnd, StandardCharsets.UTF_8));
+            int dataStart = headerEnd;
+            if (dataStart < length && block[dataStart] == '\r') dataStart++;
+            if (dataStart < length && block[dataStart] == '\n') dataStart++;
+
+            int classColumn = findClassColumn(headers);
+            boolean[] projection = new boolean[headers.length];
+            Arrays.fill(projection, true);
+            int headerLength = String.join(",", headers).length();
+
+            long dataBytes = 0;
+            int start = dataStart;
+            boolean done = length == 0;
+            while (!done) {
+                if (listener != null && listener.isCancelled()) {
+                    throw new CancellationException();
+                }
+                boolean endOfStream = length < block.length;
+                boolean enough = dataBytes + length - start >= maxBytes; // Enough for a preview
+                done = endOfStream || enough;
+
+                // Cut the block after a \n; the rest starts the next block
+                int end = enough ? lastNewline(block, start, (int) Math.min(length, start + maxBytes - dataBytes + 1))
+                    : endOfStream ? length : start;
+                if (end <= start) {
+                    end = endOfStream ? length : lastNewline(block, start, length);
+                }
+                if (end <= start && !endOfStream) {
+                    // No line break: a line longer than the block
+                    block = Arrays.copyOf(block, block.length * 2);
+                    length = readFully(in, block, length);
+                    continue;
+                }
+
+                byte[] bytes = Arrays.copyOfRange(block, start, end);
+                dataBytes += bytes.length;
+                inFlight.acquireUninterruptibly();
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        if (listener != null && listener.isCancelled()) {
+                            throw new CancellationException();
+                        }
+                        Chunk chunk = new Chunk(headers.length, classColumn, projection, null,
+                            estimateRows(bytes, headerLength));
+                        chunk.parse(bytes);
+                        if (listener != null) {
+                            int parsed = parsedCount.incrementAndGet();
+                            if (totalBytes > 0) {
+                                listener.chunkParsed((int) Math.min(1000, consumed.get() * 1000 / totalBytes), 1000);
+                            } else {
+                                listener.chunkParsed(parsed, parsed + 1);
+                            }
+                        }
+                        return chunk;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+
+                if (!done) {
+                    int rest = length - end;
+                    System.arraycopy(block, end, block, 0, rest);
+                    start = 0;
+                    length = readFully(in, block, rest);
+                }
+            }
+
+            List<Chunk> parsed = new ArrayList<>(pending.size());
+            for (CompletableFuture<Chunk> future : pending) {
+                parsed.add(future.join());
+            }
+            return assemble(filePath, headers, classColumn, null, projection, parsed);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fills the buffer from offset on until it is full or the stream ends, and returns the number
+     * of bytes in it.
+     */
+    private static int readFully(InputStream in, byte[] buffer, int offset) throws IOException {
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read < 0) break;
+            offset += read;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the position just after the last \n in [from, to), or from when there is none.
+     */
+    private static int lastNewline(byte[] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Keeps the chosen columns and rows of a reader whose stream cannot be read again.
+     */
+    private ParallelCsvReader select(boolean[] selectedColumns, BitSet[] rows) {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] == classColumn || (columns[i] < selectedColumns.length && selectedColumns[columns[i]])) {
+                selected.add(i);
+            }
+        }
+        String[] selectedHeaders = new String[selected.size()];
+        int[] selectedColumnIndices = new int[selected.size()];
+        for (int i = 0; i < selected.size(); i++) {
+            selectedHeaders[i] = headers[selected.get(i)];
+            selectedColumnIndices[i] = columns[selected.get(i)];
+        }
+        return new ParallelCsvReader(filePath, selectedHeaders, selectedColumnIndices, classColumn, null, chunks,
+            classNames, rows);
+    }
+
+    /**
+     * Reads the column names from the header line of a file.
+     */
+    public static String[] readHeaders(String filePath) throws IOException {
+        if (isStream(filePath) && !filePath.equals(STANDARD_INPUT)) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    openStream(filePath, new AtomicLong()), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                return line == null ? new String[0] : parseHeader(line);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            return size == 0 ? new String[0] : parseHeader(readString(channel, 0, findLineEnd(channel, 0, size)));
+        }
+    }
+
+    /**
+     * Returns the index of the first column named "class" or "label", or -1.
+     */
+    public static int findClassColumn(String[] headers) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equalsIgnoreCase("class") || headers[i].equalsIgnoreCase("label")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public int getClassColumnIndex() {
+        return classColumnIndex;
+    }
+
+    /**
+     * Returns the distinct class values in order of first appearance.
+     */
+    public List<String> getClassNames() {
+        return classNames;
+    }
+
+    public int getRowCount() {
+        int rows = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            rows += rowFilter == null ? chunks.get(c).rows : rowFilter[c].cardinality();
+        }
+        return rows;
+    }
+
+    /**
+     * Builds the dataset of all parsed rows.
+     * @param classMapping maps each class value to the label to store, or to null to drop its rows
+     */
+    public ColumnarDataset toDataset(Function<String, String> classMapping) {
+        // Resolve the mapping once per distinct class value
+        Map<String, String> mappedClasses = new HashMap<>();
+        if (classColumn != -1) {
+            for (String className : classNames) {
+                mappedClasses.put(className, classMapping.apply(className));
+            }
+        }
+
+        // Mark the rows to keep once, per chunk
+        BitSet[] kept = new BitSet[chunks.size()];
+        int totalRows = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            kept[c] = new BitSet(chunk.rows);
+            if (rowFilter != null) {
+                kept[c].or(rowFilter[c]);
+            } else {
+                kept[c].set(0, chunk.rows);
+            }
+            if (classColumn != -1) {
+                List<String> chunkClasses = chunk.dictionaries[classColumn].values;
+                int[] classCodes = chunk.codes[classColumn];
+                boolean[] keepCode = new boolean[chunkClasses.size()];
+                for (int code = 0; code < keepCode.length; code++) {
+                    keepCode[code] = mappedClasses.get(chunkClasses.get(code)) != null;
+                }
+                for (int row = kept[c].nextSetBit(0); row >= 0; row = kept[c].nextSetBit(row + 1)) {
+                    if (!keepCode[classCodes[row]]) {
+                        kept[c].clear(row);
+                    }
+                }
+            }
+            totalRows += kept[c].cardinality();
+        }
+
+        ColumnarDataset dataset = new ColumnarDataset(totalRows);
+        for (int col : columns) {
+            if (col == classColumn) {
+                addClassColumn(dataset, totalRows, mappedClasses, kept);
+                continue;
+            }
+
+            int tokenCount = 0;
+            for (Chunk chunk : chunks) {
+                tokenCount += chunk.tokenCounts[col];
+            }
+
+            if (tokenCount * 2 > totalRows) {
+                addTextColumn(dataset, col, totalRows, kept);
+            } else {
+                addNumericColumn(dataset, col, totalRows, kept);
+            }
+        }
+        return dataset;
+    }
+
+    private void addNumericColumn(ColumnarDataset dataset, int col, int totalRows, BitSet[] kept) {
+        double[] values = new double[totalRows];
+        BitSet missing = new BitSet();
+        Map<Integer, String> tokens = new TreeMap<>();
+        int target = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            double[] chunkValues = chunk.values[col];
+            int[] chunkCodes = chunk.codes[col];
+            BitSet chunkMissing = chunk.missing[col];
+            for (int row = kept[c].nextSetBit(0); row >= 0; row = kept[c].nextSetBit(row + 1)) {
+                values[target] = chunkValues[row];
+                if (chunkMissing != null && chunkMissing.get(row)) {
+                    missing.set(target);
+                }
+                if (chunkCodes != null && chunkCodes[row] >= 0) {
+                    tokens.put(target, chunk.dictionaries[col].values.get(chunkCodes[row]));
+                }
+                target++;
+            }
+        }
+        dataset.addNumericColumn(values, missing, tokens);
+    }
+
+    /**
+     * Adds a column that is mostly text. Numbers in it are kept as their formatted text.
+     */
+    private void addTextColumn(ColumnarDataset dataset, int col, int totalRows, BitSet[] kept) {
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> codeOf = new HashMap<>();
+        int[] codes = new int[totalRows];
+        int target = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            double[] chunkValues = chunk.values[col];
+            int[] chunkCodes = chunk.codes[col];
+            BitSet chunkMissing = chunk.missing[col];
+            int[] remap = remapCodes(chunk.dictionaries[col], codeOf, dictionary);
+            for (int row = kept[c].nextSetBit(0); row >= 0; row = kept[c].nextSetBit(row + 1)) {
+                if (chunkMissing != null && chunkMissing.get(row)) {
+                    codes[target++] = -1;
+                } else if (chunkCodes != null && chunkCodes[row] >= 0) {
+                    codes[target++] = remap[chunkCodes[row]];
+                } else {
+                    codes[target++] = encode(ColumnarDataset.formatNumber(chunkValues[row]), codeOf, dictionary);
+                }
+            }
+        }
+        dataset.addTextColumn(codes, dictionary);
+    }
+
+    private void addClassColumn(ColumnarDataset dataset, int totalRows, Map<String, String> mappedClasses, BitSet[] kept) {
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> codeOf = new HashMap<>();
+        int[] codes = new int[totalRows];
+        int target = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            // Translate chunk-local codes to codes of the mapped labels; blank labels stay blank cells
+            List<String> chunkClasses = chunk.dictionaries[classColumn].values;
+            int[] remap = new int[chunkClasses.size()];
+            for (int code = 0; code < remap.length; code++) {
+                String label = mappedClasses.get(chunkClasses.get(code));
+                remap[code] = label == null || label.isEmpty() ? -1 : encode(label, codeOf, dictionary);
+            }
+            int[] classCodes = chunk.codes[classColumn];
+            for (int row = kept[c].nextSetBit(0); row >= 0; row = kept[c].nextSetBit(row + 1)) {
+                codes[target++] = remap[classCodes[row]];
+            }
+        }
+        dataset.addTextColumn(codes, dictionary);
+    }
+
+    /**
+     * Writes the parsed rows to mapped column files, for a stream whose rows are already in memory.
+     */
+    private MappedDataset writeMapped(Function<String, String> classMapping) throws IOException {
+        MappedColumns mapped = new MappedColumns(columns, classColumn, classMapping);
+        for (int c = 0; c < chunks.size(); c++) {
+            mapped.append(chunks.get(c), rowFilter == null ? null : rowFilter[c]);
+        }
+        return mapped.finish(headers);
+    }
+
+    private static int[] remapCodes(ByteDictionary chunkDictionary, Map<String, Integer> codeOf, List<String> dictionary) {
+        if (chunkDictionary == null) {
+            return new int[0];
+        }
+        int[] remap = new int[chunkDictionary.values.size()];
+        for (int code = 0; code < remap.length; code++) {
+            remap[code] = encode(chunkDictionary.values.get(code), codeOf, dictionary);
+        }
+        return remap;
+    }
+
+    private static int encode(String value, Map<String, Integer> codeOf, List<String> dictionary) {
+        Integer code = codeOf.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codeOf.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Columns built one chunk of rows at a time in temporary files, with the same column kinds,
+     * class labels, blank cells and tokens as {@link #toDataset}. Each column keeps its numbers in
+     * one file and, from its first text field on, the codes of its text in another. A column
+     * that turns out to be mostly text is recoded from both files when it is finished.
+     */
+    private static final class MappedColumns {
+        private final int[] columns;
+        private final int classColumn;
+        private final Function<String, String> classMapping;
+        private final Map<String, String> mappedClasses = new HashMap<>();
+        private final ColumnFile[] values;
+        private final ColumnFile[] codes;
+        private final BitSet[] missing;
+        private final int[] tokenCounts;
+        private final List<List<String>> dictionaries = new ArrayList<>();
+        private final List<Map<String, Integer>> codeOfs = new ArrayList<>();
+        private int rows;
+
+        MappedColumns(int[] columns, int classColumn, Function<String, String> classMapping) throws IOException {
+            this.columns = columns;
+            this.classColumn = classColumn;
+            this.classMapping = classMapping;
+            this.values = new ColumnFile[columns.length];
+            this.codes = new ColumnFile[columns.length];
+            this.missing = new BitSet[columns.length];
+            this.tokenCounts = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] == classColumn) {
+                    codes[i] = ColumnFile.ints();
+                } else {
+                    values[i] = ColumnFile.doubles();
+                    missing[i] = new BitSet();
+                }
+                dictionaries.add(new ArrayList<>());
+                codeOfs.add(new HashMap<>());
+            }
+        }
+
+        /**
+         * Appends the rows of a chunk whose class is kept.
+         * @param rowFilter rows of the chunk to append, or null for all
+         */
+        void append(Chunk chunk, BitSet rowFilter) throws IOException {
+            BitSet kept = new BitSet(chunk.rows);
+            if (rowFilter != null) {
+                kept.or(rowFilter);
+            } else {
+                kept.set(0, chunk.rows);
+            }
+            int[] classRemap = null;
+            if (classColumn != -1) {
+                // Translate chunk-local codes to codes of the mapped labels, -2 for dropped rows
+                List<String> chunkClasses = chunk.dictionaries[classColumn].values;
+                int classIndex = indexOf(classColumn);
+                classRemap = new int[chunkClasses.size()];
+                for (int code = 0; code < classRemap.length; code++) {
+                    String className = chunkClasses.get(code);
+                    if (!mappedClasses.containsKey(className)) {
+                        mappedClasses.put(className, classMapping.apply(className));
+                    }
+                    String label = mappedClasses.get(className);
+                    classRemap[code] = label == null ? -2 : label.isEmpty() ? -1
+                        : encode(label, codeOfs.get(classIndex), dictionaries.get(classIndex));
+                }
+                int[] classCodes = chunk.codes[classColumn];
+                for (int row = kept.nextSetBit(0); row >= 0; row = kept.nextSetBit(row + 1)) {
+                    if (classRemap[classCodes[row]] == -2) {
+                        kept.clear(row);
+                    }
+                }
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                int col = columns[i];
+                if (col == classColumn) {
+                    for (int row = kept.nextSetBit(0); row >= 0; row = kept.nextSetBit(row + 1)) {
+                        codes[i].putInt(classRemap[chunk.codes[col][row]]);
+                    }
+                    continue;
+                }
+                double[] chunkValues = chunk.values[col];
+                int[] chunkCodes = chunk.codes[col];
+                BitSet chunkMissing = chunk.missing[col];
+                int[] remap = chunkCodes == null ? null : remapCodes(chunk.dictionaries[col], codeOfs.get(i), dictionaries.get(i));
+                if (chunkCodes != null && codes[i] == null) {
+                    // The earlier rows of the column hold no text
+                    codes[i] = ColumnFile.ints();
+                    for (int row = 0; row < rows; row++) {
+                        codes[i].putInt(-1);
+                    }
+                }
+                // Tokens are counted over all parsed rows, as toDataset counts them
+                tokenCounts[i] += chunk.tokenCounts[col];
+                int target = rows;
+                for (int row = kept.nextSetBit(0); row >= 0; row = kept.nextSetBit(row + 1)) {
+                    values[i].putDouble(chunkValues[row]);
+                    if (chunkMissing != null && chunkMissing.get(row)) {
+                        missing[i].set(target);
+                    }
+                    if (codes[i] != null) {
+                        codes[i].putInt(chunkCodes == null || chunkCodes[row] < 0 ? -1 : remap[chunkCodes[row]]);
+                    }
+                    target++;
+                }
+            }
+            rows += kept.cardinality();
+        }
+
+        private int indexOf(int col) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] == col) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Maps the column files into a dataset.
+         */
+        MappedDataset finish(String[] headers) throws IOException {
+            ColumnarDataset dataset = new ColumnarDataset(rows);
+            for (int i = 0; i < columns.length; i++) {
+                List<String> dictionary = dictionaries.get(i);
+                if (columns[i] == classColumn) {
+                    dataset.addMappedTextColumn(codes[i].mapInts(), dictionary);
+                } else if (tokenCounts[i] * 2 > rows) {
+                    dataset.addMappedTextColumn(recode(i), dictionary);
+                } else {
+                    Map<Integer, String> tokens = new TreeMap<>();
+                    if (codes[i] != null) {
+                        IntBuffer[] pages = codes[i].mapInts();
+                        for (int row = 0; row < rows; row++) {
+                            int code = pages[row >>> ColumnarDataset.PAGE_SHIFT].get(row & PAGE_MASK);
+                            if (code >= 0) {
+                                tokens.put(row, dictionary.get(code));
+                            }
+                        }
+                    }
+                    dataset.addMappedNumericColumn(values[i].mapDoubles(), missing[i], tokens);
+                }
+                for (ColumnFile file : new ColumnFile[] {values[i], codes[i]}) {
+                    if (file != null) {
+                        file.close();
+                    }
+                }
+            }
+            return new MappedDataset(headers, indexOf(classColumn), dataset);
+        }
+
+        /**
+         * Writes the codes of a mostly text column, in which numbers are kept as their formatted text.
+         */
+        private IntBuffer[] recode(int i) throws IOException {
+            DoubleBuffer[] valuePages = values[i].mapDoubles();
+            IntBuffer[] codePages = codes[i].mapInts();
+            try (ColumnFile text = ColumnFile.ints()) {
+                for (int row = 0; row < rows; row++) {
+                    int page = row >>> ColumnarDataset.PAGE_SHIFT;
+                    int code = codePages[page].get(row & PAGE_MASK);
+                    if (missing[i].get(row)) {
+                        text.putInt(-1);
+                    } else if (code >= 0) {
+                        text.putInt(code);
+                    } else {
+                        String number = ColumnarDataset.formatNumber(valuePages[page].get(row & PAGE_MASK));
+                        text.putInt(encode(number, codeOfs.get(i), dictionaries.get(i)));
+                    }
+                }
+                return text.mapInts();
+            }
+        }
+    }
+
+    /**
+     * Rows parsed from one chunk of the file, stored column by column.
+     */
+    private static final class Chunk {
+        final int columnCount;
+        final int classColumnIndex;
+        final boolean[] projection; // Columns whose fields are stored
+        final BitSet keep; // Rows to store by row number within the chunk, null for all
+        int lineNumber; // Rows seen so far, stored or not
+        int rows;
+        int capacity;
+        double[][] values;
+        BitSet[] missing;
+        // Dictionary codes of text fields, -1 where the field is a number. Allocated per column on
+        // its first text field; the class column always has them.
+        int[][] codes;
+        ByteDictionary[] dictionaries;
+        int[] tokenCounts;
+
+        private byte[] scratch = new byte[256];
+        private boolean parsedNumber;
+
+        Chunk(int columnCount, int classColumnIndex, boolean[] projection, BitSet keep, int capacity) {
+            this.columnCount = columnCount;
+            this.classColumnIndex = classColumnIndex;
+            this.projection = projection;
+            this.keep = keep;
+            this.capacity = capacity;
+            this.values = new double[columnCount][];
+            this.missing = new BitSet[columnCount];
+            this.codes = new int[columnCount][];
+            this.dictionaries = new ByteDictionary[columnCount];
+            this.tokenCounts = new int[columnCount];
+            for (int col = 0; col < columnCount; col++) {
+                if (col == classColumnIndex) {
+                    codes[col] = new int[capacity];
+                    dictionaries[col] = new ByteDictionary();
+                } else if (projection[col]) {
+                    values[col] = new double[capacity];
+                }
+            }
+        }
+
+        void parse(byte[] bytes) {
+            int length = bytes.length;
+            int pos = 0;
+            while (pos < length) {
+                if (keep != null && bytes[pos] != '\n' && bytes[pos] != '\r' && !keep.get(lineNumber++)) {
+                    // Skip a row that is not wanted up to its line break
+                    int end = pos;
+                    while (end < length && bytes[end] != '\n' && bytes[end] != '\r') end++;
+                    pos = end;
+                    if (pos < length && bytes[pos] == '\r') pos++;
+                    if (pos < length && bytes[pos] == '\n' && (pos == end || bytes[pos - 1] == '\r')) pos++;
+                    continue;
+                }
+                int lineStart = pos;
+                int fieldStart = pos;
+                int col = 0;
+                boolean hasQuote = false;
+                boolean inQuotes = false;
+                int i = pos;
+                for (; i < length; i++) {
+                    byte b = bytes[i];
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                        hasQuote = true;
+                    } else if (b == ',' && !inQuotes) {
+                        if (col == 0) ensureCapacity();
+                        storeField(bytes, col++, fieldStart, i, hasQuote);
+                        fieldStart = i + 1;
+                        hasQuote = false;
+                    } else if (b == '\n' || b == '\r') {
+                        break;
+                    }
+                }
+
+                if (i > lineStart) {
+                    if (col == 0) ensureCapacity();
+                    storeField(bytes, col++, fieldStart, i, hasQuote);
+                    finishRow(col);
+                }
+
+                // A line ends with \n, \r or \r\n
+                pos = i;
+                if (pos < length && bytes[pos] == '\r') pos++;
+                if (pos < length && bytes[pos] == '\n' && (pos == i || bytes[pos - 1] == '\r')) pos++;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (rows < capacity) {
+                return;
+            }
+            capacity = Math.max(16, capacity + (capacity >> 1));
+            for (int col = 0; col < columnCount; col++) {
+                if (values[col] != null) {
+                    values[col] = Arrays.copyOf(values[col], capacity);
+                }
+                if (codes[col] != null) {
+                    int oldLength = codes[col].length;
+                    codes[col] = Arrays.copyOf(codes[col], capacity);
+                    Arrays.fill(codes[col], oldLength, capacity, -1);
+                }
+            }
+        }
+
+        private void finishRow(int fieldCount) {
+            // Fields missing at the end of a short line are blank cells
+            for (int col = fieldCount; col < columnCount; col++) {
+                if (col == classColumnIndex) {
+                    codes[col][rows] = dictionaries[col].encode(scratch, 0, 0);
+                } else if (projection[col]) {
+                    values[col][rows] = Double.NaN;
+                    if (missing[col] == null) {
+                        missing[col] = new BitSet();
+                    }
+                    missing[col].set(rows);
+                }
+            }
+            rows++;
+        }
+
+        private void storeField(byte[] bytes, int col, int start, int end, boolean hasQuote) {
+            if (col >= columnCount || !projection[col]) {
+                return;
+            }
+
+            byte[] source = bytes;
+            if (hasQuote) {
+                // Quotes only toggle quoting, they are not part of the value
+                if (scratch.length < end - start) {
+                    scratch = new byte[end - start];
+                }
+                int length = 0;
+                for (int i = start; i < end; i++) {
+                    if (bytes[i] != '"') {
+                        scratch[length++] = bytes[i];
+                    }
+                }
+                source = scratch;
+                start = 0;
+                end = length;
+            }
+
+            // Trim the same characters as String.trim()
+            while (start < end && (source[start] & 0xFF) <= ' ') start++;
+            while (end > start && (source[end - 1] & 0xFF) <= ' ') end--;
+
+            if (col == classColumnIndex) {
+                codes[col][rows] = dictionaries[col].encode(source, start, end);
+                return;
+            }
+
+            if (start == end) {
+                values[col][rows] = Double.NaN; // Empty entries are read as NaN
+                return;
+            }
+
+            values[col][rows] = parseNumber(source, start, end);
+            if (!parsedNumber) {
+                if (codes[col] == null) {
+                    codes[col] = new int[capacity];
+                    Arrays.fill(codes[col], -1);
+                    dictionaries[col] = new ByteDictionary();
+                }
+                codes[col][rows] = dictionaries[col].encode(source, start, end);
+                tokenCounts[col]++;
+            }
+        }
+
+        /**
+         * Parses a trimmed field as Double.parseDouble would. Plain decimals are converted
+         * directly from the bytes; anything else falls back to Double.parseDouble.
+         * Sets parsedNumber to false (and returns NaN) when the field is not a number.
+         */
+        private double parseNumber(byte[] bytes, int start, int end) {
+            parsedNumber = true;
+            int i = start;
+            boolean negative = false;
+            if (bytes[i] == '-' || bytes[i] == '+') {
+                negative = bytes[i] == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                anyDigit = true;
+                if (mantissa != 0 || bytes[i] != '0') {
+                    mantissa = mantissa * 10 + (bytes[i] - '0');
+                    digits++;
+                    if (digits > 15) return parseSlow(bytes, start, end);
+                }
+            }
+            if (i < end && bytes[i] == '.') {
+                i++;
+                for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                    anyDigit = true;
+                    if (mantissa != 0 || bytes[i] != '0') {
+                        mantissa = mantissa * 10 + (bytes[i] - '0');
+                        digits++;
+                        if (digits > 15) return parseSlow(bytes, start, end);
+                    }
+                    exponent--;
+                }
+            }
+            if (!anyDigit) {
+                return parseSlow(bytes, start, end);
+            }
+            if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                    negativeExponent = bytes[i] == '-';
+                    i++;
+                }
+                int exponentValue = 0;
+                boolean exponentDigit = false;
+                for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                    exponentDigit = true;
+                    if (exponentValue < 10000) {
+                        exponentValue = exponentValue * 10 + (bytes[i] - '0');
+                    }
+                }
+                if (!exponentDigit) {
+                    return parseSlow(bytes, start, end);
+                }
+                exponent += negativeExponent ? -exponentValue : exponentValue;
+            }
+            if (i != end) {
+                return parseSlow(bytes, start, end);
+            }
+
+            double value;
+            if (mantissa == 0) {
+                value = 0.0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return parseSlow(bytes, start, end);
+            }
+            return negative ? -value : value;
+        }
+
+        private double parseSlow(byte[] bytes, int start, int end) {
+            byte first = bytes[start];
+            boolean plausible = (first >= '0' && first <= '9') || first == '-' || first == '+'
+                    || first == '.' || first == 'N' || first == 'I';
+            if (plausible) {
+                try {
+                    return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+                } catch (NumberFormatException e) {
+                    // Not a number, kept as text below
+                }
+            }
+            parsedNumber = false;
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Dictionary of UTF-8 byte slices, so repeated text fields are decoded to a String only once.
+     */
+    private static final class ByteDictionary {
+        final List<String> values = new ArrayList<>();
+        private final List<byte[]> keys = new ArrayList<>();
+        private int[] hashes = new int[0];
+        private int[] table = new int[64]; // code + 1, 0 for an empty slot
+
+        int encode(byte[] bytes, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = table.length - 1;
+            for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    int code = keys.size();
+                    keys.add(Arrays.copyOfRange(bytes, start, end));
+                    values.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                    if (code >= hashes.length) {
+                        hashes = Arrays.copyOf(hashes, Math.max(16, hashes.length * 2));
+                    }
+                    hashes[code] = hash;
+                    table[slot] = code + 1;
+                    if (keys.size() * 2 > table.length) {
+                        rehash();
+                    }
+                    return code;
+                }
+                byte[] key = keys.get(entry - 1);
+                if (hashes[entry - 1] == hash && Arrays.equals(key, 0, key.length, bytes, start, end)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int code = 0; code < keys.size(); code++) {
+                int hash = hashes[code];
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+        }
+    }
+
+    /**
+     * Estimates the rows of a chunk from the lines in its first bytes, with some room to spare.
+     * A chunk whose first bytes hold no whole line is assumed to have lines as long as the header.
+     */
+    private static int estimateRows(byte[] bytes, int headerLength) {
+        int sample = Math.min(bytes.length, SCAN_BUFFER_SIZE);
+        int lines = 0;
+        for (int i = 0; i < sample; i++) {
+            if (bytes[i] == '\n') {
+                lines++;
+            }
+        }
+        if (lines == 0) {
+            return Math.max(16, bytes.length / Math.max(8, headerLength));
+        }
+        return (int) Math.max(16, Math.min(Integer.MAX_VALUE - 8, (long) bytes.length * lines / sample * 9 / 8));
+    }
+
+    /**
+     * Splits the data section into ranges that start and end on line boundaries.
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel, long start, long size) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, (size - start) / (threads * 4L) + 1));
+        List<long[]> ranges = new ArrayList<>();
+        long chunkStart = start;
+        while (chunkStart < size) {
+            long chunkEnd = Math.min(size, chunkStart + chunkSize);
+            if (chunkEnd < size) {
+                chunkEnd = findNewline(channel, chunkEnd, size);
+            }
+            ranges.add(new long[]{chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the position just after the next \n at or after from, or size when there is none.
+     */
+    private static long findNewline(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the position of the first line break (\n or \r) at or after from.
+     */
+    private static long findLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static long skipLineBreak(FileChannel channel, long position, long size) throws IOException {
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        channel.read(buffer, position);
+        if (buffer.get(0) == '\r' && buffer.position() > 1 && buffer.get(1) == '\n') {
+            return position + 2;
+        }
+        return position + 1;
+    }
+
+    private static String readString(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) break;
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private static String[] parseHeader(String line) {
+        List<String> values = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder currentValue = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                values.add(currentValue.toString().trim());
+                currentValue.setLength(0);
+            } else {
+                currentValue.append(c);
+            }
+        }
+        values.add(currentValue.toString().trim());
+        return values.toArray(new String[0]);
+    }
+}
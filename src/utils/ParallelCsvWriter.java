@@ -0,0 +1,116 @@
+package src.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import src.table.ColumnarDataset;
+
+/**
+ * Writes a dataset as CSV on all cores. Rows are formatted in blocks on the common pool, straight
+ * from the primitive columns, and the blocks are written to a file channel in order while the
+ * following blocks are formatted; at most two blocks per core are in flight.
+ *
+ * Cells are written as the table shows them ({@link ColumnarDataset#getText}), separated by commas
+ * and without quoting, and lines end with the platform line separator, like the writer it replaces.
+ * Any subset of the rows and columns can be written, in any order, without copying the dataset.
+ */
+public class ParallelCsvWriter {
+
+    // Cells per block, so that wide tables get proportionally fewer rows per block
+    private static final int BLOCK_CELLS = 1 << 16;
+
+    private ParallelCsvWriter() {
+    }
+
+    /**
+     * Writes every row and column of the dataset.
+     * @param headers the name of each column of the dataset
+     */
+    public static void write(Path path, String[] headers, ColumnarDataset dataset) throws IOException {
+        write(path, headers, dataset, null, null);
+    }
+
+    /**
+     * Writes the given rows and columns of the dataset, in the given order.
+     * @param headers the name of each column of the dataset
+     * @param rows the rows to write, or null for all rows
+     * @param columns the columns to write, or null for all columns
+     */
+    public static void write(Path path, String[] headers, ColumnarDataset dataset, int[] rows, int[] columns)
+            throws IOException {
+        int[] cols = columns != null ? columns : IntStream.range(0, dataset.getColumnCount()).toArray();
+        int rowCount = rows != null ? rows.length : dataset.getRowCount();
+        String lineSeparator = System.lineSeparator();
+        int rowsPerBlock = Math.max(1, BLOCK_CELLS / Math.max(1, cols.length));
+        int window = Runtime.getRuntime().availableProcessors() * 2;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder header = new StringBuilder();
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) {
+                    header.append(',');
+                }
+                header.append(headers[cols[i]]);
+            }
+            header.append(lineSeparator);
+            writeFully(channel, encode(header));
+
+            Deque<CompletableFuture<ByteBuffer>> pending = new ArrayDeque<>();
+            for (int start = 0; start < rowCount; start += rowsPerBlock) {
+                if (pending.size() >= window) {
+                    writeFully(channel, pending.poll().join());
+                }
+                int from = start;
+                int to = Math.min(rowCount, start + rowsPerBlock);
+                pending.add(CompletableFuture.supplyAsync(
+                    () -> formatBlock(dataset, rows, cols, from, to, lineSeparator)));
+            }
+            while (!pending.isEmpty()) {
+                writeFully(channel, pending.poll().join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Formats rows from (inclusive) to to (exclusive) of the rows to write.
+     */
+    private static ByteBuffer formatBlock(ColumnarDataset dataset, int[] rows, int[] cols, int from, int to,
+                                          String lineSeparator) {
+        StringBuilder out = new StringBuilder((to - from) * cols.length * 8);
+        for (int i = from; i < to; i++) {
+            int row = rows != null ? rows[i] : i;
+            for (int c = 0; c < cols.length; c++) {
+                if (c > 0) {
+                    out.append(',');
+                }
+                dataset.appendText(row, cols[c], out);
+            }
+            out.append(lineSeparator);
+        }
+        return encode(out);
+    }
+
+    private static ByteBuffer encode(StringBuilder text) {
+        return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -2,8 +2,11 @@ package src.utils;
 
 import javax.swing.table.DefaultTableModel;
 import java.util.*;
+import src.table.ColumnarDataset;
 
 public class PureRegionUtils {
+    private static final int MIXED = -1;
+
     private String attributeName;
     private double start;
     private double end;
@@ -31,63 +34,66 @@ public class PureRegionUtils {
         List<PureRegionUtils> pureRegions = new ArrayList<>();
         int numColumns = tableModel.getColumnCount();
         int totalRows = tableModel.getRowCount();
-    
-        Map<String, Integer> classCounts = new HashMap<>();
+        ColumnarDataset dataset = ColumnarDataset.of(tableModel);
+
+        List<String> classNames = new ArrayList<>();
+        int[] classCodes = dataset.encodeColumn(classColumnIndex, classNames);
+        int[] classCounts = new int[classNames.size()];
         for (int row = 0; row < totalRows; row++) {
-            String className = tableModel.getValueAt(row, classColumnIndex).toString();
-            classCounts.put(className, classCounts.getOrDefault(className, 0) + 1);
+            classCounts[classCodes[row]]++;
         }
     
         for (int col = 0; col < numColumns; col++) {
             if (col == classColumnIndex) continue;
     
             String attributeName = tableModel.getColumnName(col);
-            List<Double> values = new ArrayList<>();
-            Map<Double, List<Integer>> valueToRowIndicesMap = new HashMap<>();
-    
-            for (int row = 0; row < totalRows; row++) {
-                try {
-                    double value = Double.parseDouble(tableModel.getValueAt(row, col).toString());
-                    values.add(value);
-                    valueToRowIndicesMap.computeIfAbsent(value, k -> new ArrayList<>()).add(row);
-                } catch (NumberFormatException e) {
-                    // Skip non-numerical values
+            int[] sortedRows = dataset.sortedNumericRows(col);
+
+            // Collapse the sorted cases into distinct values, each with its case count and
+            // its class code (or MIXED when cases with that value belong to several classes)
+            double[] distinctValues = new double[sortedRows.length];
+            int[] valueCounts = new int[sortedRows.length];
+            int[] valueClasses = new int[sortedRows.length];
+            int distinct = 0;
+            for (int row : sortedRows) {
+                double value = dataset.getDouble(row, col);
+                int classCode = classCodes[row];
+                if (distinct > 0 && Double.compare(distinctValues[distinct - 1], value) == 0) {
+                    valueCounts[distinct - 1]++;
+                    if (valueClasses[distinct - 1] != classCode) {
+                        valueClasses[distinct - 1] = MIXED;
+                    }
+                } else {
+                    distinctValues[distinct] = value;
+                    valueCounts[distinct] = 1;
+                    valueClasses[distinct] = classCode;
+                    distinct++;
                 }
             }
-    
-            Collections.sort(values);
-    
-            for (int start = 0; start < values.size(); start++) {
-                String currentClass = null;
-                Set<Integer> rowsInWindow = new HashSet<>();
-                boolean isPure = true;
-    
-                for (int end = start + 1; end <= values.size(); end++) {
-                    List<Integer> rowIndices = valueToRowIndicesMap.get(values.get(end - 1));
-                    for (int rowIndex : rowIndices) {
-                        String className = tableModel.getValueAt(rowIndex, classColumnIndex).toString();
-                        if (currentClass == null) {
-                            currentClass = className;
-                        } else if (!currentClass.equals(className)) {
-                            isPure = false;
-                            break;
-                        }
-                        rowsInWindow.add(rowIndex);
-                    }
-    
-                    if (!isPure) {
-                        break;
+
+            // Every window of consecutive distinct values whose cases share one class is a pure region
+            for (int start = 0; start < distinct; start++) {
+                int currentClass = valueClasses[start];
+                if (currentClass == MIXED) continue;
+                int regionCount = 0;
+
+                for (int end = start; end < distinct && valueClasses[end] == currentClass; end++) {
+                    regionCount += valueCounts[end];
+                    double percentageOfClass = (regionCount / (double) classCounts[currentClass]) * 100;
+                    double percentageOfDataset = (regionCount / (double) totalRows) * 100;
+
+                    // Regions touching NaN are never merged by the containment filter, so they are
+                    // reported once per pair of start and end cases, as a case-by-case scan would
+                    int copies = 1;
+                    if (Double.isNaN(distinctValues[end])) {
+                        copies = start == end
+                                ? valueCounts[end] * (valueCounts[end] + 1) / 2
+                                : valueCounts[start] * valueCounts[end];
                     }
-    
-                    if (!rowsInWindow.isEmpty()) {
-                        int regionCount = rowsInWindow.size();
-                        double percentageOfClass = (regionCount / (double) classCounts.get(currentClass)) * 100;
-                        double percentageOfDataset = (regionCount / (double) totalRows) * 100;
-                        double expandedEnd = values.get(end - 1);
-    
+                    for (int copy = 0; copy < copies; copy++) {
                         PureRegionUtils region = new PureRegionUtils(
-                                attributeName, values.get(start), expandedEnd,
-                                currentClass, regionCount, percentageOfClass, percentageOfDataset
+                                attributeName, distinctValues[start], distinctValues[end],
+                                classNames.get(currentClass), regionCount, percentageOfClass, percentageOfDataset
                         );
                         pureRegions.add(region);
                     }
@@ -0,0 +1,211 @@
+package src.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate k-nearest-neighbor search for wide data, where a {@link KDTree} has to visit nearly
+ * every point.
+ *
+ * Each tree of the forest hashes the points into leaves of a few dozen: a node splits its points
+ * at the median of their projection on the direction between two of them, picked at random. A
+ * query follows one path down every tree, and the points of the leaves it reaches are ranked by
+ * their distance, computed with {@link VectorKernels}. Neighbors missed by all trees are not found, so more trees give a higher
+ * recall for a proportionally slower query; {@link NeighborIndex#measureRecall} tells how close
+ * the answers are. Points with NaN or infinite coordinates are candidates for every query.
+ *
+ * Nodes store the indices of the two points that define their direction rather than the
+ * direction itself, so each tree takes a few bytes per point whatever the number of dimensions.
+ */
+public class RandomProjectionForest implements NeighborIndex {
+
+    private static final int LEAF_SIZE = 32;
+
+    private final double[][] points;
+    private final int[] irregular;   // Indices of the points with a non-finite coordinate
+    private final Tree[] trees;
+
+    /**
+     * Builds the given number of trees in parallel. The points are not copied and must not
+     * change while the forest is in use.
+     */
+    public RandomProjectionForest(double[][] points, int treeCount, long seed) {
+        this.points = points;
+        int[] finite = IntStream.range(0, points.length).filter(i -> isFinite(points[i])).toArray();
+        this.irregular = IntStream.range(0, points.length).filter(i -> !isFinite(points[i])).toArray();
+        long[] seeds = new Random(seed).longs(treeCount).toArray();
+        this.trees = IntStream.range(0, treeCount).parallel()
+            .mapToObj(t -> new Tree(finite.clone(), new Random(seeds[t])))
+            .toArray(Tree[]::new);
+    }
+
+    @Override
+    public int size() {
+        return points.length;
+    }
+
+    public int getTreeCount() {
+        return trees.length;
+    }
+
+    /**
+     * {@inheritDoc} The result is approximate: a neighbor sharing no leaf with the query in any
+     * tree is missed, unless the leaves hold fewer than k points and every point is ranked.
+     */
+    @Override
+    public int[] nearest(double[] query, int k, Metric metric) {
+        NeighborHeap neighbors = new NeighborHeap(Math.min(k, points.length));
+        if (neighbors.capacity == 0) {
+            return new int[0];
+        }
+        if (!isFinite(query)) {
+            for (int i = 0; i < points.length; i++) {
+                neighbors.offer(metric.distance(query, points[i]), i);
+            }
+            return neighbors.sorted();
+        }
+        for (int i : irregular) {
+            neighbors.offer(metric.distance(query, points[i]), i);
+        }
+
+        // Points reached through several trees are ranked once
+        int[] candidates = new int[trees.length * LEAF_SIZE];
+        int count = 0;
+        for (Tree tree : trees) {
+            count = tree.collectLeaf(query, candidates, count);
+        }
+        Arrays.sort(candidates, 0, count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) {
+                neighbors.offer(metric.kernelDistance(query, points[candidates[i]]), candidates[i]);
+            }
+        }
+
+        // With few trees and a large k the leaves hold fewer than k points; rank the rest directly
+        if (neighbors.size < neighbors.capacity) {
+            for (int i = 0; i < points.length; i++) {
+                if (Arrays.binarySearch(candidates, 0, count, i) < 0 && Arrays.binarySearch(irregular, i) < 0) {
+                    neighbors.offer(metric.kernelDistance(query, points[i]), i);
+                }
+            }
+        }
+        return neighbors.sorted();
+    }
+
+    /**
+     * Projection of a point on the direction from point a to point b, up to a constant.
+     */
+    private double project(double[] point, int a, int b) {
+        return VectorKernels.dot(point, points[b]) - VectorKernels.dot(point, points[a]);
+    }
+
+    private static boolean isFinite(double[] point) {
+        for (double value : point) {
+            if (!Double.isFinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One tree, with nodes numbered like a binary heap over ranges of order split at their middle.
+     */
+    private final class Tree {
+        final int[] order;
+        final int[] fromPoint;
+        final int[] toPoint;
+        final double[] threshold;
+
+        Tree(int[] order, Random random) {
+            this.order = order;
+            int leaves = Math.max(1, Integer.highestOneBit(Math.max(1, (order.length - 1) / LEAF_SIZE)) << 1);
+            this.fromPoint = new int[2 * leaves];
+            this.toPoint = new int[2 * leaves];
+            this.threshold = new double[2 * leaves];
+            build(0, 0, order.length, random, new double[order.length]);
+        }
+
+        private void build(int node, int from, int to, Random random, double[] projections) {
+            if (to - from <= LEAF_SIZE) {
+                return;
+            }
+            // Two distinct points give the direction; duplicates leave every projection equal
+            int a = order[from + random.nextInt(to - from)];
+            int b = order[from + random.nextInt(to - from)];
+            for (int attempt = 0; attempt < 4 && Arrays.equals(points[a], points[b]); attempt++) {
+                b = order[from + random.nextInt(to - from)];
+            }
+            for (int i = from; i < to; i++) {
+                projections[i] = project(points[order[i]], a, b);
+            }
+            int mid = (from + to) >>> 1;
+            select(projections, from, to, mid);
+            fromPoint[node] = a;
+            toPoint[node] = b;
+            threshold[node] = projections[mid];
+            build(2 * node + 1, from, mid, random, projections);
+            build(2 * node + 2, mid, to, random, projections);
+        }
+
+        /**
+         * Rearranges order[from, to) and their projections so that nth holds the median, with
+         * no greater projection before it and no smaller after.
+         */
+        private void select(double[] projections, int from, int to, int nth) {
+            int lo = from;
+            int hi = to - 1;
+            while (lo < hi) {
+                double pivot = projections[(lo + hi) >>> 1];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (projections[i] < pivot) {
+                        i++;
+                    }
+                    while (projections[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        double projection = projections[i];
+                        projections[i] = projections[j];
+                        projections[j] = projection;
+                        int swap = order[i];
+                        order[i++] = order[j];
+                        order[j--] = swap;
+                    }
+                }
+                if (nth <= j) {
+                    hi = j;
+                } else if (nth >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Appends the points of the leaf the query falls in to candidates, from position count,
+         * and returns the new count.
+         */
+        int collectLeaf(double[] query, int[] candidates, int count) {
+            int node = 0;
+            int from = 0;
+            int to = order.length;
+            while (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                if (project(query, fromPoint[node], toPoint[node]) < threshold[node]) {
+                    to = mid;
+                    node = 2 * node + 1;
+                } else {
+                    from = mid;
+                    node = 2 * node + 2;
+                }
+            }
+            System.arraycopy(order, from, candidates, count, to - from);
+            return count + to - from;
+        }
+    }
+}
@@ -1,20 +1,20 @@
 package src.utils;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
 import src.CsvViewer;
+import src.table.ReorderableTableModel;
 
 public class SlopeAndDistanceFeatures {
     private final CsvViewer csvViewer;
-    private final DefaultTableModel tableModel;
+    private final ReorderableTableModel tableModel;
     private final JTable table;
     private boolean useAbsoluteDistance = false; // Flag for absolute distance
 
-    public SlopeAndDistanceFeatures(CsvViewer csvViewer, DefaultTableModel tableModel, JTable table) {
+    public SlopeAndDistanceFeatures(CsvViewer csvViewer, ReorderableTableModel tableModel, JTable table) {
         this.csvViewer = csvViewer;
         this.tableModel = tableModel;
         this.table = table;
@@ -159,11 +159,8 @@ public class SlopeAndDistanceFeatures {
             String distCol = csvViewer.getUniqueColumnName(
                 dim + "D_" + absPrefix + "Distance(" + point1Name + ")-(" + point2Name + ")");
             
-            tableModel.addColumn(slopeCol);
-            tableModel.addColumn(distCol);
-            
-            int slopeIndex = tableModel.getColumnCount() - 2;
-            int distIndex = tableModel.getColumnCount() - 1;
+            Object[] slopes = new Object[tableModel.getRowCount()];
+            Object[] distances = new Object[tableModel.getRowCount()];
 
             for (int row = 0; row < tableModel.getRowCount(); row++) {
                 try {
@@ -195,14 +192,17 @@ public class SlopeAndDistanceFeatures {
                         distance = Math.abs(distance);
                     }
                     
-                    tableModel.setValueAt(String.format("%.4f", slope), row, slopeIndex);
-                    tableModel.setValueAt(String.format("%.4f", distance), row, distIndex);
+                    slopes[row] = String.format("%.4f", slope);
+                    distances[row] = String.format("%.4f", distance);
                     
                 } catch (NumberFormatException e) {
-                    tableModel.setValueAt("0.0000", row, slopeIndex);
-                    tableModel.setValueAt("0.0000", row, distIndex);
+                    slopes[row] = "0.0000";
+                    distances[row] = "0.0000";
                 }
             }
+
+            // Add both columns with a single model event
+            tableModel.addColumns(new Object[] {slopeCol, distCol}, new Object[][] {slopes, distances});
         }
     }
 
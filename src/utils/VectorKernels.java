@@ -0,0 +1,171 @@
+package src.utils;
+
+/**
+ * Distance and reduction loops over primitive rows and columns.
+ *
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector}, the loops use SIMD lanes
+ * through the Vector API ({@link SimdKernels}); otherwise, or with
+ * {@code -Djtabviz.scalarKernels=true}, they are plain scalar loops. Both give the same result up
+ * to rounding, since lanes add their terms in a different order. Exact nearest neighbor searches
+ * therefore do not use them; see {@link NeighborIndex.Metric#distance}.
+ */
+public final class VectorKernels {
+
+    /**
+     * The loops behind the static methods, implemented once with and once without lanes.
+     */
+    interface Kernels {
+        double squaredEuclidean(double[] a, double[] b);
+
+        double manhattan(double[] a, double[] b);
+
+        double dot(double[] a, double[] b);
+
+        double sum(double[] values, int from, int to);
+
+        double sumOfSquaredDeviations(double[] values, int from, int to, double mean);
+
+        double centeredDot(double[] x, double meanX, double[] y, double meanY);
+    }
+
+    private static final Kernels KERNELS = load();
+
+    private VectorKernels() {
+    }
+
+    private static Kernels load() {
+        if (Boolean.getBoolean("jtabviz.scalarKernels")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernels();
+        }
+        try {
+            // Loaded by name, so that this class links without the incubator module
+            return (Kernels) Class.forName("src.utils.SimdKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarKernels();
+        }
+    }
+
+    /**
+     * Returns the loops in use, for {@link VectorKernelsBenchmark}.
+     */
+    static Kernels kernels() {
+        return KERNELS;
+    }
+
+    /**
+     * Returns true when the loops use the Vector API.
+     */
+    public static boolean isVectorized() {
+        return !(KERNELS instanceof ScalarKernels);
+    }
+
+    public static double squaredEuclidean(double[] a, double[] b) {
+        return KERNELS.squaredEuclidean(a, b);
+    }
+
+    public static double manhattan(double[] a, double[] b) {
+        return KERNELS.manhattan(a, b);
+    }
+
+    public static double dot(double[] a, double[] b) {
+        return KERNELS.dot(a, b);
+    }
+
+    public static double sum(double[] values) {
+        return KERNELS.sum(values, 0, values.length);
+    }
+
+    public static double sum(double[] values, int from, int to) {
+        return KERNELS.sum(values, from, to);
+    }
+
+    public static double mean(double[] values, int from, int to) {
+        return to > from ? KERNELS.sum(values, from, to) / (to - from) : 0.0;
+    }
+
+    /**
+     * Returns the sample variance of values[from, to), or 0 for fewer than two values.
+     */
+    public static double variance(double[] values, int from, int to) {
+        if (to - from < 2) {
+            return 0.0;
+        }
+        double mean = mean(values, from, to);
+        return KERNELS.sumOfSquaredDeviations(values, from, to, mean) / (to - from - 1);
+    }
+
+    /**
+     * Returns the sample covariance of two columns of the same length.
+     */
+    public static double covariance(double[] x, double[] y) {
+        double meanX = mean(x, 0, x.length);
+        double meanY = mean(y, 0, y.length);
+        return KERNELS.centeredDot(x, meanX, y, meanY) / (x.length - 1);
+    }
+
+    /**
+     * Returns the sum of (x[i] - meanX) * (y[i] - meanY) over both columns.
+     */
+    public static double centeredDot(double[] x, double meanX, double[] y, double meanY) {
+        return KERNELS.centeredDot(x, meanX, y, meanY);
+    }
+
+    static final class ScalarKernels implements Kernels {
+        @Override
+        public double squaredEuclidean(double[] a, double[] b) {
+            double sum = 0.0;
+            for (int i = 0; i < a.length; i++) {
+                double diff = a[i] - b[i];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        @Override
+        public double manhattan(double[] a, double[] b) {
+            double sum = 0.0;
+            for (int i = 0; i < a.length; i++) {
+                sum += Math.abs(a[i] - b[i]);
+            }
+            return sum;
+        }
+
+        @Override
+        public double dot(double[] a, double[] b) {
+            double sum = 0.0;
+            for (int i = 0; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public double sum(double[] values, int from, int to) {
+            double sum = 0.0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public double sumOfSquaredDeviations(double[] values, int from, int to, double mean) {
+            double sum = 0.0;
+            for (int i = from; i < to; i++) {
+                double diff = values[i] - mean;
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        @Override
+        public double centeredDot(double[] x, double meanX, double[] y, double meanY) {
+            double sum = 0.0;
+            for (int i = 0; i < x.length; i++) {
+                sum += (x[i] - meanX) * (y[i] - meanY);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package src.utils;
+
+import java.util.Random;
+
+/**
+ * Times {@link VectorKernels} against the scalar loops on random 784-wide rows, the width of a
+ * 28x28 image, e.g. {@code java --add-modules jdk.incubator.vector -cp out src.utils.VectorKernelsBenchmark}.
+ * The first round includes compiling the kernels.
+ */
+public final class VectorKernelsBenchmark {
+
+    // Keeps the results alive, so that the JIT cannot drop the loops
+    private static volatile double sink;
+
+    private VectorKernelsBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Random random = new Random(42);
+        double[][] rows = new double[rowCount][784];
+        for (double[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = random.nextDouble() * 255;
+            }
+        }
+        VectorKernels.Kernels scalar = new VectorKernels.ScalarKernels();
+        System.out.println("Vector API: " + (VectorKernels.isVectorized() ? "in use" : "not available, both runs are scalar"));
+        for (int round = 0; round < 5; round++) {
+            long scalarTime = time(scalar, rows);
+            long vectorTime = time(VectorKernels.kernels(), rows);
+            System.out.printf("Round %d: scalar %d ms, kernels %d ms, speedup %.2fx%n", round + 1,
+                scalarTime / 1_000_000, vectorTime / 1_000_000, scalarTime / (double) Math.max(1, vectorTime));
+        }
+    }
+
+    /**
+     * Runs every kernel from the first row to every row, and returns the time taken.
+     */
+    private static long time(VectorKernels.Kernels kernels, double[][] rows) {
+        long start = System.nanoTime();
+        double checksum = 0.0;
+        double[] first = rows[0];
+        for (double[] row : rows) {
+            checksum += kernels.squaredEuclidean(first, row);
+            checksum += kernels.manhattan(first, row);
+            checksum += kernels.dot(first, row);
+            double sum = kernels.sum(row, 0, row.length);
+            checksum += kernels.sumOfSquaredDeviations(row, 0, row.length, sum / row.length);
+            checksum += kernels.centeredDot(first, 127.5, row, 127.5);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = checksum;
+        return elapsed;
+    }
+}